@@ -35,6 +35,9 @@ public class TupleHelpers {
     @Nonnull
     public static final Tuple EMPTY = Tuple.from();
 
+    @Nonnull
+    private static final ThreadLocal<TupleKeyBuilder> KEY_BUILDER = ThreadLocal.withInitial(TupleKeyBuilder::new);
+
     @Nonnull
     public static Tuple set(@Nonnull Tuple src, int index, Object value) {
         final List<Object> items = src.getItems();
@@ -93,6 +96,44 @@ public class TupleHelpers {
         }
     }
 
+    /**
+     * Pack a tuple after a raw prefix. This gives the same result as {@link Tuple#pack(byte[])}, but encodes directly
+     * into a reused buffer, so that the only allocation is the returned array.
+     * @param prefix the raw prefix, such as the key of a subspace
+     * @param tuple the tuple to pack
+     * @return the packed key
+     * @see TupleKeyBuilder
+     */
+    @Nonnull
+    public static byte[] pack(@Nonnull byte[] prefix, @Nonnull Tuple tuple) {
+        return KEY_BUILDER.get().reset().addRaw(prefix).addAll(tuple).pack();
+    }
+
+    /**
+     * Pack a tuple with one more element added after a raw prefix. This gives the same result as
+     * {@code tuple.add(suffix).pack(prefix)} without building the longer tuple.
+     * @param prefix the raw prefix, such as the key of a subspace
+     * @param tuple the tuple to pack
+     * @param suffix an additional element to pack after those of the tuple
+     * @return the packed key
+     */
+    @Nonnull
+    public static byte[] pack(@Nonnull byte[] prefix, @Nonnull Tuple tuple, @Nullable Object suffix) {
+        return KEY_BUILDER.get().reset().addRaw(prefix).addAll(tuple).add(suffix).pack();
+    }
+
+    /**
+     * Pack a single tuple element after a raw prefix. This gives the same result as {@link com.apple.foundationdb.subspace.Subspace#pack(Object)}
+     * for a subspace whose key is the prefix, without building a tuple.
+     * @param prefix the raw prefix, such as the key of a subspace
+     * @param element the element to pack
+     * @return the packed key
+     */
+    @Nonnull
+    public static byte[] packElement(@Nonnull byte[] prefix, @Nullable Object element) {
+        return KEY_BUILDER.get().reset().addRaw(prefix).add(element).pack();
+    }
+
     private TupleHelpers() {
     }
 }
@@ -0,0 +1,275 @@
+/*
+ * TupleKeyBuilder.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.tuple;
+
+import com.apple.foundationdb.API;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Build a key by encoding a raw prefix and tuple elements directly into a growable buffer.
+ *
+ * The result is the same as from {@link Tuple#pack(byte[])}, but without the intermediate array for each element and
+ * the list holding them. A builder can be {@linkplain #reset reset} and reused, so that after it has grown large enough
+ * the only allocation for each key is the final {@link #pack} array.
+ *
+ * The common element types (null, byte arrays, strings, integers up to {@code long}, floating point, booleans, UUIDs
+ * and nested tuples and lists) are encoded directly. Anything else, such as {@link java.math.BigInteger} or
+ * {@link Versionstamp}, is encoded by {@link Tuple} and copied in.
+ *
+ * A builder is not thread-safe.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class TupleKeyBuilder {
+    private static final byte NULL_CODE = 0x00;
+    private static final byte BYTES_CODE = 0x01;
+    private static final byte STRING_CODE = 0x02;
+    private static final byte NESTED_CODE = 0x05;
+    private static final byte INT_ZERO_CODE = 0x14;
+    private static final byte FLOAT_CODE = 0x20;
+    private static final byte DOUBLE_CODE = 0x21;
+    private static final byte FALSE_CODE = 0x26;
+    private static final byte TRUE_CODE = 0x27;
+    private static final byte UUID_CODE = 0x30;
+    private static final byte NULL_ESCAPE = (byte)0xff;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    @Nonnull
+    private byte[] buffer;
+    private int length;
+
+    public TupleKeyBuilder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TupleKeyBuilder(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Discard everything added so far, keeping the buffer for the next key.
+     * @return this builder
+     */
+    @Nonnull
+    public TupleKeyBuilder reset() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Get the number of bytes added so far.
+     * @return the current length of the key
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Add raw bytes, such as a subspace prefix, without any encoding.
+     * @param bytes the bytes to add
+     * @return this builder
+     */
+    @Nonnull
+    public TupleKeyBuilder addRaw(@Nonnull byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Add the encoding of all the elements of a tuple.
+     * @param tuple the tuple to add
+     * @return this builder
+     */
+    @Nonnull
+    public TupleKeyBuilder addAll(@Nonnull Tuple tuple) {
+        final int size = tuple.size();
+        for (int i = 0; i < size; i++) {
+            add(tuple.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Add the encoding of all the elements of a list, as though they were the elements of a tuple.
+     * @param items the items to add
+     * @return this builder
+     */
+    @Nonnull
+    public TupleKeyBuilder addAll(@Nonnull List<?> items) {
+        for (Object item : items) {
+            add(item);
+        }
+        return this;
+    }
+
+    /**
+     * Add the encoding of a single tuple element.
+     * @param item the element to add
+     * @return this builder
+     */
+    @Nonnull
+    public TupleKeyBuilder add(@Nullable Object item) {
+        encode(item, false);
+        return this;
+    }
+
+    /**
+     * Get the key built so far.
+     * @return a new array with the bytes added since the builder was created or last reset
+     */
+    @Nonnull
+    public byte[] pack() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void encode(@Nullable Object item, boolean nested) {
+        if (item == null) {
+            if (nested) {
+                writeByte(NULL_CODE);
+                writeByte(NULL_ESCAPE);
+            } else {
+                writeByte(NULL_CODE);
+            }
+        } else if (item instanceof byte[]) {
+            writeByte(BYTES_CODE);
+            writeEscaped((byte[])item);
+        } else if (item instanceof String) {
+            writeByte(STRING_CODE);
+            writeString((String)item);
+        } else if (item instanceof Long || item instanceof Integer || item instanceof Short || item instanceof Byte) {
+            writeLong(((Number)item).longValue());
+        } else if (item instanceof Float) {
+            writeByte(FLOAT_CODE);
+            final int bits = Float.floatToRawIntBits((Float)item);
+            writeBigEndian(bits < 0 ? ~bits : bits ^ Integer.MIN_VALUE, 4);
+        } else if (item instanceof Double) {
+            writeByte(DOUBLE_CODE);
+            final long bits = Double.doubleToRawLongBits((Double)item);
+            writeBigEndian(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE, 8);
+        } else if (item instanceof Boolean) {
+            writeByte((Boolean)item ? TRUE_CODE : FALSE_CODE);
+        } else if (item instanceof UUID) {
+            writeByte(UUID_CODE);
+            writeBigEndian(((UUID)item).getMostSignificantBits(), 8);
+            writeBigEndian(((UUID)item).getLeastSignificantBits(), 8);
+        } else if (item instanceof Tuple) {
+            writeByte(NESTED_CODE);
+            final Tuple tuple = (Tuple)item;
+            final int size = tuple.size();
+            for (int i = 0; i < size; i++) {
+                encode(tuple.get(i), true);
+            }
+            writeByte(NULL_CODE);
+        } else if (item instanceof List<?>) {
+            writeByte(NESTED_CODE);
+            for (Object nestedItem : (List<?>)item) {
+                encode(nestedItem, true);
+            }
+            writeByte(NULL_CODE);
+        } else {
+            // Encoding of any other single non-null element does not depend on whether it is nested.
+            addRaw(Tuple.from(item).pack());
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == 0) {
+            writeByte(INT_ZERO_CODE);
+        } else if (value > 0) {
+            final int size = byteCount(value);
+            writeByte((byte)(INT_ZERO_CODE + size));
+            writeBigEndian(value, size);
+        } else {
+            // Negative values are stored as one's complement of the magnitude, which is the low bytes of one less.
+            final int size = byteCount(-value);
+            writeByte((byte)(INT_ZERO_CODE - size));
+            writeBigEndian(value - 1, size);
+        }
+    }
+
+    // Number of bytes needed for a magnitude, treated as unsigned so that that of Long.MIN_VALUE is 8.
+    private static int byteCount(long magnitude) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(magnitude) + 7) / 8;
+    }
+
+    private void writeString(@Nonnull String value) {
+        final int stringLength = value.length();
+        ensureCapacity(stringLength + 1);
+        for (int i = 0; i < stringLength; i++) {
+            final char ch = value.charAt(i);
+            if (ch == 0 || ch >= 0x80) {
+                // Not plain ASCII: drop what was copied so far and encode the hard way.
+                length -= i;
+                writeEscaped(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[length++] = (byte)ch;
+        }
+        buffer[length++] = NULL_CODE;
+    }
+
+    private void writeEscaped(@Nonnull byte[] bytes) {
+        // Each null byte takes two bytes once escaped, and then there is the terminator.
+        int escapedLength = bytes.length + 1;
+        for (byte b : bytes) {
+            if (b == NULL_CODE) {
+                escapedLength++;
+            }
+        }
+        ensureCapacity(escapedLength);
+        for (byte b : bytes) {
+            if (b == NULL_CODE) {
+                buffer[length++] = NULL_CODE;
+                buffer[length++] = NULL_ESCAPE;
+            } else {
+                buffer[length++] = b;
+            }
+        }
+        buffer[length++] = NULL_CODE;
+    }
+
+    private void writeBigEndian(long value, int size) {
+        ensureCapacity(size);
+        for (int i = size - 1; i >= 0; i--) {
+            buffer[length++] = (byte)(value >>> (i * 8));
+        }
+    }
+
+    private void writeByte(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void ensureCapacity(int additional) {
+        final int needed = length + additional;
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(needed, buffer.length * 2));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * TuplePackPerformanceTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.tuple;
+
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.test.Tags;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Compare the throughput of {@link Subspace#pack(Tuple)} with {@link TupleHelpers#pack(byte[], Tuple)}.
+ */
+@Tag(Tags.Performance)
+public class TuplePackPerformanceTest {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int KEYS_PER_ROUND = 1_000_000;
+
+    private final Subspace subspace = new Subspace(Tuple.from("record-test", "performance", 1066L));
+    private final byte[] prefix = subspace.getKey();
+    private final Tuple[] keys = {
+            Tuple.from(42L, 1001L),
+            Tuple.from("some_string_value", 17, 1001L),
+            Tuple.from(UUID.randomUUID(), -3.5, true, null, new byte[] {0, 1, 2}),
+    };
+
+    @Test
+    public void subspacePack() {
+        run("Subspace.pack", subspace::pack);
+    }
+
+    @Test
+    public void tupleHelpersPack() {
+        run("TupleHelpers.pack", key -> TupleHelpers.pack(prefix, key));
+    }
+
+    private void run(String name, Function<Tuple, byte[]> pack) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(pack);
+        }
+        long total = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            total += round(pack);
+        }
+        System.out.printf("%s: %.1f ns/key%n", name, (double)total / ((long)ROUNDS * KEYS_PER_ROUND));
+    }
+
+    private long round(Function<Tuple, byte[]> pack) {
+        long length = 0;
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < KEYS_PER_ROUND; i++) {
+            length += pack.apply(keys[i % keys.length]).length;
+        }
+        final long elapsed = System.nanoTime() - startTime;
+        if (length == 0) {
+            throw new IllegalStateException("nothing packed");
+        }
+        return elapsed;
+    }
+}
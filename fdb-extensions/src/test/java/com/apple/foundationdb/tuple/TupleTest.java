@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -109,6 +110,38 @@ public class TupleTest {
         ExpectedTupleEncoding.check(tests);
     }
 
+    @Test
+    public void testKeyBuilderIntegers() {
+        final List<Long> values = new ArrayList<>();
+        for (int shift = 0; shift < 64; shift++) {
+            final long value = 1L << shift;
+            values.addAll(Arrays.asList(value - 1, value, value + 1, -value - 1, -value, -value + 1));
+        }
+        values.addAll(Arrays.asList(Long.MIN_VALUE, Long.MIN_VALUE + 1, Long.MAX_VALUE));
+        final TupleKeyBuilder builder = new TupleKeyBuilder(1);
+        for (long value : values) {
+            assertArrayEquals(Tuple.from(value).pack(), builder.reset().add(value).pack(), () -> "value " + value);
+            assertArrayEquals(Tuple.from((int)value).pack(), builder.reset().add((int)value).pack(), () -> "int value " + (int)value);
+        }
+        final Tuple key = Tuple.from("a", 1L);
+        assertArrayEquals(key.add(-1066L).pack(new byte[] {0x02}), TupleHelpers.pack(new byte[] {0x02}, key, -1066L));
+        final byte[] keyPrefix = key.pack(new byte[] {0x02});
+        assertArrayEquals(key.add(3L).pack(new byte[] {0x02}), TupleHelpers.packElement(keyPrefix, 3L));
+    }
+
+    @Test
+    public void testKeyBuilderEscapesAtBufferBoundary() {
+        final List<Object> values = Arrays.asList(new byte[] {0}, new byte[] {1, 0, 0}, "" + zeroByteCharacter, "a" + zeroByteCharacter + zeroByteCharacter);
+        for (int prefixLength = 0; prefixLength < 70; prefixLength++) {
+            final byte[] prefix = new byte[prefixLength];
+            for (Object value : values) {
+                // Fill the default buffer up to just before, at and past where the escaped null bytes land.
+                final byte[] expected = Tuple.from(value).pack(prefix);
+                assertArrayEquals(expected, new TupleKeyBuilder().addRaw(prefix).add(value).pack(), () -> "prefix length " + prefix.length);
+            }
+        }
+    }
+
     private static class ExpectedTupleEncoding<T> {
         private T obj;
         private String encodedLoggable;
@@ -120,6 +153,7 @@ public class TupleTest {
 
         public void check() {
             byte[] actualAlone = Tuple.from(obj).pack();
+            assertArrayEquals(actualAlone, new TupleKeyBuilder().add(obj).pack());
             if (encodedLoggable == null) {
                 if (actualAlone != null) {
                     System.out.println("\"" +
@@ -142,6 +176,8 @@ public class TupleTest {
                     .map(expectedTupleEncoding -> expectedTupleEncoding.encodedLoggable)
                     .collect(Collectors.joining());
             assertEquals(expected, ByteArrayUtil2.loggable(objects.pack()));
+            final byte[] prefix = {0x15, 0x00, (byte)0xfe};
+            assertArrayEquals(objects.pack(prefix), TupleHelpers.pack(prefix, objects));
         }
     }
 }
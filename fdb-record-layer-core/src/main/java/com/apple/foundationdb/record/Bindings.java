@@ -26,6 +26,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A map of bound parameter values passed to query evaluation.
@@ -87,6 +89,18 @@ public class Bindings {
         }
     }
 
+    /**
+     * Get the names of all the parameters bound, including those bound by the parent.
+     * @return the set of bound parameter names
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public Set<String> getNames() {
+        final Set<String> names = parent == null ? new TreeSet<>() : parent.getNames();
+        names.addAll(values.keySet());
+        return names;
+    }
+
     public static Builder newBuilder() {
         return new Builder(null);
     }
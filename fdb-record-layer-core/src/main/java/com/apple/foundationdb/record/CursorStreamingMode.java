@@ -32,5 +32,10 @@ public enum CursorStreamingMode {
     /** The client will process records one-at-a-time. */
     ITERATOR,
     /** The client will load all records immediately, such as with {@link RecordCursor#asList}. */
-    WANT_ALL
+    WANT_ALL,
+    /**
+     * The client will process records one-at-a-time, doing enough work for each that the next part of the scan
+     * should be read before it is needed, such as when loading a record for each index entry.
+     */
+    READ_AHEAD
 }
@@ -37,8 +37,10 @@ import javax.annotation.Nullable;
 public class EvaluationContext {
     @Nonnull
     private final Bindings bindings;
+    @Nullable
+    private final ExecutionProfile profile;
 
-    public static final EvaluationContext EMPTY = new EvaluationContext(Bindings.EMPTY_BINDINGS);
+    public static final EvaluationContext EMPTY = new EvaluationContext(Bindings.EMPTY_BINDINGS, null);
 
     /**
      * Get an empty evaluation context.
@@ -49,8 +51,9 @@ public class EvaluationContext {
         return EMPTY;
     }
 
-    private EvaluationContext(@Nonnull Bindings bindings) {
+    EvaluationContext(@Nonnull Bindings bindings, @Nullable ExecutionProfile profile) {
         this.bindings = bindings;
+        this.profile = profile;
     }
 
     /**
@@ -61,7 +64,7 @@ public class EvaluationContext {
      */
     @Nonnull
     public static EvaluationContext forBindings(@Nonnull Bindings bindings) {
-        return new EvaluationContext(bindings);
+        return new EvaluationContext(bindings, null);
     }
 
     /**
@@ -73,7 +76,7 @@ public class EvaluationContext {
      */
     @Nonnull
     public static EvaluationContext forBinding(@Nonnull String bindingName, @Nullable Object value) {
-        return new EvaluationContext(Bindings.newBuilder().set(bindingName, value).build());
+        return new EvaluationContext(Bindings.newBuilder().set(bindingName, value).build(), null);
     }
 
     /**
@@ -99,6 +102,19 @@ public class EvaluationContext {
         return bindings.get(name);
     }
 
+    /**
+     * Get the profile that collects statistics about each plan executed with this context, if any.
+     * Contexts made from this one, such as by {@link #withBinding}, have the same profile.
+     *
+     * @return the profile or {@code null} if plans are executed without collecting statistics
+     * @see ExecutionProfile
+     */
+    @Nullable
+    @API(API.Status.EXPERIMENTAL)
+    public ExecutionProfile getProfile() {
+        return profile;
+    }
+
     /**
      * Construct a builder from this context. This allows the user to create
      * a new <code>EvaluationContext</code> that has all of the same data
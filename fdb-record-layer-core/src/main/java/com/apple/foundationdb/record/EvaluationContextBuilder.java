@@ -35,6 +35,8 @@ import javax.annotation.Nullable;
 public class EvaluationContextBuilder {
     @Nonnull
     protected final Bindings.Builder bindings;
+    @Nullable
+    protected ExecutionProfile profile;
 
     /**
      * Create an empty builder.
@@ -52,6 +54,7 @@ public class EvaluationContextBuilder {
      */
     protected EvaluationContextBuilder(@Nonnull EvaluationContext original) {
         this.bindings = original.getBindings().childBuilder();
+        this.profile = original.getProfile();
     }
 
     /**
@@ -84,6 +87,19 @@ public class EvaluationContextBuilder {
         return this;
     }
 
+    /**
+     * Set the profile that collects statistics about each plan executed with the built context.
+     * @param profile the profile to use or {@code null} to execute without collecting statistics
+     * @return this <code>EvaluationContextBuilder</code>
+     * @see EvaluationContext#getProfile()
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public EvaluationContextBuilder setProfile(@Nullable ExecutionProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
     /**
      * Construct an {@link EvaluationContext} with updated bindings.
      * This should include all bindings specified though the original
@@ -96,6 +112,6 @@ public class EvaluationContextBuilder {
      */
     @Nonnull
     public EvaluationContext build() {
-        return EvaluationContext.forBindings(bindings.build());
+        return new EvaluationContext(bindings.build(), profile);
     }
 }
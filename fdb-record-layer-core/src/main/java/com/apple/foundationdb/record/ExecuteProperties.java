@@ -25,8 +25,10 @@ import com.apple.foundationdb.ReadTransaction;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Limits on the execution of a query.
@@ -35,6 +37,7 @@ import java.util.List;
  * <li>limit on number of records returned</li>
  * <li>time limit for execution</li>
  * <li>limit on number of key-value pairs scanned</li>
+ * <li>limit on memory used by plans that keep state for the whole execution</li>
  * </ul>
  */
 @API(API.Status.MAINTAINED)
@@ -43,6 +46,14 @@ public class ExecuteProperties {
      * A constant representing that no time limit is set.
      */
     public static final long UNLIMITED_TIME = 0L;
+    /**
+     * A constant representing that no memory limit is set.
+     */
+    public static final long UNLIMITED_MEMORY = 0L;
+    /**
+     * The default number of chunks to read ahead of the one being consumed in {@link CursorStreamingMode#READ_AHEAD} mode.
+     */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = 1;
     /**
      * A basic set of properties for an unlimited query/scan execution with serializable isolation.
      */
@@ -73,8 +84,20 @@ public class ExecuteProperties {
 
     private final CursorStreamingMode defaultCursorStreamingMode;
 
+    // a limit on the number of bytes of memory used by plans, such as unordered distinct, that remember what they have seen;
+    // beyond it they keep that state in local files instead.
+    private final long memoryLimit;
+
+    // where those plans write their local files, or null for the default temporary-file directory.
+    @Nullable
+    private final Path spillDirectory;
+
+    // how many chunks of a range scans in READ_AHEAD streaming mode read ahead of the one being consumed.
+    private final int readAheadChunks;
+
     private ExecuteProperties(int skip, int rowLimit, @Nonnull IsolationLevel isolationLevel, long timeLimit,
-                              @Nonnull ExecuteState state, boolean failOnScanLimitReached, @Nonnull CursorStreamingMode defaultCursorStreamingMode) {
+                              @Nonnull ExecuteState state, boolean failOnScanLimitReached, @Nonnull CursorStreamingMode defaultCursorStreamingMode,
+                              long memoryLimit, @Nullable Path spillDirectory, int readAheadChunks) {
         this.skip = skip;
         this.rowLimit = rowLimit;
         this.isolationLevel = isolationLevel;
@@ -82,6 +105,9 @@ public class ExecuteProperties {
         this.state = state;
         this.failOnScanLimitReached = failOnScanLimitReached;
         this.defaultCursorStreamingMode = defaultCursorStreamingMode;
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = spillDirectory;
+        this.readAheadChunks = readAheadChunks;
     }
 
     @Nonnull
@@ -223,6 +249,7 @@ public class ExecuteProperties {
     /**
      * Merge these limits with the ones specified in <code>other</code>, using the limit specified by <code>other</code>
      * except where it is unlimited, in which case the limit from this <code>ExecuteProperties</code> is used instead.
+     * The spill directory and read-ahead are merged the same way, keeping this one's unless <code>other</code> sets them.
      * @param other the <code>ExecuteProperties</code> to the take the limits from
      * @return an <code>ExecuteProperties</code> with limits merged as described above
      */
@@ -235,9 +262,18 @@ public class ExecuteProperties {
         if (other.timeLimit != UNLIMITED_TIME) {
             builder.setTimeLimit(other.timeLimit);
         }
-        if (other.state.getRecordScanLimiter() != null) {
+        if (other.state.getRecordScanLimiter() != null || other.state.getByteScanLimiter() != null) {
             builder.setState(other.state);
         }
+        if (other.memoryLimit != UNLIMITED_MEMORY) {
+            builder.setMemoryLimit(other.memoryLimit);
+        }
+        if (other.spillDirectory != null) {
+            builder.setSpillDirectory(other.spillDirectory);
+        }
+        if (other.readAheadChunks != DEFAULT_READ_AHEAD_CHUNKS) {
+            builder.setReadAheadChunks(other.readAheadChunks);
+        }
         return builder.build();
     }
 
@@ -261,6 +297,74 @@ public class ExecuteProperties {
         return copy(skip, rowLimit, timeLimit, isolationLevel, state, failOnScanLimitReached, defaultCursorStreamingMode);
     }
 
+    /**
+     * Get the limit on the memory used by plans that keep state for the whole execution, such as
+     * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedDistinctPlan}.
+     * @return the memory limit in bytes or {@link #UNLIMITED_MEMORY}
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Set the limit on the memory used by plans that keep state for the whole execution.
+     * @param memoryLimit the memory limit in bytes or {@link #UNLIMITED_MEMORY}
+     * @return a new <code>ExecuteProperties</code> with the given memory limit
+     */
+    @Nonnull
+    public ExecuteProperties setMemoryLimit(long memoryLimit) {
+        if (memoryLimit == this.memoryLimit) {
+            return this;
+        }
+        return toBuilder().setMemoryLimit(memoryLimit).build();
+    }
+
+    /**
+     * Get the directory in which plans that keep state for the whole execution write any local files once they reach
+     * the {@linkplain #getMemoryLimit memory limit}.
+     * @return the spill directory or {@code null} to use the default temporary-file directory
+     */
+    @Nullable
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * Set the directory in which plans that keep state for the whole execution write any local files.
+     * @param spillDirectory the spill directory or {@code null} to use the default temporary-file directory
+     * @return a new <code>ExecuteProperties</code> with the given spill directory
+     */
+    @Nonnull
+    public ExecuteProperties setSpillDirectory(@Nullable Path spillDirectory) {
+        if (Objects.equals(spillDirectory, this.spillDirectory)) {
+            return this;
+        }
+        return toBuilder().setSpillDirectory(spillDirectory).build();
+    }
+
+    /**
+     * Get how many chunks of a range scans read ahead of the one being consumed when their streaming mode is
+     * {@link CursorStreamingMode#READ_AHEAD}.
+     * @return the number of chunks to read ahead
+     */
+    public int getReadAheadChunks() {
+        return readAheadChunks;
+    }
+
+    /**
+     * Set how many chunks of a range scans read ahead of the one being consumed when their streaming mode is
+     * {@link CursorStreamingMode#READ_AHEAD}.
+     * @param readAheadChunks the number of chunks to read ahead
+     * @return a new <code>ExecuteProperties</code> with the given number of chunks
+     */
+    @Nonnull
+    public ExecuteProperties setReadAheadChunks(int readAheadChunks) {
+        if (readAheadChunks == this.readAheadChunks) {
+            return this;
+        }
+        return toBuilder().setReadAheadChunks(readAheadChunks).build();
+    }
+
     /**
      * Reset the stateful parts of the properties to their "original" values, creating an independent mutable state.
      * @see ExecuteState#reset()
@@ -285,7 +389,7 @@ public class ExecuteProperties {
     @Nonnull
     protected ExecuteProperties copy(int skip, int rowLimit, long timeLimit, @Nonnull IsolationLevel isolationLevel,
                                      @Nonnull ExecuteState state, boolean failOnScanLimitReached, CursorStreamingMode defaultCursorStreamingMode) {
-        return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode);
+        return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode, memoryLimit, spillDirectory, readAheadChunks);
     }
 
     @Nonnull
@@ -310,6 +414,23 @@ public class ExecuteProperties {
         return timeLimit;
     }
 
+    private static long validateAndNormalizeMemoryLimit(final long memoryLimit) {
+        if (memoryLimit < 0L) {
+            throw new RecordCoreException("Invalid memory limit specified: " + memoryLimit);
+        }
+        if (memoryLimit == Long.MAX_VALUE) {
+            return UNLIMITED_MEMORY;
+        }
+        return memoryLimit;
+    }
+
+    private static int validateReadAheadChunks(final int readAheadChunks) {
+        if (readAheadChunks < 1) {
+            throw new RecordCoreException("Invalid read-ahead chunk count specified: " + readAheadChunks);
+        }
+        return readAheadChunks;
+    }
+
     @Nonnull
     public static Builder newBuilder() {
         return new Builder();
@@ -339,6 +460,15 @@ public class ExecuteProperties {
         if (failOnScanLimitReached) {
             components.add("fail on scan limit,");
         }
+        if (memoryLimit != UNLIMITED_MEMORY) {
+            components.add(String.format("memoryLimit %d", memoryLimit));
+        }
+        if (spillDirectory != null) {
+            components.add(String.format("spillDirectory %s", spillDirectory));
+        }
+        if (readAheadChunks != DEFAULT_READ_AHEAD_CHUNKS) {
+            components.add(String.format("readAheadChunks %d", readAheadChunks));
+        }
         components.add(state.toString());
         return String.format("ExecuteProperties(%s)", String.join(", ", components));
     }
@@ -355,9 +485,14 @@ public class ExecuteProperties {
         private int rowLimit = ReadTransaction.ROW_LIMIT_UNLIMITED;
         private long timeLimit = UNLIMITED_TIME;
         private int scannedRecordsLimit = Integer.MAX_VALUE;
+        private long scannedBytesLimit = Long.MAX_VALUE;
         private ExecuteState executeState = null;
         private boolean failOnScanLimitReached = false;
         private CursorStreamingMode defaultCursorStreamingMode = CursorStreamingMode.ITERATOR;
+        private long memoryLimit = UNLIMITED_MEMORY;
+        @Nullable
+        private Path spillDirectory = null;
+        private int readAheadChunks = DEFAULT_READ_AHEAD_CHUNKS;
 
         private Builder() {
         }
@@ -370,6 +505,9 @@ public class ExecuteProperties {
             this.executeState = executeProperties.state;
             this.failOnScanLimitReached = executeProperties.failOnScanLimitReached;
             this.defaultCursorStreamingMode = executeProperties.defaultCursorStreamingMode;
+            this.memoryLimit = executeProperties.memoryLimit;
+            this.spillDirectory = executeProperties.spillDirectory;
+            this.readAheadChunks = executeProperties.readAheadChunks;
         }
 
         @Nonnull
@@ -424,11 +562,43 @@ public class ExecuteProperties {
             return setScannedRecordsLimit(Integer.MAX_VALUE);
         }
 
+        /**
+         * Set the limit on the number of bytes that may be scanned, counting the key and value of each key-value read.
+         * When it is reached, the scan stops with {@link RecordCursor.NoNextReason#BYTE_LIMIT_REACHED}.
+         * Note that at most one of {@link #scannedBytesLimit} and {@link #executeState} may be set at the same time,
+         * since the {@link ExecuteState} contains a shared {@link ByteScanLimiter}.
+         * @param limit the maximum number of bytes to scan
+         * @return an updated builder
+         */
+        @Nonnull
+        public Builder setScannedBytesLimit(long limit) {
+            if (executeState != null) {
+                throw new RecordCoreException("Tried to set a byte scan limit on a builder with an ExecuteState");
+            }
+            this.scannedBytesLimit = validateAndNormalizeByteScanLimit(limit);
+            return this;
+        }
+
+        private static long validateAndNormalizeByteScanLimit(final long scanLimit) {
+            if (scanLimit < 0) {
+                throw new RecordCoreException("Invalid byte scan limit specified: " + scanLimit);
+            }
+            return scanLimit;
+        }
+
+        @Nonnull
+        public Builder clearScannedBytesLimit() {
+            return setScannedBytesLimit(Long.MAX_VALUE);
+        }
+
         @Nonnull
         public Builder setState(@Nullable ExecuteState state) {
             if (scannedRecordsLimit != Integer.MAX_VALUE) {
                 throw new RecordCoreException("Tried to set a state on a builder with a record scan limit");
             }
+            if (scannedBytesLimit != Long.MAX_VALUE) {
+                throw new RecordCoreException("Tried to set a state on a builder with a byte scan limit");
+            }
             this.executeState = state;
             return this;
         }
@@ -440,7 +610,8 @@ public class ExecuteProperties {
 
         /**
          * Set how scan limit reached is handled.
-         * This setting has no effect if {@link #setScannedRecordsLimit(int)} is not also set.
+         * This setting has no effect if neither {@link #setScannedRecordsLimit(int)} nor {@link #setScannedBytesLimit(long)}
+         * is also set.
          * @param failOnScanLimitReached {@code true} to throw an exception, {@code false} to return early
          * @return an updated builder
          */
@@ -467,17 +638,56 @@ public class ExecuteProperties {
             return this;
         }
 
+        /**
+         * Set the limit on the memory used by plans that keep state for the whole execution, such as
+         * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedDistinctPlan}.
+         * Past this limit, such plans write some of their state to local files.
+         * @param memoryLimit the memory limit in bytes or {@link #UNLIMITED_MEMORY}
+         * @return an updated builder
+         */
+        @Nonnull
+        public Builder setMemoryLimit(long memoryLimit) {
+            this.memoryLimit = validateAndNormalizeMemoryLimit(memoryLimit);
+            return this;
+        }
+
+        /**
+         * Set the directory in which plans that keep state for the whole execution write any local files once they
+         * reach the {@linkplain #setMemoryLimit memory limit}.
+         * @param spillDirectory the spill directory or {@code null} to use the default temporary-file directory
+         * @return an updated builder
+         */
+        @Nonnull
+        public Builder setSpillDirectory(@Nullable Path spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        /**
+         * Set how many chunks of a range scans read ahead of the one being consumed when their streaming mode is
+         * {@link CursorStreamingMode#READ_AHEAD}. Under serializable isolation, rows read ahead conflict even if they
+         * are never consumed, so more chunks ahead trade conflicts for fewer stalls.
+         * @param readAheadChunks the number of chunks to read ahead, at least one
+         * @return an updated builder
+         */
+        @Nonnull
+        public Builder setReadAheadChunks(int readAheadChunks) {
+            this.readAheadChunks = validateReadAheadChunks(readAheadChunks);
+            return this;
+        }
+
         @Nonnull
         public ExecuteProperties build() {
             final ExecuteState state;
             if (executeState != null) {
                 state = executeState;
-            } else if (scannedRecordsLimit == Integer.MAX_VALUE) {
+            } else if (scannedRecordsLimit == Integer.MAX_VALUE && scannedBytesLimit == Long.MAX_VALUE) {
                 state = ExecuteState.NO_SCANNED_RECORDS_LIMIT;
             } else {
-                state = new ExecuteState(new RecordScanLimiter(scannedRecordsLimit));
+                state = new ExecuteState(scannedRecordsLimit == Integer.MAX_VALUE ? null : new RecordScanLimiter(scannedRecordsLimit),
+                        scannedBytesLimit == Long.MAX_VALUE ? null : new ByteScanLimiter(scannedBytesLimit));
             }
-            return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode);
+            return new ExecuteProperties(skip, rowLimit, isolationLevel, timeLimit, state, failOnScanLimitReached, defaultCursorStreamingMode, memoryLimit, spillDirectory, readAheadChunks);
         }
     }
 }
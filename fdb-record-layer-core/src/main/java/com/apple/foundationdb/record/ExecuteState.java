@@ -42,9 +42,16 @@ public class ExecuteState {
 
     @Nullable
     private final RecordScanLimiter recordScanLimiter;
+    @Nullable
+    private final ByteScanLimiter byteScanLimiter;
 
     public ExecuteState(@Nullable RecordScanLimiter recordScanLimiter) {
+        this(recordScanLimiter, null);
+    }
+
+    public ExecuteState(@Nullable RecordScanLimiter recordScanLimiter, @Nullable ByteScanLimiter byteScanLimiter) {
         this.recordScanLimiter = recordScanLimiter;
+        this.byteScanLimiter = byteScanLimiter;
     }
 
     public ExecuteState() {
@@ -61,10 +68,11 @@ public class ExecuteState {
      */
     @Nonnull
     public ExecuteState reset() {
-        if (recordScanLimiter == null) {
+        if (recordScanLimiter == null && byteScanLimiter == null) {
             return NO_SCANNED_RECORDS_LIMIT;
         }
-        return new ExecuteState(recordScanLimiter.reset());
+        return new ExecuteState(recordScanLimiter == null ? null : recordScanLimiter.reset(),
+                byteScanLimiter == null ? null : byteScanLimiter.reset());
     }
     
     /**
@@ -83,11 +91,27 @@ public class ExecuteState {
         return recordScanLimiter;
     }
 
+    /**
+     * Get a limiter for the maximum number of bytes that can be retrieved from the database.
+     * Like the record scan limit, this limit is shared by all the base cursors of a query execution, and each of them is
+     * permitted to load at least one key-value entry. Additionally, since the size of a key-value is only known after it
+     * has been read, each base cursor can overrun the limit by the size of the last key-value it reads.
+     * @return the byte scan limiter or <code>null</code> if no limit is set
+     */
+    @Nullable
+    public ByteScanLimiter getByteScanLimiter() {
+        return byteScanLimiter;
+    }
+
     @Override
     public String toString() {
-        if (recordScanLimiter == null) {
+        if (recordScanLimiter == null && byteScanLimiter == null) {
             return "State()";
+        } else if (byteScanLimiter == null) {
+            return "State(" + recordScanLimiter + ")";
+        } else if (recordScanLimiter == null) {
+            return "State(" + byteScanLimiter + ")";
         }
-        return "State(" + recordScanLimiter + ")";
+        return "State(" + recordScanLimiter + ", " + byteScanLimiter + ")";
     }
 }
@@ -0,0 +1,34 @@
+/*
+ * ExecutionProfile.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record;
+
+import com.apple.foundationdb.API;
+
+/**
+ * Something that collects statistics about the plans executed with an {@link EvaluationContext}.
+ * The context only carries the profile to the plans; what is collected is up to the implementation.
+ * @see EvaluationContext#getProfile()
+ * @see com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanProfile
+ */
+@API(API.Status.EXPERIMENTAL)
+public interface ExecutionProfile {
+}
@@ -47,6 +47,8 @@ public class PipelineOperation {
     @Nonnull
     public static final PipelineOperation IN_JOIN = new PipelineOperation("IN_JOIN");
     @Nonnull
+    public static final PipelineOperation SKIP_SCAN = new PipelineOperation("SKIP_SCAN");
+    @Nonnull
     public static final PipelineOperation TEXT_INDEX_UPDATE = new PipelineOperation("TEXT_INDEX_UPDATE");
 
     private final String name;
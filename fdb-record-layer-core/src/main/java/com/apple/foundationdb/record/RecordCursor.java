@@ -190,7 +190,18 @@ public interface RecordCursor<T> extends AutoCloseable, Iterator<T> {
          * @see ExecuteProperties.Builder#setScannedRecordsLimit(int)
          * @see RecordScanLimiter
          */
-        SCAN_LIMIT_REACHED(true);
+        SCAN_LIMIT_REACHED(true),
+
+        /**
+         * The limit on the number of bytes to scan was reached.
+         * {@link #getContinuation()} may return a continuation for resuming the scan.
+         *
+         * As with {@link #SCAN_LIMIT_REACHED}, it is possible for <code>BYTE_LIMIT_REACHED</code> to be returned before
+         * any actual records if a scan retrieves many bytes that are discarded.
+         * @see ExecuteProperties.Builder#setScannedBytesLimit(long)
+         * @see ByteScanLimiter
+         */
+        BYTE_LIMIT_REACHED(true);
 
         final boolean outOfBand;
 
@@ -323,9 +334,11 @@ public interface RecordCursor<T> extends AutoCloseable, Iterator<T> {
 
     /**
      * Get a new cursor by applying the given function to the records in this cursor.
+     * Consecutive calls to {@code map}, {@link #filter} and {@link #limitRowsTo} may be fused into a single cursor.
      * @param func the function to apply
      * @param <V> the type of the record elements
      * @return a new cursor that applies the given function
+     * @see MapCursor
      */
     @Nonnull
     default <V> RecordCursor<V> map(@Nonnull Function<T, V> func) {
@@ -339,7 +352,7 @@ public interface RecordCursor<T> extends AutoCloseable, Iterator<T> {
      */
     @Nonnull
     default RecordCursor<T> mapEffect(@Nonnull Consumer<T> consumer) {
-        return new MapCursor<>(this, record -> {
+        return map(record -> {
             consumer.accept(record);
             return record;
         });
@@ -352,7 +365,7 @@ public interface RecordCursor<T> extends AutoCloseable, Iterator<T> {
      */
     @Nonnull
     default RecordCursor<T> mapEffect(@Nonnull Runnable runnable) {
-        return new MapCursor<>(this, record -> {
+        return map(record -> {
             runnable.run();
             return record;
         });
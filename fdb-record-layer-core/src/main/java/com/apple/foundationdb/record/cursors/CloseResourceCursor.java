@@ -0,0 +1,105 @@
+/*
+ * CloseResourceCursor.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.cursors;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.RecordCursorVisitor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A cursor that returns the elements of another cursor and also closes some resource when it is closed.
+ * This is used by plans that keep state outside of memory, such as in local files, for the life of the cursor.
+ * @param <T> the type of elements of the cursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class CloseResourceCursor<T> implements RecordCursor<T> {
+    @Nonnull
+    private final RecordCursor<T> inner;
+    @Nonnull
+    private final AutoCloseable resource;
+
+    public CloseResourceCursor(@Nonnull RecordCursor<T> inner, @Nonnull AutoCloseable resource) {
+        this.inner = inner;
+        this.resource = resource;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<RecordCursorResult<T>> onNext() {
+        return inner.onNext();
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> onHasNext() {
+        return inner.onHasNext();
+    }
+
+    @Nullable
+    @Override
+    public T next() {
+        return inner.next();
+    }
+
+    @Nullable
+    @Override
+    public byte[] getContinuation() {
+        return inner.getContinuation();
+    }
+
+    @Override
+    public NoNextReason getNoNextReason() {
+        return inner.getNoNextReason();
+    }
+
+    @Override
+    public void close() {
+        inner.close();
+        try {
+            resource.close();
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RecordCoreException("error closing cursor resource", ex);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Executor getExecutor() {
+        return inner.getExecutor();
+    }
+
+    @Override
+    public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+        if (visitor.visitEnter(this)) {
+            inner.accept(visitor);
+        }
+        return visitor.visitLeave(this);
+    }
+}
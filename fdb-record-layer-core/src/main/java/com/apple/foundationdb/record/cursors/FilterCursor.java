@@ -73,6 +73,52 @@ public class FilterCursor<T> implements RecordCursor<T> {
         });
     }
 
+    // Only a cursor that has not been advanced can be replaced by a fused one.
+    private boolean canFuse() {
+        return nextResult == null && nextFuture == null;
+    }
+
+    /**
+     * Get a new cursor by applying the given function to the records in this cursor.
+     * If this cursor has not yet been advanced, the result is a single {@link MapCursor} that does both the filtering
+     * and the mapping.
+     * @param func the function to apply
+     * @param <V> the type of the record elements
+     * @return a new cursor that applies the given function
+     */
+    @Nonnull
+    @Override
+    public <V> RecordCursor<V> map(@Nonnull Function<T, V> func) {
+        if (!canFuse()) {
+            return RecordCursor.super.map(func);
+        }
+        return MapCursor.filterThenMap(inner, pred, func);
+    }
+
+    /**
+     * Get a new cursor that skips records that do not satisfy the given predicate.
+     * If this cursor has not yet been advanced, the result is a single {@code FilterCursor} that checks both predicates.
+     * @param next the predicate to apply
+     * @return a new cursor that filters out records for which either predicate returns {@code false}
+     */
+    @Nonnull
+    @Override
+    public RecordCursor<T> filter(@Nonnull Function<T, Boolean> next) {
+        if (!canFuse()) {
+            return RecordCursor.super.filter(next);
+        }
+        return new FilterCursor<>(inner, t -> Boolean.TRUE.equals(pred.apply(t)) && Boolean.TRUE.equals(next.apply(t)));
+    }
+
+    @Nonnull
+    @Override
+    public RecordCursor<T> limitRowsTo(int limit) {
+        if (!canFuse() || limit <= 0 || limit == Integer.MAX_VALUE) {
+            return RecordCursor.super.limitRowsTo(limit);
+        }
+        return MapCursor.filterThenMap(inner, pred, Function.identity()).limitRowsTo(limit);
+    }
+
     @Nonnull
     @Override
     public CompletableFuture<Boolean> onHasNext() {
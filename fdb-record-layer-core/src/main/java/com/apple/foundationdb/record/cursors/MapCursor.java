@@ -21,6 +21,8 @@
 package com.apple.foundationdb.record.cursors;
 
 import com.apple.foundationdb.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.RecordCursorResult;
 import com.apple.foundationdb.record.RecordCursorVisitor;
@@ -34,15 +36,29 @@ import java.util.function.Function;
 
 /**
  * A cursor that applies a function to the elements of another cursor.
+ *
+ * Calling {@link #map}, {@link #filter} or {@link #limitRowsTo} on a map cursor that has not yet been advanced fuses
+ * the new stage into a single cursor over the same inner cursor, rather than stacking another cursor on top of it.
+ * The composed function is then applied to each element of the inner cursor in turn, without allocating an intermediate
+ * result and future for each stage, and elements that are already available, as is usual within a batch of key-values,
+ * are skipped by filters in a loop rather than by chaining futures. Since every stage is synchronous, the continuation
+ * of each element is still that of the inner cursor.
  * @param <T> the type of elements of the source cursor
  * @param <V> the type of elements of the cursor after applying the function
  */
 @API(API.Status.MAINTAINED)
 public class MapCursor<T, V> implements RecordCursor<V> {
+    // Returned by a fused function for an element that has been filtered out.
+    private static final Object SKIP = new Object();
+
     @Nonnull
     private final RecordCursor<T> inner;
     @Nonnull
-    private final Function<T, V> func;
+    private final Function<T, ?> func;
+    // Whether func can return SKIP.
+    private final boolean filtering;
+    private final int limit;
+    private int soFar;
 
     @Nullable
     private CompletableFuture<Boolean> hasNextFuture;
@@ -52,21 +68,136 @@ public class MapCursor<T, V> implements RecordCursor<V> {
     private boolean mayGetContinuation = false;
 
     public MapCursor(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, V> func) {
+        this(inner, func, false, Integer.MAX_VALUE);
+    }
+
+    private MapCursor(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, ?> func, boolean filtering, int limit) {
         this.inner = inner;
         this.func = func;
+        this.filtering = filtering;
+        this.limit = limit;
+    }
+
+    /**
+     * Get a cursor that filters the elements of the given cursor and then applies a function to the ones that remain,
+     * as a single cursor.
+     * @param inner the source cursor
+     * @param pred the predicate to filter on
+     * @param func the function to apply
+     * @param <T> the type of elements of the source cursor
+     * @param <V> the type of elements of the cursor after applying the function
+     * @return a cursor that returns {@code func} applied to the elements of {@code inner} satisfying {@code pred}
+     */
+    @Nonnull
+    static <T, V> MapCursor<T, V> filterThenMap(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, Boolean> pred,
+                                                @Nonnull Function<T, V> func) {
+        return new MapCursor<>(inner, t -> Boolean.TRUE.equals(pred.apply(t)) ? func.apply(t) : SKIP, true, Integer.MAX_VALUE);
     }
 
     @Nonnull
     @Override
     @API(API.Status.EXPERIMENTAL)
+    @SuppressWarnings("unchecked")
     public CompletableFuture<RecordCursorResult<V>> onNext() {
         mayGetContinuation = false;
-        return inner.onNext().thenApply(result -> result.map(func))
-                .thenApply(result -> {
-                    mayGetContinuation = !result.hasNext();
-                    nextResult = result;
-                    return result;
-                });
+        if (soFar >= limit) {
+            mayGetContinuation = true;
+            NoNextReason reason = (!nextResult.hasNext() && nextResult.getContinuation().isEnd())
+                                  ? nextResult.getNoNextReason() : NoNextReason.RETURN_LIMIT_REACHED;
+            nextResult = RecordCursorResult.withoutNextValue(nextResult.getContinuation(), reason);
+            return CompletableFuture.completedFuture(nextResult);
+        }
+        if (!filtering) {
+            return inner.onNext().thenApply(result -> result.map(t -> (V)func.apply(t)))
+                    .thenApply(this::setNextResult);
+        }
+        return AsyncUtil.whileTrue(() -> {
+            CompletableFuture<RecordCursorResult<T>> innerFuture = inner.onNext();
+            // Go through elements that are already available without waiting on each.
+            while (innerFuture.isDone() && !innerFuture.isCompletedExceptionally()) {
+                if (accept(innerFuture.join())) {
+                    return AsyncUtil.READY_FALSE;
+                }
+                innerFuture = inner.onNext();
+            }
+            return innerFuture.thenApply(innerResult -> !accept(innerResult));
+        }, getExecutor()).thenApply(vignore -> setNextResult(nextResult));
+    }
+
+    // Apply the function to the given inner result and return whether it is the next result, that is, was not filtered out.
+    @SuppressWarnings("unchecked")
+    private boolean accept(@Nonnull RecordCursorResult<T> innerResult) {
+        if (!innerResult.hasNext()) {
+            nextResult = RecordCursorResult.withoutNextValue(innerResult);
+            return true;
+        }
+        final Object value = func.apply(innerResult.get());
+        if (value == SKIP) {
+            return false;
+        }
+        nextResult = RecordCursorResult.withNextValue((V)value, innerResult.getContinuation());
+        return true;
+    }
+
+    @Nonnull
+    private RecordCursorResult<V> setNextResult(@Nonnull RecordCursorResult<V> result) {
+        if (limit != Integer.MAX_VALUE) {
+            soFar++;
+        }
+        mayGetContinuation = !result.hasNext();
+        nextResult = result;
+        return result;
+    }
+
+    // Only a cursor that has not been advanced can be replaced by a fused one.
+    private boolean canFuse() {
+        return nextResult == null && hasNextFuture == null;
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> RecordCursor<U> map(@Nonnull Function<V, U> next) {
+        if (!canFuse()) {
+            return RecordCursor.super.map(next);
+        }
+        if (filtering) {
+            return new MapCursor<>(inner, t -> {
+                final Object value = func.apply(t);
+                return value == SKIP ? SKIP : next.apply((V)value);
+            }, true, limit);
+        } else {
+            return new MapCursor<>(inner, t -> next.apply((V)func.apply(t)), false, limit);
+        }
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public RecordCursor<V> filter(@Nonnull Function<V, Boolean> pred) {
+        if (!canFuse() || limit != Integer.MAX_VALUE) {
+            // A limit counts elements before this filter is applied.
+            return RecordCursor.super.filter(pred);
+        }
+        return new MapCursor<>(inner, t -> {
+            final Object value = func.apply(t);
+            return value == SKIP || !Boolean.TRUE.equals(pred.apply((V)value)) ? SKIP : value;
+        }, true, limit);
+    }
+
+    @Nonnull
+    @Override
+    public RecordCursor<V> limitRowsTo(int limit) {
+        if (limit < 0) {
+            throw new RecordCoreException("Invalid row limit: " + limit);
+        }
+        if (limit == 0 || limit == Integer.MAX_VALUE) {
+            return this;
+        }
+        if (!canFuse()) {
+            return RecordCursor.super.limitRowsTo(limit);
+        }
+        return new MapCursor<>(inner, func, filtering, Math.min(this.limit, limit));
     }
 
     @Nonnull
@@ -0,0 +1,245 @@
+/*
+ * RecordCursorPublisher.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.cursors;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.SpotBugsSuppressWarnings;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher of the elements of a {@link RecordCursor}, following the Reactive Streams protocol.
+ *
+ * Elements are only requested from the cursor when the subscriber has signalled demand for them, and cancelling the
+ * subscription closes the cursor. When a cursor result is already available, as it is for most of a batch of key-values
+ * read together, it is delivered without waiting on its future, so that demand for many elements at once is satisfied
+ * with little overhead. When the cursor must wait, the subscriber is called from the cursor's executor.
+ *
+ * The {@link Subscriber} and {@link Subscription} interfaces have the same methods as those of
+ * {@code java.util.concurrent.Flow} and {@code org.reactivestreams}, to which they can be adapted by simple delegation.
+ * Since {@link Subscriber#onComplete} does not say why the cursor stopped, the {@link RecordCursor.NoNextReason} and
+ * continuation are available from the publisher once it has completed.
+ *
+ * A cursor can only be read once, so the publisher only allows one subscription.
+ *
+ * @param <T> the type of elements of the cursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordCursorPublisher<T> {
+    @Nonnull
+    private final RecordCursor<T> cursor;
+    @Nonnull
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    @Nullable
+    private volatile RecordCursor.NoNextReason noNextReason;
+    @Nullable
+    private volatile byte[] continuation;
+
+    /**
+     * A receiver of elements from a {@link RecordCursorPublisher}.
+     * @param <T> the type of elements
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(@Nonnull Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(@Nonnull Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * The link between a {@link RecordCursorPublisher} and its {@link Subscriber}.
+     */
+    public interface Subscription {
+        /**
+         * Add to the number of elements that the subscriber is ready to receive.
+         * @param n the number of additional elements, which must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stop sending elements and close the cursor.
+         */
+        void cancel();
+    }
+
+    public RecordCursorPublisher(@Nonnull RecordCursor<T> cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Start sending elements to the given subscriber, as it requests them.
+     * @param subscriber the subscriber to receive the elements of the cursor
+     */
+    public void subscribe(@Nonnull Subscriber<? super T> subscriber) {
+        if (subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new CursorSubscription(subscriber));
+        } else {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    // Already failed.
+                }
+
+                @Override
+                public void cancel() {
+                    // Already failed.
+                }
+            });
+            subscriber.onError(new IllegalStateException("record cursor publisher only allows one subscriber"));
+        }
+    }
+
+    /**
+     * Get the reason that the cursor stopped, once the subscriber has been completed.
+     * @return the reason that the cursor has no more elements or {@code null} if it has not completed
+     */
+    @Nullable
+    public RecordCursor.NoNextReason getNoNextReason() {
+        return noNextReason;
+    }
+
+    /**
+     * Get the continuation from which to resume reading after the last element, once the subscriber has been completed.
+     * @return the continuation or {@code null} if it has not completed or if the cursor was exhausted
+     */
+    @Nullable
+    @SpotBugsSuppressWarnings("EI_EXPOSE_REP")
+    public byte[] getContinuation() {
+        return continuation;
+    }
+
+    private class CursorSubscription implements Subscription {
+        @Nonnull
+        private final Subscriber<? super T> subscriber;
+        @Nonnull
+        private final AtomicLong requested = new AtomicLong();
+        // Number of times draining was asked for while it was already happening, so that only one thread signals at a time.
+        @Nonnull
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        @Nullable
+        private volatile Throwable invalidRequest;
+
+        // Only accessed while draining.
+        private boolean done;
+        @Nullable
+        private CompletableFuture<RecordCursorResult<T>> pending;
+        private boolean waiting;
+
+        CursorSubscription(@Nonnull Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("non-positive subscription request: " + n);
+            } else {
+                requested.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            while (!done) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                final Throwable error = invalidRequest;
+                if (error != null) {
+                    finish();
+                    subscriber.onError(error);
+                    return;
+                }
+                if (pending == null) {
+                    if (requested.get() == 0) {
+                        return;
+                    }
+                    pending = cursor.onNext();
+                }
+                if (!pending.isDone()) {
+                    if (!waiting) {
+                        waiting = true;
+                        pending.whenCompleteAsync((result, err) -> drain(), cursor.getExecutor());
+                    }
+                    return;
+                }
+                final CompletableFuture<RecordCursorResult<T>> completed = pending;
+                pending = null;
+                waiting = false;
+                final RecordCursorResult<T> result;
+                try {
+                    result = completed.join();
+                } catch (CompletionException | CancellationException ex) {
+                    finish();
+                    subscriber.onError(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                    return;
+                }
+                if (result.hasNext()) {
+                    if (requested.get() != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    subscriber.onNext(result.get());
+                } else {
+                    continuation = result.getContinuation().toBytes();
+                    noNextReason = result.getNoNextReason();
+                    finish();
+                    subscriber.onComplete();
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            cursor.close();
+        }
+    }
+}
@@ -99,6 +99,16 @@ public enum LogMessageKeys {
     NEW_VERSION("new_version"),
     META_DATA_VERSION("metaDataVersion"),
     FORMAT_VERSION("format_version"),
+    // slow queries
+    PLAN("plan"),
+    PLAN_HASH("plan_hash"),
+    BINDINGS("bindings"),
+    PLANNING_MICROS("planning_micros"),
+    EXECUTION_MICROS("execution_micros"),
+    ROWS_RETURNED("rows_returned"),
+    KEYS_READ("keys_read"),
+    BYTES_READ("bytes_read"),
+    NO_NEXT_REASON("no_next_reason"),
     // tuple range
     LOW_BYTES("lowBytes"),
     HIGH_BYTES("highBytes"),
@@ -89,6 +89,33 @@ public class IndexOptions {
      */
     public static final String RANK_NLEVELS = "rankNLevels";
 
+    /**
+     * An estimate of the number of distinct values of the first column of a {@link IndexTypes#VALUE} index.
+     *
+     * If this is no more than {@link com.apple.foundationdb.record.query.plan.RecordQueryPlanner#getSkipScanMaxLeadingCardinality},
+     * the planner may skip-scan the index for a query that constrains only later columns.
+     *
+     * @see com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String LEADING_CARDINALITY_OPTION = "leadingCardinality";
+
+    /**
+     * The number of entries kept for each group by a {@link IndexTypes#TOP_K} index.
+     *
+     * This option is required and must be a positive integer.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String TOP_K_OPTION = "topK";
+
+    /**
+     * Whether a {@link IndexTypes#TOP_K} index keeps the entries with the lowest values instead of the highest.
+     *
+     * The default is {@code false}, keeping the highest.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String TOP_K_LOWEST_OPTION = "topKLowest";
+
     private IndexOptions() {
     }
 }
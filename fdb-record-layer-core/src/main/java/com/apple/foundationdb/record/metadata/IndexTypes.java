@@ -121,6 +121,12 @@ public class IndexTypes {
      */
     public static final String TEXT = "text";
 
+    /**
+     * An index like {@link #VALUE}, but keeping only the best {@link IndexOptions#TOP_K_OPTION} entries for each group.
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public static final String TOP_K = "top_k";
+
     private IndexTypes() {
     }
 }
@@ -23,13 +23,17 @@ package com.apple.foundationdb.record.provider.common;
 import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.RecordMetaData;
 import com.apple.foundationdb.record.logging.KeyValueLogMessage;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
 import com.apple.foundationdb.record.metadata.RecordType;
 import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.WireFormat;
 import com.apple.foundationdb.record.SpotBugsSuppressWarnings;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -38,6 +42,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -48,6 +54,8 @@ import java.util.stream.Collectors;
 @API(API.Status.UNSTABLE)
 public class DynamicMessageRecordSerializer implements RecordSerializer<Message> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DynamicMessageRecordSerializer.class);
+    // The low bits of a tag give the wire type (the accessor for which is not public).
+    private static final int TAG_TYPE_MASK = 0x7;
 
     private static final DynamicMessageRecordSerializer INSTANCE = new DynamicMessageRecordSerializer();
 
@@ -159,16 +167,64 @@ public class DynamicMessageRecordSerializer implements RecordSerializer<Message>
         final Map.Entry<Descriptors.FieldDescriptor, Object> entry = unionMessage.getAllFields().entrySet().iterator().next();
         final DynamicMessage message = (DynamicMessage)entry.getValue();
         if (!message.getUnknownFields().asMap().isEmpty()) {
-            if (LOGGER.isWarnEnabled()) {
-                LOGGER.warn(KeyValueLogMessage.of("Deserialized message has unknown fields",
-                        "primaryKey", primaryKey,
-                        "recordType", message.getDescriptorForType().getName(),
-                        "unknownFields", message.getUnknownFields().asMap().keySet()));
-            }
+            warnUnknownFields(primaryKey, message.getDescriptorForType(), message.getUnknownFields().asMap().keySet());
         }
         return new ImmutablePair<>(entry.getKey(), message);
     }
 
+    /**
+     * Log that a deserialized record has fields that are not in its record type's descriptor.
+     * @param primaryKey the primary key of the record
+     * @param recordDescriptor the descriptor for the record's type
+     * @param unknownFields the numbers of the unknown fields
+     */
+    protected void warnUnknownFields(@Nonnull final Tuple primaryKey,
+                                     @Nonnull final Descriptors.Descriptor recordDescriptor,
+                                     @Nonnull final Collection<Integer> unknownFields) {
+        if (LOGGER.isWarnEnabled()) {
+            LOGGER.warn(KeyValueLogMessage.of("Deserialized message has unknown fields",
+                    "primaryKey", primaryKey,
+                    "recordType", recordDescriptor.getName(),
+                    "unknownFields", unknownFields));
+        }
+    }
+
+    /**
+     * Find the record in a serialized union message without parsing the record itself.
+     *
+     * This is for subclasses that parse the record in some other way than as a {@link DynamicMessage}. When the serialized
+     * form is not a union message with exactly one record field, {@code null} is returned and the subclass should fall back
+     * to {@link #deserialize} to report the problem.
+     * @param unionDescriptor the descriptor for the union message
+     * @param primaryKey the primary key of the record, for error reporting
+     * @param serialized the serialized union message
+     * @return the union field and the serialized record in it or {@code null} if the serialized form is not as expected
+     */
+    @Nullable
+    protected Pair<Descriptors.FieldDescriptor, ByteString> readUnionField(@Nonnull final Descriptors.Descriptor unionDescriptor,
+                                                                          @Nonnull final Tuple primaryKey,
+                                                                          @Nonnull final byte[] serialized) {
+        try {
+            final CodedInputStream input = CodedInputStream.newInstance(serialized);
+            final int tag = input.readTag();
+            if ((tag & TAG_TYPE_MASK) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                return null;
+            }
+            final Descriptors.FieldDescriptor unionField = unionDescriptor.findFieldByNumber(WireFormat.getTagFieldNumber(tag));
+            if (unionField == null || unionField.getType() != Descriptors.FieldDescriptor.Type.MESSAGE) {
+                return null;
+            }
+            final ByteString recordBytes = input.readBytes();
+            if (!input.isAtEnd()) {
+                return null;
+            }
+            return new ImmutablePair<>(unionField, recordBytes);
+        } catch (IOException ex) {
+            throw new RecordSerializationException("Error reading from byte array", ex)
+                    .addLogInfo(LogMessageKeys.PRIMARY_KEY, primaryKey);
+        }
+    }
+
     @Nonnull
     private Set<String> getFieldNames(Set<Descriptors.FieldDescriptor> fieldDescriptors) {
         return fieldDescriptors.stream().map(Descriptors.FieldDescriptor::getName).collect(Collectors.toSet());
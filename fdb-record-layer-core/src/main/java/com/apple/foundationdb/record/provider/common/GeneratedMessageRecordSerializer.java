@@ -0,0 +1,240 @@
+/*
+ * GeneratedMessageRecordSerializer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Serialize records using default Protobuf serialization, deserializing into generated message classes when possible.
+ *
+ * Like {@link DynamicMessageRecordSerializer}, this serializer works for any record type, so it can be used by an untyped
+ * {@link com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore}. But when the record type's descriptor is
+ * the one belonging to a generated Protobuf class that can be loaded, records are deserialized into instances of that
+ * class, whose field access is much faster than that of {@link DynamicMessage}. This is the case when the meta-data
+ * was built from the generated file descriptor, as by {@link RecordMetaData#build(Descriptors.FileDescriptor)}. For other
+ * record types, such as those from meta-data that was read from the meta-data store, {@link DynamicMessage} is used.
+ *
+ * Since the serialized form is the same, this serializer can be used in place of {@link DynamicMessageRecordSerializer}
+ * for an existing record store.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class GeneratedMessageRecordSerializer extends DynamicMessageRecordSerializer {
+    /**
+     * The default maximum number of record types whose message prototypes are remembered.
+     */
+    public static final long DEFAULT_MAX_CACHED_TYPES = 1000;
+
+    private static final GeneratedMessageRecordSerializer INSTANCE = new GeneratedMessageRecordSerializer(GeneratedMessageRecordSerializer.class.getClassLoader());
+
+    @Nullable
+    private final ClassLoader classLoader;
+    // Bounded, since each entry pins its descriptor (and so the whole meta-data it came from). Weak keys would not help,
+    // because the prototype itself refers to the descriptor.
+    @Nonnull
+    private final Cache<Descriptors.Descriptor, Message> prototypes;
+
+    @Nonnull
+    public static RecordSerializer<Message> instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create a new serializer that looks for generated classes using the given class loader.
+     * @param classLoader the class loader from which to load generated message classes
+     */
+    public GeneratedMessageRecordSerializer(@Nullable ClassLoader classLoader) {
+        this(classLoader, DEFAULT_MAX_CACHED_TYPES);
+    }
+
+    /**
+     * Create a new serializer that looks for generated classes using the given class loader.
+     * @param classLoader the class loader from which to load generated message classes
+     * @param maxCachedTypes the maximum number of record types for which to remember the class to use
+     */
+    public GeneratedMessageRecordSerializer(@Nullable ClassLoader classLoader, long maxCachedTypes) {
+        this.classLoader = classLoader;
+        this.prototypes = CacheBuilder.newBuilder().maximumSize(maxCachedTypes).build();
+    }
+
+    @Nonnull
+    @Override
+    public Message deserialize(@Nonnull final RecordMetaData metaData,
+                               @Nonnull final Tuple primaryKey,
+                               @Nonnull final byte[] serialized,
+                               @Nullable StoreTimer timer) {
+        final long startTime = System.nanoTime();
+        try {
+            final Message message = deserializeWithPrototype(metaData.getUnionDescriptor(), primaryKey, serialized);
+            if (message == null) {
+                // Not a simple union message: let the normal parse report the problem, timed just once here.
+                return super.deserialize(metaData, primaryKey, serialized, null);
+            }
+            return message;
+        } finally {
+            if (timer != null) {
+                timer.recordSinceNanoTime(Events.DESERIALIZE_PROTOBUF_RECORD, startTime);
+            }
+        }
+    }
+
+    @Nullable
+    protected Message deserializeWithPrototype(@Nonnull final Descriptors.Descriptor unionDescriptor,
+                                               @Nonnull final Tuple primaryKey,
+                                               @Nonnull final byte[] serialized) {
+        final Pair<Descriptors.FieldDescriptor, ByteString> unionField = readUnionField(unionDescriptor, primaryKey, serialized);
+        if (unionField == null) {
+            return null;
+        }
+        final Descriptors.Descriptor recordDescriptor = unionField.getLeft().getMessageType();
+        final Message message;
+        try {
+            message = getPrototype(recordDescriptor).getParserForType().parseFrom(unionField.getRight());
+        } catch (InvalidProtocolBufferException ex) {
+            throw new RecordSerializationException("Error reading from byte array", ex)
+                    .addLogInfo(LogMessageKeys.PRIMARY_KEY, primaryKey);
+        }
+        if (!message.getUnknownFields().asMap().isEmpty()) {
+            warnUnknownFields(primaryKey, recordDescriptor, message.getUnknownFields().asMap().keySet());
+        }
+        return message;
+    }
+
+    /**
+     * Get a message instance whose parser builds records of the given type.
+     * @param descriptor the record type's message descriptor
+     * @return the generated default instance for the record type or a {@link DynamicMessage} if there isn't one
+     */
+    @Nonnull
+    protected Message getPrototype(@Nonnull Descriptors.Descriptor descriptor) {
+        Message prototype = prototypes.getIfPresent(descriptor);
+        if (prototype == null) {
+            prototype = findPrototype(descriptor);
+            prototypes.put(descriptor, prototype);
+        }
+        return prototype;
+    }
+
+    @Nonnull
+    private Message findPrototype(@Nonnull Descriptors.Descriptor descriptor) {
+        final String className = getGeneratedClassName(descriptor);
+        try {
+            final Class<?> messageClass = Class.forName(className, true, classLoader);
+            final Object defaultInstance = messageClass.getMethod("getDefaultInstance").invoke(null);
+            // The descriptor must be the very same one, since that is how record types are matched.
+            if (defaultInstance instanceof Message && ((Message)defaultInstance).getDescriptorForType() == descriptor) {
+                return (Message)defaultInstance;
+            }
+        } catch (ClassNotFoundException | LinkageError | NoSuchMethodException | IllegalAccessException | InvocationTargetException | SecurityException ex) {
+            // Fall through to use dynamic message.
+        }
+        return DynamicMessage.getDefaultInstance(descriptor);
+    }
+
+    @Nonnull
+    private static String getGeneratedClassName(@Nonnull Descriptors.Descriptor descriptor) {
+        final Descriptors.FileDescriptor file = descriptor.getFile();
+        final DescriptorProtos.FileOptions options = file.getOptions();
+        final StringBuilder className = new StringBuilder();
+        if (options.hasJavaPackage()) {
+            className.append(options.getJavaPackage()).append('.');
+        } else if (!file.getPackage().isEmpty()) {
+            className.append(file.getPackage()).append('.');
+        }
+        final Descriptors.Descriptor outermost = getOutermost(descriptor);
+        if (!options.getJavaMultipleFiles()) {
+            className.append(getOuterClassName(file)).append('$');
+        }
+        appendNestedName(className, descriptor, outermost);
+        return className.toString();
+    }
+
+    @Nonnull
+    private static Descriptors.Descriptor getOutermost(@Nonnull Descriptors.Descriptor descriptor) {
+        Descriptors.Descriptor outermost = descriptor;
+        while (outermost.getContainingType() != null) {
+            outermost = outermost.getContainingType();
+        }
+        return outermost;
+    }
+
+    private static void appendNestedName(@Nonnull StringBuilder className, @Nonnull Descriptors.Descriptor descriptor,
+                                         @Nonnull Descriptors.Descriptor outermost) {
+        if (descriptor != outermost) {
+            appendNestedName(className, descriptor.getContainingType(), outermost);
+            className.append('$');
+        }
+        className.append(descriptor.getName());
+    }
+
+    // Follows protoc's rule for the outer class name when there is no java_outer_classname option.
+    @Nonnull
+    private static String getOuterClassName(@Nonnull Descriptors.FileDescriptor file) {
+        final DescriptorProtos.FileOptions options = file.getOptions();
+        if (options.hasJavaOuterClassname()) {
+            return options.getJavaOuterClassname();
+        }
+        String baseName = file.getName();
+        final int slash = baseName.lastIndexOf('/');
+        if (slash >= 0) {
+            baseName = baseName.substring(slash + 1);
+        }
+        if (baseName.endsWith(".proto")) {
+            baseName = baseName.substring(0, baseName.length() - ".proto".length());
+        }
+        final StringBuilder outerName = new StringBuilder(baseName.length());
+        boolean capitalizeNext = true;
+        for (int i = 0; i < baseName.length(); i++) {
+            final char ch = baseName.charAt(i);
+            if (Character.isLetter(ch)) {
+                outerName.append(capitalizeNext ? Character.toUpperCase(ch) : ch);
+                capitalizeNext = false;
+            } else if (Character.isDigit(ch)) {
+                outerName.append(ch);
+                capitalizeNext = true;
+            } else {
+                capitalizeNext = true;
+            }
+        }
+        for (Descriptors.Descriptor messageType : file.getMessageTypes()) {
+            if (messageType.getName().equals(outerName.toString())) {
+                outerName.append("OuterClass");
+                break;
+            }
+        }
+        return outerName.toString();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * LazyDynamicMessageRecordSerializer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deserialize records as {@link LazyRecordMessage}s, only parsing some of their fields up front.
+ *
+ * The fields to parse are given by name and apply to whichever record type is being deserialized. Other fields are only
+ * parsed if they are accessed, which causes the whole record to be parsed. This is appropriate when most records are only
+ * examined by a few of their fields, such as when they are filtered by a query that discards most of them.
+ *
+ * Serialization is the same as for {@link DynamicMessageRecordSerializer}, so the stored form is interchangeable.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LazyDynamicMessageRecordSerializer extends DynamicMessageRecordSerializer {
+    @Nonnull
+    private final Set<String> fieldNames;
+    @Nonnull
+    private final Map<Descriptors.Descriptor, Set<Integer>> fieldNumbersByType = new ConcurrentHashMap<>();
+
+    public LazyDynamicMessageRecordSerializer(@Nonnull Collection<String> fieldNames) {
+        this.fieldNames = new HashSet<>(fieldNames);
+    }
+
+    @Nonnull
+    public Set<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Nonnull
+    @Override
+    public Message deserialize(@Nonnull final RecordMetaData metaData,
+                               @Nonnull final Tuple primaryKey,
+                               @Nonnull final byte[] serialized,
+                               @Nullable StoreTimer timer) {
+        final long startTime = System.nanoTime();
+        try {
+            final Message message = deserializeLazily(metaData.getUnionDescriptor(), primaryKey, serialized);
+            if (message == null) {
+                // Not a well-formed union message: let the normal parse report the problem, timed just once here.
+                return super.deserialize(metaData, primaryKey, serialized, null);
+            }
+            return message;
+        } finally {
+            if (timer != null) {
+                timer.recordSinceNanoTime(Events.DESERIALIZE_PROTOBUF_RECORD, startTime);
+            }
+        }
+    }
+
+    @Nullable
+    protected Message deserializeLazily(@Nonnull final Descriptors.Descriptor unionDescriptor,
+                                        @Nonnull final Tuple primaryKey,
+                                        @Nonnull final byte[] serialized) {
+        final Pair<Descriptors.FieldDescriptor, ByteString> unionField = readUnionField(unionDescriptor, primaryKey, serialized);
+        if (unionField == null) {
+            return null;
+        }
+        final Descriptors.Descriptor recordDescriptor = unionField.getLeft().getMessageType();
+        final LazyRecordMessage message;
+        try {
+            message = LazyRecordMessage.parseFrom(recordDescriptor, unionField.getRight(),
+                    fieldNumbersByType.computeIfAbsent(recordDescriptor, this::getFieldNumbers));
+        } catch (InvalidProtocolBufferException ex) {
+            throw new RecordSerializationException("Error reading from byte array", ex)
+                    .addLogInfo(LogMessageKeys.PRIMARY_KEY, primaryKey);
+        }
+        if (!message.getUnknownFieldNumbers().isEmpty()) {
+            warnUnknownFields(primaryKey, recordDescriptor, message.getUnknownFieldNumbers());
+        }
+        return message;
+    }
+
+    // Lazy serializers are made for each query, so compare them by what they parse, for the sake of caches keyed by them.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return fieldNames.equals(((LazyDynamicMessageRecordSerializer)o).fieldNames);
+    }
+
+    @Override
+    public int hashCode() {
+        return fieldNames.hashCode();
+    }
+
+    @Nonnull
+    private Set<Integer> getFieldNumbers(@Nonnull Descriptors.Descriptor recordDescriptor) {
+        final Set<Integer> fieldNumbers = new HashSet<>();
+        for (String fieldName : fieldNames) {
+            final Descriptors.FieldDescriptor field = recordDescriptor.findFieldByName(fieldName);
+            if (field != null) {
+                fieldNumbers.add(field.getNumber());
+            }
+        }
+        return fieldNumbers;
+    }
+}
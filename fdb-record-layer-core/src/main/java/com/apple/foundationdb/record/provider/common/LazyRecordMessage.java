@@ -0,0 +1,271 @@
+/*
+ * LazyRecordMessage.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.API;
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.WireFormat;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A record message that has only parsed some of its fields, parsing the rest on demand.
+ *
+ * When the message is created, only the fields whose numbers are in the given set are parsed from the serialized form,
+ * all other fields being skipped over. Accessing one of those fields only uses that partial parse. Accessing any other
+ * field (or something that depends on all the fields, such as {@link #getAllFields}, {@link #equals} or {@link #toBuilder})
+ * causes the whole message to be parsed, which is then used for all subsequent accesses.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LazyRecordMessage extends AbstractMessage {
+    @Nonnull
+    private final Descriptors.Descriptor descriptor;
+    @Nonnull
+    private final ByteString serialized;
+    @Nonnull
+    private final Set<Integer> parsedFieldNumbers;
+    @Nonnull
+    private final DynamicMessage partialMessage;
+    @Nonnull
+    private final Set<Integer> unknownFieldNumbers;
+    @Nullable
+    private volatile DynamicMessage fullMessage;
+
+    protected LazyRecordMessage(@Nonnull Descriptors.Descriptor descriptor, @Nonnull ByteString serialized,
+                                @Nonnull Set<Integer> parsedFieldNumbers, @Nonnull DynamicMessage partialMessage,
+                                @Nonnull Set<Integer> unknownFieldNumbers) {
+        this.descriptor = descriptor;
+        this.serialized = serialized;
+        this.parsedFieldNumbers = parsedFieldNumbers;
+        this.partialMessage = partialMessage;
+        this.unknownFieldNumbers = unknownFieldNumbers;
+    }
+
+    /**
+     * Parse only the given fields of a message, skipping all others.
+     * @param descriptor the descriptor for the message type
+     * @param serialized the serialized message
+     * @param fieldNumbers the numbers of the fields to parse
+     * @return a new lazy message
+     * @throws InvalidProtocolBufferException if the serialized form is not valid
+     */
+    @Nonnull
+    public static LazyRecordMessage parseFrom(@Nonnull Descriptors.Descriptor descriptor, @Nonnull ByteString serialized,
+                                              @Nonnull Set<Integer> fieldNumbers) throws InvalidProtocolBufferException {
+        // Copy the encoding of just the wanted fields to a new buffer and parse that.
+        final ByteString.Output partial = ByteString.newOutput();
+        Set<Integer> unknownFieldNumbers = Collections.emptySet();
+        try {
+            final CodedInputStream input = serialized.newCodedInput();
+            final CodedOutputStream output = CodedOutputStream.newInstance(partial);
+            boolean more = true;
+            while (more) {
+                final int tag = input.readTag();
+                final int fieldNumber = WireFormat.getTagFieldNumber(tag);
+                if (tag == 0) {
+                    more = false;
+                } else if (fieldNumbers.contains(fieldNumber)) {
+                    more = input.skipField(tag, output);
+                } else {
+                    if (descriptor.findFieldByNumber(fieldNumber) == null) {
+                        if (unknownFieldNumbers.isEmpty()) {
+                            unknownFieldNumbers = new TreeSet<>();
+                        }
+                        unknownFieldNumbers.add(fieldNumber);
+                    }
+                    more = input.skipField(tag);
+                }
+            }
+            output.flush();
+        } catch (InvalidProtocolBufferException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new InvalidProtocolBufferException(ex.getMessage());
+        }
+        final DynamicMessage partialMessage = DynamicMessage.parseFrom(descriptor, partial.toByteString());
+        return new LazyRecordMessage(descriptor, serialized, fieldNumbers, partialMessage, unknownFieldNumbers);
+    }
+
+    /**
+     * Get the numbers of any fields in the serialized form that are not known to the message's descriptor.
+     * These are found while skipping over fields, so this does not require parsing the whole message.
+     * @return the numbers of unknown fields, which is usually empty
+     */
+    @Nonnull
+    public Set<Integer> getUnknownFieldNumbers() {
+        return unknownFieldNumbers;
+    }
+
+    /**
+     * Get whether the whole message has been parsed, because some field that was not initially parsed was accessed.
+     * @return {@code true} if the whole message has been parsed
+     */
+    public boolean isMaterialized() {
+        return fullMessage != null;
+    }
+
+    /**
+     * Get the whole message, parsing it if that has not already been done.
+     * @return a message with all the fields of the record
+     */
+    @Nonnull
+    public DynamicMessage materialize() {
+        DynamicMessage message = fullMessage;
+        if (message == null) {
+            try {
+                message = DynamicMessage.parseFrom(descriptor, serialized);
+            } catch (InvalidProtocolBufferException ex) {
+                // The partial parse succeeded, so this should not happen.
+                throw new RecordSerializationException("Error reading from byte array", ex)
+                        .addLogInfo("recordType", descriptor.getName());
+            }
+            fullMessage = message;
+        }
+        return message;
+    }
+
+    @Nonnull
+    private Message messageFor(@Nonnull Descriptors.FieldDescriptor field) {
+        if (fullMessage == null && field.getContainingType() == descriptor && parsedFieldNumbers.contains(field.getNumber())) {
+            return partialMessage;
+        } else {
+            return materialize();
+        }
+    }
+
+    @Override
+    public Descriptors.Descriptor getDescriptorForType() {
+        return descriptor;
+    }
+
+    @Override
+    public boolean hasField(Descriptors.FieldDescriptor field) {
+        return messageFor(field).hasField(field);
+    }
+
+    @Override
+    public Object getField(Descriptors.FieldDescriptor field) {
+        return messageFor(field).getField(field);
+    }
+
+    @Override
+    public int getRepeatedFieldCount(Descriptors.FieldDescriptor field) {
+        return messageFor(field).getRepeatedFieldCount(field);
+    }
+
+    @Override
+    public Object getRepeatedField(Descriptors.FieldDescriptor field, int index) {
+        return messageFor(field).getRepeatedField(field, index);
+    }
+
+    @Override
+    public Map<Descriptors.FieldDescriptor, Object> getAllFields() {
+        return materialize().getAllFields();
+    }
+
+    @Override
+    public boolean hasOneof(Descriptors.OneofDescriptor oneof) {
+        return materialize().hasOneof(oneof);
+    }
+
+    @Override
+    public Descriptors.FieldDescriptor getOneofFieldDescriptor(Descriptors.OneofDescriptor oneof) {
+        return materialize().getOneofFieldDescriptor(oneof);
+    }
+
+    @Override
+    public UnknownFieldSet getUnknownFields() {
+        return materialize().getUnknownFields();
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return materialize().isInitialized();
+    }
+
+    @Override
+    public void writeTo(CodedOutputStream output) throws IOException {
+        output.writeRawBytes(serialized);
+    }
+
+    @Override
+    public int getSerializedSize() {
+        return serialized.size();
+    }
+
+    @Override
+    public ByteString toByteString() {
+        return serialized;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return serialized.toByteArray();
+    }
+
+    @Override
+    public Message getDefaultInstanceForType() {
+        return DynamicMessage.getDefaultInstance(descriptor);
+    }
+
+    @Override
+    public Message.Builder newBuilderForType() {
+        return DynamicMessage.newBuilder(descriptor);
+    }
+
+    @Override
+    public Message.Builder toBuilder() {
+        return materialize().toBuilder();
+    }
+
+    @Override
+    public Parser<? extends Message> getParserForType() {
+        return materialize().getParserForType();
+    }
+
+    // Equality is by content, as for any other message, which means comparing all the fields.
+    @Override
+    @SuppressWarnings("PMD.UselessOverridingMethod")
+    public boolean equals(Object other) {
+        return super.equals(other);
+    }
+
+    @Override
+    @SuppressWarnings("PMD.UselessOverridingMethod")
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
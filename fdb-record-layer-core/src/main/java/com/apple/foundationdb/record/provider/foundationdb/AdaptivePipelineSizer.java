@@ -0,0 +1,335 @@
+/*
+ * AdaptivePipelineSizer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.PipelineOperation;
+
+import com.google.common.collect.MapMaker;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link FDBRecordStoreBase.PipelineSizer} that chooses the depth of each kind of pipeline from how it has performed.
+ *
+ * By Little's law, the number of elements that need to be in flight to keep up with the consumer of a pipeline is the
+ * time it takes to complete one element multiplied by the rate at which elements are taken. Both are tracked for each
+ * {@link PipelineOperation} as moving averages of the elements timed by {@link #observe}. The depth is set to about
+ * twice that, leaving room for completed elements waiting for earlier ones. But when the pipeline was full, elements
+ * are only started as fast as the previous ones complete, so the observed rate understates what the consumer could
+ * take; in that case the depth is doubled instead. Either way, it is kept between a minimum and a maximum, the
+ * latter bounding the number of outstanding reads that any one pipeline adds to its transaction.
+ *
+ * Separately, the elements in flight across all the pipelines of one transaction are bounded. Once that many have
+ * been started and not completed, further elements wait for earlier ones to complete before they start, and no single
+ * pipeline is made deeper than that bound.
+ *
+ * The same sizer can be given to the builders of many record stores, so that what is learned in one transaction
+ * carries over to the next.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class AdaptivePipelineSizer implements FDBRecordStoreBase.PipelineSizer {
+    public static final int DEFAULT_MIN_PIPELINE_SIZE = 1;
+    public static final int DEFAULT_MAX_PIPELINE_SIZE = 100;
+    public static final int DEFAULT_MAX_TRANSACTION_PIPELINE_SIZE = 500;
+
+    // Weight given to each new observation in the moving averages.
+    private static final double SMOOTHING = 0.1;
+    // Fraction of the current depth in flight at which the pipeline is considered to have been full. Since completed
+    // elements wait in the pipeline until they are taken in order, it can be full with well under its depth in flight.
+    private static final double SATURATED = 0.5;
+
+    private final int minPipelineSize;
+    private final int maxPipelineSize;
+    private final int initialPipelineSize;
+    private final int maxTransactionPipelineSize;
+    @Nonnull
+    private final Map<PipelineOperation, OperationStats> stats = new ConcurrentHashMap<>();
+    // The limit on elements in flight for each transaction, for as long as that transaction is around.
+    @Nonnull
+    private final Map<FDBRecordContext, TransactionLimiter> transactionLimiters = new MapMaker().weakKeys().makeMap();
+
+    // Moving averages for one kind of operation.
+    private static class OperationStats {
+        private int pipelineSize;
+        private double latencyNanos;
+        private double intervalNanos;
+        private long lastStartNanos;
+        private long intervals;
+        private long completions;
+        // Completions since the depth was last chosen.
+        private long recent;
+
+        OperationStats(int pipelineSize) {
+            this.pipelineSize = pipelineSize;
+        }
+
+        synchronized void started(long startNanos) {
+            if (lastStartNanos != 0) {
+                intervalNanos = average(intervalNanos, startNanos - lastStartNanos, intervals++);
+            }
+            lastStartNanos = startNanos;
+        }
+
+        synchronized void completed(long elapsedNanos) {
+            latencyNanos = average(latencyNanos, elapsedNanos, completions++);
+            recent++;
+        }
+
+        private static double average(double current, long observed, long count) {
+            return count == 0 ? observed : current + SMOOTHING * (observed - current);
+        }
+    }
+
+    public AdaptivePipelineSizer() {
+        this(DEFAULT_MIN_PIPELINE_SIZE, DEFAULT_MAX_PIPELINE_SIZE);
+    }
+
+    public AdaptivePipelineSizer(int minPipelineSize, int maxPipelineSize) {
+        this(minPipelineSize, maxPipelineSize,
+                Math.max(minPipelineSize, Math.min(maxPipelineSize, FDBRecordStore.DEFAULT_PIPELINE_SIZE)));
+    }
+
+    /**
+     * Create a new adaptive pipeline sizer.
+     * @param minPipelineSize the smallest depth to choose
+     * @param maxPipelineSize the largest depth to choose
+     * @param initialPipelineSize the depth for an operation that has not yet been observed
+     */
+    public AdaptivePipelineSizer(int minPipelineSize, int maxPipelineSize, int initialPipelineSize) {
+        this(minPipelineSize, maxPipelineSize, initialPipelineSize, Math.max(maxPipelineSize, DEFAULT_MAX_TRANSACTION_PIPELINE_SIZE));
+    }
+
+    /**
+     * Create a new adaptive pipeline sizer.
+     * @param minPipelineSize the smallest depth to choose
+     * @param maxPipelineSize the largest depth to choose
+     * @param initialPipelineSize the depth for an operation that has not yet been observed
+     * @param maxTransactionPipelineSize the most elements to have in flight at once across all the pipelines of a transaction
+     */
+    public AdaptivePipelineSizer(int minPipelineSize, int maxPipelineSize, int initialPipelineSize, int maxTransactionPipelineSize) {
+        if (minPipelineSize < 1 || maxPipelineSize < minPipelineSize) {
+            throw new IllegalArgumentException("invalid pipeline size bounds: " + minPipelineSize + " to " + maxPipelineSize);
+        }
+        if (initialPipelineSize < minPipelineSize || initialPipelineSize > maxPipelineSize) {
+            throw new IllegalArgumentException("initial pipeline size out of bounds: " + initialPipelineSize);
+        }
+        if (maxTransactionPipelineSize < 1) {
+            throw new IllegalArgumentException("invalid transaction pipeline size bound: " + maxTransactionPipelineSize);
+        }
+        this.minPipelineSize = minPipelineSize;
+        this.maxPipelineSize = maxPipelineSize;
+        this.initialPipelineSize = initialPipelineSize;
+        this.maxTransactionPipelineSize = maxTransactionPipelineSize;
+    }
+
+    public int getMinPipelineSize() {
+        return minPipelineSize;
+    }
+
+    public int getMaxPipelineSize() {
+        return maxPipelineSize;
+    }
+
+    public int getMaxTransactionPipelineSize() {
+        return maxTransactionPipelineSize;
+    }
+
+    /**
+     * Choose the depth for a new pipeline of the given kind, adjusting it according to the elements observed since the
+     * last one.
+     * @param pipelineOperation the operation
+     * @return the number of elements to pipeline
+     */
+    @Override
+    public int getPipelineSize(@Nonnull PipelineOperation pipelineOperation) {
+        final OperationStats operationStats = stats.get(pipelineOperation);
+        if (operationStats == null) {
+            return initialPipelineSize;
+        }
+        synchronized (operationStats) {
+            if (operationStats.recent > 0 && operationStats.intervalNanos > 0) {
+                final int current = operationStats.pipelineSize;
+                final double inFlight = operationStats.latencyNanos / operationStats.intervalNanos;
+                final int next;
+                if (inFlight >= current * SATURATED) {
+                    next = current * 2;
+                } else {
+                    // Leave enough room that it would not be considered full at the new depth.
+                    next = (int)Math.ceil(inFlight / SATURATED) + 1;
+                }
+                operationStats.pipelineSize = Math.max(minPipelineSize, Math.min(maxPipelineSize, next));
+                operationStats.recent = 0;
+                // Do not count the time between pipelines as time between elements.
+                operationStats.lastStartNanos = 0;
+            }
+            return operationStats.pipelineSize;
+        }
+    }
+
+    /**
+     * Choose the depth for a new pipeline of the given kind in the given transaction, as for
+     * {@link #getPipelineSize(PipelineOperation)} but no deeper than the transaction bound, and record it in the
+     * transaction's timer.
+     * @param pipelineOperation the operation
+     * @param context the transaction in which the pipeline will run
+     * @return the number of elements to pipeline
+     */
+    @Override
+    public int getPipelineSize(@Nonnull PipelineOperation pipelineOperation, @Nonnull FDBRecordContext context) {
+        final int pipelineSize = Math.min(getPipelineSize(pipelineOperation), maxTransactionPipelineSize);
+        final FDBStoreTimer timer = context.getTimer();
+        if (timer != null) {
+            timer.increment(FDBStoreTimer.Counts.ADAPTIVE_PIPELINES);
+            timer.increment(FDBStoreTimer.Counts.ADAPTIVE_PIPELINE_DEPTH, pipelineSize);
+        }
+        return pipelineSize;
+    }
+
+    /**
+     * Get the depth most recently chosen for the given kind of pipeline.
+     * @param pipelineOperation the operation
+     * @return the current number of elements to pipeline
+     */
+    public int getCurrentPipelineSize(@Nonnull PipelineOperation pipelineOperation) {
+        final OperationStats operationStats = stats.get(pipelineOperation);
+        if (operationStats == null) {
+            return initialPipelineSize;
+        }
+        synchronized (operationStats) {
+            return operationStats.pipelineSize;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T, V> Function<T, CompletableFuture<V>> observe(@Nonnull PipelineOperation pipelineOperation,
+                                                            @Nonnull Function<T, CompletableFuture<V>> func) {
+        final OperationStats operationStats = stats.computeIfAbsent(pipelineOperation, op -> new OperationStats(initialPipelineSize));
+        return item -> {
+            final long startTime = System.nanoTime();
+            operationStats.started(startTime);
+            final CompletableFuture<V> future = func.apply(item);
+            if (future.isDone()) {
+                // Nothing to wait for, such as a cached record: no need to pipeline it at all.
+                operationStats.completed(0);
+                return future;
+            }
+            return future.whenComplete((result, err) -> {
+                if (err == null) {
+                    operationStats.completed(System.nanoTime() - startTime);
+                }
+            });
+        };
+    }
+
+    @Nonnull
+    @Override
+    public <T, V> Function<T, CompletableFuture<V>> observe(@Nonnull PipelineOperation pipelineOperation,
+                                                            @Nonnull FDBRecordContext context,
+                                                            @Nonnull Function<T, CompletableFuture<V>> func) {
+        final Function<T, CompletableFuture<V>> observed = observe(pipelineOperation, func);
+        final TransactionLimiter limiter = transactionLimiters.computeIfAbsent(context,
+                ignore -> new TransactionLimiter(maxTransactionPipelineSize, context.getTimer()));
+        return item -> limiter.run(() -> observed.apply(item));
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptivePipelineSizer(" + minPipelineSize + ".." + maxPipelineSize + ")";
+    }
+
+    // Starts elements of a transaction's pipelines only while fewer than the limit are in flight, and otherwise queues
+    // them, in order, until earlier ones complete. This must not refer to the transaction itself.
+    static final class TransactionLimiter {
+        private final int limit;
+        @Nullable
+        private final FDBStoreTimer timer;
+        @Nonnull
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        TransactionLimiter(int limit, @Nullable FDBStoreTimer timer) {
+            this.limit = limit;
+            this.timer = timer;
+        }
+
+        @Nonnull
+        <V> CompletableFuture<V> run(@Nonnull Supplier<CompletableFuture<V>> element) {
+            synchronized (this) {
+                if (inFlight >= limit) {
+                    final CompletableFuture<V> result = new CompletableFuture<>();
+                    waiting.addLast(() -> start(element).whenComplete((value, err) -> {
+                        if (err != null) {
+                            result.completeExceptionally(err);
+                        } else {
+                            result.complete(value);
+                        }
+                    }));
+                    if (timer != null) {
+                        timer.increment(FDBStoreTimer.Counts.ADAPTIVE_PIPELINE_TRANSACTION_WAITS);
+                    }
+                    return result;
+                }
+                inFlight++;
+            }
+            return start(element);
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        @Nonnull
+        private <V> CompletableFuture<V> start(@Nonnull Supplier<CompletableFuture<V>> element) {
+            CompletableFuture<V> future;
+            try {
+                future = element.get();
+            } catch (RuntimeException ex) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(ex);
+            }
+            return future.whenComplete((value, err) -> release());
+        }
+
+        private void release() {
+            final Runnable next;
+            synchronized (this) {
+                next = waiting.pollFirst();
+                if (next == null) {
+                    inFlight--;
+                }
+            }
+            // The slot passes straight to the next waiting element.
+            if (next != null) {
+                next.run();
+            }
+        }
+    }
+}
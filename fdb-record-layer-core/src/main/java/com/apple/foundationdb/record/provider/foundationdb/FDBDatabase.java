@@ -140,6 +140,11 @@ public class FDBDatabase {
 
     private String datacenterId;
 
+    @Nullable
+    private volatile SlowQueryLog slowQueryLog;
+    @Nullable
+    private volatile QueryResultCache queryResultCache;
+
     @Nonnull
     private static ImmutablePair<Long, Long> initialVersionPair = new ImmutablePair<>(null, null);
     @Nonnull
@@ -328,6 +333,47 @@ public class FDBDatabase {
         return startMillis + (System.currentTimeMillis() - startMillis) / 2;
     }
 
+    /**
+     * Get the log of slow queries executed against record stores in this database.
+     * @return the slow query log or {@code null} if slow queries are not recorded
+     */
+    @Nullable
+    @API(API.Status.EXPERIMENTAL)
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Set the log of slow queries executed against record stores in this database.
+     * @param slowQueryLog the slow query log or {@code null} to stop recording slow queries
+     * @see SlowQueryLog
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setSlowQueryLog(@Nullable SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Get the cache of query results for record stores in this database.
+     * @return the query result cache or {@code null} if query results are not cached
+     */
+    @Nullable
+    @API(API.Status.EXPERIMENTAL)
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Set the cache of query results for record stores in this database.
+     * Since cached pages are identified by the subspace of their store, a cache should not be shared between databases.
+     * @param queryResultCache the query result cache or {@code null} to stop caching query results
+     * @see QueryResultCache
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setQueryResultCache(@Nullable QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
     public long getResolverStateCacheRefreshTime() {
         return resolverStateCache.getRefreshTimeSeconds();
     }
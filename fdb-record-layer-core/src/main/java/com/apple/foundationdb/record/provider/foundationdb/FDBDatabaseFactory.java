@@ -79,6 +79,8 @@ public class FDBDatabaseFactory {
      */
     private Supplier<Boolean> transactionIsTracedSupplier = LOGGER::isTraceEnabled;
     private Supplier<BlockingInAsyncDetection> blockingInAsyncDetectionSupplier = () -> BlockingInAsyncDetection.DISABLED;
+    @Nullable
+    private SlowQueryLog slowQueryLog;
 
     private final Map<String, FDBDatabase> databases = new HashMap<>();
 
@@ -370,6 +372,21 @@ public class FDBDatabaseFactory {
         return this.blockingInAsyncDetectionSupplier;
     }
 
+    @Nullable
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Set the log of slow queries for databases created by this factory.
+     * @param slowQueryLog the slow query log or {@code null} for none
+     * @see FDBDatabase#setSlowQueryLog
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setSlowQueryLog(@Nullable SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
     public long getStateRefreshTimeMillis() {
         return stateRefreshTimeMillis;
     }
@@ -393,6 +410,7 @@ public class FDBDatabaseFactory {
             database.setTrackLastSeenVersion(getTrackLastSeenVersion());
             database.setResolverStateRefreshTimeMillis(getStateRefreshTimeMillis());
             database.setDatacenterId(getDatacenterId());
+            database.setSlowQueryLog(getSlowQueryLog());
             databases.put(clusterFile, database);
         }
         return database;
@@ -25,6 +25,7 @@ import com.apple.foundationdb.record.IndexEntry;
 import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.RecordType;
 import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
 import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
@@ -73,6 +74,18 @@ public abstract class FDBQueriedRecord<M extends Message> implements FDBRecord<M
         return new Covered<>(index, indexEntry, primaryKey, recordType, record);
     }
 
+    /**
+     * Get a query result record for one group of an aggregate query that was computed from the records themselves.
+     * @param aggregateEntry the group as the key and the aggregate value as the value
+     * @param recordType the record type of the partial record
+     * @param record a partial record with the grouping fields set
+     * @param <M> type used to represent stored records
+     * @return a query result record for the group
+     */
+    public static <M extends Message> FDBQueriedRecord<M> aggregated(@Nonnull IndexEntry aggregateEntry, @Nonnull RecordType recordType, @Nonnull M record) {
+        return new Aggregated<>(aggregateEntry, recordType, record);
+    }
+
     @SuppressWarnings("PMD.AvoidFieldNameMatchingTypeName")
     static class Indexed<M extends Message> extends FDBQueriedRecord<M> {
         private final FDBIndexedRecord<M> indexed;
@@ -253,4 +266,70 @@ public abstract class FDBQueriedRecord<M extends Message> implements FDBRecord<M
         }
     }
 
+    static class Aggregated<M extends Message> extends FDBQueriedRecord<M> {
+        @Nonnull
+        private final IndexEntry aggregateEntry;
+        @Nonnull
+        private final RecordType recordType;
+        @Nonnull
+        private final M record;
+
+        public Aggregated(@Nonnull IndexEntry aggregateEntry, @Nonnull RecordType recordType, @Nonnull M record) {
+            this.aggregateEntry = aggregateEntry;
+            this.recordType = recordType;
+            this.record = record;
+        }
+
+        @Nullable
+        @Override
+        public Index getIndex() {
+            return null;
+        }
+
+        /**
+         * Get the group and aggregate value, in the same form as a covering scan of an aggregate index would give.
+         * @return an entry with the group as its key and the aggregate value as its value
+         */
+        @Nonnull
+        @Override
+        public IndexEntry getIndexEntry() {
+            return aggregateEntry;
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getPrimaryKey() {
+            return TupleHelpers.EMPTY;
+        }
+
+        @Nonnull
+        @Override
+        public RecordType getRecordType() {
+            return recordType;
+        }
+
+        @Nonnull
+        @Override
+        public M getRecord() {
+            return record;
+        }
+
+        @Override
+        public boolean hasVersion() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public FDBRecordVersion getVersion() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public FDBStoredRecord<M> getStoredRecord() {
+            return null;
+        }
+    }
+
 }
@@ -541,6 +541,19 @@ public class FDBRecordContext extends FDBTransactionContext implements AutoClose
         return existingValue != null ? existingValue.getRight() : null;
     }
 
+    /**
+     * Get whether a {@link MutationType#SET_VERSIONSTAMPED_KEY SET_VERSIONSTAMPED_KEY}
+     * or {@link MutationType#SET_VERSIONSTAMPED_VALUE SET_VERSIONTSTAMPED_VALUE}
+     * mutation will be run at commit time for the given key. Since these mutations are
+     * only sent at commit, reads of the key within this transaction do not see them.
+     * @param key key bytes for the mutation
+     * @return whether there is a mutation for the given key
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public boolean hasVersionMutation(@Nonnull byte[] key) {
+        return versionMutationCache.containsKey(key);
+    }
+
     public FDBDatabase.WeakReadSemantics getWeakReadSemantics() {
         return weakReadSemantics;
     }
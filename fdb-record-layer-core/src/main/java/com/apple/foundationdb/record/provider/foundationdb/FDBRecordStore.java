@@ -70,6 +70,8 @@ import com.apple.foundationdb.record.metadata.StoreRecordFunction;
 import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.provider.common.DynamicMessageRecordSerializer;
+import com.apple.foundationdb.record.provider.common.LazyDynamicMessageRecordSerializer;
+import com.apple.foundationdb.record.provider.common.LazyRecordMessage;
 import com.apple.foundationdb.record.provider.common.RecordSerializer;
 import com.apple.foundationdb.record.provider.foundationdb.keyspace.KeySpacePath;
 import com.apple.foundationdb.record.query.QueryToKeyMatcher;
@@ -78,7 +80,9 @@ import com.apple.foundationdb.record.query.expressions.AndComponent;
 import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.expressions.RecordTypeKeyComparison;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
 import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
+import com.apple.foundationdb.record.query.plan.planning.RequiredFields;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.ByteArrayUtil2;
@@ -96,9 +100,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -107,7 +113,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -144,12 +152,15 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     public static final int SAVE_UNSPLIT_WITH_SUFFIX_FORMAT_VERSION = 5;
     // 6 - store record version at a split point within the record
     public static final int SAVE_VERSION_WITH_RECORD_FORMAT_VERSION = 6;
+    // 7 - maintain a versionstamped marker of the last transaction to change the store
+    public static final int LAST_WRITE_MARKER_FORMAT_VERSION = 7;
 
     // The current code can read and write up to the format version below
-    public static final int MAX_SUPPORTED_FORMAT_VERSION = SAVE_VERSION_WITH_RECORD_FORMAT_VERSION;
+    public static final int MAX_SUPPORTED_FORMAT_VERSION = LAST_WRITE_MARKER_FORMAT_VERSION;
 
     // Record stores attempt to upgrade to this version
-    public static final int DEFAULT_FORMAT_VERSION = MAX_SUPPORTED_FORMAT_VERSION;
+    // Stores only move to the last write marker format when asked to, since it adds a mutation of the same key to every write.
+    public static final int DEFAULT_FORMAT_VERSION = SAVE_VERSION_WITH_RECORD_FORMAT_VERSION;
 
     // These agree with the client's values. They could be tunable and even increased with knobs.
     public static final int KEY_SIZE_LIMIT = 10_000;
@@ -167,6 +178,14 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     protected static final Object INDEX_RANGE_SPACE_KEY = FDBRecordStoreKeyspace.INDEX_RANGE_SPACE.key();
     protected static final Object INDEX_UNIQUENESS_VIOLATIONS_KEY = FDBRecordStoreKeyspace.INDEX_UNIQUENESS_VIOLATIONS_SPACE.key();
     protected static final Object RECORD_VERSION_KEY = FDBRecordStoreKeyspace.RECORD_VERSION_SPACE.key();
+    protected static final Object INDEX_STATISTICS_SPACE_KEY = FDBRecordStoreKeyspace.INDEX_STATISTICS_SPACE.key();
+    protected static final Object LAST_WRITE_KEY = FDBRecordStoreKeyspace.LAST_WRITE.key();
+
+    // A versionstamp to be filled in at commit, followed by its offset within the value.
+    private static final byte[] LAST_WRITE_MARKER_VALUE = FDBRecordVersion.incomplete(0)
+            .writeTo(ByteBuffer.allocate(FDBRecordVersion.VERSION_LENGTH + Integer.BYTES).order(ByteOrder.BIG_ENDIAN))
+            .putInt(0)
+            .array();
 
     @SuppressWarnings("squid:S2386")
     @SpotBugsSuppressWarnings("MS_MUTABLE_ARRAY")
@@ -198,6 +217,8 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Nonnull
     protected final PipelineSizer pipelineSizer;
 
+    protected final boolean writeOnlyChangedSplits;
+
     @Nullable
     private Subspace cachedRecordsSubspace;
 
@@ -211,7 +232,8 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                              @Nonnull RecordSerializer<Message> serializer,
                              @Nonnull IndexMaintainerRegistry indexMaintainerRegistry,
                              @Nonnull IndexMaintenanceFilter indexMaintenanceFilter,
-                             @Nonnull PipelineSizer pipelineSizer) {
+                             @Nonnull PipelineSizer pipelineSizer,
+                             boolean writeOnlyChangedSplits) {
         super(context, subspaceProvider);
         this.formatVersion = formatVersion;
         this.metaDataProvider = metaDataProvider;
@@ -219,6 +241,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         this.indexMaintainerRegistry = indexMaintainerRegistry;
         this.indexMaintenanceFilter = indexMaintenanceFilter;
         this.pipelineSizer = pipelineSizer;
+        this.writeOnlyChangedSplits = writeOnlyChangedSplits;
 
         this.omitUnsplitRecordSuffix = formatVersion < SAVE_UNSPLIT_WITH_SUFFIX_FORMAT_VERSION;
         this.preloadCache = CacheBuilder.<Tuple,FDBRawRecord>newBuilder().maximumSize(PRELOAD_CACHE_SIZE).build();
@@ -338,6 +361,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                                                                                         @Nonnull RecordExistenceCheck existenceCheck,
                                                                                         @Nullable FDBRecordVersion version,
                                                                                         @Nonnull VersionstampSaveBehavior behavior) {
+        updateLastWriteMarker();
         final RecordMetaData metaData = metaDataProvider.getRecordMetaData();
         final Descriptors.Descriptor recordDescriptor = record.getDescriptorForType();
         final RecordType recordType = metaData.getRecordTypeForDescriptor(recordDescriptor);
@@ -349,7 +373,17 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         final Tuple primaryKey = primaryKeyExpression.evaluateSingleton(recordBuilder).toTuple();
         recordBuilder.setPrimaryKey(primaryKey);
 
-        final CompletableFuture<FDBStoredRecord<M>> result = loadExistingRecord(typedSerializer, primaryKey).thenCompose(oldRecord -> {
+        // If only changed splits are to be written, the old record's stored bytes are needed to compare against.
+        final CompletableFuture<FDBRawRecord> oldRawRecordFuture;
+        final CompletableFuture<FDBStoredRecord<M>> oldRecordFuture;
+        if (writeOnlyChangedSplits && metaData.isSplitLongRecords()) {
+            oldRawRecordFuture = loadRawRecordAsync(primaryKey, new SplitHelper.SizeInfo(), false);
+            oldRecordFuture = loadTypedRecord(typedSerializer, primaryKey, false, oldRawRecordFuture, System.nanoTime());
+        } else {
+            oldRawRecordFuture = CompletableFuture.completedFuture(null);
+            oldRecordFuture = loadExistingRecord(typedSerializer, primaryKey);
+        }
+        final CompletableFuture<FDBStoredRecord<M>> result = oldRecordFuture.thenCombine(oldRawRecordFuture, (oldRecord, oldRawRecord) -> {
             if (oldRecord == null) {
                 if (existenceCheck.errorIfNotExists()) {
                     throw new RecordDoesNotExistException("record does not exist",
@@ -367,7 +401,8 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                             LogMessageKeys.EXPECTED_TYPE, recordType.getName());
                 }
             }
-            final FDBStoredRecord<M> newRecord = serializeAndSaveRecord(typedSerializer, recordBuilder, metaData, oldRecord);
+            final byte[] oldSerialized = oldRawRecord == null ? null : oldRawRecord.getRawRecord();
+            final FDBStoredRecord<M> newRecord = serializeAndSaveRecord(typedSerializer, recordBuilder, metaData, oldRecord, oldSerialized);
             if (oldRecord == null) {
                 addRecordCount(metaData, newRecord, LITTLE_ENDIAN_INT64_ONE);
             } else {
@@ -376,7 +411,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                 }
             }
             return updateSecondaryIndexes(oldRecord, newRecord).thenApply(v -> newRecord);
-        });
+        }).thenCompose(Function.identity());
         return context.instrument(FDBStoreTimer.Events.SAVE_RECORD, result);
     }
 
@@ -415,13 +450,15 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
 
     @Nonnull
     private <M extends Message> FDBStoredRecord<M> serializeAndSaveRecord(@Nonnull RecordSerializer<M> typedSerializer, @Nonnull final FDBStoredRecordBuilder<M> recordBuilder,
-                                                                          @Nonnull final RecordMetaData metaData, @Nullable FDBStoredSizes oldSizeInfo) {
+                                                                          @Nonnull final RecordMetaData metaData, @Nullable FDBStoredSizes oldSizeInfo,
+                                                                          @Nullable byte[] oldSerialized) {
         final Tuple primaryKey = recordBuilder.getPrimaryKey();
         final FDBRecordVersion version = recordBuilder.getVersion();
         final byte[] serialized = typedSerializer.serialize(metaData, recordBuilder.getRecordType(), recordBuilder.getRecord(), getTimer());
         final FDBRecordVersion splitVersion = useOldVersionFormat() ? null : version;
         final SplitHelper.SizeInfo sizeInfo = new SplitHelper.SizeInfo();
-        SplitHelper.saveWithSplit(context, recordsSubspace(), recordBuilder.getPrimaryKey(), serialized, splitVersion, metaData.isSplitLongRecords(), omitUnsplitRecordSuffix, true, oldSizeInfo, sizeInfo);
+        SplitHelper.saveWithSplit(context, recordsSubspace(), recordBuilder.getPrimaryKey(), serialized, splitVersion, metaData.isSplitLongRecords(), omitUnsplitRecordSuffix,
+                true, oldSizeInfo, oldSerialized, sizeInfo);
         countKeysAndValues(FDBStoreTimer.Counts.SAVE_RECORD_KEY, FDBStoreTimer.Counts.SAVE_RECORD_KEY_BYTES, FDBStoreTimer.Counts.SAVE_RECORD_VALUE_BYTES, sizeInfo);
         recordBuilder.setSize(sizeInfo);
 
@@ -607,6 +644,72 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         return getSubspace().subspace(Tuple.from(INDEX_UNIQUENESS_VIOLATIONS_KEY, index.getSubspaceKey()));
     }
 
+    /**
+     * Subspace in which {@link IndexStatistics} are saved, keyed by index subspace key.
+     * @return the subspace for index statistics
+     * @see #saveIndexStatistics
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public Subspace indexStatisticsSubspace() {
+        return getSubspace().subspace(Tuple.from(INDEX_STATISTICS_SPACE_KEY));
+    }
+
+    /**
+     * Subspace in which the {@link IndexStatistics} for the given index are saved.
+     * @param index the index described by the statistics
+     * @return the subspace for the index's statistics
+     * @see #saveIndexStatistics
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public Subspace indexStatisticsSubspace(@Nonnull Index index) {
+        return getSubspace().subspace(Tuple.from(INDEX_STATISTICS_SPACE_KEY, index.getSubspaceKey()));
+    }
+
+    @Nonnull
+    private byte[] lastWriteMarkerKey() {
+        return getSubspace().pack(Tuple.from(LAST_WRITE_KEY));
+    }
+
+    // Called before any change to the store's records, so that the marker records this transaction once it commits.
+    private void updateLastWriteMarker() {
+        if (formatVersion >= LAST_WRITE_MARKER_FORMAT_VERSION) {
+            context.addVersionMutation(MutationType.SET_VERSIONSTAMPED_VALUE, lastWriteMarkerKey(), LAST_WRITE_MARKER_VALUE);
+        }
+    }
+
+    /**
+     * Get whether this store's transaction has changed the store in a way that will update its last write marker.
+     * @return {@code true} if the last write marker will be updated when this store's transaction commits
+     * @see #loadLastWriteMarkerAsync
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public boolean hasPendingLastWrite() {
+        return context.hasVersionMutation(lastWriteMarkerKey());
+    }
+
+    /**
+     * Load the version of the last committed transaction to change this store's records or its header.
+     *
+     * This is only maintained by stores with a format version of at least {@link #LAST_WRITE_MARKER_FORMAT_VERSION}.
+     * If two reads of it give the same version, no records were saved or deleted between them. It can therefore be
+     * used to check that something derived from the store's records is still current, at the cost of a single read.
+     * Note that a transaction that has itself changed the store sees the marker from before its changes; this can be
+     * checked with {@link #hasPendingLastWrite}.
+     * @param isolationLevel whether the read should conflict with changes to the store
+     * @return a future that completes to the version of the last change or {@code null} if the store does not maintain one
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<FDBRecordVersion> loadLastWriteMarkerAsync(@Nonnull IsolationLevel isolationLevel) {
+        if (formatVersion < LAST_WRITE_MARKER_FORMAT_VERSION) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final ReadTransaction tr = isolationLevel.isSnapshot() ? ensureContextActive().snapshot() : ensureContextActive();
+        return tr.get(lastWriteMarkerKey()).thenApply(value -> value == null ? null : FDBRecordVersion.fromBytes(value));
+    }
+
     /**
      * Get the maintainer for a given index.
      * @param index the required index
@@ -705,6 +808,16 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Nonnull
     protected <M extends Message> CompletableFuture<FDBStoredRecord<M>> loadTypedRecord(@Nonnull RecordSerializer<M> typedSerializer,
                                                                                         @Nonnull final Tuple primaryKey, final boolean snapshot) {
+        final SplitHelper.SizeInfo sizeInfo = new SplitHelper.SizeInfo();
+        final long startTime = System.nanoTime();
+        return loadTypedRecord(typedSerializer, primaryKey, snapshot, loadRawRecordAsync(primaryKey, sizeInfo, snapshot), startTime);
+    }
+
+    @Nonnull
+    private <M extends Message> CompletableFuture<FDBStoredRecord<M>> loadTypedRecord(@Nonnull RecordSerializer<M> typedSerializer,
+                                                                                      @Nonnull final Tuple primaryKey, final boolean snapshot,
+                                                                                      @Nonnull CompletableFuture<FDBRawRecord> rawRecordFuture,
+                                                                                      final long startTime) {
         final RecordMetaData metaData = metaDataProvider.getRecordMetaData();
 
         final Optional<CompletableFuture<FDBRecordVersion>> versionFutureOptional;
@@ -714,9 +827,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             versionFutureOptional = Optional.empty();
         }
 
-        final SplitHelper.SizeInfo sizeInfo = new SplitHelper.SizeInfo();
-        final long startTime = System.nanoTime();
-        CompletableFuture<FDBStoredRecord<M>> result = loadRawRecordAsync(primaryKey, sizeInfo, snapshot)
+        CompletableFuture<FDBStoredRecord<M>> result = rawRecordFuture
                 .thenCompose(rawRecord -> {
                     final long startTimeToDeserialize = System.nanoTime();
                     final long timeToLoad = startTimeToDeserialize - startTime;
@@ -975,7 +1086,8 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                     .limitRowsTo(scanProperties.getExecuteProperties().getReturnedRowLimit());
             }
         }
-        RecordCursor<FDBStoredRecord<M>> result = rawRecords.mapPipelined(rawRecord -> {
+        final int pipelineSize = getPipelineSize(PipelineOperation.KEY_TO_RECORD);
+        RecordCursor<FDBStoredRecord<M>> result = rawRecords.mapPipelined(pipelineSizer.observe(PipelineOperation.KEY_TO_RECORD, context, rawRecord -> {
             final Optional<CompletableFuture<FDBRecordVersion>> versionFutureOptional;
             if (useOldVersionFormat()) {
                 // Older format versions: do a separate read to get the version.
@@ -986,7 +1098,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             }
             return deserializeRecord(typedSerializer, rawRecord, metaData,
                     versionFutureOptional).thenApply(FDBStoredRecordBuilder::build);
-        }, pipelineSizer.getPipelineSize(PipelineOperation.KEY_TO_RECORD));
+        }), pipelineSize);
         return context.instrument(FDBStoreTimer.Events.SCAN_RECORDS, result);
     }
 
@@ -1067,6 +1179,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     protected <M extends Message> CompletableFuture<Boolean> deleteTypedRecord(@Nonnull RecordSerializer<M> typedSerializer,
                                                                                @Nonnull Tuple primaryKey) {
         preloadCache.invalidate(primaryKey);
+        updateLastWriteMarker();
         final RecordMetaData metaData = metaDataProvider.getRecordMetaData();
         CompletableFuture<Boolean> result = loadTypedRecord(typedSerializer, primaryKey, false).thenCompose(oldRecord -> {
             if (oldRecord == null) {
@@ -1111,6 +1224,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Override
     public void deleteAllRecords() {
         preloadCache.invalidateAll();
+        updateLastWriteMarker();
         Transaction tr = ensureContextActive();
         tr.clear(recordsSubspace().getKey(),
                  getSubspace().range().end);
@@ -1119,6 +1233,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
     @Override
     public CompletableFuture<Void> deleteRecordsWhereAsync(@Nonnull QueryComponent component) {
         preloadCache.invalidateAll();
+        updateLastWriteMarker();
         return new RecordsWhereDeleter(component).run();
     }
 
@@ -1326,6 +1441,15 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         return pipelineSizer;
     }
 
+    /**
+     * Get whether saving a split record only rewrites those splits that have changed.
+     * @return {@code true} if unchanged splits of split records are not rewritten
+     * @see Builder#setWriteOnlyChangedSplits
+     */
+    public boolean isWriteOnlyChangedSplits() {
+        return writeOnlyChangedSplits;
+    }
+
     @Override
     public CompletableFuture<Long> getSnapshotRecordCount(@Nonnull KeyExpression key, @Nonnull Key.Evaluated value) {
         if (getRecordMetaData().getRecordCountKey() != null) {
@@ -1430,6 +1554,106 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         return planner.plan(query);
     }
 
+    /**
+     * Save statistics on the entries of an index, such as those gathered by an {@link IndexStatisticsCollector}.
+     * These replace any previously saved for the index and are cleared along with the index's data.
+     * @param index the index described by the statistics
+     * @param statistics the statistics to save
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void saveIndexStatistics(@Nonnull Index index, @Nonnull IndexStatistics statistics) {
+        final Transaction tr = ensureContextActive();
+        final Subspace subspace = indexStatisticsSubspace(index);
+        tr.clear(subspace.range());
+        // Large boundary values can make the statistics exceed the value size limit, so write them in pieces.
+        final byte[] serialized = statistics.toTuple().pack();
+        int offset = 0;
+        long chunk = 0;
+        do {
+            final int nextOffset = Math.min(offset + SplitHelper.SPLIT_RECORD_SIZE, serialized.length);
+            tr.set(subspace.pack(chunk), Arrays.copyOfRange(serialized, offset, nextOffset));
+            offset = nextOffset;
+            chunk++;
+        } while (offset < serialized.length);
+    }
+
+    /**
+     * Load the statistics saved for this store's indexes, for use by a {@link RecordQueryPlanner}.
+     * Statistics for indexes that are not in the meta-data are skipped. Since they are only advisory, they are read at
+     * snapshot isolation, so saving new statistics does not conflict with transactions that planned using the old ones.
+     * {@link #planQuery} does not load them; a planner only uses them once they are given to it.
+     * @return a future that completes to a map from index name to statistics
+     * @see RecordQueryPlanner#setIndexStatistics
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<Map<String, IndexStatistics>> loadIndexStatisticsAsync() {
+        final Subspace statisticsSubspace = indexStatisticsSubspace();
+        final RecordMetaData metaData = getRecordMetaData();
+        final CompletableFuture<Map<String, IndexStatistics>> result = ensureContextActive().snapshot().getRange(statisticsSubspace.range()).asList()
+                .thenApply(list -> {
+                    final Map<Tuple, Index> indexesBySubspaceKey = new HashMap<>();
+                    for (Index index : metaData.getAllIndexes()) {
+                        indexesBySubspaceKey.put(Tuple.from(index.getSubspaceKey()), index);
+                    }
+                    // Keys are in order, so the pieces of each index's statistics are appended in turn.
+                    final Map<Tuple, ByteArrayOutputStream> serialized = new HashMap<>();
+                    for (KeyValue kv : list) {
+                        final Tuple subspaceKey = Tuple.from(statisticsSubspace.unpack(kv.getKey()).get(0));
+                        serialized.computeIfAbsent(subspaceKey, k -> new ByteArrayOutputStream()).write(kv.getValue(), 0, kv.getValue().length);
+                    }
+                    final Map<String, IndexStatistics> statistics = new HashMap<>();
+                    for (Map.Entry<Tuple, ByteArrayOutputStream> entry : serialized.entrySet()) {
+                        final Index index = indexesBySubspaceKey.get(entry.getKey());
+                        if (index != null) {
+                            statistics.put(index.getName(), IndexStatistics.fromTuple(Tuple.fromBytes(entry.getValue().toByteArray())));
+                        }
+                    }
+                    return statistics;
+                });
+        return context.instrument(FDBStoreTimer.Events.LOAD_INDEX_STATISTICS, result);
+    }
+
+    /**
+     * Load the statistics saved for this store's indexes.
+     * This is a blocking version of {@link #loadIndexStatisticsAsync()}.
+     * @return a map from index name to statistics
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public Map<String, IndexStatistics> loadIndexStatistics() {
+        return context.asyncToSync(FDBStoreTimer.Waits.WAIT_LOAD_INDEX_STATISTICS, loadIndexStatisticsAsync());
+    }
+
+    /**
+     * Plan and execute a query, only parsing those fields of each record that the query needs.
+     *
+     * The fields needed are those used by the query's filter, sort and {@link RecordQuery#getRequiredResults required results},
+     * together with the primary key. Each record is returned as a {@link LazyRecordMessage}, which parses the rest of the record
+     * if some other field is accessed. So records that are rejected by a filter never need to be fully parsed, and neither
+     * do results when the caller only uses the required fields.
+     *
+     * If the needed fields cannot be determined, for instance because the filter includes a record function, or if this store
+     * does not use the default {@link DynamicMessageRecordSerializer}, then the query is executed normally.
+     * @param query the query to plan and execute
+     * @param continuation continuation from a previous execution of this same query
+     * @param executeProperties limits on execution
+     * @return a cursor for query results
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public RecordCursor<FDBQueriedRecord<Message>> executeQueryWithLazyRecords(@Nonnull RecordQuery query,
+                                                                               @Nullable byte[] continuation,
+                                                                               @Nonnull ExecuteProperties executeProperties) {
+        final Set<String> requiredFields = serializer == DynamicMessageRecordSerializer.instance() ?
+                                           RequiredFields.forQuery(getRecordMetaData(), query) : null;
+        if (requiredFields == null) {
+            return executeQuery(query, continuation, executeProperties);
+        }
+        final FDBTypedRecordStore<Message> lazyStore = new FDBTypedRecordStore<>(this, new LazyDynamicMessageRecordSerializer(requiredFields));
+        return lazyStore.executeQuery(query, continuation, executeProperties);
+    }
+
 
     @Nonnull
     public static IndexState writeOnlyIfTooManyRecordsForRebuild(long recordCount, boolean indexOnNewRecordTypes) {
@@ -1542,6 +1766,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                 if (dirty[0]) {
                     info.setLastUpdateTime(System.currentTimeMillis());
                     ensureContextActive().set(getSubspace().pack(STORE_INFO_KEY), info.build().toByteArray());
+                    updateLastWriteMarker();
                 }
                 return dirty[0];
             });
@@ -1600,6 +1825,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         tr.clear(getSubspace().range(Tuple.from(INDEX_RANGE_SPACE_KEY)));
         tr.clear(getSubspace().range(Tuple.from(INDEX_STATE_SPACE_KEY)));
         tr.clear(getSubspace().range(Tuple.from(INDEX_UNIQUENESS_VIOLATIONS_KEY)));
+        tr.clear(getSubspace().range(Tuple.from(INDEX_STATISTICS_SPACE_KEY)));
         List<CompletableFuture<Void>> work = new LinkedList<>();
         addRebuildRecordCountsJob(work);
         return rebuildIndexes(getRecordMetaData().getIndexesSince(-1), Collections.emptyMap(), work, RebuildIndexReason.REBUILD_ALL, null);
@@ -2628,6 +2854,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         tr.clear(indexSecondarySubspace(index).range());
         tr.clear(indexRangeSubspace(index).range());
         tr.clear(indexUniquenessViolationsSubspace(index).range());
+        tr.clear(indexStatisticsSubspace(index).range());
     }
 
     public void removeFormerIndex(FormerIndex formerIndex) {
@@ -2647,6 +2874,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         tr.clear(getSubspace().range(Tuple.from(INDEX_RANGE_SPACE_KEY, formerIndex.getSubspaceKey())));
         tr.clear(getSubspace().pack(Tuple.from(INDEX_STATE_SPACE_KEY, formerIndex.getSubspaceKey())));
         tr.clear(getSubspace().range(Tuple.from(INDEX_UNIQUENESS_VIOLATIONS_KEY, formerIndex.getSubspaceKey())));
+        tr.clear(getSubspace().range(Tuple.from(INDEX_STATISTICS_SPACE_KEY, formerIndex.getSubspaceKey())));
         if (getTimer() != null) {
             getTimer().recordSinceNanoTime(FDBStoreTimer.Events.REMOVE_FORMER_INDEX, startTime);
         }
@@ -2786,6 +3014,8 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
         @Nonnull
         private FDBRecordStoreBase.PipelineSizer pipelineSizer = DEFAULT_PIPELINE_SIZER;
 
+        private boolean writeOnlyChangedSplits = false;
+
         protected Builder() {
         }
 
@@ -2812,6 +3042,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             this.indexMaintainerRegistry = other.indexMaintainerRegistry;
             this.indexMaintenanceFilter = other.indexMaintenanceFilter;
             this.pipelineSizer = other.pipelineSizer;
+            this.writeOnlyChangedSplits = other.writeOnlyChangedSplits;
         }
 
         /**
@@ -2827,6 +3058,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             this.indexMaintainerRegistry = store.indexMaintainerRegistry;
             this.indexMaintenanceFilter = store.indexMaintenanceFilter;
             this.pipelineSizer = store.pipelineSizer;
+            this.writeOnlyChangedSplits = store.writeOnlyChangedSplits;
         }
 
         @Override
@@ -2979,6 +3211,49 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
             return this;
         }
 
+        /**
+         * Have the record store choose the depth of its pipelines from how they perform, using a new
+         * {@link AdaptivePipelineSizer} with the given bounds. Stores built from this builder, or from copies of it,
+         * share that sizer, so what it learns in one transaction is used in later ones.
+         * @param minPipelineSize the smallest number of elements to pipeline
+         * @param maxPipelineSize the largest number of elements to pipeline in any one pipeline
+         * @return this builder
+         */
+        @Nonnull
+        @API(API.Status.EXPERIMENTAL)
+        public Builder setAdaptivePipelineSizer(int minPipelineSize, int maxPipelineSize) {
+            return setPipelineSizer(new AdaptivePipelineSizer(minPipelineSize, maxPipelineSize));
+        }
+
+        /**
+         * Have the record store choose the depth of its pipelines from how they perform, using a new
+         * {@link AdaptivePipelineSizer} with the given bounds, including one on the elements in flight across all the
+         * pipelines of a transaction.
+         * @param minPipelineSize the smallest number of elements to pipeline
+         * @param maxPipelineSize the largest number of elements to pipeline in any one pipeline
+         * @param maxTransactionPipelineSize the largest number of elements in flight at once in any one transaction
+         * @return this builder
+         * @see #setAdaptivePipelineSizer(int, int)
+         */
+        @Nonnull
+        @API(API.Status.EXPERIMENTAL)
+        public Builder setAdaptivePipelineSizer(int minPipelineSize, int maxPipelineSize, int maxTransactionPipelineSize) {
+            return setPipelineSizer(new AdaptivePipelineSizer(minPipelineSize, maxPipelineSize,
+                    Math.max(minPipelineSize, Math.min(maxPipelineSize, DEFAULT_PIPELINE_SIZE)), maxTransactionPipelineSize));
+        }
+
+        @Override
+        public boolean isWriteOnlyChangedSplits() {
+            return writeOnlyChangedSplits;
+        }
+
+        @Override
+        @Nonnull
+        public Builder setWriteOnlyChangedSplits(boolean writeOnlyChangedSplits) {
+            this.writeOnlyChangedSplits = writeOnlyChangedSplits;
+            return this;
+        }
+
         @Override
         @Nonnull
         public Builder copyBuilder() {
@@ -2998,7 +3273,7 @@ public class FDBRecordStore extends FDBStoreBase implements FDBRecordStoreBase<M
                 throw new RecordCoreException("serializer must be supplied");
             }
             return new FDBRecordStore(context, subspaceProvider, formatVersion, getMetaDataProviderForBuild(),
-                    serializer, indexMaintainerRegistry, indexMaintenanceFilter, pipelineSizer);
+                    serializer, indexMaintainerRegistry, indexMaintenanceFilter, pipelineSizer, writeOnlyChangedSplits);
         }
 
         @Override
@@ -67,6 +67,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Base interface for typed and untyped record stores.
@@ -762,8 +764,9 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
     default RecordCursor<FDBIndexedRecord<M>> fetchIndexRecords(@Nonnull Index index,
                                                                 @Nonnull RecordCursor<IndexEntry> indexCursor,
                                                                 @Nonnull IndexOrphanBehavior orphanBehavior) {
-        RecordCursor<FDBIndexedRecord<M>> recordCursor = indexCursor.mapPipelined(entry ->
-                loadIndexEntryRecord(index, entry, orphanBehavior), getPipelineSize(PipelineOperation.INDEX_TO_RECORD));
+        final int pipelineSize = getPipelineSize(PipelineOperation.INDEX_TO_RECORD);
+        RecordCursor<FDBIndexedRecord<M>> recordCursor = indexCursor.mapPipelined(getPipelineSizer().observe(PipelineOperation.INDEX_TO_RECORD, getContext(), entry ->
+                loadIndexEntryRecord(index, entry, orphanBehavior)), pipelineSize);
         if (orphanBehavior == IndexOrphanBehavior.SKIP) {
             recordCursor = recordCursor.filter(Objects::nonNull);
         }
@@ -1146,6 +1149,52 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
      */
     interface PipelineSizer {
         int getPipelineSize(@Nonnull PipelineOperation pipelineOperation);
+
+        /**
+         * Get the number of elements to allow in the asynchronous pipeline for an operation of the given type in the
+         * given transaction. A sizer that adjusts to how its pipelines perform can use this to take into account what
+         * else the transaction is doing and to record what it chose in the transaction's timer. By default, this is
+         * the same as {@link #getPipelineSize(PipelineOperation)}.
+         * @param pipelineOperation the operation
+         * @param context the transaction in which the pipeline will run
+         * @return the number of elements to pipeline
+         */
+        default int getPipelineSize(@Nonnull PipelineOperation pipelineOperation, @Nonnull FDBRecordContext context) {
+            return getPipelineSize(pipelineOperation);
+        }
+
+        /**
+         * Wrap the function run for each element of a pipeline of the given type, so that a sizer that adjusts to
+         * how its pipelines perform can observe them. By default, the function is returned unchanged.
+         * @param pipelineOperation the operation
+         * @param func the function applied to each element of the pipeline
+         * @param <T> the type of input elements
+         * @param <V> the type of output elements
+         * @return a function that does the same as {@code func}
+         */
+        @Nonnull
+        default <T, V> Function<T, CompletableFuture<V>> observe(@Nonnull PipelineOperation pipelineOperation,
+                                                                 @Nonnull Function<T, CompletableFuture<V>> func) {
+            return func;
+        }
+
+        /**
+         * Wrap the function run for each element of a pipeline of the given type in the given transaction. Besides
+         * observing the elements, a sizer can use this to bound the elements in flight across all of the transaction's
+         * pipelines. By default, this is the same as {@link #observe(PipelineOperation, Function)}.
+         * @param pipelineOperation the operation
+         * @param context the transaction in which the pipeline runs
+         * @param func the function applied to each element of the pipeline
+         * @param <T> the type of input elements
+         * @param <V> the type of output elements
+         * @return a function that does the same as {@code func}
+         */
+        @Nonnull
+        default <T, V> Function<T, CompletableFuture<V>> observe(@Nonnull PipelineOperation pipelineOperation,
+                                                                 @Nonnull FDBRecordContext context,
+                                                                 @Nonnull Function<T, CompletableFuture<V>> func) {
+            return observe(pipelineOperation, func);
+        }
     }
 
     /**
@@ -1162,7 +1211,7 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
      * @return the number of elements to pipeline
      */
     default int getPipelineSize(@Nonnull PipelineOperation pipelineOperation) {
-        return getPipelineSizer().getPipelineSize(pipelineOperation);
+        return getPipelineSizer().getPipelineSize(pipelineOperation, getContext());
     }
 
     /**
@@ -1381,11 +1430,13 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
      */
     @Nonnull
     default RecordCursor<FDBQueriedRecord<M>> executeQuery(@Nonnull RecordQuery query) {
-        return executeQuery(planQuery(query));
+        return executeQuery(query, null, ExecuteProperties.SERIAL_EXECUTE);
     }
 
     /**
      * Plan and execute a query.
+     * If the database has a {@link SlowQueryLog}, the time spent planning counts toward the query's time.
+     * If it has a {@link QueryResultCache}, the results may come from there.
      * @param query the query to plan and execute
      * @param continuation continuation from a previous execution of this same query
      * @param executeProperties limits on execution
@@ -1396,7 +1447,19 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
     default RecordCursor<FDBQueriedRecord<M>> executeQuery(@Nonnull RecordQuery query,
                                                            @Nullable byte[] continuation,
                                                            @Nonnull ExecuteProperties executeProperties) {
-        return executeQuery(planQuery(query), continuation, executeProperties);
+        final SlowQueryLog slowQueryLog = getContext().getDatabase().getSlowQueryLog();
+        if (slowQueryLog == null) {
+            return executeQuery(planQuery(query), continuation, executeProperties);
+        }
+        final long startTime = System.nanoTime();
+        final RecordQueryPlan plan = planQuery(query);
+        final long planningTimeNanos = System.nanoTime() - startTime;
+        final QueryResultCache queryResultCache = getContext().getDatabase().getQueryResultCache();
+        if (queryResultCache == null) {
+            return slowQueryLog.execute(this, plan, EvaluationContext.EMPTY, continuation, executeProperties, planningTimeNanos);
+        }
+        return queryResultCache.execute(this, plan, EvaluationContext.EMPTY, continuation, executeProperties,
+                () -> slowQueryLog.execute(this, plan, EvaluationContext.EMPTY, continuation, executeProperties, planningTimeNanos));
     }
 
     /**
@@ -1407,11 +1470,13 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
      */
     @Nonnull
     default RecordCursor<FDBQueriedRecord<M>> executeQuery(@Nonnull RecordQueryPlan query) {
-        return query.execute(this, EvaluationContext.EMPTY);
+        return executeQuery(query, null, ExecuteProperties.SERIAL_EXECUTE);
     }
 
     /**
      * Execute a query.
+     * If the database has a {@link SlowQueryLog}, the query is recorded there if it is slow.
+     * If it has a {@link QueryResultCache}, the results may come from there.
      * @param query the query to execute
      * @param continuation continuation from a previous execution of this same plan
      * @param executeProperties limits on execution
@@ -1422,7 +1487,38 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
     default RecordCursor<FDBQueriedRecord<M>> executeQuery(@Nonnull RecordQueryPlan query,
                                                            @Nullable byte[] continuation,
                                                            @Nonnull ExecuteProperties executeProperties) {
-        return query.execute(this, EvaluationContext.EMPTY, continuation, executeProperties);
+        return executeQuery(query, EvaluationContext.EMPTY, continuation, executeProperties);
+    }
+
+    /**
+     * Execute a query with parameters.
+     * If the database has a {@link SlowQueryLog}, the query is recorded there if it is slow.
+     * If it has a {@link QueryResultCache}, the results may come from there.
+     * @param query the query to execute
+     * @param context the evaluation context, giving the values of the query's parameters
+     * @param continuation continuation from a previous execution of this same plan
+     * @param executeProperties limits on execution
+     * @return a cursor for query results
+     * @see RecordQueryPlan#execute
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    default RecordCursor<FDBQueriedRecord<M>> executeQuery(@Nonnull RecordQueryPlan query,
+                                                           @Nonnull EvaluationContext context,
+                                                           @Nullable byte[] continuation,
+                                                           @Nonnull ExecuteProperties executeProperties) {
+        final SlowQueryLog slowQueryLog = getContext().getDatabase().getSlowQueryLog();
+        final Supplier<RecordCursor<FDBQueriedRecord<M>>> execute;
+        if (slowQueryLog == null) {
+            execute = () -> query.execute(this, context, continuation, executeProperties);
+        } else {
+            execute = () -> slowQueryLog.execute(this, query, context, continuation, executeProperties, 0L);
+        }
+        final QueryResultCache queryResultCache = getContext().getDatabase().getQueryResultCache();
+        if (queryResultCache == null) {
+            return execute.get();
+        }
+        return queryResultCache.execute(this, query, context, continuation, executeProperties, execute);
     }
 
     /**
@@ -1625,6 +1721,27 @@ public interface FDBRecordStoreBase<M extends Message> extends RecordMetaDataPro
         @Nonnull
         BaseBuilder<M, R> setPipelineSizer(@Nonnull PipelineSizer pipelineSizer);
 
+        /**
+         * Get whether saving a split record only rewrites those splits that have changed.
+         * @return {@code true} if unchanged splits of split records are not rewritten
+         */
+        boolean isWriteOnlyChangedSplits();
+
+        /**
+         * Set whether saving a split record only rewrites those splits that have changed.
+         *
+         * When set, saving over an existing record that is split across multiple key-value pairs compares each new
+         * split with the corresponding split of the old record's stored bytes and skips writing it if they are the same.
+         * This reduces the bytes written (and so the size of the commit) when a large record is updated in a way that
+         * leaves most of its serialized form unchanged. It is of no benefit when the serializer transforms the whole record,
+         * such as by compressing or encrypting it, since then a small change affects every split.
+         * @param writeOnlyChangedSplits whether to only write changed splits
+         * @return this builder
+         * @see SplitHelper#saveWithSplit(FDBRecordContext, Subspace, Tuple, byte[], FDBRecordVersion, boolean, boolean, boolean, FDBStoredSizes, byte[], SplitHelper.SizeInfo)
+         */
+        @Nonnull
+        BaseBuilder<M, R> setWriteOnlyChangedSplits(boolean writeOnlyChangedSplits);
+
         /**
          * Make a copy of this builder.
          * This can be used to share enough of the state to connect to the same record store several times in different transactions.
@@ -36,7 +36,9 @@ public enum FDBRecordStoreKeyspace {
     INDEX_STATE_SPACE(5L),
     INDEX_RANGE_SPACE(6L),
     INDEX_UNIQUENESS_VIOLATIONS_SPACE(7L),
-    RECORD_VERSION_SPACE(8L)
+    RECORD_VERSION_SPACE(8L),
+    INDEX_STATISTICS_SPACE(9L),
+    LAST_WRITE(10L)
     ;
 
     private long id;
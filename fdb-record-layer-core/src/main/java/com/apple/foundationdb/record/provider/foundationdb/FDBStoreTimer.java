@@ -52,6 +52,8 @@ public class FDBStoreTimer extends StoreTimer {
         LOAD_RECORD_STORE_INFO("load record store info"),
         /** The amount of time taken loading a record store's {@link com.apple.foundationdb.record.RecordStoreState} listing inactive indexes. */
         LOAD_RECORD_STORE_STATE("load record store state"),
+        /** The amount of time taken loading the statistics on a record store's indexes. */
+        LOAD_INDEX_STATISTICS("load index statistics"),
         /** The amount of time taken getting the current version from a {@link MetaDataCache}. */
         GET_META_DATA_CACHE_VERSION("get meta-data cache version"),
         /** The amount of time taken getting cached meta-data from a {@link MetaDataCache}. */
@@ -170,6 +172,8 @@ public class FDBStoreTimer extends StoreTimer {
         GET_RECORD_RANGE_RAW_FIRST_CHUNK("get record range raw first chunk"),
         /** The amount of time spent until the first part of a range scan (such as an index) is available. */
         GET_SCAN_RANGE_RAW_FIRST_CHUNK("get scan range raw first chunk"),
+        /** The amount of time spent reading each part of a range scan that reads ahead of its consumer. */
+        GET_SCAN_RANGE_RAW_READ_AHEAD_CHUNK("get scan range raw read ahead chunk"),
         /** The amount of time spent initializing a {@link com.apple.foundationdb.async.RankedSet} skip list. */
         RANKED_SET_INIT("ranked set init"),
         /** The amount of time spent looking up the next level of a {@link com.apple.foundationdb.async.RankedSet} skip list. */
@@ -270,7 +274,9 @@ public class FDBStoreTimer extends StoreTimer {
         /** Wait for a backoff delay on retryable error in {@link FDBDatabase#run}. */
         WAIT_RETRY_DELAY("wait for retry delay"),
         /** Wait for statistics to be collected by a {@link SizeStatisticsCollector}. */
-        WAIT_COLLECT_STATISTICS("wait for statistics to be collected of a record store or index");
+        WAIT_COLLECT_STATISTICS("wait for statistics to be collected of a record store or index"),
+        /** Wait for {@link FDBRecordStore#loadIndexStatisticsAsync()}. */
+        WAIT_LOAD_INDEX_STATISTICS("wait for index statistics to be loaded");
 
         private final String title;
         Waits(String title) {
@@ -299,6 +305,10 @@ public class FDBStoreTimer extends StoreTimer {
         SAVE_RECORD_KEY_BYTES("number of record key bytes saved", true),
         /** The size of values for record key-value pairs saved. */
         SAVE_RECORD_VALUE_BYTES("number of record value bytes saved", true),
+        /** The number of record splits that were not rewritten because they were unchanged. */
+        SAVE_RECORD_UNCHANGED_SPLIT("number of unchanged record splits not rewritten", false),
+        /** The size of values for record splits that were not rewritten because they were unchanged. */
+        SAVE_RECORD_UNCHANGED_SPLIT_BYTES("number of unchanged record split bytes not rewritten", true),
         /** The number of entries (e.g., key-value pairs or text index entries) loaded by a scan. */
         LOAD_SCAN_ENTRY("number of entries loaded by some scan", false),
         /** The number of key-value pairs loaded by a range scan. */
@@ -351,8 +361,12 @@ public class FDBStoreTimer extends StoreTimer {
         PLAN_COVERING_INDEX("number of covering index plans", false),
         /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan}. */
         PLAN_FILTER("number of filter plans", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryHashAggregatePlan}. */
+        PLAN_HASH_AGGREGATE("number of hash aggregate plans", false),
         /** The number of query plans that include an index. */
         PLAN_INDEX("number of index plans", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan}. */
+        PLAN_INDEX_ENTRY_FILTER("number of index entry filter plans", false),
         /** The number of query plans that include an {@code IN} with parameters. */
         PLAN_IN_PARAMETER("number of in plans with parameters", false),
         /** The number of query plans that include an {@code IN} with literal values. */
@@ -361,10 +375,16 @@ public class FDBStoreTimer extends StoreTimer {
         PLAN_INTERSECTION("number of intersection plans", false),
         /** The number of query plans that include a loading records directly by their primary keys. */
         PLAN_LOAD_BY_KEYS("number of load-by-keys plans", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan}. */
+        PLAN_MULTI_RANGE_INDEX("number of multi-range index plans", false),
         /** The number of query plans that include a record scan without an index. */
         PLAN_SCAN("number of scan plans", false),
         /** The number of query plans that include translating a rank range into a score range. */
         PLAN_SCORE_FOR_RANK("number of score-for-rank plans", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan}. */
+        PLAN_SKIP_SCAN_INDEX("number of skip-scan index plans", false),
+        /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryStreamingAggregatePlan}. */
+        PLAN_STREAMING_AGGREGATE("number of streaming aggregate plans", false),
         /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan}. */
         PLAN_TYPE_FILTER("number of type filter plans", false),
         /** The number of query plans that include a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryUnionPlan}. */
@@ -383,6 +403,12 @@ public class FDBStoreTimer extends StoreTimer {
         QUERY_FILTER_PLAN_GIVEN("number of records given to RecordQueryFilterPlan", false),
         /** The number of records passed by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan}. */
         QUERY_FILTER_PLAN_PASSED("number of records passed by RecordQueryFilterPlan", false),
+        /** The number of index entries given to {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan}. */
+        QUERY_INDEX_ENTRY_FILTER_PLAN_GIVEN("number of index entries given to RecordQueryIndexEntryFilterPlan", false),
+        /** The number of index entries passed by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan}. */
+        QUERY_INDEX_ENTRY_FILTER_PLAN_PASSED("number of index entries passed by RecordQueryIndexEntryFilterPlan", false),
+        /** The number of index entries filtered out by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan} without loading their records. */
+        QUERY_INDEX_ENTRY_DISCARDED("number of index entries filtered out before loading records", false),
         /** The number of records given to {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan}. */
         QUERY_TYPE_FILTER_PLAN_GIVEN("number of records given to RecordQueryTypeFilterPlan", false),
         /** The number of records passed by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan}. */
@@ -399,6 +425,12 @@ public class FDBStoreTimer extends StoreTimer {
         QUERY_PK_DISTINCT_PLAN_DUPLICATES("number of duplicates found by RecordQueryUnorderedPrimaryKeyDistinctPlan", false),
         /** The number of unique records found by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan}. */
         QUERY_PK_DISTINCT_PLAN_UNIQUES("number of unique records found by RecordQueryUnorderedPrimaryKeyDistinctPlan", false),
+        /** The peak number of bytes of memory used to remember keys by unordered distinct plans. */
+        QUERY_DISTINCT_MEMORY_BYTES("peak bytes of memory used by unordered distinct plans", true),
+        /** The number of partitions of keys written to local files by unordered distinct plans over their memory limit. */
+        QUERY_DISTINCT_SPILLED_PARTITIONS("number of partitions spilled by unordered distinct plans", false),
+        /** The number of bytes of keys written to local files by unordered distinct plans over their memory limit. */
+        QUERY_DISTINCT_SPILLED_BYTES("bytes spilled by unordered distinct plans", true),
         /** The number of matching records found by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan}. */
         QUERY_INTERSECTION_PLAN_MATCHES("number of matching records found by RecordQueryIntersectionPlan", false),
         /** The number of non-matching records found by {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan}. */
@@ -409,6 +441,10 @@ public class FDBStoreTimer extends StoreTimer {
         QUERY_UNION_PLAN_UNIQUES("number of unique records found by RecordQueryUnorderedDistinctPlan", false),
         /** The number of records filtered out as not matching or duplicate. */
         QUERY_DISCARDED("number of records loaded but filtered out", false),
+        /** The number of query pages returned from a {@link QueryResultCache}. */
+        QUERY_RESULT_CACHE_HIT("number of query pages returned from cache", false),
+        /** The number of query pages not found in a {@link QueryResultCache} or found there but out of date. */
+        QUERY_RESULT_CACHE_MISS("number of query pages not found in cache", false),
         /** The number of times the read version was taken from the cache of the last seen version. */
         SET_READ_VERSION_TO_LAST_SEEN("set read version to last seen version", false),
         /** The number of records scanned by {@link OnlineIndexer}. */
@@ -421,6 +457,14 @@ public class FDBStoreTimer extends StoreTimer {
         TIME_WINDOW_LEADERBOARD_DELETE_WINDOW("number of leaderboard windows deleted", false),
         /** The number of times that a leaderboard needs to be rebuilt because a window was added after a score it should contain. */
         TIME_WINDOW_LEADERBOARD_OVERLAPPING_CHANGED("number of leaderboard conditional rebuilds", false),
+        /** The number of times that the consumer of a range scan that reads ahead had to wait for the next part. */
+        READ_AHEAD_WAITS("number of waits for a read ahead range chunk", false),
+        /** The number of pipelines whose depth was chosen by an {@link AdaptivePipelineSizer}. */
+        ADAPTIVE_PIPELINES("number of adaptively sized pipelines", false),
+        /** The total depth chosen for adaptively sized pipelines, which divided by {@link #ADAPTIVE_PIPELINES} gives the average. */
+        ADAPTIVE_PIPELINE_DEPTH("total adaptive pipeline depth", false),
+        /** The number of pipelined elements that had to wait because their transaction already had as many in flight as an {@link AdaptivePipelineSizer} allows. */
+        ADAPTIVE_PIPELINE_TRANSACTION_WAITS("number of adaptive pipeline waits for the transaction bound", false),
         /** The number of times that an index entry does not point to a valid record. */
         BAD_INDEX_ENTRY("number of occurrences of bad index entries", false),
         ;
@@ -418,6 +418,18 @@ public class FDBTypedRecordStore<M extends Message> implements FDBRecordStoreBas
             return this;
         }
 
+        @Override
+        public boolean isWriteOnlyChangedSplits() {
+            return untypedStoreBuilder.isWriteOnlyChangedSplits();
+        }
+
+        @Nonnull
+        @Override
+        public Builder<M> setWriteOnlyChangedSplits(boolean writeOnlyChangedSplits) {
+            untypedStoreBuilder.setWriteOnlyChangedSplits(writeOnlyChangedSplits);
+            return this;
+        }
+
         @Nonnull
         @Override
         public CompletableFuture<FDBTypedRecordStore<M>> uncheckedOpenAsync() {
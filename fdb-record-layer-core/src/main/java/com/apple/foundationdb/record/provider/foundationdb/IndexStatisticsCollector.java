@@ -0,0 +1,249 @@
+/*
+ * IndexStatisticsCollector.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.CursorStreamingMode;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.ScanProperties;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A class that collects {@link IndexStatistics} on the entries of a value index, for use by the query planner.
+ *
+ * Like {@link SizeStatisticsCollector}, this must scan the whole index, so it should be run sparingly and is not
+ * expected to finish within a single transaction. Calling {@link #collect(FDBRecordContext, ExecuteProperties)}
+ * successively makes progress from where the previous call left off; once it returns {@code true}, the statistics
+ * can be saved with {@link FDBRecordStore#saveIndexStatistics}. Since the entries come in order, the number of
+ * distinct values of each prefix of the columns is exact, as of when each part was scanned. The histogram of the first
+ * column is taken from a systematic sample of the entries, which is thinned as it grows, so it takes bounded memory.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class IndexStatisticsCollector {
+    /**
+     * The default number of boundaries in the histogram of the first column.
+     */
+    public static final int DEFAULT_HISTOGRAM_BOUNDARIES = 100;
+
+    @Nonnull
+    private final Index index;
+    @Nonnull
+    private final Subspace subspace;
+    private final int histogramBoundaries;
+    private long entryCount;
+    @Nonnull
+    private final long[] distinctCounts;
+    @Nullable
+    private Tuple lastKey;
+    // Every sampleInterval'th first column value.
+    @Nonnull
+    private final List<Object> samples;
+    private long sampleInterval;
+    @Nullable
+    private byte[] continuation;
+    private boolean done;
+
+    private IndexStatisticsCollector(@Nonnull Index index, @Nonnull Subspace subspace, int histogramBoundaries) {
+        if (histogramBoundaries < 0) {
+            throw new RecordCoreArgumentException("histogram boundaries must not be negative");
+        }
+        this.index = index;
+        this.subspace = subspace;
+        this.histogramBoundaries = histogramBoundaries;
+        this.distinctCounts = new long[index.getColumnSize()];
+        this.samples = new ArrayList<>();
+        this.sampleInterval = 1;
+    }
+
+    /**
+     * Collect statistics about the index entries.
+     * This will pick up from where this object previously left off. Typically, the user should specify some limit through
+     * the <code>executeProperties</code> parameter. If there are no more entries in the index, this will return a future that
+     * completes to <code>true</code>. Otherwise, this function will return a future that completes to <code>false</code>.
+     *
+     * @param context the transaction context in which to collect statistics
+     * @param executeProperties limits on execution
+     * @return a future that completes to <code>true</code> if this object is done collecting statistics or <code>false</code> otherwise
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> collectAsync(@Nonnull FDBRecordContext context, @Nonnull ExecuteProperties executeProperties) {
+        if (done) {
+            return AsyncUtil.READY_TRUE;
+        }
+        final ScanProperties scanProperties = new ScanProperties(executeProperties)
+                .setStreamingMode(CursorStreamingMode.WANT_ALL);
+        final KeyValueCursor kvCursor = KeyValueCursor.Builder.withSubspace(subspace)
+                .setContext(context)
+                .setContinuation(continuation)
+                .setScanProperties(scanProperties)
+                .build();
+        return kvCursor.forEach(kv -> {
+            addEntry(subspace.unpack(kv.getKey()));
+            continuation = kvCursor.getContinuation();
+        }).handle((vignore, err) -> {
+            if (err == null) {
+                boolean exhausted = kvCursor.getNoNextReason().isSourceExhausted();
+                if (!exhausted) {
+                    continuation = kvCursor.getContinuation();
+                } else {
+                    done = true;
+                }
+                return exhausted;
+            } else {
+                if (FDBExceptions.isRetriable(err)) {
+                    return false;
+                } else {
+                    throw context.getDatabase().mapAsyncToSyncException(err);
+                }
+            }
+        }).whenComplete((vignore, err) -> kvCursor.close());
+    }
+
+    /**
+     * Collect statistics about the index entries.
+     * This is a blocking variant of {@link #collectAsync(FDBRecordContext, ExecuteProperties)}.
+     *
+     * @param context the transaction context in which to collect statistics
+     * @param executeProperties limits on execution
+     * @return <code>true</code> if this object is done collecting statistics or <code>false</code> otherwise
+     */
+    public boolean collect(@Nonnull FDBRecordContext context, @Nonnull ExecuteProperties executeProperties) {
+        return context.asyncToSync(FDBStoreTimer.Waits.WAIT_COLLECT_STATISTICS, collectAsync(context, executeProperties));
+    }
+
+    private void addEntry(@Nonnull Tuple key) {
+        final int columns = Math.min(distinctCounts.length, key.size());
+        // The first column at which this entry differs from the previous one starts a new value of every longer prefix.
+        int common = 0;
+        if (lastKey != null) {
+            while (common < columns && common < lastKey.size() && Objects.deepEquals(key.get(common), lastKey.get(common))) {
+                common++;
+            }
+        }
+        for (int i = common; i < columns; i++) {
+            distinctCounts[i]++;
+        }
+        lastKey = key;
+        if (histogramBoundaries > 0 && columns > 0 && entryCount % sampleInterval == 0) {
+            samples.add(key.get(0));
+            if (samples.size() >= 2 * histogramBoundaries) {
+                // Keep every other sample, which is the same as having sampled half as often.
+                int kept = 0;
+                for (int i = 0; i < samples.size(); i += 2) {
+                    samples.set(kept++, samples.get(i));
+                }
+                samples.subList(kept, samples.size()).clear();
+                sampleInterval *= 2;
+            }
+        }
+        entryCount++;
+    }
+
+    @Nonnull
+    public Index getIndex() {
+        return index;
+    }
+
+    /**
+     * Get whether there are no more entries to scan.
+     * @return {@code true} if the whole index has been scanned
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Get the number of entries scanned so far.
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get the statistics collected so far.
+     * @return the statistics on the entries scanned
+     */
+    @Nonnull
+    public IndexStatistics getStatistics() {
+        final List<Object> boundaries;
+        if (samples.size() <= histogramBoundaries) {
+            boundaries = samples;
+        } else {
+            boundaries = new ArrayList<>(histogramBoundaries);
+            for (int i = 1; i <= histogramBoundaries; i++) {
+                boundaries.add(samples.get((samples.size() * i) / (histogramBoundaries + 1)));
+            }
+        }
+        return new IndexStatistics(entryCount, distinctCounts, boundaries);
+    }
+
+    // Static initializers
+
+    /**
+     * Create a statistics collector for the entries of an index within a given {@link FDBRecordStore}.
+     *
+     * @param store a store with the given index
+     * @param indexName the name of the index to collect statistics on
+     * @return a statistics collector of the given index
+     */
+    @Nonnull
+    public static IndexStatisticsCollector ofIndex(@Nonnull FDBRecordStore store, @Nonnull String indexName) {
+        return ofIndex(store, store.getRecordMetaData().getIndex(indexName));
+    }
+
+    /**
+     * Create a statistics collector for the entries of an index within a given {@link FDBRecordStore}.
+     *
+     * @param store a store with the given index
+     * @param index the index to collect statistics on
+     * @return a statistics collector of the given index
+     */
+    @Nonnull
+    public static IndexStatisticsCollector ofIndex(@Nonnull FDBRecordStore store, @Nonnull Index index) {
+        return ofIndex(store, index, DEFAULT_HISTOGRAM_BOUNDARIES);
+    }
+
+    /**
+     * Create a statistics collector for the entries of an index within a given {@link FDBRecordStore}.
+     *
+     * @param store a store with the given index
+     * @param index the index to collect statistics on
+     * @param histogramBoundaries the number of boundaries in the histogram of the first column
+     * @return a statistics collector of the given index
+     */
+    @Nonnull
+    public static IndexStatisticsCollector ofIndex(@Nonnull FDBRecordStore store, @Nonnull Index index, int histogramBoundaries) {
+        return new IndexStatisticsCollector(index, store.indexSubspace(index), histogramBoundaries);
+    }
+}
@@ -30,6 +30,7 @@ import com.apple.foundationdb.async.AsyncIterator;
 import com.apple.foundationdb.async.MoreAsyncUtil;
 import com.apple.foundationdb.record.CursorStreamingMode;
 import com.apple.foundationdb.record.EndpointType;
+import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.KeyRange;
 import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.RecordCursorContinuation;
@@ -56,6 +57,11 @@ import java.util.concurrent.Executor;
  */
 @API(API.Status.MAINTAINED)
 public class KeyValueCursor implements BaseCursor<KeyValue> {
+    /**
+     * The default number of chunks to read ahead of the one being consumed in {@link CursorStreamingMode#READ_AHEAD} mode.
+     */
+    public static final int DEFAULT_READ_AHEAD_CHUNKS = ExecuteProperties.DEFAULT_READ_AHEAD_CHUNKS;
+
     @Nullable
     private final FDBRecordContext context;
     private final int prefixLength;
@@ -78,7 +84,8 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
                            @Nonnull EndpointType lowEndpoint,
                            @Nonnull EndpointType highEndpoint,
                            @Nullable byte[] continuation,
-                           @Nonnull ScanProperties scanProperties) {
+                           @Nonnull ScanProperties scanProperties,
+                           int readAheadChunks) {
         this.context = recordContext;
 
         // Handle the continuation and then turn the endpoints into one byte array on the
@@ -123,19 +130,22 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
         final int limit = scanProperties.getExecuteProperties().getReturnedRowLimit();
         this.limitRemaining = scanProperties.getExecuteProperties().getReturnedRowLimitOrMax();
 
-        final StreamingMode streamingMode;
-        if (scanProperties.getCursorStreamingMode() == CursorStreamingMode.ITERATOR) {
-            streamingMode = StreamingMode.ITERATOR;
-        } else if (limit == ReadTransaction.ROW_LIMIT_UNLIMITED) {
-            streamingMode = StreamingMode.WANT_ALL;
+        final long startTime = System.nanoTime();
+        final ReadTransaction transaction = context.readTransaction(scanProperties.getExecuteProperties().getIsolationLevel().isSnapshot());
+        if (scanProperties.getCursorStreamingMode() == CursorStreamingMode.READ_AHEAD) {
+            this.iter = new ReadAheadRangeIterator(transaction, begin, end, limit, reverse, readAheadChunks,
+                    context.getTimer(), context.getExecutor());
         } else {
-            streamingMode = StreamingMode.EXACT;
+            final StreamingMode streamingMode;
+            if (scanProperties.getCursorStreamingMode() == CursorStreamingMode.ITERATOR) {
+                streamingMode = StreamingMode.ITERATOR;
+            } else if (limit == ReadTransaction.ROW_LIMIT_UNLIMITED) {
+                streamingMode = StreamingMode.WANT_ALL;
+            } else {
+                streamingMode = StreamingMode.EXACT;
+            }
+            this.iter = transaction.getRange(begin, end, limit, reverse, streamingMode).iterator();
         }
-
-        final long startTime = System.nanoTime();
-        this.iter = context.readTransaction(scanProperties.getExecuteProperties().getIsolationLevel().isSnapshot())
-                .getRange(begin, end, limit, reverse, streamingMode)
-                .iterator();
         if (context.getTimer() != null) {
             context.getTimer().instrument(FDBStoreTimer.DetailEvents.GET_SCAN_RANGE_RAW_FIRST_CHUNK, iter.onHasNext(),
                     context.getExecutor(), startTime);
@@ -149,6 +159,7 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
             return iter.onHasNext().thenApply(hasNext -> {
                 if (hasNext) {
                     KeyValue kv = iter.next();
+                    limitManager.reportScannedBytes((long)kv.getKey().length + kv.getValue().length);
                     if (context != null) {
                         context.increment(FDBStoreTimer.Counts.LOAD_SCAN_ENTRY);
                         context.increment(FDBStoreTimer.Counts.LOAD_KEY_VALUE);
@@ -285,6 +296,8 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
         private byte[] highBytes = null;
         private EndpointType lowEndpoint = null;
         private EndpointType highEndpoint = null;
+        @Nullable
+        private Integer readAheadChunks = null;
 
         private Builder(@Nonnull Subspace subspace) {
             this.subspace = subspace;
@@ -309,7 +322,8 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
             }
 
             return new KeyValueCursor(context, subspace, lowBytes, highBytes, lowEndpoint, highEndpoint,
-                    continuation, scanProperties);
+                    continuation, scanProperties,
+                    readAheadChunks != null ? readAheadChunks : scanProperties.getExecuteProperties().getReadAheadChunks());
         }
 
         public Builder setContext(FDBRecordContext context) {
@@ -328,6 +342,18 @@ public class KeyValueCursor implements BaseCursor<KeyValue> {
             return this;
         }
 
+        /**
+         * Set how many chunks of the range to read ahead of the one being consumed, when the scan properties'
+         * streaming mode is {@link CursorStreamingMode#READ_AHEAD}. By default, this is taken from
+         * {@link ExecuteProperties#getReadAheadChunks()}.
+         * @param readAheadChunks the number of chunks to keep read or being read ahead
+         * @return this builder
+         */
+        public Builder setReadAheadChunks(int readAheadChunks) {
+            this.readAheadChunks = readAheadChunks;
+            return this;
+        }
+
         public Builder setRange(@Nonnull KeyRange range) {
             setLow(range.getLowKey(), range.getLowEndpoint());
             setHigh(range.getHighKey(), range.getHighEndpoint());
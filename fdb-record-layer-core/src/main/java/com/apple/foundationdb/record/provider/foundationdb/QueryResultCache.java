@@ -0,0 +1,484 @@
+/*
+ * QueryResultCache.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.Bindings;
+import com.apple.foundationdb.record.ByteArrayContinuation;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.RecordCursorVisitor;
+import com.apple.foundationdb.record.cursors.IllegalContinuationAccessChecker;
+import com.apple.foundationdb.record.cursors.LazyCursor;
+import com.apple.foundationdb.record.provider.common.DynamicMessageRecordSerializer;
+import com.apple.foundationdb.record.provider.common.LazyDynamicMessageRecordSerializer;
+import com.apple.foundationdb.record.provider.common.RecordSerializer;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A cache of pages of query results, for queries that are run repeatedly against data that changes much less often.
+ *
+ * When set on an {@link FDBDatabase}, every query run by {@link FDBRecordStoreBase#executeQuery} against a store that
+ * maintains a last write marker, that is, one with a format version of at least
+ * {@link FDBRecordStore#LAST_WRITE_MARKER_FORMAT_VERSION}, is looked up by its plan, parameter bindings, continuation,
+ * skip and row limit, along with the store's subspace. A cached page is only returned if the store's
+ * {@linkplain FDBRecordStore#loadLastWriteMarkerAsync last write marker} is the same as when the page was read, so
+ * that no records can have changed in between. Checking this costs a single read, in place of however many the query
+ * itself would have needed. Otherwise, the query is executed and its results are remembered as they are returned.
+ *
+ * Only pages that end in-band, because the source was exhausted or the row limit was reached, and that have no more
+ * than a maximum number of rows are cached. A page is returned with the same continuations as when it was read, so
+ * a later page can be read from the cache or from the database alike.
+ *
+ * Queries are not cached in a transaction that has already changed the store, since it sees its own changes, or when
+ * a {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanProfile} is being collected.
+ *
+ * Since the store's serializer determines the type of records returned, it is part of the key, too. So only stores
+ * whose serializer compares by value are cached: the shared {@link DynamicMessageRecordSerializer#instance()} or a
+ * {@link LazyDynamicMessageRecordSerializer}. Queries against stores with any other serializer, which is likely to
+ * be a new instance for every store opened, always execute.
+ *
+ * @see FDBDatabase#setQueryResultCache
+ */
+@API(API.Status.EXPERIMENTAL)
+public class QueryResultCache {
+    /**
+     * The default maximum number of pages to cache.
+     */
+    public static final long DEFAULT_MAX_ENTRIES = 1000;
+    /**
+     * The default maximum number of rows in a cached page.
+     */
+    public static final int DEFAULT_MAX_ROWS_PER_ENTRY = 100;
+
+    @Nonnull
+    private final Cache<Key, Page> pages;
+    private final int maxRowsPerEntry;
+
+    /**
+     * Create a cache with the default size limits.
+     */
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ROWS_PER_ENTRY);
+    }
+
+    /**
+     * Create a cache.
+     * @param maxEntries the maximum number of pages to cache, after which the least recently used are evicted
+     * @param maxRowsPerEntry the maximum number of rows in a page for it to be cached
+     */
+    public QueryResultCache(long maxEntries, int maxRowsPerEntry) {
+        if (maxEntries < 0) {
+            throw new RecordCoreArgumentException("Query result cache size cannot be negative");
+        }
+        if (maxRowsPerEntry < 0) {
+            throw new RecordCoreArgumentException("Query result cache rows per entry cannot be negative");
+        }
+        this.pages = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        this.maxRowsPerEntry = maxRowsPerEntry;
+    }
+
+    public int getMaxRowsPerEntry() {
+        return maxRowsPerEntry;
+    }
+
+    /**
+     * Get the number of pages currently cached.
+     * @return the approximate number of cached pages
+     */
+    public long size() {
+        return pages.size();
+    }
+
+    /**
+     * Remove all cached pages.
+     */
+    public void clear() {
+        pages.invalidateAll();
+    }
+
+    /**
+     * Execute a plan, returning a cached page of results if it is still current.
+     * @param store the record store against which to execute
+     * @param plan the plan to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param uncached a function that executes the plan against the store, if it is not cached
+     * @param <M> type used to represent stored records
+     * @return a cursor over the results of the plan
+     */
+    @Nonnull
+    public <M extends Message> RecordCursor<FDBQueriedRecord<M>> execute(@Nonnull FDBRecordStoreBase<M> store,
+                                                                         @Nonnull RecordQueryPlan plan,
+                                                                         @Nonnull EvaluationContext context,
+                                                                         @Nullable byte[] continuation,
+                                                                         @Nonnull ExecuteProperties executeProperties,
+                                                                         @Nonnull Supplier<RecordCursor<FDBQueriedRecord<M>>> uncached) {
+        final FDBRecordStore untypedStore = store.getUntypedRecordStore();
+        if (context.getProfile() != null || untypedStore.getFormatVersion() < FDBRecordStore.LAST_WRITE_MARKER_FORMAT_VERSION ||
+                untypedStore.hasPendingLastWrite() || !isCacheable(store.getSerializer())) {
+            return uncached.get();
+        }
+        final Key key = new Key(store, plan, context.getBindings(), continuation, executeProperties);
+        final CompletableFuture<RecordCursor<FDBQueriedRecord<M>>> cursorFuture = untypedStore.loadLastWriteMarkerAsync(executeProperties.getIsolationLevel())
+                .thenApply(marker -> {
+                    if (marker == null) {
+                        return uncached.get();
+                    }
+                    final Page page = pages.getIfPresent(key);
+                    if (page != null && page.marker.equals(marker)) {
+                        if (store.getTimer() != null) {
+                            store.getTimer().increment(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT);
+                        }
+                        return new PageCursor<>(store.getExecutor(), page.getResults());
+                    }
+                    if (store.getTimer() != null) {
+                        store.getTimer().increment(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_MISS);
+                    }
+                    return new RecordingCursor<>(uncached.get(), maxRowsPerEntry, results -> {
+                        // A change made while the page was being read might or might not be in it.
+                        if (!untypedStore.hasPendingLastWrite()) {
+                            pages.put(key, new Page(marker, results));
+                        }
+                    });
+                });
+        return new LazyCursor<>(cursorFuture, store.getExecutor());
+    }
+
+    // Any other serializer would make a key that is equal to nothing but itself, so that entries would never be reused.
+    private static boolean isCacheable(@Nonnull RecordSerializer<?> serializer) {
+        return serializer == DynamicMessageRecordSerializer.instance() || serializer instanceof LazyDynamicMessageRecordSerializer;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResultCache(" + pages.size() + " pages)";
+    }
+
+    private static class Key {
+        @Nonnull
+        private final byte[] subspace;
+        @Nonnull
+        private final RecordSerializer<?> serializer;
+        @Nonnull
+        private final RecordQueryPlan plan;
+        @Nonnull
+        private final Map<String, Object> bindings;
+        @Nullable
+        private final byte[] continuation;
+        private final int skip;
+        private final int returnedRowLimit;
+
+        Key(@Nonnull FDBRecordStoreBase<?> store, @Nonnull RecordQueryPlan plan, @Nonnull Bindings bindings,
+            @Nullable byte[] continuation, @Nonnull ExecuteProperties executeProperties) {
+            this.subspace = store.getUntypedRecordStore().getSubspace().getKey();
+            // The serializer determines the type of the records returned.
+            this.serializer = store.getSerializer();
+            this.plan = plan;
+            this.bindings = new HashMap<>();
+            for (String name : bindings.getNames()) {
+                this.bindings.put(name, normalizeBinding(bindings.get(name)));
+            }
+            // The caller is free to reuse its array.
+            this.continuation = continuation == null ? null : continuation.clone();
+            this.skip = executeProperties.getSkip();
+            this.returnedRowLimit = executeProperties.getReturnedRowLimit();
+        }
+
+        // Byte arrays compare by identity, so use something that compares by contents instead.
+        @Nullable
+        private static Object normalizeBinding(@Nullable Object value) {
+            if (value instanceof byte[]) {
+                return ByteString.copyFrom((byte[])value);
+            } else if (value instanceof List) {
+                final List<Object> normalized = new ArrayList<>(((List<?>)value).size());
+                for (Object element : (List<?>)value) {
+                    normalized.add(normalizeBinding(element));
+                }
+                return normalized;
+            } else {
+                return value;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key)o;
+            return skip == key.skip &&
+                   returnedRowLimit == key.returnedRowLimit &&
+                   Arrays.equals(subspace, key.subspace) &&
+                   serializer.equals(key.serializer) &&
+                   plan.equals(key.plan) &&
+                   bindings.equals(key.bindings) &&
+                   Arrays.equals(continuation, key.continuation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(subspace), serializer, plan.planHash(), bindings, Arrays.hashCode(continuation), skip, returnedRowLimit);
+        }
+    }
+
+    private static class Page {
+        @Nonnull
+        private final FDBRecordVersion marker;
+        @Nonnull
+        private final List<RecordCursorResult<?>> results;
+
+        Page(@Nonnull FDBRecordVersion marker, @Nonnull List<RecordCursorResult<?>> results) {
+            this.marker = marker;
+            this.results = results;
+        }
+
+        // The key includes the store's serializer, so the results have the type of records requested.
+        @Nonnull
+        @SuppressWarnings("unchecked")
+        <T> List<RecordCursorResult<T>> getResults() {
+            return (List<RecordCursorResult<T>>)(List<?>)results;
+        }
+    }
+
+    /**
+     * A cursor that returns the results of another cursor, remembering them if it reaches the end of a page in-band.
+     * @param <T> the type of elements of the cursor
+     */
+    private static class RecordingCursor<T> implements RecordCursor<T> {
+        @Nonnull
+        private final RecordCursor<T> inner;
+        private final int maxRows;
+        @Nonnull
+        private final Consumer<List<RecordCursorResult<?>>> onPage;
+        @Nullable
+        private List<RecordCursorResult<?>> results;
+
+        @Nullable
+        private CompletableFuture<Boolean> hasNextFuture;
+        @Nullable
+        private RecordCursorResult<T> nextResult;
+        // for detecting incorrect cursor usage
+        private boolean mayGetContinuation = false;
+
+        RecordingCursor(@Nonnull RecordCursor<T> inner, int maxRows, @Nonnull Consumer<List<RecordCursorResult<?>>> onPage) {
+            this.inner = inner;
+            this.maxRows = maxRows;
+            this.onPage = onPage;
+            this.results = new ArrayList<>();
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<RecordCursorResult<T>> onNext() {
+            mayGetContinuation = false;
+            return inner.onNext().thenApply(result -> {
+                record(result);
+                mayGetContinuation = !result.hasNext();
+                nextResult = result;
+                return result;
+            });
+        }
+
+        private void record(@Nonnull RecordCursorResult<T> result) {
+            if (results == null) {
+                return;
+            }
+            // Keep only the serialized continuation, rather than whatever cursor state the original refers to.
+            final byte[] continuation = result.getContinuation().toBytes();
+            if (result.hasNext()) {
+                if (results.size() >= maxRows) {
+                    results = null;
+                    return;
+                }
+                results.add(RecordCursorResult.withNextValue(result.get(), ByteArrayContinuation.fromNullable(continuation)));
+            } else {
+                final List<RecordCursorResult<?>> page = results;
+                results = null;
+                if (!result.getNoNextReason().isOutOfBand()) {
+                    page.add(RecordCursorResult.withoutNextValue(ByteArrayContinuation.fromNullable(continuation), result.getNoNextReason()));
+                    onPage.accept(page);
+                }
+            }
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<Boolean> onHasNext() {
+            if (hasNextFuture == null) {
+                hasNextFuture = onNext().thenApply(RecordCursorResult::hasNext);
+            }
+            return hasNextFuture;
+        }
+
+        @Nullable
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNextFuture = null;
+            mayGetContinuation = true;
+            return nextResult.get();
+        }
+
+        @Nullable
+        @Override
+        public byte[] getContinuation() {
+            IllegalContinuationAccessChecker.check(mayGetContinuation);
+            return nextResult.getContinuation().toBytes();
+        }
+
+        @Override
+        public NoNextReason getNoNextReason() {
+            return nextResult.getNoNextReason();
+        }
+
+        @Override
+        public void close() {
+            results = null;
+            inner.close();
+        }
+
+        @Nonnull
+        @Override
+        public Executor getExecutor() {
+            return inner.getExecutor();
+        }
+
+        @Override
+        public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+            if (visitor.visitEnter(this)) {
+                inner.accept(visitor);
+            }
+            return visitor.visitLeave(this);
+        }
+    }
+
+    /**
+     * A cursor that returns a cached page of results, ending as the original did.
+     * @param <T> the type of elements of the cursor
+     */
+    private static class PageCursor<T> implements RecordCursor<T> {
+        @Nonnull
+        private final Executor executor;
+        @Nonnull
+        private final List<RecordCursorResult<T>> results;
+        private int nextPosition;
+
+        @Nullable
+        private CompletableFuture<Boolean> hasNextFuture;
+        @Nullable
+        private RecordCursorResult<T> nextResult;
+        // for detecting incorrect cursor usage
+        private boolean mayGetContinuation = false;
+
+        PageCursor(@Nonnull Executor executor, @Nonnull List<RecordCursorResult<T>> results) {
+            this.executor = executor;
+            this.results = results;
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<RecordCursorResult<T>> onNext() {
+            nextResult = results.get(nextPosition);
+            if (nextResult.hasNext()) {
+                nextPosition++;
+            }
+            mayGetContinuation = !nextResult.hasNext();
+            return CompletableFuture.completedFuture(nextResult);
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<Boolean> onHasNext() {
+            if (hasNextFuture == null) {
+                hasNextFuture = onNext().thenApply(RecordCursorResult::hasNext);
+            }
+            return hasNextFuture;
+        }
+
+        @Nullable
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNextFuture = null;
+            mayGetContinuation = true;
+            return nextResult.get();
+        }
+
+        @Nullable
+        @Override
+        public byte[] getContinuation() {
+            IllegalContinuationAccessChecker.check(mayGetContinuation);
+            return nextResult.getContinuation().toBytes();
+        }
+
+        @Override
+        public NoNextReason getNoNextReason() {
+            return nextResult.getNoNextReason();
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close.
+        }
+
+        @Nonnull
+        @Override
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+            visitor.visitEnter(this);
+            return visitor.visitLeave(this);
+        }
+    }
+}
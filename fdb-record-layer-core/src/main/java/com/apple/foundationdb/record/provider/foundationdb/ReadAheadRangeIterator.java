@@ -0,0 +1,249 @@
+/*
+ * ReadAheadRangeIterator.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.KeySelector;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.StreamingMode;
+import com.apple.foundationdb.async.AsyncIterator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * An iterator over a range of key-values that reads the range in chunks, fetching later chunks before they are needed.
+ *
+ * A chunk's range starts after the last key of the one before, so only one read is outstanding at a time. Nothing is
+ * read until the consumer first asks whether there is an element, and then only the first chunk. Once the consumer takes
+ * an element from a chunk, later chunks are read, each as soon as the one before it arrives, up to the given number of
+ * chunks ahead of the one being consumed. This keeps the consumer from stalling at each chunk boundary when it does
+ * slow per-element work, such as loading records for index entries.
+ *
+ * The chunks read ahead are read in the transaction like any other, so, unless the scan is at snapshot isolation, they
+ * add read conflict ranges even for rows that the consumer never gets to, such as when it stops early. That is the
+ * price of reading ahead, and it is bounded by the number of chunks ahead and the current chunk size.
+ *
+ * Each chunk is read with {@link StreamingMode#EXACT} and a row limit, which is adjusted to the rate of consumption:
+ * it is doubled whenever the consumer has to wait for a chunk, and halved when the read-ahead chunks are all ready before
+ * the consumer needs them.
+ */
+class ReadAheadRangeIterator implements AsyncIterator<KeyValue> {
+    static final int MIN_CHUNK_ROWS = 10;
+    static final int MAX_CHUNK_ROWS = 10000;
+
+    @Nonnull
+    private final ChunkReader reader;
+    private final boolean reverse;
+    private final int readAheadChunks;
+    @Nullable
+    private final FDBStoreTimer timer;
+    @Nonnull
+    private final Executor executor;
+    // Chunks that have been read or are being read, in order.
+    @Nonnull
+    private final Deque<CompletableFuture<Chunk>> chunks = new ArrayDeque<>();
+    // The last chunk requested, from which the one after it follows.
+    @Nonnull
+    private CompletableFuture<Chunk> lastChunk;
+    private int chunkRows;
+
+    @Nonnull
+    private List<KeyValue> current = Collections.emptyList();
+    private int index;
+    private boolean exhausted;
+    @Nullable
+    private CompletableFuture<Boolean> nextFuture;
+
+    /**
+     * Read part of a range.
+     */
+    @FunctionalInterface
+    interface ChunkReader {
+        CompletableFuture<List<KeyValue>> read(@Nonnull KeySelector begin, @Nonnull KeySelector end, int limit, boolean reverse);
+    }
+
+    // One chunk of the range, with what is needed to read the next one.
+    private static class Chunk {
+        @Nonnull
+        private final List<KeyValue> keyValues;
+        @Nonnull
+        private final KeySelector begin;
+        @Nonnull
+        private final KeySelector end;
+        private final int rowsRemaining;
+        private final boolean more;
+
+        Chunk(@Nonnull List<KeyValue> keyValues, @Nonnull KeySelector begin, @Nonnull KeySelector end, int rowsRemaining, boolean more) {
+            this.keyValues = keyValues;
+            this.begin = begin;
+            this.end = end;
+            this.rowsRemaining = rowsRemaining;
+            this.more = more;
+        }
+    }
+
+    ReadAheadRangeIterator(@Nonnull ReadTransaction transaction, @Nonnull KeySelector begin, @Nonnull KeySelector end,
+                           int limit, boolean reverse, int readAheadChunks,
+                           @Nullable FDBStoreTimer timer, @Nonnull Executor executor) {
+        this((chunkBegin, chunkEnd, chunkLimit, chunkReverse) ->
+                transaction.getRange(chunkBegin, chunkEnd, chunkLimit, chunkReverse, StreamingMode.EXACT).asList(),
+                begin, end, limit, reverse, readAheadChunks, timer, executor);
+    }
+
+    ReadAheadRangeIterator(@Nonnull ChunkReader reader, @Nonnull KeySelector begin, @Nonnull KeySelector end,
+                           int limit, boolean reverse, int readAheadChunks,
+                           @Nullable FDBStoreTimer timer, @Nonnull Executor executor) {
+        this.reader = reader;
+        this.reverse = reverse;
+        this.readAheadChunks = Math.max(1, readAheadChunks);
+        this.timer = timer;
+        this.executor = executor;
+        final int rowLimit = limit == ReadTransaction.ROW_LIMIT_UNLIMITED ? Integer.MAX_VALUE : limit;
+        this.chunkRows = Math.min(rowLimit, MIN_CHUNK_ROWS);
+        // A dummy chunk ending where the range begins, so that the first real one is read like any other.
+        this.lastChunk = CompletableFuture.completedFuture(new Chunk(Collections.emptyList(), begin, end, rowLimit, rowLimit > 0));
+    }
+
+    private void requestChunk() {
+        final int rows = chunkRows;
+        lastChunk = lastChunk.thenCompose(previous -> {
+            if (!previous.more) {
+                return CompletableFuture.completedFuture(new Chunk(Collections.emptyList(), previous.begin, previous.end, 0, false));
+            }
+            return readAfter(previous, Math.min(rows, previous.rowsRemaining));
+        });
+        chunks.addLast(lastChunk);
+    }
+
+    @Nonnull
+    private CompletableFuture<Chunk> readAfter(@Nonnull Chunk previous, int rows) {
+        KeySelector begin = previous.begin;
+        KeySelector end = previous.end;
+        if (!previous.keyValues.isEmpty()) {
+            final byte[] lastKey = previous.keyValues.get(previous.keyValues.size() - 1).getKey();
+            if (reverse) {
+                end = KeySelector.firstGreaterOrEqual(lastKey);
+            } else {
+                begin = KeySelector.firstGreaterThan(lastKey);
+            }
+        }
+        final KeySelector chunkBegin = begin;
+        final KeySelector chunkEnd = end;
+        final long startTime = System.nanoTime();
+        CompletableFuture<List<KeyValue>> read = reader.read(chunkBegin, chunkEnd, rows, reverse);
+        if (timer != null) {
+            read = timer.instrument(FDBStoreTimer.DetailEvents.GET_SCAN_RANGE_RAW_READ_AHEAD_CHUNK, read, executor, startTime);
+        }
+        return read.thenApply(keyValues -> {
+            final int rowsRemaining = previous.rowsRemaining - keyValues.size();
+            // An exact read only returns fewer rows than asked for at the end of the range.
+            return new Chunk(keyValues, chunkBegin, chunkEnd, rowsRemaining, keyValues.size() >= rows && rowsRemaining > 0);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> onHasNext() {
+        if (index < current.size()) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (exhausted) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (nextFuture == null) {
+            nextFuture = advance();
+        }
+        return nextFuture;
+    }
+
+    @Nonnull
+    private CompletableFuture<Boolean> advance() {
+        if (chunks.isEmpty()) {
+            requestChunk();
+        }
+        final CompletableFuture<Chunk> chunk = chunks.removeFirst();
+        adjustChunkRows(chunk.isDone());
+        return chunk.thenCompose(nextChunk -> {
+            current = nextChunk.keyValues;
+            index = 0;
+            if (!current.isEmpty()) {
+                return CompletableFuture.completedFuture(true);
+            } else if (!nextChunk.more) {
+                exhausted = true;
+                return CompletableFuture.completedFuture(false);
+            } else {
+                return advance();
+            }
+        });
+    }
+
+    private void adjustChunkRows(boolean ready) {
+        if (!ready) {
+            // The consumer is faster than the reads: read more at a time.
+            chunkRows = Math.min(chunkRows * 2, MAX_CHUNK_ROWS);
+            if (timer != null) {
+                timer.increment(FDBStoreTimer.Counts.READ_AHEAD_WAITS);
+            }
+        } else if (!chunks.isEmpty() && chunks.peekLast().isDone() && chunkRows > MIN_CHUNK_ROWS) {
+            // Everything read ahead is waiting on the consumer: keep less in memory.
+            chunkRows = Math.max(chunkRows / 2, MIN_CHUNK_ROWS);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return onHasNext().join();
+    }
+
+    @Override
+    public KeyValue next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        nextFuture = null;
+        if (index == 0) {
+            // The consumer has started on this chunk, so it is likely to want the ones after it.
+            while (chunks.size() < readAheadChunks) {
+                requestChunk();
+            }
+        }
+        return current.get(index++);
+    }
+
+    @Override
+    public void cancel() {
+        for (CompletableFuture<Chunk> chunk : chunks) {
+            chunk.cancel(false);
+        }
+        chunks.clear();
+        lastChunk.cancel(false);
+        if (nextFuture != null) {
+            nextFuture.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * SlowQueryLog.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.Bindings;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.logging.KeyValueLogMessage;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanProfile;
+import com.google.protobuf.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records queries that take longer than some threshold to plan and execute.
+ *
+ * When set on an {@link FDBDatabase}, every query run by {@link FDBRecordStoreBase#executeQuery} against a store opened
+ * in that database is timed, from the start of planning, if it was given a query rather than a plan, until its cursor
+ * is exhausted or closed. A query that took at least the threshold is passed to a {@link Sink}, which by default logs
+ * it as a {@link KeyValueLogMessage}. The entry identifies the query by its plan's {@link RecordQueryPlan#planHash()},
+ * which is the same for every execution of the same query, whatever its parameter values, and gives the names and
+ * types of its parameters, but not their values.
+ *
+ * Only a fraction of queries, given by the sample rate, are timed at all. Those that are not cost no more than
+ * choosing not to time them.
+ *
+ * @see FDBDatabaseFactory#setSlowQueryLog
+ */
+@API(API.Status.EXPERIMENTAL)
+public class SlowQueryLog {
+    @Nonnull
+    private static final Logger LOGGER = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    @Nonnull
+    private final Sink sink;
+
+    /**
+     * Create a log of every query that takes at least the given time, which logs them as warnings.
+     * @param threshold the least time for a query to be logged
+     * @param unit the unit of {@code threshold}
+     */
+    public SlowQueryLog(long threshold, @Nonnull TimeUnit unit) {
+        this(threshold, unit, 1.0, SlowQueryLog::logEntry);
+    }
+
+    /**
+     * Create a log of queries that take at least the given time.
+     * @param threshold the least time for a query to be recorded
+     * @param unit the unit of {@code threshold}
+     * @param sampleRate the fraction of queries to time, from {@code 0.0} for none to {@code 1.0} for all of them
+     * @param sink where to record slow queries
+     */
+    public SlowQueryLog(long threshold, @Nonnull TimeUnit unit, double sampleRate, @Nonnull Sink sink) {
+        if (threshold < 0) {
+            throw new RecordCoreArgumentException("Slow query threshold cannot be negative");
+        }
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new RecordCoreArgumentException("Slow query sample rate must be between 0 and 1");
+        }
+        this.thresholdNanos = unit.toNanos(threshold);
+        this.sampleRate = sampleRate;
+        this.sink = sink;
+    }
+
+    public long getThreshold(@Nonnull TimeUnit unit) {
+        return unit.convert(thresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @Nonnull
+    public Sink getSink() {
+        return sink;
+    }
+
+    /**
+     * Execute a plan, recording it if it is sampled and turns out to be slow.
+     * @param store the record store against which to execute
+     * @param plan the plan to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param planningTimeNanos the time already spent planning the query, if any
+     * @param <M> type used to represent stored records
+     * @return a cursor over the results of the plan
+     */
+    @Nonnull
+    public <M extends Message> RecordCursor<FDBQueriedRecord<M>> execute(@Nonnull FDBRecordStoreBase<M> store,
+                                                                         @Nonnull RecordQueryPlan plan,
+                                                                         @Nonnull EvaluationContext context,
+                                                                         @Nullable byte[] continuation,
+                                                                         @Nonnull ExecuteProperties executeProperties,
+                                                                         long planningTimeNanos) {
+        if (!isSampled()) {
+            return plan.execute(store, context, continuation, executeProperties);
+        }
+        return RecordQueryPlanProfile.executeMeasured(plan, store, context, continuation, executeProperties, statistics -> {
+            if (planningTimeNanos + statistics.getTotalTimeNanos() >= thresholdNanos) {
+                sink.record(new Entry(store.getSubspaceProvider(), plan, context.getBindings(), planningTimeNanos, statistics));
+            }
+        });
+    }
+
+    private boolean isSampled() {
+        return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private static void logEntry(@Nonnull Entry entry) {
+        if (LOGGER.isWarnEnabled()) {
+            LOGGER.warn(entry.toLogMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog(" + TimeUnit.NANOSECONDS.toMillis(thresholdNanos) + " ms, sample rate " + sampleRate + ")";
+    }
+
+    /**
+     * Where a {@link SlowQueryLog} records slow queries.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * Record a slow query. This is called when the query's cursor is exhausted or closed, in whatever thread that
+         * happens, so it should not block.
+         * @param entry a description of the query
+         */
+        void record(@Nonnull Entry entry);
+    }
+
+    /**
+     * A description of one slow execution of a query.
+     */
+    public static class Entry {
+        @Nonnull
+        private final SubspaceProvider subspaceProvider;
+        private final int planHash;
+        @Nonnull
+        private final String plan;
+        @Nonnull
+        private final String bindingsShape;
+        private final long planningTimeNanos;
+        private final long executionTimeNanos;
+        private final long rowsReturned;
+        private final long keysRead;
+        private final long bytesRead;
+        @Nullable
+        private final RecordCursor.NoNextReason noNextReason;
+
+        Entry(@Nonnull SubspaceProvider subspaceProvider, @Nonnull RecordQueryPlan plan, @Nonnull Bindings bindings,
+              long planningTimeNanos, @Nonnull RecordQueryPlanProfile.OperatorStatistics statistics) {
+            this.subspaceProvider = subspaceProvider;
+            this.planHash = plan.planHash();
+            this.plan = plan.toString();
+            this.bindingsShape = shape(bindings);
+            this.planningTimeNanos = planningTimeNanos;
+            this.executionTimeNanos = statistics.getTotalTimeNanos();
+            this.rowsReturned = statistics.getRowsOut();
+            this.keysRead = statistics.getKeysRead();
+            this.bytesRead = statistics.getBytesRead();
+            this.noNextReason = statistics.getNoNextReason();
+        }
+
+        // The name and type of each parameter, with the size of lists, which affects the plan of IN queries.
+        @Nonnull
+        private static String shape(@Nonnull Bindings bindings) {
+            final StringBuilder str = new StringBuilder("{");
+            for (String name : bindings.getNames()) {
+                if (str.length() > 1) {
+                    str.append(", ");
+                }
+                final Object value = bindings.get(name);
+                str.append(name).append(": ");
+                if (value == null) {
+                    str.append("null");
+                } else {
+                    str.append(value.getClass().getSimpleName());
+                    if (value instanceof Collection) {
+                        str.append('[').append(((Collection<?>)value).size()).append(']');
+                    }
+                }
+            }
+            return str.append('}').toString();
+        }
+
+        /**
+         * Get the subspace provider of the record store against which the query was executed.
+         * @return the subspace provider of the store
+         */
+        @Nonnull
+        public SubspaceProvider getSubspaceProvider() {
+            return subspaceProvider;
+        }
+
+        /**
+         * Get the hash of the query's plan, which identifies the query independent of its parameter values.
+         * @return the plan hash
+         * @see RecordQueryPlan#planHash()
+         */
+        public int getPlanHash() {
+            return planHash;
+        }
+
+        /**
+         * Get the query's plan as a string.
+         * @return the plan
+         */
+        @Nonnull
+        public String getPlan() {
+            return plan;
+        }
+
+        /**
+         * Get the names and types of the query's parameters.
+         * @return a description of the parameter bindings without their values
+         */
+        @Nonnull
+        public String getBindingsShape() {
+            return bindingsShape;
+        }
+
+        /**
+         * Get the time spent planning the query, which is zero if it was executed from an existing plan.
+         * @return the planning time in nanoseconds
+         */
+        public long getPlanningTimeNanos() {
+            return planningTimeNanos;
+        }
+
+        /**
+         * Get the time from when the query's cursor was opened until it was exhausted or closed.
+         * @return the execution time in nanoseconds
+         */
+        public long getExecutionTimeNanos() {
+            return executionTimeNanos;
+        }
+
+        /**
+         * Get the number of results returned by the query's cursor.
+         * @return the number of rows returned
+         */
+        public long getRowsReturned() {
+            return rowsReturned;
+        }
+
+        /**
+         * Get the number of key-values scanned by the query, as counted against scan limits.
+         * @return the number of key-values scanned
+         */
+        public long getKeysRead() {
+            return keysRead;
+        }
+
+        /**
+         * Get the size of the key-values scanned by the query, as counted against scan limits.
+         * @return the number of bytes scanned
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Get why the query's cursor stopped returning results.
+         * @return the reason or {@code null} if the cursor was closed before it ran out of results
+         */
+        @Nullable
+        public RecordCursor.NoNextReason getNoNextReason() {
+            return noNextReason;
+        }
+
+        /**
+         * Get this entry as a message for logging.
+         * @return a {@link KeyValueLogMessage} with this entry's fields
+         */
+        @Nonnull
+        public String toLogMessage() {
+            return KeyValueLogMessage.of("Slow query",
+                    subspaceProvider.logKey(), subspaceProvider,
+                    LogMessageKeys.PLAN_HASH, planHash,
+                    LogMessageKeys.PLAN, plan,
+                    LogMessageKeys.BINDINGS, bindingsShape,
+                    LogMessageKeys.PLANNING_MICROS, TimeUnit.NANOSECONDS.toMicros(planningTimeNanos),
+                    LogMessageKeys.EXECUTION_MICROS, TimeUnit.NANOSECONDS.toMicros(executionTimeNanos),
+                    LogMessageKeys.ROWS_RETURNED, rowsReturned,
+                    LogMessageKeys.KEYS_READ, keysRead,
+                    LogMessageKeys.BYTES_READ, bytesRead,
+                    LogMessageKeys.NO_NEXT_REASON, noNextReason);
+        }
+
+        @Override
+        public String toString() {
+            return toLogMessage();
+        }
+    }
+}
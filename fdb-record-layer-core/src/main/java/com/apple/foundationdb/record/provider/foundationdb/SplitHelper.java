@@ -45,6 +45,7 @@ import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.ByteArrayUtil;
 import com.apple.foundationdb.tuple.ByteArrayUtil2;
 import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
 import com.apple.foundationdb.record.SpotBugsSuppressWarnings;
 
 import javax.annotation.Nonnull;
@@ -115,6 +116,36 @@ public class SplitHelper {
                                      final boolean splitLongRecords, final boolean omitUnsplitSuffix,
                                      final boolean clearBasedOnPreviousSizeInfo, @Nullable final FDBStoredSizes previousSizeInfo,
                                      @Nullable SizeInfo sizeInfo) {
+        saveWithSplit(context, subspace, key, serialized, version, splitLongRecords, omitUnsplitSuffix,
+                clearBasedOnPreviousSizeInfo, previousSizeInfo, null, sizeInfo);
+    }
+
+    /**
+     * Save serialized representation using multiple keys if necessary, only rewriting those splits that have changed.
+     *
+     * If the new and the old record are both split and <code>previousSerialized</code> is given, then each split of the new
+     * record is compared with the split at the same position in the old record and is only written if its bytes differ.
+     * Splits past the end of the new record are cleared. Otherwise, this behaves the same as
+     * {@link #saveWithSplit(FDBRecordContext, Subspace, Tuple, byte[], FDBRecordVersion, boolean, boolean, boolean, FDBStoredSizes, SizeInfo)}.
+     * @param context write transaction
+     * @param subspace subspace to save in
+     * @param key key within subspace
+     * @param serialized serialized representation
+     * @param version the version to store inline with this record
+     * @param splitLongRecords <code>true</code> if multiple keys should be used; if <code>false</code>, <code>serialized</code> must fit in a single key
+     * @param omitUnsplitSuffix if <code>splitLongRecords</code> is <code>false</code>, then this will omit a suffix added to the end of the key if <code>true</code> for backwards-compatibility reasons
+     * @param clearBasedOnPreviousSizeInfo if <code>splitLongRecords</code>, whether to use <code>previousSizeInfo</code> to determine how much to clear
+     * @param previousSizeInfo if <code>clearBasedOnPreviousSizeInfo</code>, the {@link FDBStoredSizes} for any old record, or <code>null</code> if there was no old record
+     * @param previousSerialized the serialized representation of the old record, as currently stored, or <code>null</code> to rewrite all splits
+     * @param sizeInfo optional size information to populate
+     */
+    @SuppressWarnings("squid:S00107")
+    public static void saveWithSplit(@Nonnull final FDBRecordContext context, @Nonnull final Subspace subspace,
+                                     @Nonnull final Tuple key, @Nonnull final byte[] serialized, @Nullable final FDBRecordVersion version,
+                                     final boolean splitLongRecords, final boolean omitUnsplitSuffix,
+                                     final boolean clearBasedOnPreviousSizeInfo, @Nullable final FDBStoredSizes previousSizeInfo,
+                                     @Nullable final byte[] previousSerialized,
+                                     @Nullable SizeInfo sizeInfo) {
         if (omitUnsplitSuffix && version != null) {
             throw new RecordCoreArgumentException("Cannot include version in-line using old unsplit record format")
                     .addLogInfo(LogMessageKeys.KEY_TUPLE, key)
@@ -127,18 +158,21 @@ public class SplitHelper {
                 throw new RecordCoreException("Record is too long (" + serialized.length +
                                               ") to be stored in a single value; consider split_long_records");
             }
-            writeSplitRecord(context, subspace, key, serialized, clearBasedOnPreviousSizeInfo, previousSizeInfo, sizeInfo);
+            if (previousSerialized != null && clearBasedOnPreviousSizeInfo && canRewriteChangedSplits(previousSizeInfo, previousSerialized)) {
+                writeChangedSplits(context, subspace, key, serialized, previousSizeInfo, previousSerialized, sizeInfo);
+            } else {
+                writeSplitRecord(context, subspace, key, serialized, clearBasedOnPreviousSizeInfo, previousSizeInfo, sizeInfo);
+            }
         } else {
             if (splitLongRecords || previousSizeInfo == null || previousSizeInfo.isVersionedInline()) {
                 clearPreviousSplitRecord(context, subspace, key, clearBasedOnPreviousSizeInfo, previousSizeInfo);
             }
-            final Tuple recordKey;
+            final byte[] keyBytes;
             if (splitLongRecords || !omitUnsplitSuffix) {
-                recordKey = key.add(SplitHelper.UNSPLIT_RECORD);
+                keyBytes = TupleHelpers.pack(subspace.getKey(), key, SplitHelper.UNSPLIT_RECORD);
             } else {
-                recordKey = key;
+                keyBytes = TupleHelpers.pack(subspace.getKey(), key);
             }
-            final byte[] keyBytes = subspace.pack(recordKey);
             tr.set(keyBytes, serialized);
             if (sizeInfo != null) {
                 sizeInfo.set(keyBytes, serialized);
@@ -153,7 +187,8 @@ public class SplitHelper {
                                          final boolean clearBasedOnPreviousSizeInfo, @Nullable final FDBStoredSizes previousSizeInfo,
                                          @Nullable SizeInfo sizeInfo) {
         final Transaction tr = context.ensureActive();
-        final Subspace keySplitSubspace = subspace.subspace(key);
+        // Pack the record's key just once, then each split's key as that prefix followed by the split index.
+        final byte[] keySplitPrefix = TupleHelpers.pack(subspace.getKey(), key);
         clearPreviousSplitRecord(context, subspace, key, clearBasedOnPreviousSizeInfo, previousSizeInfo);
         long index = SplitHelper.START_SPLIT_RECORD;
         int offset = 0;
@@ -162,7 +197,7 @@ public class SplitHelper {
             if (nextOffset > serialized.length) {
                 nextOffset = serialized.length;
             }
-            final byte[] keyBytes = keySplitSubspace.pack(index);
+            final byte[] keyBytes = TupleHelpers.packElement(keySplitPrefix, index);
             final byte[] valueBytes = Arrays.copyOfRange(serialized, offset, nextOffset);
             tr.set(keyBytes, valueBytes);
             if (sizeInfo != null) {
@@ -178,6 +213,82 @@ public class SplitHelper {
         }
     }
 
+    // The old record's splits can only be compared position by position if it was itself split at the same
+    // boundaries, which is checked by comparing the stored key count with the count implied by its length.
+    private static boolean canRewriteChangedSplits(@Nullable final FDBStoredSizes previousSizeInfo, @Nonnull final byte[] previousSerialized) {
+        if (previousSizeInfo == null || !previousSizeInfo.isSplit()) {
+            return false;
+        }
+        final int previousSplits = splitCount(previousSerialized.length);
+        final int previousKeyCount = previousSizeInfo.isVersionedInline() ? previousSplits + 1 : previousSplits;
+        return previousSplits > 1 && previousKeyCount == previousSizeInfo.getKeyCount();
+    }
+
+    private static int splitCount(int length) {
+        return (length + SplitHelper.SPLIT_RECORD_SIZE - 1) / SplitHelper.SPLIT_RECORD_SIZE;
+    }
+
+    private static void writeChangedSplits(@Nonnull final FDBRecordContext context, @Nonnull final Subspace subspace,
+                                           @Nonnull final Tuple key, @Nonnull final byte[] serialized,
+                                           @Nonnull final FDBStoredSizes previousSizeInfo, @Nonnull final byte[] previousSerialized,
+                                           @Nullable SizeInfo sizeInfo) {
+        final Transaction tr = context.ensureActive();
+        final Subspace keySplitSubspace = subspace.subspace(key);
+        final byte[] keySplitPrefix = keySplitSubspace.getKey();
+        final FDBStoreTimer timer = context.getTimer();
+        long index = SplitHelper.START_SPLIT_RECORD;
+        int offset = 0;
+        while (offset < serialized.length) {
+            int nextOffset = offset + SplitHelper.SPLIT_RECORD_SIZE;
+            if (nextOffset > serialized.length) {
+                nextOffset = serialized.length;
+            }
+            final byte[] keyBytes = TupleHelpers.packElement(keySplitPrefix, index);
+            final byte[] valueBytes = Arrays.copyOfRange(serialized, offset, nextOffset);
+            if (splitEquals(previousSerialized, serialized, offset, nextOffset)) {
+                if (timer != null) {
+                    timer.increment(FDBStoreTimer.Counts.SAVE_RECORD_UNCHANGED_SPLIT);
+                    timer.increment(FDBStoreTimer.Counts.SAVE_RECORD_UNCHANGED_SPLIT_BYTES, valueBytes.length);
+                }
+            } else {
+                tr.set(keyBytes, valueBytes);
+            }
+            if (sizeInfo != null) {
+                if (offset == 0) {
+                    sizeInfo.set(keyBytes, valueBytes);
+                    sizeInfo.setSplit(true);
+                } else {
+                    sizeInfo.add(keyBytes, valueBytes);
+                }
+            }
+            index++;
+            offset = nextOffset;
+        }
+        if (splitCount(previousSerialized.length) >= index) {
+            // The old record had more splits than the new one.
+            tr.clear(TupleHelpers.packElement(keySplitPrefix, index), keySplitSubspace.range().end);
+        }
+        if (previousSizeInfo.isVersionedInline()) {
+            // Rewritten (if needed) by writeVersion.
+            tr.clear(TupleHelpers.packElement(keySplitPrefix, RECORD_VERSION));
+        }
+        context.getLocalVersion(key).ifPresent(localVersion -> context.removeVersionMutation(TupleHelpers.packElement(keySplitPrefix, RECORD_VERSION)));
+    }
+
+    // Whether the split of the old record starting at offset is identical to the split of the new record in [offset, end).
+    private static boolean splitEquals(@Nonnull byte[] previous, @Nonnull byte[] current, int offset, int end) {
+        final int length = end - offset;
+        if (Math.min(SplitHelper.SPLIT_RECORD_SIZE, previous.length - offset) != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (previous[offset + i] != current[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static void writeVersion(@Nonnull final FDBRecordContext context, @Nonnull final Subspace subspace, @Nonnull final Tuple key,
                                      @Nullable final FDBRecordVersion version, @Nullable final SizeInfo sizeInfo) {
         if (version == null) {
@@ -187,7 +298,7 @@ public class SplitHelper {
             return;
         }
         final Transaction tr = context.ensureActive();
-        final byte[] keyBytes = subspace.pack(key.add(RECORD_VERSION));
+        final byte[] keyBytes = TupleHelpers.pack(subspace.getKey(), key, RECORD_VERSION);
         final byte[] valueBytes = packVersion(version);
         if (version.isComplete()) {
             tr.set(keyBytes, valueBytes);
@@ -777,6 +888,8 @@ public class SplitHelper {
                     } else {
                         innerNoNextReason = null; // currently, we have a next value
                         limitManager.tryRecordScan();
+                        final KeyValue kv = innerResult.get();
+                        limitManager.reportScannedBytes((long)kv.getKey().length + kv.getValue().length);
                         boolean complete = append(innerResult);
                         return !complete;
                     }
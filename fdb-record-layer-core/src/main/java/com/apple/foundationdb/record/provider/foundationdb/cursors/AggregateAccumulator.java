@@ -0,0 +1,273 @@
+/*
+ * AggregateAccumulator.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.FunctionNames;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Computes the value of an aggregate function from the grouped values of the records in one group.
+ *
+ * The value is a {@link Tuple} of the same form as the value of a {@link com.apple.foundationdb.record.IndexScanType#BY_GROUP}
+ * scan of the corresponding aggregate index, so that a query gets the same results whether it is answered from such
+ * an index or by aggregating records as they are read.
+ *
+ * The partial aggregate can be saved as a {@linkplain #getState state} and {@linkplain #setState restored} into a new
+ * accumulator for the same function, which lets a cursor stop partway through a group and resume it later.
+ */
+@API(API.Status.EXPERIMENTAL)
+public abstract class AggregateAccumulator {
+    /**
+     * Add the grouped values from one index entry's worth of a record to the aggregate.
+     * @param value the grouped values
+     */
+    public abstract void accumulate(@Nonnull Tuple value);
+
+    /**
+     * Get the value of the aggregate over everything accumulated so far.
+     * @return the aggregate value
+     */
+    @Nonnull
+    public abstract Tuple getValue();
+
+    /**
+     * Get the state of this accumulator, from which the same partial aggregate can be {@linkplain #setState restored}.
+     * @return a tuple encoding everything accumulated so far
+     */
+    @Nonnull
+    public abstract Tuple getState();
+
+    /**
+     * Replace the state of this accumulator with one previously returned by {@link #getState} for the same function.
+     * @param state the saved state
+     */
+    public abstract void setState(@Nonnull Tuple state);
+
+    /**
+     * Get whether records can be aggregated for the given function.
+     * @param functionName the name of an aggregate function
+     * @return {@code true} if {@link #forFunction} will return an accumulator for this function
+     */
+    public static boolean isSupported(@Nonnull String functionName) {
+        switch (functionName) {
+            case FunctionNames.COUNT:
+            case FunctionNames.COUNT_NOT_NULL:
+            case FunctionNames.SUM:
+            case FunctionNames.AVG:
+            case FunctionNames.MIN:
+            case FunctionNames.MIN_EVER:
+            case FunctionNames.MAX:
+            case FunctionNames.MAX_EVER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get a new accumulator for the given aggregate function.
+     *
+     * {@code min_ever} and {@code max_ever} are computed the same as {@code min} and {@code max}, since only the
+     * records that currently exist are available. {@code avg}, for which there is no index, gives the mean of the
+     * non-null values as a double, or {@code null} if there are none.
+     * @param functionName the name of an aggregate function
+     * @return a new accumulator with nothing accumulated
+     * @throws RecordCoreArgumentException if the function cannot be computed by aggregating records
+     */
+    @Nonnull
+    public static AggregateAccumulator forFunction(@Nonnull String functionName) {
+        switch (functionName) {
+            case FunctionNames.COUNT:
+                return new Count(false);
+            case FunctionNames.COUNT_NOT_NULL:
+                return new Count(true);
+            case FunctionNames.SUM:
+                return new Sum();
+            case FunctionNames.AVG:
+                return new Avg();
+            case FunctionNames.MIN:
+            case FunctionNames.MIN_EVER:
+                return new Extreme(false);
+            case FunctionNames.MAX:
+            case FunctionNames.MAX_EVER:
+                return new Extreme(true);
+            default:
+                throw new RecordCoreArgumentException("aggregate function cannot be computed from records")
+                        .addLogInfo("function", functionName);
+        }
+    }
+
+    private static boolean hasNull(@Nonnull Tuple value) {
+        for (Object item : value.getItems()) {
+            if (item == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Count extends AggregateAccumulator {
+        private final boolean notNull;
+        private long count;
+
+        Count(boolean notNull) {
+            this.notNull = notNull;
+        }
+
+        @Override
+        public void accumulate(@Nonnull Tuple value) {
+            if (!notNull || !hasNull(value)) {
+                count++;
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getValue() {
+            return Tuple.from(count);
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getState() {
+            return getValue();
+        }
+
+        @Override
+        public void setState(@Nonnull Tuple state) {
+            count = state.getLong(0);
+        }
+    }
+
+    private static class Sum extends AggregateAccumulator {
+        private long sum;
+
+        @Override
+        public void accumulate(@Nonnull Tuple value) {
+            final Number number = (Number)value.get(0);
+            if (number != null) {
+                sum += number.longValue();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getValue() {
+            return Tuple.from(sum);
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getState() {
+            return getValue();
+        }
+
+        @Override
+        public void setState(@Nonnull Tuple state) {
+            sum = state.getLong(0);
+        }
+    }
+
+    private static class Avg extends AggregateAccumulator {
+        private double sum;
+        private long count;
+
+        @Override
+        public void accumulate(@Nonnull Tuple value) {
+            final Number number = (Number)value.get(0);
+            if (number != null) {
+                sum += number.doubleValue();
+                count++;
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getValue() {
+            return count == 0 ? Tuple.from((Object)null) : Tuple.from(sum / count);
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getState() {
+            return Tuple.from(sum, count);
+        }
+
+        @Override
+        public void setState(@Nonnull Tuple state) {
+            sum = state.getDouble(0);
+            count = state.getLong(1);
+        }
+    }
+
+    private static class Extreme extends AggregateAccumulator {
+        private final boolean max;
+        @Nullable
+        private Tuple extreme;
+        private int size;
+
+        Extreme(boolean max) {
+            this.max = max;
+        }
+
+        @Override
+        public void accumulate(@Nonnull Tuple value) {
+            size = value.size();
+            // Like the _long indexes, and unlike the _tuple ones, ignore missing values.
+            if (hasNull(value)) {
+                return;
+            }
+            if (extreme == null || (max ? extreme.compareTo(value) < 0 : extreme.compareTo(value) > 0)) {
+                extreme = value;
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getValue() {
+            if (extreme != null) {
+                return extreme;
+            }
+            Tuple nulls = new Tuple();
+            for (int i = 0; i < size; i++) {
+                nulls = nulls.addObject(null);
+            }
+            return nulls;
+        }
+
+        @Nonnull
+        @Override
+        public Tuple getState() {
+            return Tuple.from(size, extreme);
+        }
+
+        @Override
+        public void setState(@Nonnull Tuple state) {
+            size = (int)state.getLong(0);
+            extreme = state.getNestedTuple(1);
+        }
+    }
+}
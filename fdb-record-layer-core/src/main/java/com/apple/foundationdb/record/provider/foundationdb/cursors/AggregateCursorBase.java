@@ -0,0 +1,250 @@
+/*
+ * AggregateCursorBase.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.record.ByteArrayContinuation;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorContinuation;
+import com.apple.foundationdb.record.RecordCursorProto;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.RecordCursorStartContinuation;
+import com.apple.foundationdb.record.RecordCursorVisitor;
+import com.apple.foundationdb.record.SpotBugsSuppressWarnings;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.tuple.ByteArrayUtil2;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Common code for cursors that aggregate the elements of an inner cursor by group.
+ *
+ * Each inner element is turned into key tuples, as by evaluating the operand of an aggregate function, whose first
+ * {@code groupingCount} columns are the group and the rest the values to aggregate. Each element of the cursor is an
+ * {@link IndexEntry} whose key is a group and whose value is the aggregate over it, the same as from a
+ * {@link com.apple.foundationdb.record.IndexScanType#BY_GROUP} scan of an aggregate index.
+ *
+ * The continuation holds the inner cursor's continuation together with the {@linkplain AggregateAccumulator#getState state}
+ * of any groups that were still being accumulated, so that the aggregation can resume partway through a group.
+ * @param <T> the type of elements of the inner cursor
+ */
+abstract class AggregateCursorBase<T> implements RecordCursor<IndexEntry> {
+    @Nonnull
+    protected final RecordCursor<T> inner;
+    @Nonnull
+    private final Function<T, List<Tuple>> keysFunction;
+    private final int groupingCount;
+    @Nonnull
+    private final Supplier<AggregateAccumulator> accumulatorSupplier;
+    @Nullable
+    private CompletableFuture<Boolean> nextFuture;
+    @Nullable
+    protected RecordCursorResult<IndexEntry> nextResult;
+
+    protected AggregateCursorBase(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, List<Tuple>> keysFunction,
+                                  int groupingCount, @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier) {
+        this.inner = inner;
+        this.keysFunction = keysFunction;
+        this.groupingCount = groupingCount;
+        this.accumulatorSupplier = accumulatorSupplier;
+    }
+
+    @Nonnull
+    protected List<Tuple> getKeys(@Nonnull T element) {
+        return keysFunction.apply(element);
+    }
+
+    @Nonnull
+    protected Tuple getGroup(@Nonnull Tuple key) {
+        return TupleHelpers.subTuple(key, 0, groupingCount);
+    }
+
+    @Nonnull
+    protected Tuple getGrouped(@Nonnull Tuple key) {
+        return TupleHelpers.subTuple(key, groupingCount, key.size());
+    }
+
+    @Nonnull
+    protected AggregateAccumulator newAccumulator() {
+        return accumulatorSupplier.get();
+    }
+
+    @Nonnull
+    protected AggregateAccumulator restoreAccumulator(@Nonnull Tuple state) {
+        final AggregateAccumulator accumulator = accumulatorSupplier.get();
+        accumulator.setState(state);
+        return accumulator;
+    }
+
+    @Nonnull
+    @Override
+    public CompletableFuture<Boolean> onHasNext() {
+        if (nextFuture == null) {
+            nextFuture = onNext().thenApply(RecordCursorResult::hasNext);
+        }
+        return nextFuture;
+    }
+
+    @Nullable
+    @Override
+    public IndexEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        nextFuture = null;
+        return nextResult.get();
+    }
+
+    @Nullable
+    @Override
+    @SpotBugsSuppressWarnings("EI_EXPOSE_REP")
+    public byte[] getContinuation() {
+        return nextResult == null ? null : nextResult.getContinuation().toBytes();
+    }
+
+    @Override
+    public NoNextReason getNoNextReason() {
+        return nextResult.getNoNextReason();
+    }
+
+    @Override
+    public void close() {
+        if (nextFuture != null) {
+            nextFuture.cancel(false);
+            nextFuture = null;
+        }
+        inner.close();
+    }
+
+    @Nonnull
+    @Override
+    public Executor getExecutor() {
+        return inner.getExecutor();
+    }
+
+    @Override
+    public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+        if (visitor.visitEnter(this)) {
+            inner.accept(visitor);
+        }
+        return visitor.visitLeave(this);
+    }
+
+    /**
+     * The continuation of an aggregate cursor.
+     * Each group still to be returned is kept as an {@link IndexEntry} whose value is the accumulator's state.
+     */
+    static class AggregateContinuation implements RecordCursorContinuation {
+        @Nonnull
+        private final RecordCursorContinuation innerContinuation;
+        private final boolean innerExhausted;
+        @Nonnull
+        private final List<IndexEntry> groups;
+        @Nullable
+        private byte[] cachedBytes;
+
+        AggregateContinuation(@Nonnull RecordCursorContinuation innerContinuation, boolean innerExhausted,
+                              @Nonnull List<IndexEntry> groups) {
+            this.innerContinuation = innerContinuation;
+            this.innerExhausted = innerExhausted;
+            this.groups = groups;
+        }
+
+        @Nonnull
+        @SuppressWarnings("PMD.PreserveStackTrace")
+        static AggregateContinuation from(@Nullable byte[] bytes) {
+            if (bytes == null) {
+                return new AggregateContinuation(RecordCursorStartContinuation.START, false, Collections.emptyList());
+            }
+            final RecordCursorProto.AggregateContinuation parsed;
+            try {
+                parsed = RecordCursorProto.AggregateContinuation.parseFrom(bytes);
+            } catch (InvalidProtocolBufferException ex) {
+                throw new RecordCoreException("invalid continuation", ex)
+                        .addLogInfo(LogMessageKeys.RAW_BYTES, ByteArrayUtil2.loggable(bytes));
+            }
+            final List<IndexEntry> groups = new ArrayList<>(parsed.getGroupCount());
+            for (RecordCursorProto.AggregateContinuation.GroupState group : parsed.getGroupList()) {
+                groups.add(new IndexEntry(Tuple.fromBytes(group.getGroup().toByteArray()), Tuple.fromBytes(group.getState().toByteArray())));
+            }
+            final RecordCursorContinuation innerContinuation = parsed.hasInnerContinuation() ?
+                                                               ByteArrayContinuation.fromNullable(parsed.getInnerContinuation().toByteArray()) :
+                                                               RecordCursorStartContinuation.START;
+            return new AggregateContinuation(innerContinuation, parsed.getInnerExhausted(), groups);
+        }
+
+        @Nonnull
+        RecordCursorContinuation getInnerContinuation() {
+            return innerContinuation;
+        }
+
+        boolean isInnerExhausted() {
+            return innerExhausted;
+        }
+
+        @Nonnull
+        List<IndexEntry> getGroups() {
+            return groups;
+        }
+
+        @Override
+        public boolean isEnd() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public byte[] toBytes() {
+            if (cachedBytes == null) {
+                final RecordCursorProto.AggregateContinuation.Builder builder = RecordCursorProto.AggregateContinuation.newBuilder();
+                if (innerExhausted) {
+                    builder.setInnerExhausted(true);
+                } else {
+                    final byte[] innerBytes = innerContinuation.toBytes();
+                    if (innerBytes != null) {
+                        builder.setInnerContinuation(ByteString.copyFrom(innerBytes));
+                    }
+                }
+                for (IndexEntry group : groups) {
+                    builder.addGroup(RecordCursorProto.AggregateContinuation.GroupState.newBuilder()
+                            .setGroup(ByteString.copyFrom(group.getKey().pack()))
+                            .setState(ByteString.copyFrom(group.getValue().pack())));
+                }
+                cachedBytes = builder.build().toByteArray();
+            }
+            return cachedBytes;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * HashAggregateCursor.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorEndContinuation;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A cursor that aggregates the elements of an inner cursor in any order, keeping every group in memory.
+ *
+ * Each inner element is turned into key tuples, as by evaluating the operand of an aggregate function, whose first
+ * {@code groupingCount} columns are the group and the rest the values to aggregate. Unlike
+ * {@link StreamingAggregateCursor}, the inner cursor need not return the elements of a group together, so this cursor
+ * returns nothing until the inner cursor is exhausted. It then returns an {@link IndexEntry} for each group, in order
+ * by group, whose key is the group and whose value is the aggregate over it.
+ *
+ * Memory is bounded by the number of groups: if the inner cursor has more than {@code maxGroups} distinct groups, the
+ * cursor fails with a {@link RecordCoreException}. Since the continuation includes the partial aggregate of every
+ * group, the aggregation can be spread across transactions, but it grows with the number of groups, too.
+ * @param <T> the type of elements of the inner cursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class HashAggregateCursor<T> extends AggregateCursorBase<T> {
+    private final int maxGroups;
+    private final boolean reverse;
+    @Nonnull
+    private final NavigableMap<Tuple, AggregateAccumulator> groups = new TreeMap<>();
+    // Once the inner cursor is exhausted, the groups still to return, with their accumulator states.
+    @Nullable
+    private List<IndexEntry> finished;
+    private int position;
+
+    private HashAggregateCursor(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, List<Tuple>> keysFunction,
+                                int groupingCount, @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                int maxGroups, boolean reverse, @Nonnull AggregateContinuation continuation) {
+        super(inner, keysFunction, groupingCount, accumulatorSupplier);
+        this.maxGroups = maxGroups;
+        this.reverse = reverse;
+        if (continuation.isInnerExhausted()) {
+            finished = continuation.getGroups();
+        } else {
+            for (IndexEntry group : continuation.getGroups()) {
+                groups.put(group.getKey(), restoreAccumulator(group.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Create a hash aggregate cursor.
+     * @param innerFunction a function to produce the inner cursor from its continuation
+     * @param keysFunction a function to get the keys to aggregate from an element of the inner cursor
+     * @param groupingCount the number of leading columns of each key that make up its group
+     * @param accumulatorSupplier a supplier of an accumulator for each group
+     * @param maxGroups the largest number of groups to hold in memory
+     * @param reverse whether to return the groups in descending order
+     * @param continuation any continuation from a previous aggregation
+     * @param <T> the type of elements of the inner cursor
+     * @return a cursor of the aggregate for each group
+     */
+    @Nonnull
+    @SuppressWarnings("squid:S00107") // too many parameters
+    public static <T> HashAggregateCursor<T> create(@Nonnull Function<byte[], RecordCursor<T>> innerFunction,
+                                                    @Nonnull Function<T, List<Tuple>> keysFunction,
+                                                    int groupingCount,
+                                                    @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                                    int maxGroups, boolean reverse,
+                                                    @Nullable byte[] continuation) {
+        final AggregateContinuation parsed = AggregateContinuation.from(continuation);
+        final RecordCursor<T> inner = parsed.isInnerExhausted() ?
+                                      RecordCursor.empty() :
+                                      innerFunction.apply(parsed.getInnerContinuation().toBytes());
+        return new HashAggregateCursor<>(inner, keysFunction, groupingCount, accumulatorSupplier, maxGroups, reverse, parsed);
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<RecordCursorResult<IndexEntry>> onNext() {
+        if (finished != null) {
+            return CompletableFuture.completedFuture(nextFinished());
+        }
+        return AsyncUtil.whileTrue(() -> inner.onNext().thenApply(this::addInnerResult), getExecutor())
+                .thenApply(vignore -> finished != null ? nextFinished() : nextResult);
+    }
+
+    // Returns whether to keep reading the inner cursor, having either set nextResult or finished if not.
+    private boolean addInnerResult(@Nonnull RecordCursorResult<T> innerResult) {
+        if (!innerResult.hasNext()) {
+            if (innerResult.getNoNextReason().isSourceExhausted()) {
+                finished = new ArrayList<>(groups.size());
+                for (Map.Entry<Tuple, AggregateAccumulator> entry : (reverse ? groups.descendingMap() : groups).entrySet()) {
+                    finished.add(new IndexEntry(entry.getKey(), entry.getValue().getState()));
+                }
+                groups.clear();
+            } else {
+                nextResult = RecordCursorResult.withoutNextValue(new AggregateContinuation(innerResult.getContinuation(), false, saveGroups()),
+                        innerResult.getNoNextReason());
+            }
+            return false;
+        }
+        for (Tuple key : getKeys(innerResult.get())) {
+            final Tuple group = getGroup(key);
+            AggregateAccumulator accumulator = groups.get(group);
+            if (accumulator == null) {
+                if (groups.size() >= maxGroups) {
+                    throw new RecordCoreException("too many groups for hash aggregation")
+                            .addLogInfo("maxGroups", maxGroups);
+                }
+                accumulator = newAccumulator();
+                groups.put(group, accumulator);
+            }
+            accumulator.accumulate(getGrouped(key));
+        }
+        return true;
+    }
+
+    @Nonnull
+    private List<IndexEntry> saveGroups() {
+        final List<IndexEntry> saved = new ArrayList<>(groups.size());
+        for (Map.Entry<Tuple, AggregateAccumulator> entry : groups.entrySet()) {
+            saved.add(new IndexEntry(entry.getKey(), entry.getValue().getState()));
+        }
+        return saved;
+    }
+
+    @Nonnull
+    private RecordCursorResult<IndexEntry> nextFinished() {
+        if (position < finished.size()) {
+            final IndexEntry saved = finished.get(position++);
+            final IndexEntry entry = new IndexEntry(saved.getKey(), restoreAccumulator(saved.getValue()).getValue());
+            final List<IndexEntry> remaining = Collections.unmodifiableList(finished.subList(position, finished.size()));
+            nextResult = RecordCursorResult.withNextValue(entry, new AggregateContinuation(RecordCursorEndContinuation.END, true, remaining));
+        } else {
+            nextResult = RecordCursorResult.exhausted();
+        }
+        return nextResult;
+    }
+}
@@ -64,7 +64,7 @@ import java.util.stream.Collectors;
  */
 abstract class IntersectionCursorBase<T, U> implements RecordCursor<U> {
     @Nonnull
-    private final Function<? super T, ? extends List<Object>> comparisonKeyFunction;
+    private final Function<? super T, ?> comparisonKeyFunction;
     private final boolean reverse;
     @Nonnull
     private final List<CursorState<T>> cursorStates;
@@ -91,7 +91,7 @@ abstract class IntersectionCursorBase<T, U> implements RecordCursor<U> {
         private final RecordCursor<T> cursor;
         @Nullable
         private CompletableFuture<RecordCursorResult<T>> onNextFuture;
-        private List<Object> key;
+        private Object key;
         @Nonnull
         private RecordCursorContinuation continuation;
         @Nullable
@@ -103,7 +103,7 @@ abstract class IntersectionCursorBase<T, U> implements RecordCursor<U> {
         }
 
         @Nonnull
-        public CompletableFuture<RecordCursorResult<T>> getOnNextFuture(@Nonnull Function<? super T, ? extends List<Object>> keyFunction) {
+        public CompletableFuture<RecordCursorResult<T>> getOnNextFuture(@Nonnull Function<? super T, ?> keyFunction) {
             if (onNextFuture == null) {
                 onNextFuture = cursor.onNext().thenApply(cursorResult -> {
                     result = cursorResult;
@@ -142,7 +142,15 @@ abstract class IntersectionCursorBase<T, U> implements RecordCursor<U> {
         }
     }
 
-    protected IntersectionCursorBase(@Nonnull Function<? super T, ? extends List<Object>> comparisonKeyFunction,
+    /**
+     * Create a new intersection cursor base.
+     * @param comparisonKeyFunction function giving the comparison key of each element, which must either always be
+     * a {@link List} of key items or always be a {@code byte[]} of the packed tuple bytes of the key
+     * @param reverse whether elements are in descending order by the comparison key
+     * @param cursorStates the states of the child cursors
+     * @param timer the timer used to instrument events
+     */
+    protected IntersectionCursorBase(@Nonnull Function<? super T, ?> comparisonKeyFunction,
                                      boolean reverse, @Nonnull List<CursorState<T>> cursorStates,
                                      @Nullable FDBStoreTimer timer) {
         this.comparisonKeyFunction = comparisonKeyFunction;
@@ -154,9 +162,9 @@ abstract class IntersectionCursorBase<T, U> implements RecordCursor<U> {
     // Identify the list of maximal (and non-maximal) elements from the list of cursor states.
     private void mergeStates(@Nonnull List<CursorState<T>> maxStates, @Nonnull List<CursorState<T>> nonMaxCursors, long startTime) {
         maxStates.add(cursorStates.get(0));
-        List<Object> maxKey = cursorStates.get(0).key;
+        Object maxKey = cursorStates.get(0).key;
         for (CursorState<T> cursorState : cursorStates.subList(1, cursorStates.size())) {
-            int compare = KeyComparisons.KEY_COMPARATOR.compare(cursorState.key, maxKey) * (reverse ? -1 : 1);
+            int compare = KeyComparisons.FIELD_COMPARATOR.compare(cursorState.key, maxKey) * (reverse ? -1 : 1);
             if (compare == 0) {
                 maxStates.add(cursorState);
             } else if (compare < 0) {
@@ -41,7 +41,7 @@ import java.util.function.Function;
 @API(API.Status.EXPERIMENTAL)
 public class IntersectionMultiCursor<T> extends IntersectionCursorBase<T, List<T>> {
 
-    private IntersectionMultiCursor(@Nonnull Function<? super T, ? extends List<Object>> comparisonKeyFunction,
+    private IntersectionMultiCursor(@Nonnull Function<? super T, ?> comparisonKeyFunction,
                                     boolean reverse, @Nonnull List<CursorState<T>> cursorStates,
                                     @Nullable FDBStoreTimer timer) {
         super(comparisonKeyFunction, reverse, cursorStates, timer);
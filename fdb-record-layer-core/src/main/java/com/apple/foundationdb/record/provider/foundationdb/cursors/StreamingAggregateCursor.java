@@ -0,0 +1,161 @@
+/*
+ * StreamingAggregateCursor.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorContinuation;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A cursor that aggregates the elements of an inner cursor that arrive grouped together.
+ *
+ * Each inner element is turned into key tuples, as by evaluating the operand of an aggregate function, whose first
+ * {@code groupingCount} columns are the group and the rest the values to aggregate. The inner cursor must return all
+ * the elements of a group consecutively, for example by scanning an index that begins with the grouping columns.
+ * Each element of this cursor is an {@link IndexEntry} whose key is a group and whose value is the aggregate over it,
+ * the same as from a {@link com.apple.foundationdb.record.IndexScanType#BY_GROUP} scan of an aggregate index.
+ * Only one group is held in memory at a time.
+ *
+ * If the inner cursor stops partway through a group, the continuation includes the partial aggregate, so that
+ * the group is resumed where it left off rather than read again.
+ * @param <T> the type of elements of the inner cursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class StreamingAggregateCursor<T> extends AggregateCursorBase<T> {
+    @Nullable
+    private Tuple group;
+    @Nullable
+    private AggregateAccumulator accumulator;
+    // The continuation after the last inner element read.
+    @Nonnull
+    private RecordCursorContinuation lastContinuation;
+    @Nullable
+    private RecordCursorResult<T> innerExhausted;
+
+    private StreamingAggregateCursor(@Nonnull RecordCursor<T> inner, @Nonnull Function<T, List<Tuple>> keysFunction,
+                                     int groupingCount, @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                     @Nonnull AggregateContinuation continuation) {
+        super(inner, keysFunction, groupingCount, accumulatorSupplier);
+        this.lastContinuation = continuation.getInnerContinuation();
+        if (!continuation.getGroups().isEmpty()) {
+            final IndexEntry partial = continuation.getGroups().get(0);
+            this.group = partial.getKey();
+            this.accumulator = restoreAccumulator(partial.getValue());
+        }
+    }
+
+    /**
+     * Create a streaming aggregate cursor.
+     * @param innerFunction a function to produce the inner cursor from its continuation
+     * @param keysFunction a function to get the keys to aggregate from an element of the inner cursor
+     * @param groupingCount the number of leading columns of each key that make up its group
+     * @param accumulatorSupplier a supplier of an accumulator for each group
+     * @param continuation any continuation from a previous aggregation
+     * @param <T> the type of elements of the inner cursor
+     * @return a cursor of the aggregate for each group
+     */
+    @Nonnull
+    public static <T> StreamingAggregateCursor<T> create(@Nonnull Function<byte[], RecordCursor<T>> innerFunction,
+                                                         @Nonnull Function<T, List<Tuple>> keysFunction,
+                                                         int groupingCount,
+                                                         @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                                         @Nullable byte[] continuation) {
+        final AggregateContinuation parsed = AggregateContinuation.from(continuation);
+        final RecordCursor<T> inner = innerFunction.apply(parsed.getInnerContinuation().toBytes());
+        return new StreamingAggregateCursor<>(inner, keysFunction, groupingCount, accumulatorSupplier, parsed);
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public CompletableFuture<RecordCursorResult<IndexEntry>> onNext() {
+        if (innerExhausted != null) {
+            nextResult = RecordCursorResult.withoutNextValue(innerExhausted);
+            return CompletableFuture.completedFuture(nextResult);
+        }
+        return AsyncUtil.whileTrue(() -> inner.onNext().thenApply(this::addInnerResult), getExecutor())
+                .thenApply(vignore -> nextResult);
+    }
+
+    // Returns whether to keep reading the inner cursor, having set nextResult if not.
+    private boolean addInnerResult(@Nonnull RecordCursorResult<T> innerResult) {
+        if (!innerResult.hasNext()) {
+            if (innerResult.getNoNextReason().isSourceExhausted()) {
+                if (group != null) {
+                    nextResult = RecordCursorResult.withNextValue(finishGroup(), betweenGroups(lastContinuation));
+                    innerExhausted = innerResult;
+                } else {
+                    nextResult = RecordCursorResult.withoutNextValue(innerResult);
+                }
+            } else {
+                // Stopped partway through a group, which is saved to be resumed.
+                final List<IndexEntry> partial = group == null ?
+                                                 Collections.emptyList() :
+                                                 Collections.singletonList(new IndexEntry(group, accumulator.getState()));
+                nextResult = RecordCursorResult.withoutNextValue(new AggregateContinuation(innerResult.getContinuation(), false, partial),
+                        innerResult.getNoNextReason());
+            }
+            return false;
+        }
+        boolean keepGoing = true;
+        for (Tuple key : getKeys(innerResult.get())) {
+            final Tuple keyGroup = getGroup(key);
+            if (group != null && !TupleHelpers.equals(group, keyGroup)) {
+                // Resuming after this will read the element that started the next group again.
+                nextResult = RecordCursorResult.withNextValue(finishGroup(), betweenGroups(lastContinuation));
+                keepGoing = false;
+            }
+            if (group == null) {
+                group = keyGroup;
+                accumulator = newAccumulator();
+            }
+            accumulator.accumulate(getGrouped(key));
+        }
+        lastContinuation = innerResult.getContinuation();
+        return keepGoing;
+    }
+
+    @Nonnull
+    private IndexEntry finishGroup() {
+        final IndexEntry entry = new IndexEntry(group, accumulator.getValue());
+        group = null;
+        accumulator = null;
+        return entry;
+    }
+
+    @Nonnull
+    private static RecordCursorContinuation betweenGroups(@Nonnull RecordCursorContinuation innerContinuation) {
+        return new AggregateContinuation(innerContinuation, false, Collections.emptyList());
+    }
+}
@@ -33,7 +33,11 @@ import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
@@ -58,66 +62,68 @@ import java.util.function.Function;
 @API(API.Status.MAINTAINED)
 public class UnionCursor<T> extends UnionCursorBase<T> {
     @Nonnull
-    private final Function<? super T, ? extends List<Object>> comparisonKeyFunction;
+    private final Function<? super T, ?> comparisonKeyFunction;
     private final boolean reverse;
+    // Children with a current element, ordered by comparison key and then by position, so that the first
+    // of several children with the same key is always chosen.
+    @Nonnull
+    private final PriorityQueue<CursorState<T>> heap;
+    // Children whose next result is needed before choosing again: initially all of them, and then those just consumed.
+    @Nonnull
+    private final List<CursorState<T>> pendingStates;
+    private boolean limitReached;
 
-    private UnionCursor(@Nonnull Function<? super T, ? extends List<Object>> comparisonKeyFunction,
+    private UnionCursor(@Nonnull Function<? super T, ?> comparisonKeyFunction,
                         boolean reverse, @Nonnull List<CursorState<T>> cursorStates,
                         @Nullable FDBStoreTimer timer) {
         super(cursorStates, timer);
         this.comparisonKeyFunction = comparisonKeyFunction;
         this.reverse = reverse;
+        final Map<CursorState<T>, Integer> positions = new IdentityHashMap<>(cursorStates.size());
+        for (CursorState<T> cursorState : cursorStates) {
+            positions.put(cursorState, positions.size());
+        }
+        this.heap = new PriorityQueue<>(cursorStates.size(), (state1, state2) -> {
+            int compare = KeyComparisons.FIELD_COMPARATOR.compare(state1.getKey(), state2.getKey()) * (reverse ? -1 : 1);
+            if (compare == 0) {
+                compare = Integer.compare(positions.get(state1), positions.get(state2));
+            }
+            return compare;
+        });
+        this.pendingStates = new ArrayList<>(cursorStates);
     }
 
     @Nonnull
     @Override
     CompletableFuture<Boolean> getIfAnyHaveNext(@Nonnull List<CursorState<T>> cursorStates) {
-        return whenAll(cursorStates).thenApply(vignore -> {
-            boolean anyHasNext = false;
-            for (CursorState<T> cursorState : cursorStates) {
-                if (cursorState.getResult().hasNext()) {
-                    anyHasNext = true;
-                } else if (cursorState.getResult().getNoNextReason().isLimitReached()) {
+        // Children that were not consumed last time still have the same result and are already in the heap.
+        return whenAll(pendingStates).thenApply(vignore -> {
+            for (CursorState<T> cursorState : pendingStates) {
+                final RecordCursorResult<T> result = cursorState.getResult();
+                if (result.hasNext()) {
+                    cursorState.setKey(comparisonKeyFunction.apply(result.get()));
+                    heap.add(cursorState);
+                } else if (result.getNoNextReason().isLimitReached()) {
                     // If any side stopped due to limit reached, need to stop completely,
                     // since might otherwise duplicate ones after that, if other side still available.
-                    return false;
+                    limitReached = true;
                 }
             }
-            return anyHasNext;
+            pendingStates.clear();
+            return !limitReached && !heap.isEmpty();
         });
     }
 
     @Override
-    void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates, @Nonnull List<CursorState<T>> otherStates) {
-        List<Object> nextKey = null;
-        for (CursorState<T> cursorState : allStates) {
-            final RecordCursorResult<T> result = cursorState.getResult();
-            if (result.hasNext()) {
-                int compare;
-                final List<Object> resultKey = comparisonKeyFunction.apply(result.get());
-                if (nextKey == null) {
-                    // This is the first key we've seen, so always chose it.
-                    compare = -1;
-                } else {
-                    // Choose the minimum of the previous minimum key and this next one
-                    // If doing a reverse scan, choose the maximum.
-                    compare = KeyComparisons.KEY_COMPARATOR.compare(resultKey, nextKey) * (reverse ? -1 : 1);
-                }
-                if (compare < 0) {
-                    // We have a new next key. Reset the book-keeping information.
-                    otherStates.addAll(chosenStates);
-                    chosenStates.clear();
-                    nextKey = resultKey;
-                }
-                if (compare <= 0) {
-                    chosenStates.add(cursorState);
-                } else {
-                    otherStates.add(cursorState);
-                }
-            } else {
-                otherStates.add(cursorState);
-            }
+    void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates) {
+        // Choose the minimum key (or maximum if reverse) and every other child with the same key.
+        final CursorState<T> first = heap.remove();
+        chosenStates.add(first);
+        while (!heap.isEmpty() && KeyComparisons.FIELD_COMPARATOR.compare(heap.peek().getKey(), first.getKey()) == 0) {
+            chosenStates.add(heap.remove());
         }
+        // All of these are about to be consumed, so their next results will be needed.
+        pendingStates.addAll(chosenStates);
     }
 
     /**
@@ -249,4 +255,36 @@ public class UnionCursor<T> extends UnionCursorBase<T> {
         final List<CursorState<T>> cursorStates = createCursorStates(cursorFunctions, byteContinuation);
         return new UnionCursor<>(comparisonKeyFunction, reverse, cursorStates, timer);
     }
+
+    /**
+     * Create a union cursor from two or more compatibly-ordered cursors, comparing elements by the packed form of their
+     * comparison keys. Since tuple encoding preserves order, the children can be merged by comparing these byte
+     * arrays as unsigned bytes, rather than comparing the items of the keys one by one. This is cheaper when the
+     * packed keys are already at hand, such as the raw keys of a key-value scan, and gives the same order as the keys'
+     * index entries. Packing keys only to compare them costs more than comparing them as lists, and fails for keys
+     * with incomplete versionstamps, so use the list-based factories for those. Otherwise, this behaves
+     * exactly the same way as {@link #create(Function, boolean, List, byte[], FDBStoreTimer)}.
+     *
+     * @param packedComparisonKeyFunction the function giving the packed tuple bytes of the comparison key of each element
+     * @param reverse whether records are returned in descending or ascending order by the comparison key
+     * @param cursorFunctions a list of functions to produce {@link RecordCursor}s from a continuation
+     * @param byteContinuation any continuation from a previous scan
+     * @param timer the timer used to instrument events
+     * @param <T> the type of elements returned by this cursor
+     * @return a cursor containing any records in any child cursors
+     */
+    @Nonnull
+    public static <T> UnionCursor<T> createWithPackedComparisonKey(
+            @Nonnull Function<? super T, byte[]> packedComparisonKeyFunction,
+            boolean reverse,
+            @Nonnull List<Function<byte[], RecordCursor<T>>> cursorFunctions,
+            @Nullable byte[] byteContinuation,
+            @Nullable FDBStoreTimer timer) {
+        if (cursorFunctions.size() < 2) {
+            throw new RecordCoreArgumentException("not enough child cursors provided to UnionCursor")
+                    .addLogInfo(LogMessageKeys.CHILD_COUNT, cursorFunctions.size());
+        }
+        final List<CursorState<T>> cursorStates = createCursorStates(cursorFunctions, byteContinuation);
+        return new UnionCursor<>(packedComparisonKeyFunction, reverse, cursorStates, timer);
+    }
 }
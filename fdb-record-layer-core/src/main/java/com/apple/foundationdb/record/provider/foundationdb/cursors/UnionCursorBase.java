@@ -53,7 +53,6 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Common implementation code for performing a union shared between
@@ -65,6 +64,9 @@ import java.util.stream.Collectors;
 abstract class UnionCursorBase<T> implements RecordCursor<T> {
     @Nonnull
     private final List<CursorState<T>> cursorStates;
+    // reused for each element, so as not to allocate a list every time
+    @Nonnull
+    private final List<CursorState<T>> chosenStates;
     @Nullable
     private CompletableFuture<Boolean> hasNextFuture;
     @Nullable
@@ -95,6 +97,9 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
         private RecordCursorContinuation continuation;
         @Nullable
         private RecordCursorResult<T> result;
+        // comparison key of the current result, for subclasses that keep the states ordered
+        @Nullable
+        private Object key;
 
         public CursorState(@Nonnull RecordCursor<T> cursor, @Nonnull RecordCursorContinuation continuationStart) {
             this.cursor = cursor;
@@ -120,6 +125,15 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
             continuation = result.getContinuation();
         }
 
+        @Nullable
+        Object getKey() {
+            return key;
+        }
+
+        void setKey(@Nullable Object key) {
+            this.key = key;
+        }
+
         public boolean isExhausted() {
             return result != null && !result.hasNext() && result.getNoNextReason().isSourceExhausted();
         }
@@ -187,6 +201,7 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
 
     protected UnionCursorBase(@Nonnull List<CursorState<T>> cursorStates, @Nullable FDBStoreTimer timer) {
         this.cursorStates = cursorStates;
+        this.chosenStates = new ArrayList<>();
         this.timer = timer;
 
         // Choose the executor from the first non-empty cursor. The executors for empty cursors are just
@@ -216,9 +231,8 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
         return getIfAnyHaveNext(cursorStates).thenApply(hasNext -> {
             if (hasNext) {
                 final long startTime = System.nanoTime();
-                List<CursorState<T>> chosenStates = new ArrayList<>(cursorStates.size());
-                List<CursorState<T>> otherStates = new ArrayList<>(cursorStates.size());
-                chooseStates(cursorStates, chosenStates, otherStates);
+                chosenStates.clear();
+                chooseStates(cursorStates, chosenStates);
                 logDuplicates(chosenStates);
                 // Advance each chosen state
                 chosenStates.forEach(CursorState::consume);
@@ -262,11 +276,9 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
      * are combined by overriding the {@link #getNextResult(List)} method.
      *
      * @param allStates all states of all children of this cursor
-     * @param chosenStates the list to populate with states to choose as part of the union
-     * @param otherStates the list to populate with all other states
+     * @param chosenStates the (initially empty) list to populate with states to choose as part of the union
      */
-    abstract void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates,
-                               @Nonnull List<CursorState<T>> otherStates);
+    abstract void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates);
 
     /**
      * Get the result from the list of chosen states. These states have all been identified
@@ -443,7 +455,11 @@ abstract class UnionCursorBase<T> implements RecordCursor<T> {
         }
 
         public static <T> UnionContinuation from(@Nonnull UnionCursorBase<T> cursor) {
-            return new UnionContinuation(cursor.cursorStates.stream().map(cursorState -> cursorState.continuation).collect(Collectors.toList()));
+            final List<RecordCursorContinuation> continuations = new ArrayList<>(cursor.cursorStates.size());
+            for (CursorState<T> cursorState : cursor.cursorStates) {
+                continuations.add(cursorState.continuation);
+            }
+            return new UnionContinuation(continuations);
         }
 
         public RecordCursorProto.UnionContinuation toProto() {
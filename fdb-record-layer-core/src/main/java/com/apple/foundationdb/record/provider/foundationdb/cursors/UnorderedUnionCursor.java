@@ -91,14 +91,11 @@ public class UnorderedUnionCursor<T> extends UnionCursorBase<T> {
     }
 
     @Override
-    void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates, @Nonnull List<CursorState<T>> otherStates) {
-        boolean found = false;
+    void chooseStates(@Nonnull List<CursorState<T>> allStates, @Nonnull List<CursorState<T>> chosenStates) {
         for (CursorState<T> cursorState : allStates) {
-            if (!found && cursorState.getOnNextFuture().isDone() && cursorState.getResult().hasNext()) {
+            if (cursorState.getOnNextFuture().isDone() && cursorState.getResult().hasNext()) {
                 chosenStates.add(cursorState);
-                found = true;
-            } else {
-                otherStates.add(cursorState);
+                return;
             }
         }
     }
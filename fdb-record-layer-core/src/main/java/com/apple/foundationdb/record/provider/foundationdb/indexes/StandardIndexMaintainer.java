@@ -82,6 +82,10 @@ import static com.apple.foundationdb.record.provider.foundationdb.SplitHelper.un
 public abstract class StandardIndexMaintainer extends IndexMaintainer {
     private static final Logger LOGGER = LoggerFactory.getLogger(StandardIndexMaintainer.class);
     protected static final int TOO_LARGE_VALUE_MESSAGE_LIMIT = 100;
+    private static final byte[] NO_PREFIX = new byte[0];
+
+    @Nullable
+    private byte[] indexSubspaceKey;
 
     protected StandardIndexMaintainer(IndexMaintainerState state) {
         super(state);
@@ -305,8 +309,8 @@ public abstract class StandardIndexMaintainer extends IndexMaintainer {
         final Tuple value = indexEntry.getValue();
         final long startTime = System.nanoTime();
         final Tuple entryKey = indexEntryKey(valueKey, savedRecord.getPrimaryKey());
-        final byte[] keyBytes = state.indexSubspace.pack(entryKey);
-        final byte[] valueBytes = value.pack();
+        final byte[] keyBytes = packIndexKey(entryKey);
+        final byte[] valueBytes = TupleHelpers.pack(NO_PREFIX, value);
         if (remove) {
             state.transaction.clear(keyBytes);
             if (state.store.isIndexWriteOnly(state.index) && state.index.isUnique()) {
@@ -403,13 +407,27 @@ public abstract class StandardIndexMaintainer extends IndexMaintainer {
         return FDBRecordStoreBase.indexEntryKey(state.index, valueKey, primaryKey);
     }
 
+    /**
+     * Pack a key in the index's subspace.
+     * This is the same as {@code state.indexSubspace.pack(key)}, but avoids intermediate allocations.
+     * @param key the key within the index subspace
+     * @return the packed key
+     */
+    @Nonnull
+    protected byte[] packIndexKey(@Nonnull Tuple key) {
+        if (indexSubspaceKey == null) {
+            indexSubspaceKey = state.indexSubspace.getKey();
+        }
+        return TupleHelpers.pack(indexSubspaceKey, key);
+    }
+
     /**
      * Manually save an index entry, for example when rebuilding in place with a different storage format.
      * Does not check uniqueness or maintain any secondary subspaces.
      * @param keyValue the entry to save
      */
     protected void saveIndexEntryAsKeyValue(IndexEntry keyValue) {
-        state.transaction.set(state.indexSubspace.pack(keyValue.getKey()), keyValue.getValue().pack());
+        state.transaction.set(packIndexKey(keyValue.getKey()), TupleHelpers.pack(NO_PREFIX, keyValue.getValue()));
     }
 
     @Override
@@ -0,0 +1,233 @@
+/*
+ * TopKIndexMaintainer.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.provider.foundationdb.indexes;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.Transaction;
+import com.apple.foundationdb.async.AsyncUtil;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.ScanProperties;
+import com.apple.foundationdb.record.TupleRange;
+import com.apple.foundationdb.record.logging.LogMessageKeys;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexOptions;
+import com.apple.foundationdb.record.metadata.MetaDataException;
+import com.apple.foundationdb.record.provider.foundationdb.FDBIndexableRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.IndexMaintainerState;
+import com.apple.foundationdb.record.provider.foundationdb.KeyValueCursor;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An index maintainer that keeps only the best {@link IndexOptions#TOP_K_OPTION} entries for each group.
+ *
+ * The index is ordered like a {@link ValueIndexMaintainer value index} on the whole key, but its primary subspace holds at most
+ * K entries for each value of the grouping fields, which by default are those with the highest values of the grouped fields
+ * (or the lowest, with {@link IndexOptions#TOP_K_LOWEST_OPTION}). So reading the best entries of a group is a single short
+ * range read, unlike a {@link RankIndexMaintainer rank index}, which must maintain and traverse a skip list.
+ *
+ * All entries are also kept, as an ordinary value index, in the secondary subspace. When an entry in the top K is removed,
+ * the next best entry is copied from there, so that the top K stay complete. Scans that might need more than the top K,
+ * such as those with a continuation, a larger limit or bounds on the grouped fields, are served from the secondary subspace.
+ *
+ * Adding an entry reads all of the top K entries for its group, so concurrent updates to the same group will conflict.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class TopKIndexMaintainer extends StandardIndexMaintainer {
+    private final int k;
+    private final boolean highest;
+
+    public TopKIndexMaintainer(IndexMaintainerState state) {
+        super(state);
+        this.k = getK(state.index);
+        this.highest = !state.index.getBooleanOption(IndexOptions.TOP_K_LOWEST_OPTION, false);
+    }
+
+    /**
+     * Get the number of entries kept for each group by the given index.
+     * @param index a top-K index
+     * @return the value of the index's {@link IndexOptions#TOP_K_OPTION} option
+     * @throws MetaDataException if the option is missing or not a positive integer
+     */
+    public static int getK(@Nonnull Index index) {
+        final String option = index.getOption(IndexOptions.TOP_K_OPTION);
+        int k = 0;
+        if (option != null) {
+            try {
+                k = Integer.parseInt(option);
+            } catch (NumberFormatException ex) {
+                k = 0;
+            }
+        }
+        if (k <= 0) {
+            throw new MetaDataException("top-K index requires a positive " + IndexOptions.TOP_K_OPTION + " option",
+                    LogMessageKeys.INDEX_NAME, index.getName(),
+                    LogMessageKeys.VALUE, option);
+        }
+        return k;
+    }
+
+    @Nonnull
+    @Override
+    public RecordCursor<IndexEntry> scan(@Nonnull IndexScanType scanType,
+                                         @Nonnull TupleRange range,
+                                         @Nullable byte[] continuation,
+                                         @Nonnull ScanProperties scanProperties) {
+        if (scanType != IndexScanType.BY_VALUE) {
+            throw new RecordCoreException("Can only scan top-K index by value.");
+        }
+        if (canScanTopEntries(range, continuation, scanProperties)) {
+            return scan(range, continuation, scanProperties);
+        }
+        final Subspace allSubspace = getSecondarySubspace();
+        final RecordCursor<KeyValue> keyValues = KeyValueCursor.Builder.withSubspace(allSubspace)
+                .setContext(state.context)
+                .setRange(range)
+                .setContinuation(continuation)
+                .setScanProperties(scanProperties)
+                .build();
+        return keyValues.map(kv -> {
+            state.store.countKeyValue(FDBStoreTimer.Counts.LOAD_INDEX_KEY, FDBStoreTimer.Counts.LOAD_INDEX_KEY_BYTES, FDBStoreTimer.Counts.LOAD_INDEX_VALUE_BYTES,
+                    kv);
+            return unpackKeyValue(allSubspace, kv);
+        });
+    }
+
+    /**
+     * Determine whether a scan will only return entries that are among the top K, so that it can read just those.
+     * That is, it must start from the best entry of a single whole group and be limited to no more than K entries.
+     * Entries have the same keys in both subspaces, so a continued scan can carry on from the secondary subspace.
+     * @param range the range to scan
+     * @param continuation any continuation from a previous scan
+     * @param scanProperties skip, limit and direction of the scan
+     * @return {@code true} if the primary subspace has all the entries the scan can return
+     */
+    protected boolean canScanTopEntries(@Nonnull TupleRange range,
+                                        @Nullable byte[] continuation,
+                                        @Nonnull ScanProperties scanProperties) {
+        if (continuation != null || scanProperties.isReverse() != highest) {
+            return false;
+        }
+        final ExecuteProperties executeProperties = scanProperties.getExecuteProperties();
+        final int limit = executeProperties.getReturnedRowLimit();
+        if (limit == ReadTransaction.ROW_LIMIT_UNLIMITED || executeProperties.getSkip() + limit > k) {
+            return false;
+        }
+        final int groupPrefixSize = getGroupingCount();
+        if (groupPrefixSize == 0) {
+            return TupleRange.ALL.equals(range);
+        }
+        return range.isEquals() && range.getLow().size() == groupPrefixSize;
+    }
+
+    @Override
+    protected <M extends Message> CompletableFuture<Void> updateIndexKeys(@Nonnull final FDBIndexableRecord<M> savedRecord,
+                                                                          final boolean remove,
+                                                                          @Nonnull final List<IndexEntry> indexEntries) {
+        final int groupPrefixSize = getGroupingCount();
+        // Entries for the same group must see one another's changes to the top K, so update them one at a time.
+        CompletableFuture<Void> future = AsyncUtil.DONE;
+        for (IndexEntry indexEntry : indexEntries) {
+            final Tuple groupKey = TupleHelpers.subTuple(indexEntry.getKey(), 0, groupPrefixSize);
+            future = future.thenCompose(vignore -> remove ?
+                                                   removeEntry(savedRecord, indexEntry, groupKey) :
+                                                   addEntry(savedRecord, indexEntry, groupKey));
+        }
+        return future;
+    }
+
+    @Nonnull
+    private <M extends Message> CompletableFuture<Void> addEntry(@Nonnull final FDBIndexableRecord<M> savedRecord,
+                                                                 @Nonnull final IndexEntry indexEntry,
+                                                                 @Nonnull final Tuple groupKey) {
+        final Tuple entryKey = indexEntryKey(indexEntry.getKey(), savedRecord.getPrimaryKey());
+        final byte[] keyBytes = packIndexKey(entryKey);
+        state.transaction.set(getSecondarySubspace().pack(entryKey), indexEntry.getValue().pack());
+        return state.transaction.getRange(state.indexSubspace.range(groupKey)).asList().thenAccept(top -> {
+            if (top.size() < k) {
+                updateOneKey(savedRecord, false, indexEntry);
+                return;
+            }
+            for (KeyValue kv : top) {
+                if (Arrays.equals(kv.getKey(), keyBytes)) {
+                    // Already present, as when an index build repeats a record.
+                    return;
+                }
+            }
+            final KeyValue worst = highest ? top.get(0) : top.get(top.size() - 1);
+            final int compare = ByteArrayUtil.compareUnsigned(keyBytes, worst.getKey());
+            if (highest ? compare > 0 : compare < 0) {
+                state.transaction.clear(worst.getKey());
+                updateOneKey(savedRecord, false, indexEntry);
+            }
+        });
+    }
+
+    @Nonnull
+    private <M extends Message> CompletableFuture<Void> removeEntry(@Nonnull final FDBIndexableRecord<M> savedRecord,
+                                                                    @Nonnull final IndexEntry indexEntry,
+                                                                    @Nonnull final Tuple groupKey) {
+        final Tuple entryKey = indexEntryKey(indexEntry.getKey(), savedRecord.getPrimaryKey());
+        final Subspace allSubspace = getSecondarySubspace();
+        state.transaction.clear(allSubspace.pack(entryKey));
+        return state.transaction.get(packIndexKey(entryKey)).thenCompose(existing -> {
+            if (existing == null) {
+                return AsyncUtil.DONE;
+            }
+            updateOneKey(savedRecord, true, indexEntry);
+            // The remaining top K - 1 are still the best of all entries, so the K-th best of those is the one to add.
+            return state.transaction.getRange(allSubspace.range(groupKey), k, highest).asList().thenAccept(best -> {
+                if (best.size() == k) {
+                    final KeyValue next = best.get(k - 1);
+                    state.transaction.set(packIndexKey(allSubspace.unpack(next.getKey())), next.getValue());
+                }
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteWhere(Transaction tr, @Nonnull Tuple prefix) {
+        return super.deleteWhere(tr, prefix).thenApply(v -> {
+            // NOTE: Range.startsWith(), Subspace.range() and so on cover keys *strictly* within the range, but we sometimes
+            // store data at the prefix key itself.
+            final byte[] key = getSecondarySubspace().pack(prefix);
+            tr.clear(key, ByteArrayUtil.strinc(key));
+            return v;
+        });
+    }
+}
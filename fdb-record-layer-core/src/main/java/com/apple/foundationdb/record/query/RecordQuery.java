@@ -22,6 +22,7 @@ package com.apple.foundationdb.record.query;
 
 import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
 import com.apple.foundationdb.record.metadata.RecordType;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
@@ -44,6 +45,11 @@ import java.util.List;
  * </ul>
  * Executing a query means returning records of the given type(s) that match the filter in the indicated order.
  *
+ * A query can also have an {@link IndexAggregateFunction}, in which case it returns one result for each group of the
+ * matching records: a partial record with the grouping fields set, whose index entry has the group as key and the
+ * value of the function over the group as value. The planner answers it from an aggregate index when it can, or else by
+ * aggregating the matching records in order by group. Such a query can only be sorted by its grouping fields.
+ *
  * @see com.apple.foundationdb.record.query.plan.RecordQueryPlanner#plan
  */
 @API(API.Status.STABLE)
@@ -62,6 +68,8 @@ public class RecordQuery {
     private final boolean removeDuplicates;
     @Nullable
     private final List<KeyExpression> requiredResults;
+    @Nullable
+    private final IndexAggregateFunction aggregate;
 
     private RecordQuery(@Nonnull Collection<String> recordTypes,
                         @Nullable Collection<String> allowedIndexes,
@@ -69,7 +77,8 @@ public class RecordQuery {
                         @Nullable KeyExpression sort,
                         boolean sortReverse,
                         boolean removeDuplicates,
-                        @Nullable List<KeyExpression> requiredResults) {
+                        @Nullable List<KeyExpression> requiredResults,
+                        @Nullable IndexAggregateFunction aggregate) {
         this.recordTypes = recordTypes;
         this.allowedIndexes = allowedIndexes;
         this.filter = filter;
@@ -77,6 +86,7 @@ public class RecordQuery {
         this.sortReverse = sortReverse;
         this.removeDuplicates = removeDuplicates;
         this.requiredResults = requiredResults;
+        this.aggregate = aggregate;
     }
 
     @Nonnull
@@ -116,6 +126,11 @@ public class RecordQuery {
         return requiredResults;
     }
 
+    @Nullable
+    public IndexAggregateFunction getAggregate() {
+        return aggregate;
+    }
+
     /**
      * Validates that this record query is valid with the provided metadata.
      * @param metaData the metadata that you want to use with this query
@@ -135,6 +150,9 @@ public class RecordQuery {
                     result.validate(descriptor);
                 }
             }
+            if (aggregate != null) {
+                aggregate.validate(descriptor);
+            }
         }
     }
 
@@ -145,6 +163,9 @@ public class RecordQuery {
         if (filter != null) {
             str.append(" | ").append(filter);
         }
+        if (aggregate != null) {
+            str.append(" | ").append(aggregate);
+        }
         return str.toString();
     }
 
@@ -182,6 +203,8 @@ public class RecordQuery {
         private boolean removeDuplicates = true;
         @Nullable
         private List<KeyExpression> requiredResults = null;
+        @Nullable
+        private IndexAggregateFunction aggregate = null;
 
         protected Builder() {
         }
@@ -194,10 +217,11 @@ public class RecordQuery {
             this.sortReverse = query.sortReverse;
             this.removeDuplicates = query.removeDuplicates;
             this.requiredResults = query.requiredResults;
+            this.aggregate = query.aggregate;
         }
 
         public RecordQuery build() {
-            return new RecordQuery(recordTypes, allowedIndexes, filter, sort, sortReverse, removeDuplicates, requiredResults);
+            return new RecordQuery(recordTypes, allowedIndexes, filter, sort, sortReverse, removeDuplicates, requiredResults, aggregate);
         }
 
         @Nonnull
@@ -271,5 +295,23 @@ public class RecordQuery {
             this.requiredResults = requiredResults;
             return this;
         }
+
+        @Nullable
+        public IndexAggregateFunction getAggregate() {
+            return aggregate;
+        }
+
+        /**
+         * Set an aggregate function to compute for each group of the matching records.
+         * The function's operand gives the grouping and grouped fields, usually as a
+         * {@link com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression}. If the function names an
+         * index, that is the only aggregate index considered for it.
+         * @param aggregate the aggregate function or {@code null} to return records
+         * @return this builder
+         */
+        public Builder setAggregate(@Nullable IndexAggregateFunction aggregate) {
+            this.aggregate = aggregate;
+            return this;
+        }
     }
 }
@@ -32,6 +32,7 @@ import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.Message;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -45,6 +46,8 @@ import java.util.TreeMap;
 public class IndexKeyValueToPartialRecord {
     @Nonnull
     private final List<Copier> copiers;
+    @Nullable
+    private volatile ResolvedFields resolvedFields;
 
     private IndexKeyValueToPartialRecord(@Nonnull List<Copier> copiers) {
         this.copiers = copiers;
@@ -58,6 +61,46 @@ public class IndexKeyValueToPartialRecord {
         return recordBuilder.build();
     }
 
+    /**
+     * Get a view of the record formed from the given index entry. Unlike {@link #toRecord}, this does not build a
+     * message up front, only converting the values of fields that are actually accessed.
+     * @param recordDescriptor the descriptor for the record type
+     * @param kv the index entry
+     * @return a message whose fields are taken from the index entry
+     * @see PartialRecordMessage
+     */
+    @Nonnull
+    public PartialRecordMessage toPartialRecord(@Nonnull Descriptors.Descriptor recordDescriptor, @Nonnull IndexEntry kv) {
+        return new PartialRecordMessage(recordDescriptor, resolveFields(recordDescriptor), kv);
+    }
+
+    // Field descriptors are looked up once per record type rather than for each index entry.
+    @Nonnull
+    Map<Descriptors.FieldDescriptor, Copier> resolveFields(@Nonnull Descriptors.Descriptor recordDescriptor) {
+        ResolvedFields resolved = resolvedFields;
+        if (resolved == null || resolved.recordDescriptor != recordDescriptor) {
+            final Map<Descriptors.FieldDescriptor, Copier> fields = new TreeMap<>();
+            for (Copier copier : copiers) {
+                fields.put(copier.getFieldDescriptor(recordDescriptor), copier);
+            }
+            resolved = new ResolvedFields(recordDescriptor, fields);
+            resolvedFields = resolved;
+        }
+        return resolved.fields;
+    }
+
+    private static class ResolvedFields {
+        @Nonnull
+        private final Descriptors.Descriptor recordDescriptor;
+        @Nonnull
+        private final Map<Descriptors.FieldDescriptor, Copier> fields;
+
+        private ResolvedFields(@Nonnull Descriptors.Descriptor recordDescriptor, @Nonnull Map<Descriptors.FieldDescriptor, Copier> fields) {
+            this.recordDescriptor = recordDescriptor;
+            this.fields = fields;
+        }
+    }
+
     @Override
     public String toString() {
         return copiers.toString();
@@ -90,6 +133,12 @@ public class IndexKeyValueToPartialRecord {
     interface Copier {
         void copy(@Nonnull Descriptors.Descriptor recordDescriptor, @Nonnull Message.Builder recordBuilder,
                   @Nonnull IndexEntry kv);
+
+        @Nonnull
+        Descriptors.FieldDescriptor getFieldDescriptor(@Nonnull Descriptors.Descriptor recordDescriptor);
+
+        @Nullable
+        Object getValue(@Nonnull Descriptors.FieldDescriptor fieldDescriptor, @Nonnull IndexEntry kv);
     }
 
     static class FieldCopier implements Copier {
@@ -108,12 +157,27 @@ public class IndexKeyValueToPartialRecord {
         @Override
         public void copy(@Nonnull Descriptors.Descriptor recordDescriptor, @Nonnull Message.Builder recordBuilder,
                          @Nonnull IndexEntry kv) {
+            final Descriptors.FieldDescriptor fieldDescriptor = recordDescriptor.findFieldByName(field);
+            final Object value = getValue(fieldDescriptor, kv);
+            if (value != null) {
+                recordBuilder.setField(fieldDescriptor, value);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Descriptors.FieldDescriptor getFieldDescriptor(@Nonnull Descriptors.Descriptor recordDescriptor) {
+            return recordDescriptor.findFieldByName(field);
+        }
+
+        @Nullable
+        @Override
+        public Object getValue(@Nonnull Descriptors.FieldDescriptor fieldDescriptor, @Nonnull IndexEntry kv) {
             final Tuple tuple = (source == TupleSource.KEY ? kv.getKey() : kv.getValue());
             Object value = tuple.get(index);
             if (value == null) {
-                return;
+                return null;
             }
-            final Descriptors.FieldDescriptor fieldDescriptor = recordDescriptor.findFieldByName(field);
             switch (fieldDescriptor.getType()) {
                 case INT32:
                     value = ((Long)value).intValue();
@@ -127,7 +191,7 @@ public class IndexKeyValueToPartialRecord {
                 default:
                     break;
             }
-            recordBuilder.setField(fieldDescriptor, value);
+            return value;
         }
 
         @Override
@@ -182,6 +246,18 @@ public class IndexKeyValueToPartialRecord {
             recordBuilder.setField(fieldDescriptor, nested.toRecord(fieldDescriptor.getMessageType(), kv));
         }
 
+        @Nonnull
+        @Override
+        public Descriptors.FieldDescriptor getFieldDescriptor(@Nonnull Descriptors.Descriptor recordDescriptor) {
+            return recordDescriptor.findFieldByName(field);
+        }
+
+        @Nonnull
+        @Override
+        public Object getValue(@Nonnull Descriptors.FieldDescriptor fieldDescriptor, @Nonnull IndexEntry kv) {
+            return nested.toPartialRecord(fieldDescriptor.getMessageType(), kv);
+        }
+
         @Override
         public String toString() {
             return field + ": " + nested;
@@ -210,7 +286,10 @@ public class IndexKeyValueToPartialRecord {
         return new Builder(recordDescriptor);
     }
 
-    static class Builder {
+    /**
+     * A builder for {@link IndexKeyValueToPartialRecord}.
+     */
+    public static class Builder {
         @Nonnull
         private final Descriptors.Descriptor recordDescriptor;
         @Nonnull
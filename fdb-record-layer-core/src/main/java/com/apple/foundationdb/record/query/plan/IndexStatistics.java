@@ -0,0 +1,213 @@
+/*
+ * IndexStatistics.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.EndpointType;
+import com.apple.foundationdb.record.TupleRange;
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Statistics about the distribution of the entries in a value index, used by the planner to estimate how many entries a
+ * scan will read.
+ *
+ * These consist of the number of entries, the number of distinct values of each prefix of the indexed columns, and an
+ * equi-depth histogram of the first column, given by the values found at evenly spaced positions in the index.
+ *
+ * Estimates assume that the columns are independent and that values are uniformly distributed within each bucket,
+ * which is the usual compromise. They do not need to be accurate, just good enough to tell a selective scan from one
+ * that reads most of the index.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class IndexStatistics {
+    /**
+     * The fraction of entries estimated to satisfy an inequality for which there is no histogram to consult.
+     */
+    public static final double DEFAULT_RANGE_SELECTIVITY = 1.0 / 3;
+
+    private final long entryCount;
+    @Nonnull
+    private final long[] distinctCounts;
+    @Nonnull
+    private final List<Object> leadingBoundaries;
+
+    /**
+     * Create new index statistics.
+     * @param entryCount the number of entries in the index
+     * @param distinctCounts the number of distinct values of each prefix of the index's columns, shortest first
+     * @param leadingBoundaries values of the first column at evenly spaced positions in the index, in index order
+     */
+    public IndexStatistics(long entryCount, @Nonnull long[] distinctCounts, @Nonnull List<Object> leadingBoundaries) {
+        this.entryCount = entryCount;
+        this.distinctCounts = Arrays.copyOf(distinctCounts, distinctCounts.length);
+        this.leadingBoundaries = Collections.unmodifiableList(new ArrayList<>(leadingBoundaries));
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Get the number of distinct values of the first {@code columns} columns of the index.
+     * @param columns the length of the prefix
+     * @return the number of distinct prefixes, or the entry count for a prefix longer than those collected
+     */
+    public long getDistinctCount(int columns) {
+        if (columns <= 0) {
+            return 1;
+        } else if (columns > distinctCounts.length) {
+            return entryCount;
+        } else {
+            return distinctCounts[columns - 1];
+        }
+    }
+
+    public int getColumnCount() {
+        return distinctCounts.length;
+    }
+
+    @Nonnull
+    public List<Object> getLeadingBoundaries() {
+        return leadingBoundaries;
+    }
+
+    /**
+     * Estimate the number of entries that a scan of the index with the given comparisons will read.
+     * Equality comparisons divide the entries among the distinct values of the prefix they cover. An inequality on
+     * the first column is looked up in the histogram if its comparands are known when planning. Any other
+     * inequality is assumed to keep {@link #DEFAULT_RANGE_SELECTIVITY} of the entries.
+     * @param comparisons the comparisons for the scan
+     * @return the estimated number of entries read
+     */
+    public double estimateEntries(@Nonnull ScanComparisons comparisons) {
+        double entries = entryCount;
+        final int equalitySize = comparisons.getEqualitySize();
+        if (equalitySize > 0) {
+            entries /= Math.max(1, getDistinctCount(equalitySize));
+        }
+        if (!comparisons.getInequalityComparisons().isEmpty()) {
+            entries *= equalitySize == 0 ? leadingRangeSelectivity(comparisons) : DEFAULT_RANGE_SELECTIVITY;
+        }
+        return entries;
+    }
+
+    private double leadingRangeSelectivity(@Nonnull ScanComparisons comparisons) {
+        if (leadingBoundaries.isEmpty()) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        final TupleRange range;
+        try {
+            range = comparisons.toTupleRange();
+        } catch (Comparisons.EvaluationContextRequiredException ex) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        if (range.getLowEndpoint() == EndpointType.PREFIX_STRING || range.getHighEndpoint() == EndpointType.PREFIX_STRING) {
+            return DEFAULT_RANGE_SELECTIVITY;
+        }
+        int inside = 0;
+        for (Object boundary : leadingBoundaries) {
+            final Tuple value = Tuple.from(boundary);
+            if (aboveLow(value, range) && belowHigh(value, range)) {
+                inside++;
+            }
+        }
+        // Each boundary stands for the bucket that it ends; count half of one more for the partial buckets at the edges.
+        return Math.min(1.0, (inside + 0.5) / (leadingBoundaries.size() + 1));
+    }
+
+    private static boolean aboveLow(@Nonnull Tuple value, @Nonnull TupleRange range) {
+        if (range.getLow() == null) {
+            return true;
+        }
+        final int compare = TupleHelpers.compare(value, range.getLow());
+        return range.getLowEndpoint() == EndpointType.RANGE_EXCLUSIVE ? compare > 0 : compare >= 0;
+    }
+
+    private static boolean belowHigh(@Nonnull Tuple value, @Nonnull TupleRange range) {
+        if (range.getHigh() == null) {
+            return true;
+        }
+        final int compare = TupleHelpers.compare(value, range.getHigh());
+        return range.getHighEndpoint() == EndpointType.RANGE_EXCLUSIVE ? compare < 0 : compare <= 0;
+    }
+
+    /**
+     * Encode these statistics for storage.
+     * @return a tuple from which {@link #fromTuple} will recreate these statistics
+     */
+    @Nonnull
+    public Tuple toTuple() {
+        Tuple counts = new Tuple();
+        for (long distinctCount : distinctCounts) {
+            counts = counts.add(distinctCount);
+        }
+        return Tuple.from(entryCount, counts, Tuple.fromList(leadingBoundaries));
+    }
+
+    /**
+     * Decode statistics stored with {@link #toTuple}.
+     * @param tuple the stored tuple
+     * @return the decoded statistics
+     */
+    @Nonnull
+    public static IndexStatistics fromTuple(@Nonnull Tuple tuple) {
+        final Tuple counts = tuple.getNestedTuple(1);
+        final long[] distinctCounts = new long[counts.size()];
+        for (int i = 0; i < distinctCounts.length; i++) {
+            distinctCounts[i] = counts.getLong(i);
+        }
+        return new IndexStatistics(tuple.getLong(0), distinctCounts, tuple.getNestedTuple(2).getItems());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        IndexStatistics that = (IndexStatistics) o;
+        return entryCount == that.entryCount &&
+                Arrays.equals(distinctCounts, that.distinctCounts) &&
+                Objects.equals(Tuple.fromList(leadingBoundaries), Tuple.fromList(that.leadingBoundaries));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(entryCount, Arrays.hashCode(distinctCounts), Tuple.fromList(leadingBoundaries));
+    }
+
+    @Override
+    public String toString() {
+        return "IndexStatistics(" + entryCount + " entries, distinct " + Arrays.toString(distinctCounts) +
+               ", " + leadingBoundaries.size() + " boundaries)";
+    }
+}
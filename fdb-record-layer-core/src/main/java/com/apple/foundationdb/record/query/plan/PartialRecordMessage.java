@@ -0,0 +1,221 @@
+/*
+ * PartialRecordMessage.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexEntry;
+import com.google.protobuf.AbstractMessage;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnknownFieldSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A record taken from a covering index entry, as a view over the entry rather than as a built message.
+ *
+ * The index entry fields that make up the record are resolved by {@link IndexKeyValueToPartialRecord} once for each
+ * record type. Field values are only taken from the entry's tuples when they are accessed. Operations that need a real
+ * message, such as serializing or getting a builder, build one with {@link #toMessage}.
+ */
+@API(API.Status.INTERNAL)
+public class PartialRecordMessage extends AbstractMessage {
+    @Nonnull
+    private final Descriptors.Descriptor descriptor;
+    @Nonnull
+    private final Map<Descriptors.FieldDescriptor, IndexKeyValueToPartialRecord.Copier> fields;
+    @Nonnull
+    private final IndexEntry indexEntry;
+    @Nullable
+    private DynamicMessage message;
+
+    PartialRecordMessage(@Nonnull Descriptors.Descriptor descriptor,
+                         @Nonnull Map<Descriptors.FieldDescriptor, IndexKeyValueToPartialRecord.Copier> fields,
+                         @Nonnull IndexEntry indexEntry) {
+        this.descriptor = descriptor;
+        this.fields = fields;
+        this.indexEntry = indexEntry;
+    }
+
+    /**
+     * Get the index entry from which fields are taken.
+     * @return the index entry
+     */
+    @Nonnull
+    public IndexEntry getIndexEntry() {
+        return indexEntry;
+    }
+
+    /**
+     * Build an ordinary message with the same fields as this one.
+     * @return a new message or the one built by an earlier call
+     */
+    @Nonnull
+    public DynamicMessage toMessage() {
+        if (message == null) {
+            final DynamicMessage.Builder builder = DynamicMessage.newBuilder(descriptor);
+            for (Map.Entry<Descriptors.FieldDescriptor, Object> entry : getAllFields().entrySet()) {
+                final Object value = entry.getValue();
+                builder.setField(entry.getKey(), value instanceof PartialRecordMessage ? ((PartialRecordMessage)value).toMessage() : value);
+            }
+            message = builder.build();
+        }
+        return message;
+    }
+
+    @Nullable
+    private Object getValue(@Nonnull Descriptors.FieldDescriptor field) {
+        final IndexKeyValueToPartialRecord.Copier copier = fields.get(field);
+        return copier == null ? null : copier.getValue(field, indexEntry);
+    }
+
+    @Override
+    public Descriptors.Descriptor getDescriptorForType() {
+        return descriptor;
+    }
+
+    @Override
+    public Map<Descriptors.FieldDescriptor, Object> getAllFields() {
+        final Map<Descriptors.FieldDescriptor, Object> allFields = new TreeMap<>();
+        for (Descriptors.FieldDescriptor field : fields.keySet()) {
+            final Object value = getValue(field);
+            if (value != null) {
+                allFields.put(field, value);
+            }
+        }
+        return Collections.unmodifiableMap(allFields);
+    }
+
+    @Override
+    public boolean hasField(Descriptors.FieldDescriptor field) {
+        return getValue(field) != null;
+    }
+
+    @Override
+    public Object getField(Descriptors.FieldDescriptor field) {
+        final Object value = getValue(field);
+        if (value != null) {
+            return value;
+        } else if (field.getJavaType() == Descriptors.FieldDescriptor.JavaType.MESSAGE) {
+            return DynamicMessage.getDefaultInstance(field.getMessageType());
+        } else {
+            return field.getDefaultValue();
+        }
+    }
+
+    // A covering index never supplies repeated fields.
+    @Override
+    public int getRepeatedFieldCount(Descriptors.FieldDescriptor field) {
+        return 0;
+    }
+
+    @Override
+    public Object getRepeatedField(Descriptors.FieldDescriptor field, int index) {
+        throw new IndexOutOfBoundsException("repeated field not in index entry: " + field.getName());
+    }
+
+    @Override
+    public boolean hasOneof(Descriptors.OneofDescriptor oneof) {
+        return getOneofFieldDescriptor(oneof) != null;
+    }
+
+    @Override
+    public Descriptors.FieldDescriptor getOneofFieldDescriptor(Descriptors.OneofDescriptor oneof) {
+        for (int i = 0; i < oneof.getFieldCount(); i++) {
+            final Descriptors.FieldDescriptor field = oneof.getField(i);
+            if (hasField(field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public UnknownFieldSet getUnknownFields() {
+        return UnknownFieldSet.getDefaultInstance();
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return toMessage().isInitialized();
+    }
+
+    @Override
+    public void writeTo(CodedOutputStream output) throws IOException {
+        toMessage().writeTo(output);
+    }
+
+    @Override
+    public int getSerializedSize() {
+        return toMessage().getSerializedSize();
+    }
+
+    @Override
+    public ByteString toByteString() {
+        return toMessage().toByteString();
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return toMessage().toByteArray();
+    }
+
+    @Override
+    public Message getDefaultInstanceForType() {
+        return DynamicMessage.getDefaultInstance(descriptor);
+    }
+
+    @Override
+    public Message.Builder newBuilderForType() {
+        return DynamicMessage.newBuilder(descriptor);
+    }
+
+    @Override
+    public Message.Builder toBuilder() {
+        return toMessage().toBuilder();
+    }
+
+    @Override
+    public Parser<? extends Message> getParserForType() {
+        return toMessage().getParserForType();
+    }
+
+    @Override
+    @SuppressWarnings("PMD.UselessOverridingMethod")
+    public boolean equals(Object other) {
+        return super.equals(other);
+    }
+
+    @Override
+    @SuppressWarnings("PMD.UselessOverridingMethod")
+    public int hashCode() {
+        return super.hashCode();
+    }
+}
@@ -26,10 +26,14 @@ import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.ThenKeyExpression;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithChild;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithIndex;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryTextIndexPlan;
 
 import javax.annotation.Nonnull;
@@ -97,8 +101,8 @@ public class PlanOrderingKey {
         if (primaryKey == null) {
             return null;
         }
-        while (queryPlan instanceof RecordQueryFilterPlan) {
-            queryPlan = ((RecordQueryFilterPlan)queryPlan).getInner();
+        while (queryPlan instanceof RecordQueryFilterPlan || queryPlan instanceof RecordQueryIndexEntryFilterPlan) {
+            queryPlan = ((RecordQueryPlanWithChild)queryPlan).getChild();
         }
         if (queryPlan instanceof RecordQueryPlanWithIndex) {
             final RecordQueryPlanWithIndex indexPlan = (RecordQueryPlanWithIndex)queryPlan;
@@ -118,6 +122,23 @@ public class PlanOrderingKey {
             final int prefixSize;
             if (indexPlan instanceof RecordQueryIndexPlan) {
                 prefixSize = ((RecordQueryIndexPlan)indexPlan).getComparisons().getEqualitySize();
+            } else if (indexPlan instanceof RecordQueryMultiRangeIndexPlan) {
+                // The key from the IN list varies, so it comes after the remaining equalities.
+                final RecordQueryMultiRangeIndexPlan multiRangePlan = (RecordQueryMultiRangeIndexPlan)indexPlan;
+                prefixSize = multiRangePlan.getComparisons().getEqualitySize() - 1;
+                final int position = multiRangePlan.getBindingPosition();
+                if (position < 0) {
+                    return null;
+                }
+                keys.add(prefixSize, keys.remove(position));
+                if (pkeyStart == position) {
+                    pkeyStart = prefixSize;
+                } else if (pkeyStart > position && pkeyStart <= prefixSize) {
+                    pkeyStart--;
+                }
+            } else if (indexPlan instanceof RecordQuerySkipScanIndexPlan) {
+                // Equalities on later columns do not fix the order, since the skipped columns come first.
+                prefixSize = 0;
             } else if (indexPlan instanceof RecordQueryTextIndexPlan) {
                 final TextScan textScan = ((RecordQueryTextIndexPlan)indexPlan).getTextScan();
                 int groupingSize = textScan.getGroupingComparisons() != null ? textScan.getGroupingComparisons().getEqualitySize() : 0;
@@ -21,6 +21,7 @@
 package com.apple.foundationdb.record.query.plan;
 
 import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
 import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.google.common.collect.Sets;
 
@@ -41,9 +42,10 @@ import java.util.Set;
 @API(API.Status.EXPERIMENTAL)
 public class PlannableIndexTypes {
     public static final PlannableIndexTypes DEFAULT = new PlannableIndexTypes(
-            Sets.newHashSet(IndexTypes.VALUE, IndexTypes.VERSION),
+            Sets.newHashSet(IndexTypes.VALUE, IndexTypes.VERSION, IndexTypes.TOP_K),
             Sets.newHashSet(IndexTypes.RANK, IndexTypes.TIME_WINDOW_LEADERBOARD),
-            Sets.newHashSet(IndexTypes.TEXT));
+            Sets.newHashSet(IndexTypes.TEXT),
+            standardAggregateTypes());
 
     @Nonnull
     private final Set<String> valueTypes;
@@ -51,15 +53,31 @@ public class PlannableIndexTypes {
     private final Set<String> rankTypes;
     @Nonnull
     private final Set<String> textTypes;
+    @Nonnull
+    private final Set<String> aggregateTypes;
 
     // TODO extend with more in the future?
 
     public PlannableIndexTypes(@Nonnull Set<String> valueTypes,
                                @Nonnull Set<String> rankTypes,
                                @Nonnull Set<String> textTypes) {
+        this(valueTypes, rankTypes, textTypes, standardAggregateTypes());
+    }
+
+    public PlannableIndexTypes(@Nonnull Set<String> valueTypes,
+                               @Nonnull Set<String> rankTypes,
+                               @Nonnull Set<String> textTypes,
+                               @Nonnull Set<String> aggregateTypes) {
         this.valueTypes = valueTypes;
         this.rankTypes = rankTypes;
         this.textTypes = textTypes;
+        this.aggregateTypes = aggregateTypes;
+    }
+
+    @Nonnull
+    private static Set<String> standardAggregateTypes() {
+        return Sets.newHashSet(IndexTypes.COUNT, IndexTypes.COUNT_UPDATES, IndexTypes.COUNT_NOT_NULL, IndexTypes.SUM,
+                IndexTypes.MIN_EVER_LONG, IndexTypes.MAX_EVER_LONG, IndexTypes.MIN_EVER_TUPLE, IndexTypes.MAX_EVER_TUPLE);
     }
 
     @Nonnull
@@ -76,4 +94,14 @@ public class PlannableIndexTypes {
     public Set<String> getTextTypes() {
         return textTypes;
     }
+
+    /**
+     * Get the index types that keep an aggregate value for each group, like those maintained by atomic mutations.
+     * A {@link IndexScanType#BY_GROUP} scan of such an index gives the groups as keys and the aggregate values as values.
+     * @return the set of aggregate index types
+     */
+    @Nonnull
+    public Set<String> getAggregateTypes() {
+        return aggregateTypes;
+    }
 }
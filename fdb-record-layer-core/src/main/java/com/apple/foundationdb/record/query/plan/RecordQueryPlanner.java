@@ -27,7 +27,9 @@ import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.RecordMetaData;
 import com.apple.foundationdb.record.RecordStoreState;
 import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
 import com.apple.foundationdb.record.metadata.IndexOptions;
+import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.apple.foundationdb.record.metadata.Key;
 import com.apple.foundationdb.record.metadata.RecordType;
 import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
@@ -41,6 +43,7 @@ import com.apple.foundationdb.record.metadata.expressions.RecordTypeKeyExpressio
 import com.apple.foundationdb.record.metadata.expressions.ThenKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.VersionKeyExpression;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.AggregateAccumulator;
 import com.apple.foundationdb.record.provider.foundationdb.leaderboard.TimeWindowRecordFunction;
 import com.apple.foundationdb.record.query.RecordQuery;
 import com.apple.foundationdb.record.query.expressions.AndComponent;
@@ -55,17 +58,24 @@ import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.expressions.QueryRecordFunctionWithComparison;
 import com.apple.foundationdb.record.query.expressions.RecordTypeKeyComparison;
 import com.apple.foundationdb.record.query.plan.planning.BooleanNormalizer;
+import com.apple.foundationdb.record.query.plan.planning.CoveringIndexPlanner;
 import com.apple.foundationdb.record.query.plan.planning.FilterSatisfiedMask;
 import com.apple.foundationdb.record.query.plan.planning.InExtractor;
 import com.apple.foundationdb.record.query.plan.planning.RankComparisons;
+import com.apple.foundationdb.record.query.plan.planning.StatisticsCostModel;
 import com.apple.foundationdb.record.query.plan.planning.TextScanPlanner;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryHashAggregatePlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithIndex;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryStreamingAggregatePlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryTextIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnionPlan;
@@ -83,6 +93,7 @@ import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -104,6 +115,16 @@ public class RecordQueryPlanner implements QueryPlanner {
     public static final int DEFAULT_COMPLEXITY_THRESHOLD = 3000;
     private final int complexityThreshold;
 
+    /**
+     * The default for the largest {@link IndexOptions#LEADING_CARDINALITY_OPTION} of an index that the planner will skip-scan.
+     */
+    public static final long DEFAULT_SKIP_SCAN_MAX_LEADING_CARDINALITY = 100;
+
+    /**
+     * The default for the number of values at which an {@code IN} list is planned as a single multi-range index scan.
+     */
+    public static final int DEFAULT_MULTI_RANGE_IN_THRESHOLD = 100;
+
     @Nonnull
     private final RecordMetaData metaData;
     @Nonnull
@@ -116,6 +137,12 @@ public class RecordQueryPlanner implements QueryPlanner {
     private boolean primaryKeyHasRecordTypePrefix;
     @Nonnull
     private IndexScanPreference indexScanPreference;
+    private long skipScanMaxLeadingCardinality = DEFAULT_SKIP_SCAN_MAX_LEADING_CARDINALITY;
+    private int multiRangeInThreshold = DEFAULT_MULTI_RANGE_IN_THRESHOLD;
+    private int maxHashAggregateGroups;
+    private boolean filterIndexEntries = true;
+    @Nonnull
+    private Map<String, IndexStatistics> indexStatistics = Collections.emptyMap();
 
     public RecordQueryPlanner(@Nonnull RecordMetaData metaData, @Nonnull RecordStoreState recordStoreState) {
         this(metaData, recordStoreState, null);
@@ -173,6 +200,126 @@ public class RecordQueryPlanner implements QueryPlanner {
         this.indexScanPreference = indexScanPreference;
     }
 
+    /**
+     * Get the largest estimated number of distinct leading values for which an index will be skip-scanned.
+     * @return the maximum leading cardinality for a skip-scan
+     * @see #setSkipScanMaxLeadingCardinality
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public long getSkipScanMaxLeadingCardinality() {
+        return skipScanMaxLeadingCardinality;
+    }
+
+    /**
+     * Set the largest estimated number of distinct leading values for which an index will be skip-scanned.
+     * When a filter does not constrain the first column of a value index but does constrain later ones, the index
+     * can still be used with a {@link RecordQuerySkipScanIndexPlan}, which seeks to each distinct value of the first
+     * column in turn. That is only considered for an index whose number of distinct leading values, as counted in its
+     * {@linkplain #setIndexStatistics statistics} or else estimated by its {@link IndexOptions#LEADING_CARDINALITY_OPTION},
+     * is no more than this, since otherwise the seeks will cost more than they save.
+     * @param skipScanMaxLeadingCardinality the maximum leading cardinality for a skip-scan, or {@code 0} to never skip-scan
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setSkipScanMaxLeadingCardinality(long skipScanMaxLeadingCardinality) {
+        this.skipScanMaxLeadingCardinality = skipScanMaxLeadingCardinality;
+    }
+
+    /**
+     * Get the number of values at which an {@code IN} list is planned as a single multi-range index scan.
+     * @return the smallest number of values for a multi-range scan
+     * @see #setMultiRangeInThreshold
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public int getMultiRangeInThreshold() {
+        return multiRangeInThreshold;
+    }
+
+    /**
+     * Set the number of values at which an {@code IN} list is planned as a single multi-range index scan.
+     * When the {@code IN} provides an equality comparison for an index scan, each value gives a range of the index.
+     * Rather than joining the list to the scan, which scans each range separately and then loads its records, a
+     * {@link RecordQueryMultiRangeIndexPlan} reads all of the ranges in order, with later ranges read ahead, and
+     * loads all of their records as one stream. The values of a parameter are not known until execution, so such lists
+     * are only planned that way if the threshold is {@code 1} or less.
+     * @param multiRangeInThreshold the smallest number of values for a multi-range scan
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setMultiRangeInThreshold(int multiRangeInThreshold) {
+        this.multiRangeInThreshold = multiRangeInThreshold;
+    }
+
+    /**
+     * Get the largest number of groups for which an aggregate query will be planned with a hash aggregation.
+     * @return the maximum number of groups for a hash aggregation
+     * @see #setMaxHashAggregateGroups
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public int getMaxHashAggregateGroups() {
+        return maxHashAggregateGroups;
+    }
+
+    /**
+     * Set the largest number of groups for which an aggregate query will be planned with a hash aggregation.
+     * An aggregate that cannot be read from an aggregate index is computed from the records. If an index returns them
+     * in order by group, they are aggregated one group at a time by a {@link RecordQueryStreamingAggregatePlan}.
+     * Otherwise, a {@link RecordQueryHashAggregatePlan} can aggregate them in any order, but must keep every group in
+     * memory, so it is only planned when this is positive, and execution fails if there turn out to be more groups.
+     * @param maxHashAggregateGroups the maximum number of groups for a hash aggregation, or {@code 0} to never plan one
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setMaxHashAggregateGroups(int maxHashAggregateGroups) {
+        this.maxHashAggregateGroups = maxHashAggregateGroups;
+    }
+
+    /**
+     * Get whether filters that can be evaluated from the entries of an index scan are applied before records are fetched.
+     * @return whether to filter index entries
+     * @see #setFilterIndexEntries
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public boolean isFilterIndexEntries() {
+        return filterIndexEntries;
+    }
+
+    /**
+     * Set whether filters that can be evaluated from the entries of an index scan are applied before records are fetched.
+     * When an index scan does not satisfy all of a query's filters, the rest are applied to the records it returns.
+     * Any of those that only compare fields that are also in the index entries can instead be applied by a
+     * {@link RecordQueryIndexEntryFilterPlan}, so that records whose entries do not match are never loaded.
+     * @param filterIndexEntries whether to filter index entries
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setFilterIndexEntries(boolean filterIndexEntries) {
+        this.filterIndexEntries = filterIndexEntries;
+    }
+
+    /**
+     * Get the statistics on indexes used to estimate the cost of plans.
+     * @return a map from index name to statistics
+     * @see #setIndexStatistics
+     */
+    @Nonnull
+    @API(API.Status.EXPERIMENTAL)
+    public Map<String, IndexStatistics> getIndexStatistics() {
+        return indexStatistics;
+    }
+
+    /**
+     * Set the statistics on indexes used to estimate the cost of plans.
+     * Without statistics, candidate plans are ranked by how many of the query's filters they satisfy. When statistics
+     * are available for the indexes that two candidates scan, the one estimated to read fewer keys is chosen instead.
+     * Likewise, an intersection or union of index scans is only chosen over a single filtered scan if it is estimated
+     * to be cheaper. Statistics can be gathered with an
+     * {@link com.apple.foundationdb.record.provider.foundationdb.IndexStatisticsCollector IndexStatisticsCollector}
+     * and loaded with
+     * {@link com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore#loadIndexStatistics() FDBRecordStore.loadIndexStatistics}.
+     * @param indexStatistics a map from index name to statistics
+     */
+    @API(API.Status.EXPERIMENTAL)
+    public void setIndexStatistics(@Nonnull Map<String, IndexStatistics> indexStatistics) {
+        this.indexStatistics = indexStatistics;
+    }
+
     /**
      * Create a plan to get the results of the provided query.
      *
@@ -185,6 +332,31 @@ public class RecordQueryPlanner implements QueryPlanner {
     public RecordQueryPlan plan(@Nonnull RecordQuery query) {
         query.validate(metaData);
 
+        final RecordQueryPlan plan = query.getAggregate() == null ? planRecords(query) : planAggregate(query, query.getAggregate());
+
+        if (timer != null) {
+            plan.logPlanStructure(timer);
+        }
+
+        if (plan.getComplexity() > complexityThreshold) {
+            throw new RecordQueryPlanComplexityException(plan);
+        }
+
+        return plan;
+    }
+
+    @Nonnull
+    private RecordQueryPlan planRecords(@Nonnull RecordQuery query) {
+        final RecordQueryPlan plan = planRecordsIfSortable(query);
+        if (plan == null) {
+            throw new RecordCoreException("Cannot sort without appropriate index: " + query.getSort());
+        }
+        return plan;
+    }
+
+    // Returns null if there is no index for the query's sort.
+    @Nullable
+    private RecordQueryPlan planRecordsIfSortable(@Nonnull RecordQuery query) {
         final PlanContext planContext = getPlanContext(query);
 
         final QueryComponent filter = BooleanNormalizer.normalize(query.getFilter());
@@ -207,22 +379,188 @@ public class RecordQueryPlanner implements QueryPlanner {
                     plan = new RecordQueryFilterPlan(plan, filter);
                 }
             } else {
-                throw new RecordCoreException("Cannot sort without appropriate index: " + sort);
+                return null;
             }
         }
         if (query.getRequiredResults() != null) {
             plan = tryToConvertToCoveringPlan(planContext, plan);
         }
+        return plan;
+    }
 
-        if (timer != null) {
-            plan.logPlanStructure(timer);
+    /**
+     * Plan a query for an aggregate function over each group of the matching records.
+     *
+     * The best plan reads the value for each group directly from an aggregate index whose groups are those of the
+     * function, less any grouping columns fixed by equality comparisons in the filter. For example, a count of the
+     * records with a given value of a field is a single key read from a {@code COUNT} index grouped by that field. The
+     * filter must be satisfied entirely by the index's grouping columns.
+     *
+     * Otherwise, if the function can be computed from the records, they are planned in order by the function's
+     * grouping key, reading the operand from the entries of a covering index where possible, and aggregated as they
+     * are returned by a {@link RecordQueryStreamingAggregatePlan}. If no index gives that order, they can be aggregated
+     * in any order by a {@link RecordQueryHashAggregatePlan}, if {@linkplain #setMaxHashAggregateGroups enabled}.
+     */
+    @Nonnull
+    private RecordQueryPlan planAggregate(@Nonnull RecordQuery query, @Nonnull IndexAggregateFunction aggregate) {
+        if (query.getRecordTypes().size() != 1) {
+            // Results are partial records, which need a unique type.
+            throw new RecordCoreException("Aggregate query must be for a single record type");
+        }
+        final RecordType recordType = metaData.getRecordType(query.getRecordTypes().iterator().next());
+        final KeyExpression operand = aggregate.getOperand();
+        final KeyExpression grouping = operand instanceof GroupingKeyExpression ?
+                                       ((GroupingKeyExpression)operand).getGroupingSubKey() :
+                                       EmptyKeyExpression.EMPTY;
+        final KeyExpression sort = query.getSort();
+        if (sort != null && !sort.isPrefixKey(grouping)) {
+            throw new RecordCoreException("Aggregate query can only be sorted by its grouping key: " + sort);
         }
 
-        if (plan.getComplexity() > complexityThreshold) {
-            throw new RecordQueryPlanComplexityException(plan);
+        final PlanContext planContext = getPlanContext(query);
+        planContext.rankComparisons = new RankComparisons(query.getFilter(), planContext.indexes);
+        final QueryComponent filter = BooleanNormalizer.normalize(query.getFilter());
+        RecordQueryCoveringIndexPlan bestPlan = null;
+        int bestEqualitySize = -1;
+        for (Index index : planContext.indexes) {
+            if (aggregate.getIndex() != null && !aggregate.getIndex().equals(index.getName())) {
+                continue;
+            }
+            final RecordQueryCoveringIndexPlan p = planAggregateIndex(planContext, index, recordType, aggregate, grouping, filter, sort);
+            if (p != null) {
+                // More equality comparisons means fewer groups to read.
+                final int equalitySize = ((RecordQueryIndexPlan)p.getChild()).getComparisons().getEqualitySize();
+                if (equalitySize > bestEqualitySize) {
+                    bestPlan = p;
+                    bestEqualitySize = equalitySize;
+                }
+            }
+        }
+        if (bestPlan != null) {
+            return bestPlan;
         }
 
-        return plan;
+        if (!AggregateAccumulator.isSupported(aggregate.getName()) || grouping.createsDuplicates()) {
+            throw new RecordCoreException("Cannot compute aggregate without appropriate index: " + aggregate);
+        }
+        final List<KeyExpression> groupingFields = normalizedColumns(grouping);
+        final IndexKeyValueToPartialRecord toRecord = partialRecordForGroup(recordType, groupingFields, groupingFields);
+        if (toRecord == null) {
+            throw new RecordCoreException("Cannot return groups as partial records: " + aggregate);
+        }
+        final RecordQuery.Builder recordsQuery = query.toBuilder()
+                .setAggregate(null)
+                .setSort(groupingFields.isEmpty() ? null : grouping, query.isSortReverse())
+                .setRequiredResults(operand.createsDuplicates() ? null : Collections.singletonList(operand));
+        final RecordQueryPlan orderedPlan = planRecordsIfSortable(recordsQuery.build());
+        if (orderedPlan != null) {
+            return new RecordQueryStreamingAggregatePlan(orderedPlan, aggregate, recordType.getName(), toRecord);
+        }
+        if (maxHashAggregateGroups <= 0) {
+            throw new RecordCoreException("Cannot order records by group without appropriate index: " + aggregate);
+        }
+        recordsQuery.setSort(null);
+        return new RecordQueryHashAggregatePlan(planRecords(recordsQuery.build()), aggregate, recordType.getName(), toRecord,
+                maxHashAggregateGroups, query.isSortReverse());
+    }
+
+    @Nullable
+    @SuppressWarnings("squid:S00107") // too many parameters
+    private RecordQueryCoveringIndexPlan planAggregateIndex(@Nonnull PlanContext planContext, @Nonnull Index index,
+                                                           @Nonnull RecordType recordType,
+                                                           @Nonnull IndexAggregateFunction aggregate,
+                                                           @Nonnull KeyExpression grouping,
+                                                           @Nullable QueryComponent filter, @Nullable KeyExpression sort) {
+        if (!indexTypes.getAggregateTypes().contains(index.getType()) || !aggregateIndexMatches(aggregate.getName(), index.getType())) {
+            return null;
+        }
+        final Collection<RecordType> indexRecordTypes = metaData.recordTypesForIndex(index);
+        if (indexRecordTypes.size() != 1 || !indexRecordTypes.contains(recordType)) {
+            return null;
+        }
+        final KeyExpression root = index.getRootExpression();
+        final KeyExpression indexGrouping;
+        final KeyExpression indexGrouped;
+        if (root instanceof GroupingKeyExpression) {
+            indexGrouping = ((GroupingKeyExpression)root).getGroupingSubKey();
+            indexGrouped = ((GroupingKeyExpression)root).getGroupedSubKey();
+        } else {
+            indexGrouping = EmptyKeyExpression.EMPTY;
+            indexGrouped = root;
+        }
+        final KeyExpression operand = aggregate.getOperand();
+        final KeyExpression grouped = operand instanceof GroupingKeyExpression ? ((GroupingKeyExpression)operand).getGroupedSubKey() : operand;
+        if (!normalizedColumns(grouped).equals(normalizedColumns(indexGrouped))) {
+            return null;
+        }
+
+        final CandidateScan candidateScan = new CandidateScan(planContext, index, planContext.query.isSortReverse());
+        final ScoredPlan scoredPlan;
+        if (filter != null) {
+            scoredPlan = planCandidateScan(candidateScan, indexGrouping, filter, sort);
+        } else if (sort != null) {
+            scoredPlan = planSortOnly(candidateScan, indexGrouping, sort);
+        } else {
+            scoredPlan = new ScoredPlan(0, planScan(candidateScan));
+        }
+        if (scoredPlan == null || !scoredPlan.unsatisfiedFilters.isEmpty() || !(scoredPlan.plan instanceof RecordQueryIndexPlan)) {
+            return null;
+        }
+        final RecordQueryIndexPlan indexPlan = (RecordQueryIndexPlan)scoredPlan.plan;
+
+        // The index's groups must be the function's, apart from any leading columns fixed by the filter.
+        final List<KeyExpression> indexGroupingFields = normalizedColumns(indexGrouping);
+        final List<KeyExpression> groupingFields = normalizedColumns(grouping);
+        final int equalitySize = indexPlan.getComparisons().getEqualitySize();
+        if (!groupingFields.equals(indexGroupingFields) &&
+                !groupingFields.equals(indexGroupingFields.subList(equalitySize, indexGroupingFields.size()))) {
+            return null;
+        }
+        return planCoveringByGroup(index, recordType, indexPlan, groupingFields);
+    }
+
+    @Nonnull
+    private static List<KeyExpression> normalizedColumns(@Nonnull KeyExpression key) {
+        // An empty key has no columns, but normalizes to itself.
+        return key.getColumnSize() == 0 ? Collections.emptyList() : key.normalizeKeyForPositions();
+    }
+
+    private static boolean aggregateIndexMatches(@Nonnull String functionName, @Nonnull String indexType) {
+        // Same as AtomicMutationIndexMaintainer.
+        return functionName.equals(indexType) ||
+               (FunctionNames.MAX_EVER.equals(functionName) && (IndexTypes.MAX_EVER_LONG.equals(indexType) || IndexTypes.MAX_EVER_TUPLE.equals(indexType))) ||
+               (FunctionNames.MIN_EVER.equals(functionName) && (IndexTypes.MIN_EVER_LONG.equals(indexType) || IndexTypes.MIN_EVER_TUPLE.equals(indexType)));
+    }
+
+    @Nullable
+    private RecordQueryCoveringIndexPlan planCoveringByGroup(@Nonnull Index index, @Nonnull RecordType recordType,
+                                                             @Nonnull RecordQueryIndexPlan plan,
+                                                             @Nonnull List<KeyExpression> requiredResults) {
+        final IndexKeyValueToPartialRecord toRecord = partialRecordForGroup(recordType,
+                index.getRootExpression().normalizeKeyForPositions(), requiredResults);
+        if (toRecord == null) {
+            return null;
+        }
+        return new RecordQueryCoveringIndexPlan(new RecordQueryIndexPlan(plan.getIndexName(), IndexScanType.BY_GROUP, plan.getComparisons(), plan.isReverse()),
+                recordType.getName(), toRecord);
+    }
+
+    @Nullable
+    private static IndexKeyValueToPartialRecord partialRecordForGroup(@Nonnull RecordType recordType,
+                                                                      @Nonnull List<KeyExpression> keyFields,
+                                                                      @Nonnull List<KeyExpression> requiredResults) {
+        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(recordType.getDescriptor());
+        final List<KeyExpression> valueFields = Collections.emptyList();
+        for (KeyExpression resultField : requiredResults) {
+            if (!CoveringIndexPlanner.addCoveringField(resultField, builder, keyFields, valueFields)) {
+                return null;
+            }
+        }
+        builder.addRequiredMessageFields();
+        if (!builder.isValid()) {
+            return null;
+        }
+        return builder.build();
     }
 
     @Nullable
@@ -276,6 +614,32 @@ public class RecordQueryPlanner implements QueryPlanner {
         return new ScoredPlan(0, planScan(new CandidateScan(planContext, index, false), scanComparisons));
     }
 
+    private boolean isBetterPlan(@Nonnull PlanContext planContext, @Nonnull ScoredPlan plan, @Nullable Index index,
+                                 @Nonnull ScoredPlan bestPlan, @Nullable Index bestIndex) {
+        final int costs = compareCosts(planContext, plan.plan, bestPlan.plan);
+        if (costs != 0) {
+            return costs < 0;
+        }
+        return plan.score > bestPlan.score ||
+               (plan.score == bestPlan.score && compareIndexes(planContext, index, bestIndex) > 0);
+    }
+
+    // Negative if plan1 is estimated to read fewer keys than plan2, positive if more, zero if the same or either is unknown.
+    private int compareCosts(@Nonnull PlanContext planContext, @Nonnull RecordQueryPlan plan1, @Nonnull RecordQueryPlan plan2) {
+        if (planContext.costModel == null) {
+            return 0;
+        }
+        final StatisticsCostModel.Estimate estimate1 = planContext.costModel.estimate(plan1);
+        if (estimate1 == null) {
+            return 0;
+        }
+        final StatisticsCostModel.Estimate estimate2 = planContext.costModel.estimate(plan2);
+        if (estimate2 == null) {
+            return 0;
+        }
+        return Double.compare(estimate1.getKeysRead(), estimate2.getKeysRead());
+    }
+
     private int compareIndexes(PlanContext planContext, @Nullable Index index1, @Nullable Index index2) {
         if (index1 == null) {
             if (index2 == null) {
@@ -323,6 +687,13 @@ public class RecordQueryPlanner implements QueryPlanner {
                 // union instead, that would be superior. If not, don't miss the chance.
                 ScoredPlan asOr = planOr(planContext, (OrComponent) normalized);
                 if (asOr != null) {
+                    if (planContext.costModel != null) {
+                        // Unless the union is estimated to cost more.
+                        final ScoredPlan asAnd = planFilter(planContext, filter, false);
+                        if (asAnd != null && compareCosts(planContext, asAnd.plan, asOr.plan) < 0) {
+                            return asAnd;
+                        }
+                    }
                     return asOr;
                 }
             }
@@ -339,6 +710,7 @@ public class RecordQueryPlanner implements QueryPlanner {
     @Nullable
     private ScoredPlan planFilter(@Nonnull PlanContext planContext, @Nonnull QueryComponent filter, boolean needOrdering) {
         final InExtractor inExtractor = new InExtractor(filter);
+        inExtractor.setMultiRangeThreshold(multiRangeInThreshold);
         if (planContext.query.getSort() != null) {
             inExtractor.setSort(planContext.query.getSort(), planContext.query.isSortReverse());
         } else if (needOrdering) {
@@ -364,8 +736,7 @@ public class RecordQueryPlanner implements QueryPlanner {
                 //   * predicates handled / unhandled.
                 //   * size of row.
                 //   * need for type filtering if row scan with multiple types.
-                if (bestPlan == null || p.score > bestPlan.score ||
-                        (p.score == bestPlan.score && compareIndexes(planContext, index, bestIndex) > 0)) {
+                if (bestPlan == null || isBetterPlan(planContext, p, index, bestPlan, bestIndex)) {
                     bestPlan = p;
                     bestIndex = index;
                 }
@@ -408,11 +779,17 @@ public class RecordQueryPlanner implements QueryPlanner {
                 return p;
             } else if (!indexTypes.getValueTypes().contains(index.getType())) {
                 return null;
+            } else if (indexExpr instanceof GroupingKeyExpression) {
+                indexExpr = ((GroupingKeyExpression) indexExpr).getWholeKey(); // Such as top-K, ordered like a value index.
             }
         }
         if (p == null) {
             p = planCandidateScan(candidateScan, indexExpr, filter, sort);
         }
+        if (p == null && index != null) {
+            // we can't match the first column, but maybe the ones after it
+            p = planSkipScan(candidateScan, index, indexExpr, filter, sort);
+        }
         if (p == null) {
             // we can't match the filter, but maybe the sort
             p = planSortOnly(candidateScan, indexExpr, sort);
@@ -512,7 +889,8 @@ public class RecordQueryPlanner implements QueryPlanner {
                 index -> !query.getAllowedIndexes().contains(index.getName()) :
                 index -> !index.getBooleanOption(IndexOptions.ALLOWED_FOR_QUERY_OPTION, true));
 
-        return new PlanContext(query, indexes, commonPrimaryKey);
+        final StatisticsCostModel costModel = indexStatistics.isEmpty() ? null : new StatisticsCostModel(indexStatistics, indexes);
+        return new PlanContext(query, indexes, commonPrimaryKey, costModel);
     }
 
     @Nullable
@@ -552,16 +930,30 @@ public class RecordQueryPlanner implements QueryPlanner {
             final KeyExpression sort = planContext.query.getSort();
             comparisonKey = getKeyForMerge(sort, comparisonKey);
             ScoredPlan intersectionPlan = planIntersection(intersectionCandidates, comparisonKey);
-            if (intersectionPlan != null) {
+            // Not if filtering the records from the one scan is estimated to read fewer keys than scanning the others as well.
+            final int costs = intersectionPlan == null ? 0 : compareCosts(planContext, intersectionPlan.plan, bestPlan.plan);
+            if (intersectionPlan != null && costs <= 0) {
                 if (intersectionPlan.unsatisfiedFilters.isEmpty()) {
                     return intersectionPlan;
-                } else if (bestPlan.unsatisfiedFilters.size() > intersectionPlan.unsatisfiedFilters.size()) {
+                } else if (costs < 0 || bestPlan.unsatisfiedFilters.size() > intersectionPlan.unsatisfiedFilters.size()) {
                     bestPlan = intersectionPlan;
                 }
             }
         }
-        final RecordQueryPlan filtered = new RecordQueryFilterPlan(bestPlan.plan,
-                planContext.rankComparisons.planComparisonSubsitutes(bestPlan.unsatisfiedFilters));
+        List<QueryComponent> unsatisfiedFilters = planContext.rankComparisons.planComparisonSubsitutes(bestPlan.unsatisfiedFilters);
+        RecordQueryPlan filtered = bestPlan.plan;
+        if (filterIndexEntries && filtered instanceof RecordQueryIndexPlan) {
+            final RecordQueryIndexEntryFilterPlan entryFilterPlan = CoveringIndexPlanner.tryToFilterIndexEntries(metaData,
+                    (RecordQueryIndexPlan)filtered, unsatisfiedFilters, planContext.commonPrimaryKey);
+            if (entryFilterPlan != null) {
+                filtered = entryFilterPlan;
+                unsatisfiedFilters = new ArrayList<>(unsatisfiedFilters);
+                unsatisfiedFilters.removeAll(entryFilterPlan.getFilters());
+            }
+        }
+        if (!unsatisfiedFilters.isEmpty()) {
+            filtered = new RecordQueryFilterPlan(filtered, unsatisfiedFilters);
+        }
         // TODO: further optimization requires knowing which filters are satisfied
         return new ScoredPlan(bestPlan.score, filtered, Collections.emptyList(),
                 bestPlan.createsDuplicates, bestPlan.includedRankComparisons);
@@ -923,6 +1315,54 @@ public class RecordQueryPlanner implements QueryPlanner {
         return null;
     }
 
+    @Nullable
+    private ScoredPlan planSkipScan(@Nonnull CandidateScan candidateScan,
+                                    @Nonnull Index index, @Nonnull KeyExpression indexExpr,
+                                    @Nonnull QueryComponent filter, @Nullable KeyExpression sort) {
+        if (!indexTypes.getValueTypes().contains(index.getType()) || !(indexExpr instanceof ThenKeyExpression)) {
+            return null;
+        }
+        // The skipped column stays first in the ordering, so only a sort the whole index already satisfies is possible.
+        if (sort != null && !sort.isPrefixKey(indexExpr)) {
+            return null;
+        }
+        final List<KeyExpression> children = ((ThenKeyExpression) indexExpr).getChildren();
+        final KeyExpression leading = children.get(0);
+        if (leading.createsDuplicates()) {
+            return null;
+        }
+        final Long leadingCardinality = getLeadingCardinality(candidateScan.planContext, index, leading.getColumnSize());
+        if (leadingCardinality == null || leadingCardinality > skipScanMaxLeadingCardinality) {
+            // A seek for each of many distinct values can cost more than just scanning.
+            return null;
+        }
+        final KeyExpression suffix = children.size() == 2 ? children.get(1) : new ThenKeyExpression(children, 1, children.size());
+        final ScoredPlan suffixPlan = planCandidateScan(candidateScan, suffix, filter, null);
+        if (suffixPlan == null || (suffixPlan.includedRankComparisons != null && !suffixPlan.includedRankComparisons.isEmpty())) {
+            return null;
+        }
+        final ScanComparisons suffixComparisons = getPlanComparisons(suffixPlan);
+        if (suffixComparisons == null || suffixComparisons.isEmpty()) {
+            return null;
+        }
+        RecordQueryPlan plan = new RecordQuerySkipScanIndexPlan(index.getName(), leading.getColumnSize(), suffixComparisons, candidateScan.reverse);
+        plan = addTypeFilterIfNeeded(candidateScan, plan, getPossibleTypes(index));
+        return new ScoredPlan(suffixPlan.score, plan, suffixPlan.unsatisfiedFilters, suffixPlan.createsDuplicates);
+    }
+
+    // The number of distinct values of the leading columns, preferably as collected, otherwise as declared.
+    @Nullable
+    private Long getLeadingCardinality(@Nonnull PlanContext planContext, @Nonnull Index index, int leadingColumns) {
+        if (planContext.costModel != null) {
+            final IndexStatistics statistics = planContext.costModel.getStatistics(index);
+            if (statistics != null) {
+                return statistics.getDistinctCount(leadingColumns);
+            }
+        }
+        final String leadingCardinality = index.getOption(IndexOptions.LEADING_CARDINALITY_OPTION);
+        return leadingCardinality == null ? null : Long.parseLong(leadingCardinality);
+    }
+
     @Nullable
     private ScoredPlan planSortOnly(@Nonnull CandidateScan candidateScan,
                                     @Nonnull KeyExpression index,
@@ -1299,96 +1739,11 @@ public class RecordQueryPlanner implements QueryPlanner {
             // This should already be true when calling, but as a safety precaution, check here anyway.
             return chosenPlan;
         }
-        final Index index = metaData.getIndex(chosenPlan.getIndexName());
-        Collection<RecordType> recordTypes = metaData.recordTypesForIndex(index);
-        if (recordTypes.size() != 1) {
-            return chosenPlan;
-        }
-        final RecordType recordType = recordTypes.iterator().next();
-        final List<KeyExpression> resultFields = new ArrayList<>(context.query.getRequiredResults().size());
-        for (KeyExpression resultField : context.query.getRequiredResults()) {
-            resultFields.addAll(resultField.normalizeKeyForPositions());
-        }
-        final KeyExpression rootExpression = index.getRootExpression();
-        final List<KeyExpression> normalizedKeys = rootExpression.normalizeKeyForPositions();
-        final List<KeyExpression> keyFields;
-        final List<KeyExpression> valueFields;
-        if (rootExpression instanceof KeyWithValueExpression) {
-            final KeyWithValueExpression keyWithValue = (KeyWithValueExpression) rootExpression;
-            keyFields = new ArrayList<>(normalizedKeys.subList(0, keyWithValue.getSplitPoint()));
-            valueFields = new ArrayList<>(normalizedKeys.subList(keyWithValue.getSplitPoint(), normalizedKeys.size()));
-        } else {
-            keyFields = new ArrayList<>(normalizedKeys);
-            valueFields = Collections.singletonList(EmptyKeyExpression.EMPTY);
-        }
-
-        // Like FDBRecordStoreBase.indexEntryKey(), but with key expressions instead of actual values.
-        final List<KeyExpression> primaryKeys = context.commonPrimaryKey == null
-                ? Collections.emptyList()
-                : context.commonPrimaryKey.normalizeKeyForPositions();
-        index.trimPrimaryKey(primaryKeys);
-        keyFields.addAll(primaryKeys);
-
-        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(recordType.getDescriptor());
-
-        for (KeyExpression resultField : resultFields) {
-            if (!addCoveringField(resultField, builder, keyFields, valueFields)) {
-                return chosenPlan;
-            }
-        }
-
-        if (context.commonPrimaryKey != null) {
-            for (KeyExpression primaryKeyField : context.commonPrimaryKey.normalizeKeyForPositions()) {
-                // Need the primary key, even if it wasn't one of the explicit result fields.
-                if (!resultFields.contains(primaryKeyField)) {
-                    addCoveringField(primaryKeyField, builder, keyFields, valueFields);
-                }
-            }
-        }
-
-        if (!builder.isValid()) {
-            return chosenPlan;
-        }
-
-        return new RecordQueryCoveringIndexPlan(chosenPlan, recordType.getName(), builder.build());
+        final RecordQueryPlan coveringPlan = CoveringIndexPlanner.tryToConvertToCoveringPlan(metaData, chosenPlan,
+                context.query.getRequiredResults(), context.commonPrimaryKey);
+        return coveringPlan == null ? chosenPlan : coveringPlan;
     }
 
-    @Nullable
-    private boolean addCoveringField(@Nonnull KeyExpression requiredExpr,
-                                     @Nonnull IndexKeyValueToPartialRecord.Builder builder,
-                                     @Nonnull List<KeyExpression> keyFields,
-                                     @Nonnull List<KeyExpression> valueFields) {
-        final IndexKeyValueToPartialRecord.TupleSource source;
-        final int index;
-        int i = keyFields.indexOf(requiredExpr);
-        if (i >= 0) {
-            source = IndexKeyValueToPartialRecord.TupleSource.KEY;
-            index = i;
-        } else {
-            i = valueFields.indexOf(requiredExpr);
-            if (i >= 0) {
-                source = IndexKeyValueToPartialRecord.TupleSource.VALUE;
-                index = i;
-            } else {
-                return false;
-            }
-        }
-
-        while (requiredExpr instanceof NestingKeyExpression) {
-            NestingKeyExpression nesting = (NestingKeyExpression)requiredExpr;
-            String fieldName = nesting.getParent().getFieldName();
-            requiredExpr = nesting.getChild();
-            builder = builder.getFieldBuilder(fieldName);
-        }
-        if (requiredExpr instanceof FieldKeyExpression) {
-            String fieldName = ((FieldKeyExpression)requiredExpr).getFieldName();
-            builder.addField(fieldName, source, index);
-            return true;
-        } else {
-            return false;
-        }
-    }
-    
     @Nullable
     public RecordQueryPlan planCoveringAggregateIndex(@Nonnull RecordQuery query, @Nonnull String indexName) {
         final Index index = metaData.getIndex(indexName);
@@ -1413,23 +1768,7 @@ public class RecordQueryPlanner implements QueryPlanner {
         if (scoredPlan == null || !scoredPlan.unsatisfiedFilters.isEmpty() || !(scoredPlan.plan instanceof RecordQueryIndexPlan)) {
             return null;
         }
-
-        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(recordType.getDescriptor());
-        final List<KeyExpression> keyFields = index.getRootExpression().normalizeKeyForPositions();
-        final List<KeyExpression> valueFields = Collections.emptyList();
-        for (KeyExpression resultField : query.getRequiredResults()) {
-            if (!addCoveringField(resultField, builder, keyFields, valueFields)) {
-                return null;
-            }
-        }
-        builder.addRequiredMessageFields();
-        if (!builder.isValid()) {
-            return null;
-        }
-
-        RecordQueryIndexPlan plan = (RecordQueryIndexPlan)scoredPlan.plan;
-        plan = new RecordQueryIndexPlan(plan.getIndexName(), IndexScanType.BY_GROUP, plan.getComparisons(), plan.isReverse());
-        return new RecordQueryCoveringIndexPlan(plan, recordType.getName(), builder.build());
+        return planCoveringByGroup(index, recordType, (RecordQueryIndexPlan)scoredPlan.plan, query.getRequiredResults());
     }
 
     private static class PlanContext {
@@ -1439,13 +1778,16 @@ public class RecordQueryPlanner implements QueryPlanner {
         final List<Index> indexes;
         @Nullable
         final KeyExpression commonPrimaryKey;
+        @Nullable
+        final StatisticsCostModel costModel;
         RankComparisons rankComparisons;
 
         public PlanContext(@Nonnull RecordQuery query, @Nonnull List<Index> indexes,
-                           @Nullable KeyExpression commonPrimaryKey) {
+                           @Nullable KeyExpression commonPrimaryKey, @Nullable StatisticsCostModel costModel) {
             this.query = query;
             this.indexes = indexes;
             this.commonPrimaryKey = commonPrimaryKey;
+            this.costModel = costModel;
         }
     }
 
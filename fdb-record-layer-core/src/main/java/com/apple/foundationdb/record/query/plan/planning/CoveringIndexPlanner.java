@@ -0,0 +1,249 @@
+/*
+ * CoveringIndexPlanner.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.planning;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.metadata.Key;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.RecordType;
+import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.FieldKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.KeyWithValueExpression;
+import com.apple.foundationdb.record.metadata.expressions.NestingKeyExpression;
+import com.apple.foundationdb.record.query.expressions.AndOrComponent;
+import com.apple.foundationdb.record.query.expressions.FieldWithComparison;
+import com.apple.foundationdb.record.query.expressions.NotComponent;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithIndex;
+import com.google.protobuf.Descriptors;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A utility class for converting an index scan into a {@link RecordQueryCoveringIndexPlan} when the index entries
+ * have all of the fields that the query requires, so that the records themselves need not be fetched, or into a
+ * {@link RecordQueryIndexEntryFilterPlan} when they have the fields for some of its filters, so that fewer are.
+ */
+@API(API.Status.INTERNAL)
+public class CoveringIndexPlanner {
+
+    /**
+     * Build a covering plan for the given index scan, if its index entries have all of the required fields.
+     * @param metaData the meta-data of the records being queried
+     * @param plan an index scan
+     * @param requiredResults the fields required by the query
+     * @param commonPrimaryKey the primary key of the records being queried, if they all have the same one
+     * @return a covering plan that gets the required fields from the index entries of {@code plan}, or {@code null}
+     * if the index does not have them all or if it has entries of more than one record type
+     */
+    @Nullable
+    public static RecordQueryCoveringIndexPlan tryToConvertToCoveringPlan(@Nonnull RecordMetaData metaData,
+                                                                          @Nonnull RecordQueryPlanWithIndex plan,
+                                                                          @Nonnull List<KeyExpression> requiredResults,
+                                                                          @Nullable KeyExpression commonPrimaryKey) {
+        final Index index = metaData.getIndex(plan.getIndexName());
+        Collection<RecordType> recordTypes = metaData.recordTypesForIndex(index);
+        if (recordTypes.size() != 1) {
+            return null;
+        }
+        final RecordType recordType = recordTypes.iterator().next();
+        final List<KeyExpression> resultFields = new ArrayList<>(requiredResults.size());
+        for (KeyExpression resultField : requiredResults) {
+            resultFields.addAll(resultField.normalizeKeyForPositions());
+        }
+        final List<KeyExpression> keyFields = new ArrayList<>();
+        final List<KeyExpression> valueFields = new ArrayList<>();
+        indexEntryFields(index, commonPrimaryKey, keyFields, valueFields);
+
+        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(recordType.getDescriptor());
+
+        for (KeyExpression resultField : resultFields) {
+            if (!addCoveringField(resultField, builder, keyFields, valueFields)) {
+                return null;
+            }
+        }
+
+        if (commonPrimaryKey != null) {
+            for (KeyExpression primaryKeyField : commonPrimaryKey.normalizeKeyForPositions()) {
+                // Need the primary key, even if it wasn't one of the explicit result fields.
+                if (!resultFields.contains(primaryKeyField)) {
+                    addCoveringField(primaryKeyField, builder, keyFields, valueFields);
+                }
+            }
+        }
+
+        if (!builder.isValid()) {
+            return null;
+        }
+
+        return new RecordQueryCoveringIndexPlan(plan, recordType.getName(), builder.build());
+    }
+
+    /**
+     * Build a plan that filters the entries of the given index scan before their records are fetched, using those of
+     * the given filters that can be evaluated from the fields in the index entries.
+     * @param metaData the meta-data of the records being queried
+     * @param plan an index scan
+     * @param filters filters that the records must satisfy
+     * @param commonPrimaryKey the primary key of the records being queried, if they all have the same one
+     * @return a plan that applies some of {@code filters} to the entries of {@code plan}, or {@code null} if none of
+     * them can be, or if the index has entries of more than one record type
+     * @see RecordQueryIndexEntryFilterPlan#getFilter
+     */
+    @Nullable
+    public static RecordQueryIndexEntryFilterPlan tryToFilterIndexEntries(@Nonnull RecordMetaData metaData,
+                                                                          @Nonnull RecordQueryPlanWithIndex plan,
+                                                                          @Nonnull List<QueryComponent> filters,
+                                                                          @Nullable KeyExpression commonPrimaryKey) {
+        if (plan.getScanType() != IndexScanType.BY_VALUE) {
+            return null;
+        }
+        final Index index = metaData.getIndex(plan.getIndexName());
+        Collection<RecordType> recordTypes = metaData.recordTypesForIndex(index);
+        if (recordTypes.size() != 1) {
+            return null;
+        }
+        final RecordType recordType = recordTypes.iterator().next();
+        final List<KeyExpression> keyFields = new ArrayList<>();
+        final List<KeyExpression> valueFields = new ArrayList<>();
+        indexEntryFields(index, commonPrimaryKey, keyFields, valueFields);
+
+        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(recordType.getDescriptor());
+        final List<QueryComponent> entryFilters = new ArrayList<>();
+        for (QueryComponent filter : filters) {
+            if (addFilterFields(filter, recordType.getDescriptor(), builder, keyFields, valueFields)) {
+                entryFilters.add(filter);
+            }
+        }
+        if (entryFilters.isEmpty()) {
+            return null;
+        }
+        return new RecordQueryIndexEntryFilterPlan(plan, entryFilters, recordType.getName(), builder.build());
+    }
+
+    // Only simple comparisons of single-valued top-level fields are evaluated against index entries, since the partial
+    // record made from an entry has only the one value of any repeated field.
+    private static boolean addFilterFields(@Nonnull QueryComponent filter,
+                                           @Nonnull Descriptors.Descriptor recordDescriptor,
+                                           @Nonnull IndexKeyValueToPartialRecord.Builder builder,
+                                           @Nonnull List<KeyExpression> keyFields,
+                                           @Nonnull List<KeyExpression> valueFields) {
+        if (filter instanceof FieldWithComparison) {
+            final String fieldName = ((FieldWithComparison)filter).getFieldName();
+            final Descriptors.FieldDescriptor fieldDescriptor = recordDescriptor.findFieldByName(fieldName);
+            if (fieldDescriptor == null || fieldDescriptor.isRepeated()) {
+                return false;
+            }
+            return builder.hasField(fieldName) || addCoveringField(Key.Expressions.field(fieldName), builder, keyFields, valueFields);
+        } else if (filter instanceof NotComponent) {
+            return addFilterFields(((NotComponent)filter).getChild(), recordDescriptor, builder, keyFields, valueFields);
+        } else if (filter instanceof AndOrComponent) {
+            for (QueryComponent child : ((AndOrComponent)filter).getChildren()) {
+                if (!addFilterFields(child, recordDescriptor, builder, keyFields, valueFields)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    // Like FDBRecordStoreBase.indexEntryKey(), but with key expressions instead of actual values.
+    private static void indexEntryFields(@Nonnull Index index, @Nullable KeyExpression commonPrimaryKey,
+                                         @Nonnull List<KeyExpression> keyFields, @Nonnull List<KeyExpression> valueFields) {
+        final KeyExpression rootExpression = index.getRootExpression();
+        final List<KeyExpression> normalizedKeys = rootExpression.normalizeKeyForPositions();
+        if (rootExpression instanceof KeyWithValueExpression) {
+            final KeyWithValueExpression keyWithValue = (KeyWithValueExpression) rootExpression;
+            keyFields.addAll(normalizedKeys.subList(0, keyWithValue.getSplitPoint()));
+            valueFields.addAll(normalizedKeys.subList(keyWithValue.getSplitPoint(), normalizedKeys.size()));
+        } else {
+            keyFields.addAll(normalizedKeys);
+            valueFields.add(EmptyKeyExpression.EMPTY);
+        }
+
+        final List<KeyExpression> primaryKeys = commonPrimaryKey == null
+                ? Collections.emptyList()
+                : commonPrimaryKey.normalizeKeyForPositions();
+        index.trimPrimaryKey(primaryKeys);
+        keyFields.addAll(primaryKeys);
+    }
+
+    /**
+     * Add a field to a partial record builder, taking its value from the position in the index entry where the field
+     * is found.
+     * @param requiredExpr the field
+     * @param builder a builder for partial records
+     * @param keyFields the fields in the key of the index entry
+     * @param valueFields the fields in the value of the index entry
+     * @return {@code true} if the field was found in the index entry
+     */
+    public static boolean addCoveringField(@Nonnull KeyExpression requiredExpr,
+                                           @Nonnull IndexKeyValueToPartialRecord.Builder builder,
+                                           @Nonnull List<KeyExpression> keyFields,
+                                           @Nonnull List<KeyExpression> valueFields) {
+        final IndexKeyValueToPartialRecord.TupleSource source;
+        final int index;
+        int i = keyFields.indexOf(requiredExpr);
+        if (i >= 0) {
+            source = IndexKeyValueToPartialRecord.TupleSource.KEY;
+            index = i;
+        } else {
+            i = valueFields.indexOf(requiredExpr);
+            if (i >= 0) {
+                source = IndexKeyValueToPartialRecord.TupleSource.VALUE;
+                index = i;
+            } else {
+                return false;
+            }
+        }
+
+        while (requiredExpr instanceof NestingKeyExpression) {
+            NestingKeyExpression nesting = (NestingKeyExpression)requiredExpr;
+            String fieldName = nesting.getParent().getFieldName();
+            requiredExpr = nesting.getChild();
+            builder = builder.getFieldBuilder(fieldName);
+        }
+        if (requiredExpr instanceof FieldKeyExpression) {
+            String fieldName = ((FieldKeyExpression)requiredExpr).getFieldName();
+            builder.addField(fieldName, source, index);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private CoveringIndexPlanner() {
+    }
+}
@@ -22,6 +22,7 @@ package com.apple.foundationdb.record.query.plan.planning;
 
 import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.Bindings;
+import com.apple.foundationdb.record.IndexScanType;
 import com.apple.foundationdb.record.metadata.Key;
 import com.apple.foundationdb.record.metadata.expressions.FieldKeyExpression;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
@@ -38,7 +39,10 @@ import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.PlanOrderingKey;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryInParameterJoinPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -57,6 +61,7 @@ public class InExtractor {
     private final QueryComponent filter;
     private final List<InClause> inClauses;
     private QueryComponent subFilter;
+    private int multiRangeThreshold = Integer.MAX_VALUE;
 
     public InExtractor(QueryComponent filter) {
         this.filter = filter;
@@ -169,6 +174,16 @@ public class InExtractor {
         }
     }
 
+    /**
+     * Set the number of elements at which an {@code IN} list is scanned as multiple ranges of a single index scan,
+     * when it provides an equality comparison for that scan, instead of joined to it.
+     * A list given by a parameter, whose size is not known, is only scanned that way when this is at most {@code 1}.
+     * @param multiRangeThreshold the smallest number of values for a {@link RecordQueryMultiRangeIndexPlan}
+     */
+    public void setMultiRangeThreshold(int multiRangeThreshold) {
+        this.multiRangeThreshold = multiRangeThreshold;
+    }
+
     public void cancel() {
         inClauses.clear();
         subFilter = filter;
@@ -177,7 +192,12 @@ public class InExtractor {
     @Nonnull
     public RecordQueryPlan wrap(RecordQueryPlan plan) {
         for (int i = inClauses.size() - 1; i >= 0; i--) {
-            plan = inClauses.get(i).wrap(plan);
+            final InClause inClause = inClauses.get(i);
+            RecordQueryPlan multiRange = null;
+            if (inClause.size() >= multiRangeThreshold) {
+                multiRange = inClause.toMultiRange(plan);
+            }
+            plan = multiRange != null ? multiRange : inClause.wrap(plan);
         }
         return plan;
     }
@@ -223,6 +243,31 @@ public class InExtractor {
         }
 
         protected abstract RecordQueryPlan wrap(RecordQueryPlan inner);
+
+        // The number of values, or 1 if it is not known until execution.
+        protected abstract int size();
+
+        @Nonnull
+        protected abstract RecordQueryMultiRangeIndexPlan multiRange(@Nonnull RecordQueryIndexPlan indexPlan);
+
+        // If the inner plan just scans an index using the binding for one of its equalities, do that for every value as one scan.
+        @Nullable
+        protected RecordQueryPlan toMultiRange(@Nonnull RecordQueryPlan inner) {
+            if (inner instanceof RecordQueryTypeFilterPlan) {
+                final RecordQueryTypeFilterPlan typeFilter = (RecordQueryTypeFilterPlan) inner;
+                final RecordQueryPlan multiRange = toMultiRange(typeFilter.getInner());
+                return multiRange == null ? null : new RecordQueryTypeFilterPlan(multiRange, typeFilter.getRecordTypes());
+            }
+            if (!(inner instanceof RecordQueryIndexPlan)) {
+                return null;
+            }
+            final RecordQueryIndexPlan indexPlan = (RecordQueryIndexPlan) inner;
+            if (indexPlan.getScanType() != IndexScanType.BY_VALUE || (sortValues && sortReverse != indexPlan.isReverse())) {
+                return null;
+            }
+            final RecordQueryMultiRangeIndexPlan multiRange = multiRange(indexPlan);
+            return multiRange.getBindingPosition() < 0 ? null : multiRange;
+        }
     }
 
     static class InValuesClause extends InClause {
@@ -238,6 +283,18 @@ public class InExtractor {
         protected RecordQueryPlan wrap(RecordQueryPlan inner) {
             return new RecordQueryInValuesJoinPlan(inner, bindingName, values, sortValues, sortReverse);
         }
+
+        @Override
+        protected int size() {
+            return values == null ? 0 : values.size();
+        }
+
+        @Nonnull
+        @Override
+        protected RecordQueryMultiRangeIndexPlan multiRange(@Nonnull RecordQueryIndexPlan indexPlan) {
+            return new RecordQueryMultiRangeIndexPlan(indexPlan.getIndexName(), indexPlan.getComparisons(), indexPlan.isReverse(),
+                    bindingName, values == null ? Collections.emptyList() : values, null);
+        }
     }
 
     static class InParameterClause extends InClause {
@@ -253,5 +310,17 @@ public class InExtractor {
         protected RecordQueryPlan wrap(RecordQueryPlan inner) {
             return new RecordQueryInParameterJoinPlan(inner, bindingName, parameterName, sortValues, sortReverse);
         }
+
+        @Override
+        protected int size() {
+            return 1;
+        }
+
+        @Nonnull
+        @Override
+        protected RecordQueryMultiRangeIndexPlan multiRange(@Nonnull RecordQueryIndexPlan indexPlan) {
+            return new RecordQueryMultiRangeIndexPlan(indexPlan.getIndexName(), indexPlan.getComparisons(), indexPlan.isReverse(),
+                    bindingName, null, parameterName);
+        }
     }
 }
@@ -0,0 +1,164 @@
+/*
+ * RequiredFields.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.planning;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.metadata.RecordType;
+import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.FieldKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.NestingKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.RecordTypeKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.ThenKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.VersionKeyExpression;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.ComponentWithChildren;
+import com.apple.foundationdb.record.query.expressions.FieldWithComparison;
+import com.apple.foundationdb.record.query.expressions.NestedField;
+import com.apple.foundationdb.record.query.expressions.NotComponent;
+import com.apple.foundationdb.record.query.expressions.OneOfThemWithComparison;
+import com.apple.foundationdb.record.query.expressions.OneOfThemWithComponent;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.expressions.RecordTypeKeyComparison;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Determine which top-level fields of a record a query needs in order to be executed and to produce its results.
+ *
+ * Only fields that are named by the query's filter, sort, required results or by the primary keys of the queried
+ * record types are included. Since nested and repeated fields are needed as a whole, only the name of the outermost field
+ * is given. If some part of the query, such as a function, might access any field, then the required fields cannot be
+ * determined and {@code null} is returned.
+ */
+@API(API.Status.INTERNAL)
+public class RequiredFields {
+    private RequiredFields() {
+    }
+
+    /**
+     * Get the names of the top-level fields needed to execute the given query.
+     * @param metaData meta-data for the queried record store
+     * @param query the query to be executed
+     * @return the names of required fields or {@code null} if they cannot be determined
+     */
+    @Nullable
+    public static Set<String> forQuery(@Nonnull RecordMetaData metaData, @Nonnull RecordQuery query) {
+        final Set<String> fields = new HashSet<>();
+        final Collection<RecordType> recordTypes;
+        if (query.getRecordTypes().isEmpty()) {
+            recordTypes = metaData.getRecordTypes().values();
+        } else {
+            recordTypes = new HashSet<>();
+            for (String recordTypeName : query.getRecordTypes()) {
+                recordTypes.add(metaData.getRecordType(recordTypeName));
+            }
+        }
+        for (RecordType recordType : recordTypes) {
+            if (!addKeyFields(recordType.getPrimaryKey(), fields)) {
+                return null;
+            }
+        }
+        if (query.getFilter() != null && !addComponentFields(query.getFilter(), fields)) {
+            return null;
+        }
+        if (query.getSort() != null && !addKeyFields(query.getSort(), fields)) {
+            return null;
+        }
+        if (query.getRequiredResults() != null) {
+            for (KeyExpression requiredResult : query.getRequiredResults()) {
+                if (!addKeyFields(requiredResult, fields)) {
+                    return null;
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Add the top-level fields needed to evaluate the given query component.
+     * @param component the filter to be evaluated
+     * @param fields the set to add field names to
+     * @return {@code true} if all the fields needed were determined
+     */
+    public static boolean addComponentFields(@Nonnull QueryComponent component, @Nonnull Set<String> fields) {
+        if (component instanceof FieldWithComparison) {
+            fields.add(((FieldWithComparison)component).getFieldName());
+            return true;
+        } else if (component instanceof NestedField) {
+            fields.add(((NestedField)component).getFieldName());
+            return true;
+        } else if (component instanceof OneOfThemWithComparison) {
+            fields.add(((OneOfThemWithComparison)component).getFieldName());
+            return true;
+        } else if (component instanceof OneOfThemWithComponent) {
+            fields.add(((OneOfThemWithComponent)component).getFieldName());
+            return true;
+        } else if (component instanceof RecordTypeKeyComparison) {
+            return true;
+        } else if (component instanceof NotComponent) {
+            return addComponentFields(((NotComponent)component).getChild(), fields);
+        } else if (component instanceof ComponentWithChildren) {
+            for (QueryComponent child : ((ComponentWithChildren)component).getChildren()) {
+                if (!addComponentFields(child, fields)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            // Record functions, for instance, can depend on any part of the record.
+            return false;
+        }
+    }
+
+    /**
+     * Add the top-level fields needed to evaluate the given key expression.
+     * @param key the key expression to be evaluated
+     * @param fields the set to add field names to
+     * @return {@code true} if all the fields needed were determined
+     */
+    public static boolean addKeyFields(@Nonnull KeyExpression key, @Nonnull Set<String> fields) {
+        if (key instanceof FieldKeyExpression) {
+            fields.add(((FieldKeyExpression)key).getFieldName());
+            return true;
+        } else if (key instanceof NestingKeyExpression) {
+            fields.add(((NestingKeyExpression)key).getParent().getFieldName());
+            return true;
+        } else if (key instanceof ThenKeyExpression) {
+            for (KeyExpression child : ((ThenKeyExpression)key).getChildren()) {
+                if (!addKeyFields(child, fields)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (key instanceof GroupingKeyExpression) {
+            return addKeyFields(((GroupingKeyExpression)key).getWholeKey(), fields);
+        } else {
+            return key instanceof EmptyKeyExpression || key instanceof RecordTypeKeyExpression || key instanceof VersionKeyExpression;
+        }
+    }
+}
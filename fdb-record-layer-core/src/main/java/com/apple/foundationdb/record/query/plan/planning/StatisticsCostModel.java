@@ -0,0 +1,231 @@
+/*
+ * StatisticsCostModel.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.planning;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexEntryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedUnionPlan;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimate the cost of executing a plan from {@link IndexStatistics} on the indexes it scans.
+ *
+ * The cost is the number of keys read: one for each index entry scanned and one for each record loaded. Only plans
+ * built out of value index scans with statistics can be estimated; for anything else, such as a record scan or an index
+ * of another type, the estimate is {@code null}, and the planner falls back to comparing plans by how many filters
+ * they satisfy.
+ *
+ * The number of records, needed to estimate how many satisfy all of the branches of an intersection, is taken to be
+ * the largest number of entries of any of the candidate indexes that has exactly one entry per record.
+ */
+@API(API.Status.INTERNAL)
+public class StatisticsCostModel {
+    @Nonnull
+    private final Map<String, IndexStatistics> indexStatistics;
+    private final long recordCount;
+
+    /**
+     * The estimated cost of a plan.
+     */
+    public static class Estimate {
+        private final double records;
+        private final double keysRead;
+
+        public Estimate(double records, double keysRead) {
+            this.records = records;
+            this.keysRead = keysRead;
+        }
+
+        /**
+         * Get the estimated number of records returned by the plan.
+         * @return the estimated number of records
+         */
+        public double getRecords() {
+            return records;
+        }
+
+        /**
+         * Get the estimated number of keys read by the plan.
+         * @return the estimated number of keys
+         */
+        public double getKeysRead() {
+            return keysRead;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f records / %.1f keys", records, keysRead);
+        }
+    }
+
+    public StatisticsCostModel(@Nonnull Map<String, IndexStatistics> indexStatistics, @Nonnull Collection<Index> candidateIndexes) {
+        this.indexStatistics = indexStatistics;
+        long count = 0;
+        for (Index index : candidateIndexes) {
+            final IndexStatistics statistics = indexStatistics.get(index.getName());
+            if (statistics != null && !index.getRootExpression().createsDuplicates()) {
+                count = Math.max(count, statistics.getEntryCount());
+            }
+        }
+        this.recordCount = count;
+    }
+
+    @Nullable
+    public IndexStatistics getStatistics(@Nonnull Index index) {
+        return indexStatistics.get(index.getName());
+    }
+
+    /**
+     * Get the estimated number of records of the types being queried.
+     * @return the estimated number of records or {@code 0} if unknown
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Estimate the cost of the given plan.
+     * @param plan the plan to estimate
+     * @return the estimate or {@code null} if it cannot be estimated from the available statistics
+     */
+    @Nullable
+    @SuppressWarnings("squid:S3776") // Cognitive complexity is high due to cases for each kind of plan.
+    public Estimate estimate(@Nonnull RecordQueryPlan plan) {
+        if (plan instanceof RecordQueryIndexPlan) {
+            final RecordQueryIndexPlan indexPlan = (RecordQueryIndexPlan)plan;
+            return estimateIndexScan(indexPlan.getIndexName(), indexPlan.getScanType(), indexPlan.getComparisons(), 1, true);
+        } else if (plan instanceof RecordQueryCoveringIndexPlan) {
+            final RecordQueryPlan child = ((RecordQueryCoveringIndexPlan)plan).getChild();
+            if (child instanceof RecordQueryIndexPlan) {
+                final RecordQueryIndexPlan indexPlan = (RecordQueryIndexPlan)child;
+                return estimateIndexScan(indexPlan.getIndexName(), indexPlan.getScanType(), indexPlan.getComparisons(), 1, false);
+            }
+            return null;
+        } else if (plan instanceof RecordQueryMultiRangeIndexPlan) {
+            final RecordQueryMultiRangeIndexPlan multiRangePlan = (RecordQueryMultiRangeIndexPlan)plan;
+            if (multiRangePlan.getValues() == null) {
+                return null;
+            }
+            return estimateIndexScan(multiRangePlan.getIndexName(), multiRangePlan.getScanType(), multiRangePlan.getComparisons(),
+                    multiRangePlan.getValues().size(), true);
+        } else if (plan instanceof RecordQuerySkipScanIndexPlan) {
+            return estimateSkipScan((RecordQuerySkipScanIndexPlan)plan);
+        } else if (plan instanceof RecordQueryTypeFilterPlan || plan instanceof RecordQueryFilterPlan ||
+                   plan instanceof RecordQueryIndexEntryFilterPlan || plan instanceof RecordQueryUnorderedPrimaryKeyDistinctPlan) {
+            // Filters cost nothing more to evaluate than the records they are given.
+            return estimate(plan.getChildren().get(0));
+        } else if (plan instanceof RecordQueryInValuesJoinPlan) {
+            final RecordQueryInValuesJoinPlan inPlan = (RecordQueryInValuesJoinPlan)plan;
+            final List<Object> values = inPlan.getValues(null);
+            final Estimate inner = estimate(inPlan.getInner());
+            if (values == null || inner == null) {
+                return null;
+            }
+            return new Estimate(inner.records * values.size(), inner.keysRead * values.size());
+        } else if (plan instanceof RecordQueryIntersectionPlan) {
+            return estimateIntersection(plan.getChildren());
+        } else if (plan instanceof RecordQueryUnionPlan || plan instanceof RecordQueryUnorderedUnionPlan) {
+            double records = 0;
+            double keysRead = 0;
+            for (RecordQueryPlan child : plan.getChildren()) {
+                final Estimate childEstimate = estimate(child);
+                if (childEstimate == null) {
+                    return null;
+                }
+                records += childEstimate.records;
+                keysRead += childEstimate.keysRead;
+            }
+            return new Estimate(records, keysRead);
+        } else {
+            return null;
+        }
+    }
+
+    @Nullable
+    private Estimate estimateIndexScan(@Nonnull String indexName, @Nonnull IndexScanType scanType,
+                                       @Nonnull ScanComparisons comparisons, int ranges, boolean fetchRecords) {
+        final IndexStatistics statistics = indexStatistics.get(indexName);
+        if (statistics == null || !IndexScanType.BY_VALUE.equals(scanType)) {
+            return null;
+        }
+        final double entries = statistics.estimateEntries(comparisons) * ranges;
+        return new Estimate(entries, fetchRecords ? 2 * entries : entries);
+    }
+
+    @Nullable
+    private Estimate estimateSkipScan(@Nonnull RecordQuerySkipScanIndexPlan plan) {
+        final IndexStatistics statistics = indexStatistics.get(plan.getIndexName());
+        if (statistics == null) {
+            return null;
+        }
+        final int prefixSize = plan.getPrefixSize();
+        final ScanComparisons suffix = plan.getSuffixComparisons();
+        final long prefixes = Math.max(1, statistics.getDistinctCount(prefixSize));
+        // The equalities on the columns after the prefix divide up the entries for each prefix.
+        double entries = statistics.getEntryCount() * (double)prefixes /
+                         Math.max(prefixes, statistics.getDistinctCount(prefixSize + suffix.getEqualitySize()));
+        if (!suffix.getInequalityComparisons().isEmpty()) {
+            entries *= IndexStatistics.DEFAULT_RANGE_SELECTIVITY;
+        }
+        // Plus one seek for each prefix.
+        return new Estimate(entries, 2 * entries + prefixes);
+    }
+
+    @Nullable
+    private Estimate estimateIntersection(@Nonnull List<RecordQueryPlan> children) {
+        double records = 1;
+        double keysRead = 0;
+        double fewest = Double.MAX_VALUE;
+        for (RecordQueryPlan child : children) {
+            final Estimate childEstimate = estimate(child);
+            if (childEstimate == null) {
+                return null;
+            }
+            keysRead += childEstimate.keysRead;
+            fewest = Math.min(fewest, childEstimate.records);
+            if (recordCount > 0) {
+                records *= childEstimate.records / recordCount;
+            }
+        }
+        // Assuming the branches are independent, the fraction of records in all of them is the product of the fractions in each.
+        return new Estimate(recordCount > 0 ? Math.min(fewest, records * recordCount) : fewest, keysRead);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * ChildExecuteProperties.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.record.CursorStreamingMode;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.ScanProperties;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Execute properties for the children of plans, such as unions and {@code IN} joins, whose results never include more
+ * records from any one child than the plan itself returns.
+ *
+ * Such a child can be given the limit of the whole plan, plus its skip, so that it stops as soon as it has produced
+ * everything that could be returned. When the child then scans with exactly that limit, it is better for it to ask
+ * for all of those rows at once than to start small and grow the batches, as it would in the default iterator mode.
+ */
+class ChildExecuteProperties {
+    private ChildExecuteProperties() {
+    }
+
+    /**
+     * Get the execute properties for one child of a plan executed with the given properties.
+     * @param child the child plan
+     * @param executeProperties the execute properties of the parent plan
+     * @return execute properties with no skip and a limit of the parent's skip plus limit
+     */
+    @Nonnull
+    static ExecuteProperties forChild(@Nonnull RecordQueryPlan child, @Nonnull ExecuteProperties executeProperties) {
+        final ExecuteProperties childExecuteProperties = executeProperties.clearSkipAndAdjustLimit();
+        if (childExecuteProperties.getReturnedRowLimit() != ReadTransaction.ROW_LIMIT_UNLIMITED &&
+                childExecuteProperties.getDefaultCursorStreamingMode() == CursorStreamingMode.ITERATOR &&
+                scansWithLimit(child)) {
+            // Asking for all of a limited range is the same as asking for exactly that many rows.
+            return childExecuteProperties.setDefaultCursorStreamingMode(CursorStreamingMode.WANT_ALL);
+        }
+        return childExecuteProperties;
+    }
+
+    /**
+     * Get whether the given plan passes its returned row limit straight to the {@link ScanProperties} of its scan, so
+     * that it reads no more rows than it returns. Plans that filter or remove duplicates clear the limit for their
+     * children, which must then not be asked for all their rows. So does a {@link RecordQueryScanPlan} when records are
+     * split, since it cannot know how many key-values each record takes, so record scans are never included.
+     * @param plan the plan to check
+     * @return {@code true} if the plan scans using its own limit
+     */
+    private static boolean scansWithLimit(@Nonnull RecordQueryPlan plan) {
+        if (plan instanceof RecordQueryCoveringIndexPlan) {
+            return scansWithLimit(((RecordQueryCoveringIndexPlan)plan).getChild());
+        }
+        return plan instanceof RecordQueryIndexPlan ||
+               plan instanceof RecordQueryMultiRangeIndexPlan;
+    }
+}
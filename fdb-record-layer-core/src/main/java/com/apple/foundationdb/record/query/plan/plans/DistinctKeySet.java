@@ -0,0 +1,587 @@
+/*
+ * DistinctKeySet.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.logging.KeyValueLogMessage;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A set of keys, given as packed tuple bytes, used to remove duplicates from a stream of records, with a bound on the
+ * memory that it uses.
+ *
+ * Keys are divided into partitions by hash. Each partition is an open-addressing hash table of offsets, whose keys are
+ * stored end to end in a single byte array, so that there is no object for each key. When the memory used by all the
+ * partitions goes over the limit, the partition with the most key bytes in memory writes them to a local file. Such a
+ * partition keeps its table, which now holds offsets into the file, and a small write buffer for new keys. So the
+ * memory still grows by the size of a table slot for each key, but no longer by the size of the key itself.
+ *
+ * Since the table keeps the full hash of each key, checking whether a key is present reads from the file only when
+ * the hash matches, which is almost always when the key really is a duplicate, and then only that one key. New keys are
+ * written a buffer at a time. The keys of a partition, in memory or in its file, are addressed by {@code int} offsets,
+ * and adding more than that allows fails with a {@link RecordCoreException}.
+ *
+ * Cursors should use {@link #addAsync}, which only touches a file on a separate executor, so that a thread that must
+ * not block, such as one completing reads from the database, never waits on the local disk. A key that cannot be
+ * packed, because it has an incomplete versionstamp, is kept as a list in memory instead. There can only be as many
+ * of those as there are records written by the same transaction.
+ *
+ * The set is not thread-safe, and no more than one add should be outstanding at a time. It should be closed to remove
+ * any files that it wrote. If it is not, its files are closed, and so removed, the next time some other set writes a
+ * file after this one has been garbage collected.
+ */
+@API(API.Status.INTERNAL)
+public class DistinctKeySet implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistinctKeySet.class);
+
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    private static final int INITIAL_SLOTS = 16;
+    private static final int INITIAL_ARENA = 256;
+    private static final int SPILL_BUFFER_SIZE = 4096;
+    private static final int MIN_READ_BUFFER_SIZE = 64;
+    private static final long MAX_PARTITION_BYTES = Integer.MAX_VALUE - 1;
+    private static final String SPILL_FILE_PREFIX = "fdb-record-layer-distinct";
+    private static final String SPILL_FILE_SUFFIX = ".keys";
+
+    // The files of every set that has written any and not yet been closed, and those whose set has been garbage collected.
+    private static final Set<SpillFiles> OPEN_SPILL_FILES = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<DistinctKeySet> ABANDONED_SPILL_FILES = new ReferenceQueue<>();
+    private static final Executor SPILL_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("fdb-record-layer-distinct-spill-%d").setDaemon(true).build());
+
+    private final long memoryLimit;
+    @Nullable
+    private final Path spillDirectory;
+    @Nullable
+    private final StoreTimer timer;
+    @Nonnull
+    private final Partition[] partitions;
+    @Nullable
+    private SpillFiles spillFiles;
+    @Nullable
+    private Set<List<Object>> unpackableKeys;
+    private long memoryUsed;
+    private long peakMemoryUsed;
+
+    /**
+     * Create a new key set that writes any files to the default temporary-file directory.
+     * @param memoryLimit the number of bytes of memory over which partitions are written to files, or
+     * {@link ExecuteProperties#UNLIMITED_MEMORY} to keep everything in memory
+     * @param timer timer with which to record memory use and spilling
+     */
+    public DistinctKeySet(long memoryLimit, @Nullable StoreTimer timer) {
+        this(memoryLimit, null, timer);
+    }
+
+    /**
+     * Create a new key set.
+     * @param memoryLimit the number of bytes of memory over which partitions are written to files, or
+     * {@link ExecuteProperties#UNLIMITED_MEMORY} to keep everything in memory
+     * @param spillDirectory the directory in which to write files, or {@code null} for the default temporary-file directory
+     * @param timer timer with which to record memory use and spilling
+     */
+    public DistinctKeySet(long memoryLimit, @Nullable Path spillDirectory, @Nullable StoreTimer timer) {
+        this.memoryLimit = memoryLimit;
+        this.spillDirectory = spillDirectory;
+        this.timer = timer;
+        this.partitions = new Partition[PARTITION_COUNT];
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * Add a key to the set, reading or writing any file on a separate executor.
+     * @param key the key
+     * @return a future that completes to {@code true} if the key was not already present
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> addAsync(@Nonnull Tuple key) {
+        if (key.hasIncompleteVersionstamp()) {
+            if (unpackableKeys == null) {
+                unpackableKeys = new HashSet<>();
+            }
+            return CompletableFuture.completedFuture(unpackableKeys.add(key.getItems()));
+        }
+        return addAsync(key.pack());
+    }
+
+    /**
+     * Add a key to the set, reading or writing any file on a separate executor.
+     * @param key the packed key
+     * @return a future that completes to {@code true} if the key was not already present
+     */
+    @Nonnull
+    public CompletableFuture<Boolean> addAsync(@Nonnull byte[] key) {
+        final int hash = hash(key);
+        final Partition partition = partitionFor(hash);
+        if (partition.mayAccessFile(key, hash) || maySpill(partition, key)) {
+            return CompletableFuture.supplyAsync(() -> add(key, hash, partition), SPILL_EXECUTOR);
+        }
+        return CompletableFuture.completedFuture(add(key, hash, partition));
+    }
+
+    /**
+     * Add a key to the set, reading or writing any file in the calling thread.
+     * @param key the packed key
+     * @return {@code true} if the key was not already present
+     */
+    public boolean add(@Nonnull byte[] key) {
+        final int hash = hash(key);
+        return add(key, hash, partitionFor(hash));
+    }
+
+    private boolean add(@Nonnull byte[] key, int hash, @Nonnull Partition partition) {
+        final long before = partition.getMemory();
+        final boolean added;
+        try {
+            added = partition.add(key, hash);
+        } catch (IOException ex) {
+            throw new RecordCoreException("unable to access distinct spill file", ex);
+        }
+        updateMemory(partition.getMemory() - before);
+        while (memoryLimit != ExecuteProperties.UNLIMITED_MEMORY && memoryUsed > memoryLimit) {
+            if (!spillLargest()) {
+                break;
+            }
+        }
+        return added;
+    }
+
+    @Nonnull
+    private Partition partitionFor(int hash) {
+        return partitions[hash >>> (Integer.SIZE - PARTITION_BITS)];
+    }
+
+    // Whether adding this key to this partition could take the set over its memory limit and so write a partition out.
+    private boolean maySpill(@Nonnull Partition partition, @Nonnull byte[] key) {
+        if (memoryLimit == ExecuteProperties.UNLIMITED_MEMORY) {
+            return false;
+        }
+        final long growth = partition.getMaxGrowth(key);
+        if (memoryUsed + growth <= memoryLimit) {
+            return false;
+        }
+        // Over the limit with nothing that would be worth spilling does not write anything either.
+        return findLargest() != null || (!partition.isSpilled() && partition.getArenaMemory() + growth > SPILL_BUFFER_SIZE);
+    }
+
+    /**
+     * Get the number of bytes of memory currently used to hold keys.
+     * @return the approximate memory in use
+     */
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * Get the greatest number of bytes of memory used at any time to hold keys.
+     * @return the approximate peak memory
+     */
+    public long getPeakMemoryUsed() {
+        return peakMemoryUsed;
+    }
+
+    /**
+     * Get whether any partition has been written to a file.
+     * @return {@code true} if some keys are not held in memory
+     */
+    public boolean isSpilled() {
+        for (Partition partition : partitions) {
+            if (partition.isSpilled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        unpackableKeys = null;
+        if (spillFiles != null) {
+            final SpillFiles toClose = spillFiles;
+            spillFiles = null;
+            OPEN_SPILL_FILES.remove(toClose);
+            toClose.clear();
+            try {
+                toClose.close();
+            } catch (IOException ex) {
+                throw new RecordCoreException("unable to remove distinct spill file", ex);
+            }
+        }
+    }
+
+    @Nullable
+    private Partition findLargest() {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled() && partition.getArenaMemory() > SPILL_BUFFER_SIZE &&
+                    (largest == null || partition.getArenaMemory() > largest.getArenaMemory())) {
+                largest = partition;
+            }
+        }
+        return largest;
+    }
+
+    private boolean spillLargest() {
+        final Partition largest = findLargest();
+        if (largest == null) {
+            // Nothing left whose spilling would actually save memory.
+            return false;
+        }
+        closeAbandonedSpillFiles();
+        if (spillFiles == null) {
+            spillFiles = new SpillFiles(this);
+            OPEN_SPILL_FILES.add(spillFiles);
+        }
+        final long before = largest.getMemory();
+        final long written;
+        try {
+            written = largest.spill(spillDirectory, spillFiles);
+        } catch (IOException ex) {
+            throw new RecordCoreException("unable to write distinct spill file", ex)
+                    .addLogInfo("spill_directory", spillDirectory);
+        }
+        updateMemory(largest.getMemory() - before);
+        if (timer != null) {
+            timer.increment(FDBStoreTimer.Counts.QUERY_DISTINCT_SPILLED_PARTITIONS);
+            timer.increment(FDBStoreTimer.Counts.QUERY_DISTINCT_SPILLED_BYTES, (int)written);
+        }
+        return true;
+    }
+
+    private void updateMemory(long delta) {
+        memoryUsed += delta;
+        if (memoryUsed > peakMemoryUsed) {
+            if (timer != null) {
+                timer.increment(FDBStoreTimer.Counts.QUERY_DISTINCT_MEMORY_BYTES, (int)(memoryUsed - peakMemoryUsed));
+            }
+            peakMemoryUsed = memoryUsed;
+        }
+    }
+
+    private static void closeAbandonedSpillFiles() {
+        Reference<? extends DistinctKeySet> abandoned;
+        while ((abandoned = ABANDONED_SPILL_FILES.poll()) != null) {
+            final SpillFiles spillFiles = (SpillFiles)abandoned;
+            OPEN_SPILL_FILES.remove(spillFiles);
+            try {
+                spillFiles.close();
+            } catch (IOException ex) {
+                LOGGER.warn(KeyValueLogMessage.of("unable to remove abandoned distinct spill file"), ex);
+            }
+        }
+    }
+
+    private static int hash(@Nonnull byte[] key) {
+        // Arrays.hashCode does not mix the high bits enough by itself, which are used to pick the partition.
+        int hash = Arrays.hashCode(key);
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    private static int readLength(@Nonnull byte[] buffer, int offset) {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) |
+               ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
+    private static void writeLength(@Nonnull byte[] buffer, int offset, int length) {
+        buffer[offset] = (byte)(length >>> 24);
+        buffer[offset + 1] = (byte)(length >>> 16);
+        buffer[offset + 2] = (byte)(length >>> 8);
+        buffer[offset + 3] = (byte)length;
+    }
+
+    private static boolean keyEquals(@Nonnull byte[] buffer, int offset, @Nonnull byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Keys are stored in the arena and in the file the same way: a four byte length followed by that many bytes of key.
+    // Offsets run through the file and then on into the arena, which only holds the keys not yet written.
+    private static final class Partition {
+        private int count;
+
+        // Each slot is an offset plus one, so that zero means empty, along with the full hash of the key.
+        @Nullable
+        private int[] slots;
+        @Nullable
+        private int[] slotHashes;
+        @Nullable
+        private byte[] arena;
+        private int arenaLength;
+
+        // Once spilled: the file holding all but the arena's keys, which is removed when the channel is closed.
+        @Nullable
+        private FileChannel channel;
+        private int fileLength;
+        @Nullable
+        private ByteBuffer readBuffer;
+
+        boolean isSpilled() {
+            return channel != null;
+        }
+
+        long getArenaMemory() {
+            return arena == null ? 0 : arena.length;
+        }
+
+        long getMemory() {
+            if (slots == null) {
+                return 0;
+            }
+            return getArenaMemory() + (long)slots.length * Integer.BYTES * 2 + (readBuffer == null ? 0 : readBuffer.capacity());
+        }
+
+        // The most that adding a key can grow the arena and the table by, if the arena does not have to be written out.
+        long getMaxGrowth(@Nonnull byte[] key) {
+            final int needed = Integer.BYTES + key.length;
+            if (slots == null) {
+                return Math.max(INITIAL_ARENA, needed) + (long)INITIAL_SLOTS * Integer.BYTES * 2;
+            }
+            long growth = 0;
+            if (arenaLength + needed > arena.length) {
+                growth += Math.max(arenaLength + needed, arena.length * 2L) - arena.length;
+            }
+            if ((count + 1) * 2 > slots.length) {
+                growth += (long)slots.length * Integer.BYTES * 2;
+            }
+            return growth;
+        }
+
+        // Whether adding this key needs to read a key with the same hash back from the file or to write out the arena.
+        boolean mayAccessFile(@Nonnull byte[] key, int hash) {
+            if (channel == null) {
+                return false;
+            }
+            if (arenaLength + Integer.BYTES + key.length > arena.length) {
+                return true;
+            }
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                if (slotHashes[slot] == hash && slots[slot] - 1 < fileLength) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        boolean add(@Nonnull byte[] key, int hash) throws IOException {
+            if (slots == null) {
+                arena = new byte[INITIAL_ARENA];
+                slots = new int[INITIAL_SLOTS];
+                slotHashes = new int[INITIAL_SLOTS];
+            }
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                if (slotHashes[slot] == hash && keyEqualsAt(slots[slot] - 1, key)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = append(key) + 1;
+            slotHashes[slot] = hash;
+            count++;
+            if (count * 2 > slots.length) {
+                rehash();
+            }
+            return true;
+        }
+
+        private boolean keyEqualsAt(int offset, @Nonnull byte[] key) throws IOException {
+            if (offset >= fileLength) {
+                final int arenaOffset = offset - fileLength;
+                return readLength(arena, arenaOffset) == key.length && keyEquals(arena, arenaOffset + Integer.BYTES, key);
+            }
+            // Keys are only written whole, so if the length matches, all of the key is in the file.
+            final int needed = Integer.BYTES + key.length;
+            if (readBuffer == null || readBuffer.capacity() < needed) {
+                readBuffer = ByteBuffer.allocate(Math.max(MIN_READ_BUFFER_SIZE, needed));
+            }
+            readBuffer.clear();
+            readBuffer.limit(needed);
+            long position = offset;
+            while (readBuffer.hasRemaining()) {
+                final int read = channel.read(readBuffer, position);
+                if (read < 0) {
+                    return false;
+                }
+                position += read;
+            }
+            final byte[] buffer = readBuffer.array();
+            return readLength(buffer, 0) == key.length && keyEquals(buffer, Integer.BYTES, key);
+        }
+
+        private int append(@Nonnull byte[] key) throws IOException {
+            final int needed = Integer.BYTES + key.length;
+            if ((long)fileLength + arenaLength + needed > MAX_PARTITION_BYTES) {
+                throw new RecordCoreException("too many distinct keys to keep track of")
+                        .addLogInfo("key_count", count);
+            }
+            if (arenaLength + needed > arena.length) {
+                if (channel != null) {
+                    flush();
+                }
+                if (arenaLength + needed > arena.length) {
+                    arena = Arrays.copyOf(arena, Math.max(arenaLength + needed, channel != null ? needed : arena.length * 2));
+                }
+            }
+            final int offset = arenaLength;
+            writeLength(arena, offset, key.length);
+            System.arraycopy(key, 0, arena, offset + Integer.BYTES, key.length);
+            arenaLength += needed;
+            return fileLength + offset;
+        }
+
+        private void rehash() {
+            final int[] oldSlots = slots;
+            final int[] oldHashes = slotHashes;
+            slots = new int[oldSlots.length * 2];
+            slotHashes = new int[oldSlots.length * 2];
+            final int mask = slots.length - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    int slot = oldHashes[i] & mask;
+                    while (slots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[slot] = oldSlots[i];
+                    slotHashes[slot] = oldHashes[i];
+                }
+            }
+        }
+
+        // Write all the keys in memory to a new file, keeping only the table; returns the number of bytes written.
+        long spill(@Nullable Path spillDirectory, @Nonnull SpillFiles spillFiles) throws IOException {
+            final Path file = spillDirectory == null ?
+                              Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX) :
+                              Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+            try {
+                // Where possible, this removes the file from the directory right away, so nothing is left behind even
+                // if the process exits without closing it.
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            } catch (IOException ex) {
+                Files.deleteIfExists(file);
+                throw ex;
+            }
+            spillFiles.add(channel);
+            final long written = arenaLength;
+            flush();
+            return written;
+        }
+
+        private void flush() throws IOException {
+            final ByteBuffer source = ByteBuffer.wrap(arena, 0, arenaLength);
+            long position = fileLength;
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+            fileLength += arenaLength;
+            arenaLength = 0;
+            if (arena.length > SPILL_BUFFER_SIZE) {
+                // Do not hang onto the whole in-memory arena or a buffer enlarged for a single big key.
+                arena = new byte[SPILL_BUFFER_SIZE];
+            }
+        }
+
+        void close() {
+            // The channel itself is closed by the set's spill files.
+            channel = null;
+            arena = null;
+            slots = null;
+            slotHashes = null;
+            readBuffer = null;
+        }
+    }
+
+    // The files written by a set. These are closed when the set is closed, or else when it has been garbage collected,
+    // so this must not refer to the set itself.
+    private static final class SpillFiles extends PhantomReference<DistinctKeySet> {
+        @Nonnull
+        private final List<FileChannel> channels = new ArrayList<>();
+
+        SpillFiles(@Nonnull DistinctKeySet keySet) {
+            super(keySet, ABANDONED_SPILL_FILES);
+        }
+
+        synchronized void add(@Nonnull FileChannel channel) {
+            channels.add(channel);
+        }
+
+        synchronized void close() throws IOException {
+            IOException error = null;
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    error = ex;
+                }
+            }
+            channels.clear();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+}
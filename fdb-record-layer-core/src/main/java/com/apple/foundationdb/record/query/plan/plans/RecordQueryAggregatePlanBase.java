@@ -0,0 +1,198 @@
+/*
+ * RecordQueryAggregatePlanBase.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
+import com.apple.foundationdb.record.metadata.Key;
+import com.apple.foundationdb.record.metadata.RecordType;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.AggregateAccumulator;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.common.collect.Iterators;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Common code for query plans that compute an aggregate function for each group of the records returned by a child plan.
+ *
+ * Each result is a partial record with the grouping fields set, whose
+ * {@link FDBQueriedRecord#getIndexEntry index entry} has the group as its key and the aggregate value as its value,
+ * the same as when the query is answered from a covering scan of an aggregate index.
+ */
+abstract class RecordQueryAggregatePlanBase implements RecordQueryPlanWithChild {
+    @Nonnull
+    private final ExpressionRef<RecordQueryPlan> inner;
+    @Nonnull
+    private final IndexAggregateFunction aggregateFunction;
+    @Nonnull
+    private final String recordTypeName;
+    @Nonnull
+    private final IndexKeyValueToPartialRecord toRecord;
+
+    protected RecordQueryAggregatePlanBase(@Nonnull RecordQueryPlan inner, @Nonnull IndexAggregateFunction aggregateFunction,
+                                           @Nonnull String recordTypeName, @Nonnull IndexKeyValueToPartialRecord toRecord) {
+        this.inner = SingleExpressionRef.of(inner);
+        this.aggregateFunction = aggregateFunction;
+        this.recordTypeName = recordTypeName;
+        this.toRecord = toRecord;
+    }
+
+    @Nonnull
+    abstract <T> RecordCursor<IndexEntry> createAggregateCursor(@Nonnull Function<byte[], RecordCursor<T>> innerFunction,
+                                                               @Nonnull Function<T, List<Tuple>> keysFunction,
+                                                               @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                                               @Nullable byte[] continuation);
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <M extends Message> RecordCursor<FDBQueriedRecord<M>> execute(@Nonnull FDBRecordStoreBase<M> store,
+                                                                         @Nonnull EvaluationContext context,
+                                                                         @Nullable byte[] continuation,
+                                                                         @Nonnull ExecuteProperties executeProperties) {
+        final RecordType recordType = store.getRecordMetaData().getRecordType(recordTypeName);
+        final Descriptors.Descriptor recordDescriptor = recordType.getDescriptor();
+        final KeyExpression operand = aggregateFunction.getOperand();
+        final ExecuteProperties innerProperties = executeProperties.clearSkipAndLimit();
+        return this.<FDBQueriedRecord<M>>createAggregateCursor(
+                innerContinuation -> RecordQueryPlanProfile.executePlan(getInner(), store, context, innerContinuation, innerProperties),
+                record -> operand.evaluate(record).stream().map(Key.Evaluated::toTuple).collect(Collectors.toList()),
+                () -> AggregateAccumulator.forFunction(aggregateFunction.getName()), continuation)
+                .map(entry -> FDBQueriedRecord.aggregated(entry, recordType, (M)toRecord.toPartialRecord(recordDescriptor, entry)))
+                .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+    }
+
+    @Nonnull
+    public RecordQueryPlan getInner() {
+        return inner.get();
+    }
+
+    @Override
+    @Nonnull
+    public RecordQueryPlan getChild() {
+        return getInner();
+    }
+
+    @Nonnull
+    public IndexAggregateFunction getAggregateFunction() {
+        return aggregateFunction;
+    }
+
+    @Nonnull
+    public String getRecordTypeName() {
+        return recordTypeName;
+    }
+
+    @Nonnull
+    public IndexKeyValueToPartialRecord getToRecord() {
+        return toRecord;
+    }
+
+    /**
+     * Get the number of leading columns of the function's operand that make up the group.
+     * @return the number of grouping columns
+     */
+    public int getGroupingCount() {
+        final KeyExpression operand = aggregateFunction.getOperand();
+        return operand instanceof GroupingKeyExpression ? ((GroupingKeyExpression)operand).getGroupingCount() : 0;
+    }
+
+    @Override
+    public boolean hasRecordScan() {
+        return getInner().hasRecordScan();
+    }
+
+    @Override
+    public boolean hasFullRecordScan() {
+        return getInner().hasFullRecordScan();
+    }
+
+    @Override
+    public boolean hasIndexScan(@Nonnull String indexName) {
+        return getInner().hasIndexScan(indexName);
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getUsedIndexes() {
+        return getInner().getUsedIndexes();
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return Iterators.singletonIterator(inner);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RecordQueryAggregatePlanBase that = (RecordQueryAggregatePlanBase) o;
+        return Objects.equals(getInner(), that.getInner()) &&
+               Objects.equals(aggregateFunction, that.aggregateFunction) &&
+               Objects.equals(recordTypeName, that.recordTypeName) &&
+               Objects.equals(toRecord, that.toRecord);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getInner(), aggregateFunction, recordTypeName, toRecord);
+    }
+
+    @Override
+    public int planHash() {
+        return getInner().planHash() + aggregateFunction.planHash();
+    }
+
+    @Override
+    public int getComplexity() {
+        return 1 + getInner().getComplexity();
+    }
+}
@@ -84,8 +84,8 @@ public class RecordQueryCoveringIndexPlan implements RecordQueryPlanWithChild {
         final Index index = metaData.getIndex(getIndexName());
         final Descriptors.Descriptor recordDescriptor = recordType.getDescriptor();
         boolean hasPrimaryKey = getScanType() != IndexScanType.BY_GROUP;
-        return indexPlan.get().executeEntries(store, context, continuation, executeProperties)
-                .map(indexEntry -> store.coveredIndexQueriedRecord(index, indexEntry, recordType, (M) toRecord.toRecord(recordDescriptor, indexEntry), hasPrimaryKey));
+        return RecordQueryPlanProfile.executeEntries(indexPlan.get(), store, context, continuation, executeProperties)
+                .map(indexEntry -> store.coveredIndexQueriedRecord(index, indexEntry, recordType, (M) toRecord.toPartialRecord(recordDescriptor, indexEntry), hasPrimaryKey));
     }
 
     @Nonnull
@@ -138,9 +138,6 @@ public class RecordQueryCoveringIndexPlan implements RecordQueryPlanWithChild {
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
-        if (!super.equals(o)) {
-            return false;
-        }
         RecordQueryCoveringIndexPlan that = (RecordQueryCoveringIndexPlan) o;
         return Objects.equals(getChild(), that.getChild()) &&
                Objects.equals(recordTypeName, that.recordTypeName) &&
@@ -86,7 +86,7 @@ public class RecordQueryFilterPlan implements RecordQueryPlanWithChild {
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final RecordCursor<FDBQueriedRecord<M>> results = getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit());
+        final RecordCursor<FDBQueriedRecord<M>> results = RecordQueryPlanProfile.executePlan(getInner(), store, context, continuation, executeProperties.clearSkipAndLimit());
 
         if (getFilter().isAsync()) {
             return results
@@ -0,0 +1,114 @@
+/*
+ * RecordQueryHashAggregatePlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.AggregateAccumulator;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.HashAggregateCursor;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A query plan that computes an aggregate function for each group of the records returned by a child plan in any order.
+ *
+ * Every group is kept in memory until the child plan is exhausted, after which the groups are returned in order, up to
+ * a limit on the number of groups, past which execution fails. This is for when no index returns the records in
+ * order by group, so that a {@link RecordQueryStreamingAggregatePlan} cannot be used.
+ * @see HashAggregateCursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQueryHashAggregatePlan extends RecordQueryAggregatePlanBase {
+    private final int maxGroups;
+    private final boolean reverse;
+
+    @SuppressWarnings("squid:S00107") // too many parameters
+    public RecordQueryHashAggregatePlan(@Nonnull RecordQueryPlan inner, @Nonnull IndexAggregateFunction aggregateFunction,
+                                        @Nonnull String recordTypeName, @Nonnull IndexKeyValueToPartialRecord toRecord,
+                                        int maxGroups, boolean reverse) {
+        super(inner, aggregateFunction, recordTypeName, toRecord);
+        this.maxGroups = maxGroups;
+        this.reverse = reverse;
+    }
+
+    @Nonnull
+    @Override
+    <T> RecordCursor<IndexEntry> createAggregateCursor(@Nonnull Function<byte[], RecordCursor<T>> innerFunction,
+                                                      @Nonnull Function<T, List<Tuple>> keysFunction,
+                                                      @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                                      @Nullable byte[] continuation) {
+        return HashAggregateCursor.create(innerFunction, keysFunction, getGroupingCount(), accumulatorSupplier,
+                maxGroups, reverse, continuation);
+    }
+
+    /**
+     * Get the largest number of groups that this plan will aggregate.
+     * @return the maximum number of groups
+     */
+    public int getMaxGroups() {
+        return maxGroups;
+    }
+
+    @Override
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return "HashAggregate(" + getInner() + " | " + getAggregateFunction() + " -> " + getToRecord() + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) &&
+               maxGroups == ((RecordQueryHashAggregatePlan)o).maxGroups &&
+               reverse == ((RecordQueryHashAggregatePlan)o).reverse;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), maxGroups, reverse);
+    }
+
+    @Override
+    public int planHash() {
+        return super.planHash() + (reverse ? 1 : 0);
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_HASH_AGGREGATE);
+        getInner().logPlanStructure(timer);
+    }
+}
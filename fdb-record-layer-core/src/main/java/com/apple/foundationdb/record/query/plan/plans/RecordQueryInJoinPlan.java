@@ -73,6 +73,8 @@ public abstract class RecordQueryInJoinPlan implements RecordQueryPlanWithChild
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
+        // Each value's records come out one after another, so none of them needs more than the limit.
+        final ExecuteProperties innerExecuteProperties = ChildExecuteProperties.forChild(getInner(), executeProperties);
         return RecordCursor.flatMapPipelined(
                 outerContinuation -> {
                     final List<Object> values = getValues(context);
@@ -82,8 +84,8 @@ public abstract class RecordQueryInJoinPlan implements RecordQueryPlanWithChild
                         return RecordCursor.fromList(store.getExecutor(), values, outerContinuation);
                     }
                 },
-                (outerValue, innerContinuation) -> getInner().execute(store, context.withBinding(bindingName, outerValue),
-                        innerContinuation, executeProperties.clearSkipAndLimit()),
+                (outerValue, innerContinuation) -> RecordQueryPlanProfile.executePlan(getInner(), store, context.withBinding(bindingName, outerValue),
+                        innerContinuation, innerExecuteProperties),
                 outerObject -> Tuple.from(ScanComparisons.toTupleItem(outerObject)).pack(),
                 continuation,
                 store.getPipelineSize(PipelineOperation.IN_JOIN))
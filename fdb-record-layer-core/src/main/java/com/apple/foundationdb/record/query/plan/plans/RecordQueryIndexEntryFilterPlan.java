@@ -0,0 +1,248 @@
+/*
+ * RecordQueryIndexEntryFilterPlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.PipelineOperation;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.RecordType;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A query plan that filters the entries of an index scan before their records are fetched.
+ *
+ * The filter is evaluated against a partial record made from the fields in each index entry, as with a
+ * {@link RecordQueryCoveringIndexPlan}, so it must only refer to fields that the index has. Entries that do not satisfy
+ * it are discarded without loading their records at all. Since this plan is itself a scan of the index, records are
+ * only fetched for the remaining entries, unless it is in turn made into a covering plan.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQueryIndexEntryFilterPlan implements RecordQueryPlanWithIndex, RecordQueryPlanWithChild {
+    @Nonnull
+    private final ExpressionRef<RecordQueryPlanWithIndex> indexPlan;
+    @Nonnull
+    private final List<QueryComponent> filters;
+    @Nonnull
+    private final ExpressionRef<QueryComponent> filter;
+    @Nonnull
+    private final String recordTypeName;
+    @Nonnull
+    private final IndexKeyValueToPartialRecord toRecord;
+    @Nonnull
+    private final List<ExpressionRef<? extends PlannerExpression>> children;
+    @Nonnull
+    private static final Set<StoreTimer.Count> inCounts = ImmutableSet.of(FDBStoreTimer.Counts.QUERY_FILTER_GIVEN, FDBStoreTimer.Counts.QUERY_INDEX_ENTRY_FILTER_PLAN_GIVEN);
+    @Nonnull
+    private static final Set<StoreTimer.Event> duringEvents = Collections.singleton(FDBStoreTimer.Events.QUERY_FILTER);
+    @Nonnull
+    private static final Set<StoreTimer.Count> successCounts = ImmutableSet.of(FDBStoreTimer.Counts.QUERY_FILTER_PASSED, FDBStoreTimer.Counts.QUERY_INDEX_ENTRY_FILTER_PLAN_PASSED);
+    @Nonnull
+    private static final Set<StoreTimer.Count> failureCounts = Collections.singleton(FDBStoreTimer.Counts.QUERY_INDEX_ENTRY_DISCARDED);
+    // Distinguishes this plan from a RecordQueryFilterPlan of the same filter over the same index scan.
+    private static final int PLAN_HASH_BASE = "IndexEntryFilter".hashCode();
+
+    public RecordQueryIndexEntryFilterPlan(@Nonnull RecordQueryPlanWithIndex indexPlan, @Nonnull QueryComponent filter,
+                                           @Nonnull String recordTypeName, @Nonnull IndexKeyValueToPartialRecord toRecord) {
+        this(indexPlan, Collections.singletonList(filter), recordTypeName, toRecord);
+    }
+
+    public RecordQueryIndexEntryFilterPlan(@Nonnull RecordQueryPlanWithIndex indexPlan, @Nonnull List<QueryComponent> filters,
+                                           @Nonnull String recordTypeName, @Nonnull IndexKeyValueToPartialRecord toRecord) {
+        this.indexPlan = SingleExpressionRef.of(indexPlan);
+        this.filters = ImmutableList.copyOf(filters);
+        this.filter = SingleExpressionRef.of(filters.size() == 1 ? filters.get(0) : Query.and(filters));
+        this.recordTypeName = recordTypeName;
+        this.toRecord = toRecord;
+        this.children = ImmutableList.of(this.indexPlan, this.filter);
+    }
+
+    @Nonnull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <M extends Message> RecordCursor<IndexEntry> executeEntries(@Nonnull FDBRecordStoreBase<M> store,
+                                                                       @Nonnull EvaluationContext context,
+                                                                       @Nullable byte[] continuation,
+                                                                       @Nonnull ExecuteProperties executeProperties) {
+        final RecordMetaData metaData = store.getRecordMetaData();
+        final RecordType recordType = metaData.getRecordType(recordTypeName);
+        final Index index = metaData.getIndex(getIndexName());
+        final Descriptors.Descriptor recordDescriptor = recordType.getDescriptor();
+        final Function<IndexEntry, FDBQueriedRecord<M>> toPartialRecord = indexEntry ->
+                store.coveredIndexQueriedRecord(index, indexEntry, recordType, (M) toRecord.toPartialRecord(recordDescriptor, indexEntry), true);
+        final RecordCursor<IndexEntry> entries = RecordQueryPlanProfile.executeEntries(getIndexPlan(), store, context, continuation, executeProperties.clearSkipAndLimit());
+        if (getFilter().isAsync()) {
+            return entries
+                    .filterAsyncInstrumented(indexEntry -> getFilter().evalAsync(store, context, toPartialRecord.apply(indexEntry)),
+                            store.getPipelineSize(PipelineOperation.RECORD_ASYNC_FILTER),
+                            store.getTimer(), inCounts, duringEvents, successCounts, failureCounts)
+                    .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+        } else {
+            return entries
+                    .filterInstrumented(indexEntry -> getFilter().eval(store, context, toPartialRecord.apply(indexEntry)), store.getTimer(),
+                            inCounts, duringEvents, successCounts, failureCounts)
+                    .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public String getIndexName() {
+        return getIndexPlan().getIndexName();
+    }
+
+    @Nonnull
+    @Override
+    public IndexScanType getScanType() {
+        return getIndexPlan().getScanType();
+    }
+
+    @Nonnull
+    public RecordQueryPlanWithIndex getIndexPlan() {
+        return indexPlan.get();
+    }
+
+    /**
+     * Get the filter applied to each index entry.
+     * @return the conjunction of the filters
+     */
+    @Nonnull
+    public QueryComponent getFilter() {
+        return filter.get();
+    }
+
+    /**
+     * Get the filters applied to each index entry, as given when this plan was created.
+     * @return the list of filters
+     */
+    @Nonnull
+    public List<QueryComponent> getFilters() {
+        return filters;
+    }
+
+    @Nonnull
+    @Override
+    public RecordQueryPlan getChild() {
+        return getIndexPlan();
+    }
+
+    @Override
+    public boolean isReverse() {
+        return getIndexPlan().isReverse();
+    }
+
+    @Override
+    public boolean hasRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasFullRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasIndexScan(@Nonnull String indexName) {
+        return getIndexPlan().hasIndexScan(indexName);
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getUsedIndexes() {
+        return getIndexPlan().getUsedIndexes();
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return children.iterator();
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return "IndexEntryFilter(" + getIndexPlan() + " | " + getFilter() + ")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RecordQueryIndexEntryFilterPlan that = (RecordQueryIndexEntryFilterPlan) o;
+        return Objects.equals(getIndexPlan(), that.getIndexPlan()) &&
+               Objects.equals(getFilter(), that.getFilter()) &&
+               Objects.equals(recordTypeName, that.recordTypeName) &&
+               Objects.equals(toRecord, that.toRecord);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getIndexPlan(), getFilter(), recordTypeName, toRecord);
+    }
+
+    @Override
+    public int planHash() {
+        return PLAN_HASH_BASE + getIndexPlan().planHash() + getFilter().planHash();
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_INDEX_ENTRY_FILTER);
+        getIndexPlan().logPlanStructure(timer);
+    }
+
+    @Override
+    public int getComplexity() {
+        return 1 + getIndexPlan().getComplexity();
+    }
+}
@@ -104,7 +104,8 @@ public class RecordQueryIntersectionPlan implements RecordQueryPlanWithChildren
         return IntersectionCursor.create(store, getComparisonKey(), reverse,
                 children.stream()
                         .map(childPlan -> (Function<byte[], RecordCursor<FDBQueriedRecord<M>>>)
-                                ((byte[] childContinuation) -> childPlan.get().execute(store, context, childContinuation, childExecuteProperties)))
+                                ((byte[] childContinuation) -> RecordQueryPlanProfile.executePlan(childPlan.get(), store, context,
+                                        childContinuation, childExecuteProperties)))
                         .collect(Collectors.toList()),
                 continuation).skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
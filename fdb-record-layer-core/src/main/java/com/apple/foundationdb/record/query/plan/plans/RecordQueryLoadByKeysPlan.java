@@ -75,14 +75,15 @@ public class RecordQueryLoadByKeysPlan implements RecordQueryPlanWithNoChildren
                                                                          @Nonnull ExecuteProperties executeProperties) {
         // Cannot pass down limit(s) because we skip keys that don't load.
         RecordScanLimiter recordScanLimiter = executeProperties.getState().getRecordScanLimiter();
+        final int pipelineSize = store.getPipelineSize(PipelineOperation.KEY_TO_RECORD);
         return RecordCursor.fromList(store.getExecutor(), getKeysSource().getPrimaryKeys(context), continuation)
-                .mapPipelined(key -> {
+                .mapPipelined(store.getPipelineSizer().observe(PipelineOperation.KEY_TO_RECORD, store.getContext(), key -> {
                     // TODO: Implement continuation handling and record scan limit for RecordQueryLoadByKeysPlan (https://github.com/FoundationDB/fdb-record-layer/issues/6)
                     if (recordScanLimiter != null) {
                         recordScanLimiter.tryRecordScan();
                     }
                     return store.loadRecordAsync(key);
-                }, store.getPipelineSize(PipelineOperation.KEY_TO_RECORD))
+                }), pipelineSize)
                 .filter(Objects::nonNull)
                 .map(store::queriedRecord)
                 .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
@@ -0,0 +1,297 @@
+/*
+ * RecordQueryMultiRangeIndexPlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.PipelineOperation;
+import com.apple.foundationdb.record.PlanHashable;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.ScanProperties;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A query plan that scans one range of an index for each of the elements of some {@code IN} list, as a single scan.
+ *
+ * The comparisons include an equality with the parameter bound to each element in turn. The elements are put into index
+ * order (and duplicates dropped), so the ranges are disjoint and the entries come out in index order, as from any other
+ * index scan. This is like a {@link RecordQueryInJoinPlan} around a {@link RecordQueryIndexPlan}, but the ranges are
+ * read ahead of when they are needed and the records for all of the entries are loaded by a single pipeline.
+ *
+ * The list comes either from the plan itself or from a parameter, according to which of {@link #getValues()} and
+ * {@link #getParameterName()} is not {@code null}.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQueryMultiRangeIndexPlan implements RecordQueryPlanWithNoChildren, RecordQueryPlanWithIndex {
+    @Nonnull
+    private final String indexName;
+    @Nonnull
+    private final ScanComparisons comparisons;
+    private final boolean reverse;
+    @Nonnull
+    private final String bindingName;
+    @Nullable
+    private final List<Object> values;
+    @Nullable
+    private final String parameterName;
+
+    public RecordQueryMultiRangeIndexPlan(@Nonnull String indexName, @Nonnull ScanComparisons comparisons, boolean reverse,
+                                          @Nonnull String bindingName,
+                                          @Nullable List<Object> values, @Nullable String parameterName) {
+        this.indexName = indexName;
+        this.comparisons = comparisons;
+        this.reverse = reverse;
+        this.bindingName = bindingName;
+        this.values = values == null ? null : sortValues(values, reverse);
+        this.parameterName = parameterName;
+    }
+
+    @Nonnull
+    @Override
+    public <M extends Message> RecordCursor<IndexEntry> executeEntries(@Nonnull FDBRecordStoreBase<M> store, @Nonnull EvaluationContext context,
+                                                                       @Nullable byte[] continuation, @Nonnull ExecuteProperties executeProperties) {
+        final Index index = store.getRecordMetaData().getIndex(indexName);
+        // Ranges are read one after another, so none of them needs more than the limit.
+        final ScanProperties scanProperties = ChildExecuteProperties.forChild(this, executeProperties).asScanProperties(reverse);
+        return RecordCursor.flatMapPipelined(
+                outerContinuation -> {
+                    final List<Object> rangeValues = getValues(context);
+                    if (rangeValues == null) {
+                        return RecordCursor.empty(store.getExecutor());
+                    } else {
+                        return RecordCursor.fromList(store.getExecutor(), rangeValues, outerContinuation);
+                    }
+                },
+                // Opening the scan starts reading the range, so the pipeline keeps that many ranges in flight.
+                (value, innerContinuation) -> store.scanIndex(index, IndexScanType.BY_VALUE,
+                        comparisons.toTupleRange(store, context.withBinding(bindingName, value)),
+                        innerContinuation, scanProperties),
+                RecordQueryMultiRangeIndexPlan::packValue,
+                continuation,
+                store.getPipelineSize(PipelineOperation.IN_JOIN))
+                .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private List<Object> getValues(@Nonnull EvaluationContext context) {
+        if (values != null) {
+            return values;
+        }
+        final List<Object> parameterValues = (List<Object>)context.getBinding(parameterName);
+        return parameterValues == null ? null : sortValues(parameterValues, reverse);
+    }
+
+    @Nonnull
+    private static byte[] packValue(@Nullable Object value) {
+        return Tuple.from(ScanComparisons.toTupleItem(value)).pack();
+    }
+
+    // Order values the way the index does and drop duplicates, which would otherwise scan the same range again.
+    @Nonnull
+    private static List<Object> sortValues(@Nonnull List<Object> values, boolean reverse) {
+        final List<byte[]> packed = new ArrayList<>(values.size());
+        final List<Integer> order = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            packed.add(packValue(values.get(i)));
+            order.add(i);
+        }
+        Comparator<Integer> comparator = (i1, i2) -> ByteArrayUtil.compareUnsigned(packed.get(i1), packed.get(i2));
+        if (reverse) {
+            comparator = comparator.reversed();
+        }
+        order.sort(comparator);
+        final List<Object> sorted = new ArrayList<>(values.size());
+        byte[] previous = null;
+        for (int i : order) {
+            if (previous == null || !Arrays.equals(previous, packed.get(i))) {
+                sorted.add(values.get(i));
+                previous = packed.get(i);
+            }
+        }
+        return sorted;
+    }
+
+    @Nonnull
+    @Override
+    public String getIndexName() {
+        return indexName;
+    }
+
+    @Nonnull
+    @Override
+    public IndexScanType getScanType() {
+        return IndexScanType.BY_VALUE;
+    }
+
+    /**
+     * Get the comparisons for each range, one of which is an equality comparison with {@link #getBindingName}.
+     * @return the comparisons
+     */
+    @Nonnull
+    public ScanComparisons getComparisons() {
+        return comparisons;
+    }
+
+    @Nonnull
+    public String getBindingName() {
+        return bindingName;
+    }
+
+    @Nullable
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Nullable
+    public String getParameterName() {
+        return parameterName;
+    }
+
+    /**
+     * Get the position in the index entry of the value bound from the {@code IN} list.
+     * @return the position of the comparison with the binding among the equality comparisons
+     */
+    public int getBindingPosition() {
+        final List<Comparisons.Comparison> equalityComparisons = comparisons.getEqualityComparisons();
+        for (int i = 0; i < equalityComparisons.size(); i++) {
+            final Comparisons.Comparison comparison = equalityComparisons.get(i);
+            if (comparison instanceof Comparisons.ParameterComparison &&
+                    ((Comparisons.ParameterComparison)comparison).getParameter().equals(bindingName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    @Override
+    public boolean hasRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasFullRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasIndexScan(@Nonnull String indexName) {
+        return this.indexName.equals(indexName);
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getUsedIndexes() {
+        return Collections.singleton(indexName);
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RecordQueryMultiRangeIndexPlan that = (RecordQueryMultiRangeIndexPlan) o;
+        return reverse == that.reverse &&
+                Objects.equals(indexName, that.indexName) &&
+                Objects.equals(comparisons, that.comparisons) &&
+                Objects.equals(bindingName, that.bindingName) &&
+                Objects.equals(values, that.values) &&
+                Objects.equals(parameterName, that.parameterName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexName, comparisons, reverse, bindingName, values, parameterName);
+    }
+
+    @Override
+    public int planHash() {
+        return indexName.hashCode() + comparisons.planHash() + (reverse ? 1 : 0) + bindingName.hashCode() +
+               (values == null ? 0 : PlanHashable.iterablePlanHash(values)) +
+               PlanHashable.objectPlanHash(parameterName);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("MultiRange(");
+        str.append(indexName).append(" ").append(comparisons);
+        if (reverse) {
+            str.append(" REVERSE");
+        }
+        str.append(") WHERE ").append(bindingName).append(" IN ");
+        if (values != null) {
+            str.append(values);
+        } else {
+            str.append("$").append(parameterName);
+        }
+        return str.toString();
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_MULTI_RANGE_INDEX);
+    }
+
+    @Override
+    public int getComplexity() {
+        return 1;
+    }
+}
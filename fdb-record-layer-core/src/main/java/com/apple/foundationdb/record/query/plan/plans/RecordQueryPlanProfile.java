@@ -0,0 +1,530 @@
+/*
+ * RecordQueryPlanProfile.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.ByteScanLimiter;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.ExecuteState;
+import com.apple.foundationdb.record.ExecutionProfile;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordCursorResult;
+import com.apple.foundationdb.record.RecordCursorVisitor;
+import com.apple.foundationdb.record.cursors.IllegalContinuationAccessChecker;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Statistics about each node of a query plan, collected while executing it.
+ *
+ * A plan is executed with a profile by calling {@link #execute}, or by executing it with an {@link EvaluationContext}
+ * whose {@linkplain EvaluationContext#getProfile() profile} is set. The cursor of every node of the plan is then
+ * wrapped so that the profile records how many times the node was executed, how many rows it returned, how many
+ * key-values were scanned by it and the nodes under it, how long it took to return its first row, and how long its
+ * cursors were open. After the results have been read, {@link #explain} gives these alongside the plan tree, much like
+ * {@code EXPLAIN ANALYZE}.
+ *
+ * Key-values are counted as they are counted against a {@linkplain ExecuteState#getByteScanLimiter() byte scan limit},
+ * that is, by index and record scans, but not by loading records by primary key. All counts and times include those
+ * of the node's children. A node executed more than once, such as the inner plan of an {@code IN} join, adds up the
+ * counts and times of all its executions.
+ *
+ * When a plan is executed without a profile, the only cost is checking for one as each child's cursor is opened.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQueryPlanProfile implements ExecutionProfile {
+    @Nonnull
+    private final Map<RecordQueryPlan, OperatorStatistics> statistics = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Execute a plan, collecting statistics about it and each of its children in this profile.
+     * @param plan the plan to execute
+     * @param store the record store against which to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param <M> type used to represent stored records
+     * @return a cursor over the results of the plan
+     */
+    @Nonnull
+    public <M extends Message> RecordCursor<FDBQueriedRecord<M>> execute(@Nonnull RecordQueryPlan plan,
+                                                                         @Nonnull FDBRecordStoreBase<M> store,
+                                                                         @Nonnull EvaluationContext context,
+                                                                         @Nullable byte[] continuation,
+                                                                         @Nonnull ExecuteProperties executeProperties) {
+        return executePlan(plan, store, context.childBuilder().setProfile(this).build(), continuation, executeProperties);
+    }
+
+    /**
+     * Execute a plan as the child of another plan. If the context has a profile, the child's cursor collects statistics
+     * in it. Otherwise, this is the same as {@link RecordQueryPlan#execute}.
+     * @param plan the plan to execute
+     * @param store the record store against which to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param <M> type used to represent stored records
+     * @return a cursor over the results of the plan
+     */
+    @Nonnull
+    @API(API.Status.INTERNAL)
+    public static <M extends Message> RecordCursor<FDBQueriedRecord<M>> executePlan(@Nonnull RecordQueryPlan plan,
+                                                                                    @Nonnull FDBRecordStoreBase<M> store,
+                                                                                    @Nonnull EvaluationContext context,
+                                                                                    @Nullable byte[] continuation,
+                                                                                    @Nonnull ExecuteProperties executeProperties) {
+        final RecordQueryPlanProfile profile = getProfile(context);
+        if (profile == null) {
+            return plan.execute(store, context, continuation, executeProperties);
+        }
+        final OperatorStatistics operatorStatistics = profile.getOrCreateStatistics(plan);
+        final long startTime = System.nanoTime();
+        return profile.instrument(operatorStatistics, startTime,
+                plan.execute(store, context, continuation, operatorStatistics.countScans(executeProperties)));
+    }
+
+    /**
+     * Execute a plan that uses an index as the child of another plan, returning the index entries. If the context has
+     * a profile, the child's cursor collects statistics in it. Otherwise, this is the same as
+     * {@link RecordQueryPlanWithIndex#executeEntries}.
+     * @param plan the plan to execute
+     * @param store the record store against which to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param <M> type used to represent stored records
+     * @return a cursor over the index entries of the plan
+     */
+    @Nonnull
+    @API(API.Status.INTERNAL)
+    public static <M extends Message> RecordCursor<IndexEntry> executeEntries(@Nonnull RecordQueryPlanWithIndex plan,
+                                                                              @Nonnull FDBRecordStoreBase<M> store,
+                                                                              @Nonnull EvaluationContext context,
+                                                                              @Nullable byte[] continuation,
+                                                                              @Nonnull ExecuteProperties executeProperties) {
+        final RecordQueryPlanProfile profile = getProfile(context);
+        if (profile == null) {
+            return plan.executeEntries(store, context, continuation, executeProperties);
+        }
+        final OperatorStatistics operatorStatistics = profile.getOrCreateStatistics(plan);
+        final long startTime = System.nanoTime();
+        return profile.instrument(operatorStatistics, startTime,
+                plan.executeEntries(store, context, continuation, operatorStatistics.countScans(executeProperties)));
+    }
+
+    /**
+     * Execute a plan, collecting statistics about it as a whole, but not about each of its children, and pass them to
+     * the given consumer once its cursor has been exhausted or closed. This costs much less than executing with a
+     * profile, so it can be used to decide afterwards whether an execution is worth reporting.
+     * @param plan the plan to execute
+     * @param store the record store against which to execute
+     * @param context the evaluation context
+     * @param continuation the continuation from a previous execution, if any
+     * @param executeProperties the execute properties
+     * @param onFinished a consumer of the statistics for this execution of the plan
+     * @param <M> type used to represent stored records
+     * @return a cursor over the results of the plan
+     */
+    @Nonnull
+    public static <M extends Message> RecordCursor<FDBQueriedRecord<M>> executeMeasured(@Nonnull RecordQueryPlan plan,
+                                                                                        @Nonnull FDBRecordStoreBase<M> store,
+                                                                                        @Nonnull EvaluationContext context,
+                                                                                        @Nullable byte[] continuation,
+                                                                                        @Nonnull ExecuteProperties executeProperties,
+                                                                                        @Nonnull Consumer<OperatorStatistics> onFinished) {
+        final OperatorStatistics operatorStatistics = new OperatorStatistics();
+        final long startTime = System.nanoTime();
+        operatorStatistics.executions.incrementAndGet();
+        return new ProfiledCursor<>(plan.execute(store, context, continuation, operatorStatistics.countScans(executeProperties)),
+                operatorStatistics, startTime, onFinished);
+    }
+
+    @Nullable
+    private static RecordQueryPlanProfile getProfile(@Nonnull EvaluationContext context) {
+        final ExecutionProfile profile = context.getProfile();
+        return profile instanceof RecordQueryPlanProfile ? (RecordQueryPlanProfile)profile : null;
+    }
+
+    @Nonnull
+    <T> RecordCursor<T> instrument(@Nonnull OperatorStatistics operatorStatistics, long startTime, @Nonnull RecordCursor<T> cursor) {
+        operatorStatistics.executions.incrementAndGet();
+        return new ProfiledCursor<>(cursor, operatorStatistics, startTime, null);
+    }
+
+    @Nonnull
+    OperatorStatistics getOrCreateStatistics(@Nonnull RecordQueryPlan plan) {
+        return statistics.computeIfAbsent(plan, p -> new OperatorStatistics());
+    }
+
+    /**
+     * Get the statistics collected for a node of a plan.
+     * @param plan a plan executed with this profile or one of its children
+     * @return the statistics for the given plan or {@code null} if it has not been executed with this profile
+     */
+    @Nullable
+    public OperatorStatistics getStatistics(@Nonnull RecordQueryPlan plan) {
+        return statistics.get(plan);
+    }
+
+    /**
+     * Describe the given plan with the statistics collected for each of its nodes. Each node is on its own line,
+     * indented under its parent, so that the result reads as the tree that {@link RecordQueryPlan#toString} prints on
+     * one line.
+     * @param plan a plan executed with this profile
+     * @return a description of the plan tree with statistics
+     */
+    @Nonnull
+    public String explain(@Nonnull RecordQueryPlan plan) {
+        final StringBuilder str = new StringBuilder();
+        explain(plan, 0, str);
+        return str.toString();
+    }
+
+    private void explain(@Nonnull RecordQueryPlan plan, int depth, @Nonnull StringBuilder str) {
+        for (int i = 0; i < depth; i++) {
+            str.append("  ");
+        }
+        str.append(describe(plan)).append(" (");
+        final OperatorStatistics operatorStatistics = getStatistics(plan);
+        if (operatorStatistics == null) {
+            str.append("never executed");
+        } else {
+            str.append("executions=").append(operatorStatistics.getExecutions());
+            if (!plan.getChildren().isEmpty()) {
+                long rowsIn = 0;
+                for (RecordQueryPlan child : plan.getChildren()) {
+                    final OperatorStatistics childStatistics = getStatistics(child);
+                    if (childStatistics != null) {
+                        rowsIn += childStatistics.getRowsOut();
+                    }
+                }
+                str.append(", rows_in=").append(rowsIn);
+            }
+            str.append(", rows_out=").append(operatorStatistics.getRowsOut())
+                    .append(", keys=").append(operatorStatistics.getKeysRead())
+                    .append(", bytes=").append(operatorStatistics.getBytesRead());
+            if (operatorStatistics.getTimeToFirstRowNanos() >= 0) {
+                str.append(", first_row_micros=").append(TimeUnit.NANOSECONDS.toMicros(operatorStatistics.getTimeToFirstRowNanos()));
+            }
+            str.append(", total_micros=").append(TimeUnit.NANOSECONDS.toMicros(operatorStatistics.getTotalTimeNanos()));
+        }
+        str.append(")\n");
+        for (RecordQueryPlan child : plan.getChildren()) {
+            explain(child, depth + 1, str);
+        }
+    }
+
+    // Nodes without children print all of themselves. The others are named for their class, since their children follow.
+    @Nonnull
+    private static String describe(@Nonnull RecordQueryPlan plan) {
+        if (plan.getChildren().isEmpty()) {
+            return plan.toString();
+        }
+        String name = plan.getClass().getSimpleName();
+        if (name.startsWith("RecordQuery")) {
+            name = name.substring("RecordQuery".length());
+        }
+        if (name.endsWith("Plan")) {
+            name = name.substring(0, name.length() - "Plan".length());
+        }
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordQueryPlanProfile(" + statistics.size() + " operators)";
+    }
+
+    /**
+     * Statistics about the executions of one node of a query plan.
+     */
+    public static class OperatorStatistics {
+        @Nonnull
+        private final AtomicLong executions = new AtomicLong();
+        @Nonnull
+        private final AtomicLong rowsOut = new AtomicLong();
+        @Nonnull
+        private final AtomicLong keysRead = new AtomicLong();
+        @Nonnull
+        private final AtomicLong bytesRead = new AtomicLong();
+        @Nonnull
+        private final AtomicLong timeToFirstRowNanos = new AtomicLong(-1);
+        @Nonnull
+        private final AtomicLong totalTimeNanos = new AtomicLong();
+        @Nullable
+        private volatile RecordCursor.NoNextReason noNextReason;
+
+        OperatorStatistics() {
+        }
+
+        /**
+         * Get the number of times that the node was executed.
+         * @return the number of cursors opened for the node
+         */
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        /**
+         * Get the number of rows returned by the node.
+         * @return the number of rows returned by all of the node's cursors
+         */
+        public long getRowsOut() {
+            return rowsOut.get();
+        }
+
+        /**
+         * Get the number of key-values scanned by the node and its children.
+         * @return the number of key-values scanned
+         */
+        public long getKeysRead() {
+            return keysRead.get();
+        }
+
+        /**
+         * Get the size of the key-values scanned by the node and its children.
+         * @return the number of bytes scanned
+         */
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        /**
+         * Get the time that the node took to return its first row, from when the cursor that returned it was opened.
+         * @return the time in nanoseconds or {@code -1} if the node never returned a row
+         */
+        public long getTimeToFirstRowNanos() {
+            return timeToFirstRowNanos.get();
+        }
+
+        /**
+         * Get the time that the node's cursors were open, from being executed until they were exhausted or closed.
+         * @return the total time in nanoseconds of all of the node's cursors
+         */
+        public long getTotalTimeNanos() {
+            return totalTimeNanos.get();
+        }
+
+        /**
+         * Get the reason that the node's most recently finished cursor stopped returning rows.
+         * @return the reason or {@code null} if no cursor has run out of rows
+         */
+        @Nullable
+        public RecordCursor.NoNextReason getNoNextReason() {
+            return noNextReason;
+        }
+
+        // Count the key-values scanned with the given properties against this node, as well as against any limit.
+        @Nonnull
+        ExecuteProperties countScans(@Nonnull ExecuteProperties executeProperties) {
+            final ExecuteState state = executeProperties.getState();
+            return executeProperties.setState(new ExecuteState(state.getRecordScanLimiter(),
+                    new CountingByteScanLimiter(state.getByteScanLimiter(), this)));
+        }
+
+        @Override
+        public String toString() {
+            return "OperatorStatistics(executions=" + getExecutions() + ", rows_out=" + getRowsOut() +
+                   ", keys=" + getKeysRead() + ", bytes=" + getBytesRead() +
+                   ", first_row_nanos=" + getTimeToFirstRowNanos() + ", total_nanos=" + getTotalTimeNanos() +
+                   ", no_next_reason=" + getNoNextReason() + ")";
+        }
+    }
+
+    /**
+     * A byte scan limiter that counts the key-values reported to it against a node of a plan, before passing them on
+     * to the limiter of the node's parent, if any, so that they count against that node and any actual limit as well.
+     */
+    private static class CountingByteScanLimiter extends ByteScanLimiter {
+        @Nullable
+        private final ByteScanLimiter parent;
+        @Nonnull
+        private final OperatorStatistics operatorStatistics;
+        @Nonnull
+        private final AtomicLong bytesScanned = new AtomicLong();
+
+        CountingByteScanLimiter(@Nullable ByteScanLimiter parent, @Nonnull OperatorStatistics operatorStatistics) {
+            super(Long.MAX_VALUE);
+            this.parent = parent;
+            this.operatorStatistics = operatorStatistics;
+        }
+
+        @Nonnull
+        @Override
+        public ByteScanLimiter reset() {
+            return new CountingByteScanLimiter(parent == null ? null : parent.reset(), operatorStatistics);
+        }
+
+        @Override
+        public boolean hasBytesRemaining() {
+            return parent == null || parent.hasBytesRemaining();
+        }
+
+        @Override
+        public void registerScannedBytes(long bytes) {
+            operatorStatistics.keysRead.incrementAndGet();
+            operatorStatistics.bytesRead.addAndGet(bytes);
+            bytesScanned.addAndGet(bytes);
+            if (parent != null) {
+                parent.registerScannedBytes(bytes);
+            }
+        }
+
+        @Override
+        public long getBytesScanned() {
+            return parent == null ? bytesScanned.get() : parent.getBytesScanned();
+        }
+
+        @Override
+        public String toString() {
+            return "CountingByteScanLimiter(" + parent + ")";
+        }
+    }
+
+    /**
+     * A cursor that returns the elements of another cursor, counting them and timing it for a node of a plan.
+     * @param <T> the type of elements of the cursor
+     */
+    private static class ProfiledCursor<T> implements RecordCursor<T> {
+        @Nonnull
+        private final RecordCursor<T> inner;
+        @Nonnull
+        private final OperatorStatistics operatorStatistics;
+        private final long startTime;
+        @Nullable
+        private final Consumer<OperatorStatistics> onFinished;
+        private boolean finished;
+
+        @Nullable
+        private CompletableFuture<Boolean> hasNextFuture;
+        @Nullable
+        private RecordCursorResult<T> nextResult;
+        // for detecting incorrect cursor usage
+        private boolean mayGetContinuation = false;
+
+        ProfiledCursor(@Nonnull RecordCursor<T> inner, @Nonnull OperatorStatistics operatorStatistics, long startTime,
+                       @Nullable Consumer<OperatorStatistics> onFinished) {
+            this.inner = inner;
+            this.operatorStatistics = operatorStatistics;
+            this.startTime = startTime;
+            this.onFinished = onFinished;
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<RecordCursorResult<T>> onNext() {
+            mayGetContinuation = false;
+            return inner.onNext().thenApply(result -> {
+                if (result.hasNext()) {
+                    if (operatorStatistics.rowsOut.getAndIncrement() == 0) {
+                        operatorStatistics.timeToFirstRowNanos.compareAndSet(-1, System.nanoTime() - startTime);
+                    }
+                } else {
+                    operatorStatistics.noNextReason = result.getNoNextReason();
+                    finish();
+                }
+                mayGetContinuation = !result.hasNext();
+                nextResult = result;
+                return result;
+            });
+        }
+
+        private void finish() {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+            }
+            operatorStatistics.totalTimeNanos.addAndGet(System.nanoTime() - startTime);
+            if (onFinished != null) {
+                onFinished.accept(operatorStatistics);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public CompletableFuture<Boolean> onHasNext() {
+            if (hasNextFuture == null) {
+                hasNextFuture = onNext().thenApply(RecordCursorResult::hasNext);
+            }
+            return hasNextFuture;
+        }
+
+        @Nullable
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNextFuture = null;
+            mayGetContinuation = true;
+            return nextResult.get();
+        }
+
+        @Nullable
+        @Override
+        public byte[] getContinuation() {
+            IllegalContinuationAccessChecker.check(mayGetContinuation);
+            return nextResult.getContinuation().toBytes();
+        }
+
+        @Override
+        public NoNextReason getNoNextReason() {
+            return nextResult.getNoNextReason();
+        }
+
+        @Override
+        public void close() {
+            finish();
+            inner.close();
+        }
+
+        @Nonnull
+        @Override
+        public Executor getExecutor() {
+            return inner.getExecutor();
+        }
+
+        @Override
+        public boolean accept(@Nonnull RecordCursorVisitor visitor) {
+            if (visitor.visitEnter(this)) {
+                inner.accept(visitor);
+            }
+            return visitor.visitLeave(this);
+        }
+    }
+}
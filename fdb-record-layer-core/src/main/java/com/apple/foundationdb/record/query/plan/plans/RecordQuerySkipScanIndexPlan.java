@@ -0,0 +1,243 @@
+/*
+ * RecordQuerySkipScanIndexPlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.EndpointType;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.PipelineOperation;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.ScanProperties;
+import com.apple.foundationdb.record.TupleRange;
+import com.apple.foundationdb.record.cursors.ChainedCursor;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.TupleHelpers;
+import com.google.protobuf.Message;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A query plan that outputs records pointed to by entries in a value index whose leading column(s) are not constrained,
+ * but whose following columns are.
+ *
+ * Rather than scanning the whole index, the distinct values of the leading columns are enumerated by seeking: after
+ * each prefix, the next is found by reading the first entry past all those that begin with it. Within each prefix, the
+ * comparisons on the following columns give an ordinary bounded scan. This takes one seek and one range read per
+ * distinct prefix, so it only pays off when there are few of them.
+ *
+ * Entries are returned in index order, just as they would be from a full scan of the index.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQuerySkipScanIndexPlan implements RecordQueryPlanWithNoChildren, RecordQueryPlanWithIndex {
+    @Nonnull
+    private final String indexName;
+    private final int prefixSize;
+    @Nonnull
+    private final ScanComparisons suffixComparisons;
+    private final boolean reverse;
+
+    /**
+     * Create a new skip-scan plan.
+     * @param indexName the name of the value index to scan
+     * @param prefixSize the number of leading tuple elements whose distinct values are skipped over
+     * @param suffixComparisons comparisons on the tuple elements that follow the skipped ones
+     * @param reverse whether to scan in reverse order
+     */
+    public RecordQuerySkipScanIndexPlan(@Nonnull String indexName, int prefixSize,
+                                        @Nonnull ScanComparisons suffixComparisons, boolean reverse) {
+        this.indexName = indexName;
+        this.prefixSize = prefixSize;
+        this.suffixComparisons = suffixComparisons;
+        this.reverse = reverse;
+    }
+
+    @Nonnull
+    @Override
+    public <M extends Message> RecordCursor<IndexEntry> executeEntries(@Nonnull FDBRecordStoreBase<M> store, @Nonnull EvaluationContext context,
+                                                                       @Nullable byte[] continuation, @Nonnull ExecuteProperties executeProperties) {
+        final Index index = store.getRecordMetaData().getIndex(indexName);
+        final TupleRange suffixRange = suffixComparisons.toTupleRange(store, context);
+        // Seeks are not counted against the limits, since they must not stop between prefixes without saying so.
+        final ScanProperties seekProperties = new ScanProperties(ExecuteProperties.newBuilder()
+                .setReturnedRowLimit(1)
+                .setIsolationLevel(executeProperties.getIsolationLevel())
+                .build(), reverse);
+        final ScanProperties scanProperties = executeProperties.clearSkipAndLimit().asScanProperties(reverse);
+        return RecordCursor.flatMapPipelined(
+                outerContinuation -> new ChainedCursor<>(
+                        lastPrefix -> nextPrefix(store, index, lastPrefix, seekProperties),
+                        Tuple::pack,
+                        Tuple::fromBytes,
+                        outerContinuation,
+                        store.getExecutor()),
+                (prefix, innerContinuation) -> store.scanIndex(index, IndexScanType.BY_VALUE, suffixRange.prepend(prefix),
+                        innerContinuation, scanProperties),
+                Tuple::pack,
+                continuation,
+                store.getPipelineSize(PipelineOperation.SKIP_SCAN))
+                .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
+    }
+
+    // Find the first prefix after (or before, if reverse) the given one.
+    @Nonnull
+    private <M extends Message> CompletableFuture<Optional<Tuple>> nextPrefix(@Nonnull FDBRecordStoreBase<M> store, @Nonnull Index index,
+                                                                             @Nonnull Optional<Tuple> lastPrefix,
+                                                                             @Nonnull ScanProperties seekProperties) {
+        final TupleRange range;
+        if (!lastPrefix.isPresent()) {
+            range = TupleRange.ALL;
+        } else if (reverse) {
+            range = new TupleRange(null, lastPrefix.get(), EndpointType.TREE_START, EndpointType.RANGE_EXCLUSIVE);
+        } else {
+            range = new TupleRange(lastPrefix.get(), null, EndpointType.RANGE_EXCLUSIVE, EndpointType.TREE_END);
+        }
+        final RecordCursor<IndexEntry> cursor = store.scanIndex(index, IndexScanType.BY_VALUE, range, null, seekProperties);
+        return cursor.first().thenApply(entry -> {
+            cursor.close();
+            return entry.map(indexEntry -> TupleHelpers.subTuple(indexEntry.getKey(), 0, prefixSize));
+        });
+    }
+
+    @Nonnull
+    @Override
+    public String getIndexName() {
+        return indexName;
+    }
+
+    @Nonnull
+    @Override
+    public IndexScanType getScanType() {
+        return IndexScanType.BY_VALUE;
+    }
+
+    public int getPrefixSize() {
+        return prefixSize;
+    }
+
+    @Nonnull
+    public ScanComparisons getSuffixComparisons() {
+        return suffixComparisons;
+    }
+
+    @Override
+    public boolean isReverse() {
+        return reverse;
+    }
+
+    @Override
+    public boolean hasRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasFullRecordScan() {
+        return false;
+    }
+
+    @Override
+    public boolean hasIndexScan(@Nonnull String indexName) {
+        return this.indexName.equals(indexName);
+    }
+
+    @Nonnull
+    @Override
+    public Set<String> getUsedIndexes() {
+        return Collections.singleton(indexName);
+    }
+
+    @Nonnull
+    @Override
+    @API(API.Status.EXPERIMENTAL)
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RecordQuerySkipScanIndexPlan that = (RecordQuerySkipScanIndexPlan) o;
+        return prefixSize == that.prefixSize &&
+                reverse == that.reverse &&
+                Objects.equals(indexName, that.indexName) &&
+                Objects.equals(suffixComparisons, that.suffixComparisons);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(indexName, prefixSize, suffixComparisons, reverse);
+    }
+
+    @Override
+    public int planHash() {
+        return indexName.hashCode() + prefixSize + suffixComparisons.planHash() + (reverse ? 1 : 0);
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        String range;
+        try {
+            range = suffixComparisons.toTupleRange().toString();
+        } catch (Comparisons.EvaluationContextRequiredException ex) {
+            range = suffixComparisons.toString();
+        }
+        StringBuilder str = new StringBuilder("SkipScan(");
+        str.append(indexName).append(" ").append(prefixSize).append(" ").append(range);
+        if (reverse) {
+            str.append(" REVERSE");
+        }
+        str.append(")");
+        return str.toString();
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_SKIP_SCAN_INDEX);
+    }
+
+    @Override
+    public int getComplexity() {
+        return 1;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * RecordQueryStreamingAggregatePlan.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
+import com.apple.foundationdb.record.provider.common.StoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.AggregateAccumulator;
+import com.apple.foundationdb.record.provider.foundationdb.cursors.StreamingAggregateCursor;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.tuple.Tuple;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A query plan that computes an aggregate function for each group of the records returned by a child plan.
+ *
+ * The child plan must return the records of each group together, usually by being ordered by the grouping key of the
+ * function's operand. Each result is a partial record with the grouping fields set, whose
+ * {@link FDBQueriedRecord#getIndexEntry index entry} has the group as its key and the aggregate value as its value,
+ * the same as when the query is answered from a covering scan of an aggregate index.
+ * @see StreamingAggregateCursor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class RecordQueryStreamingAggregatePlan extends RecordQueryAggregatePlanBase {
+    public RecordQueryStreamingAggregatePlan(@Nonnull RecordQueryPlan inner, @Nonnull IndexAggregateFunction aggregateFunction,
+                                             @Nonnull String recordTypeName, @Nonnull IndexKeyValueToPartialRecord toRecord) {
+        super(inner, aggregateFunction, recordTypeName, toRecord);
+    }
+
+    @Nonnull
+    @Override
+    <T> RecordCursor<IndexEntry> createAggregateCursor(@Nonnull Function<byte[], RecordCursor<T>> innerFunction,
+                                                      @Nonnull Function<T, List<Tuple>> keysFunction,
+                                                      @Nonnull Supplier<AggregateAccumulator> accumulatorSupplier,
+                                                      @Nullable byte[] continuation) {
+        return StreamingAggregateCursor.create(innerFunction, keysFunction, getGroupingCount(), accumulatorSupplier, continuation);
+    }
+
+    @Override
+    public boolean isReverse() {
+        return getInner().isReverse();
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return "Aggregate(" + getInner() + " | " + getAggregateFunction() + " -> " + getToRecord() + ")";
+    }
+
+    @Override
+    public void logPlanStructure(StoreTimer timer) {
+        timer.increment(FDBStoreTimer.Counts.PLAN_STREAMING_AGGREGATE);
+        getInner().logPlanStructure(timer);
+    }
+}
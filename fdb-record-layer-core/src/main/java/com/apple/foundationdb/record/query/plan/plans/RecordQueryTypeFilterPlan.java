@@ -77,7 +77,7 @@ public class RecordQueryTypeFilterPlan implements RecordQueryPlanWithChild, Type
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final RecordCursor<FDBQueriedRecord<M>> results = getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit());
+        final RecordCursor<FDBQueriedRecord<M>> results = RecordQueryPlanProfile.executePlan(getInner(), store, context, continuation, executeProperties.clearSkipAndLimit());
 
         return results
                 .filterInstrumented(record -> recordTypes.contains(record.getRecordType().getName()), store.getTimer(),
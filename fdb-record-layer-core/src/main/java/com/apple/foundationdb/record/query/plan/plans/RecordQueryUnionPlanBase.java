@@ -88,16 +88,13 @@ abstract class RecordQueryUnionPlanBase implements RecordQueryPlanWithChildren {
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final ExecuteProperties childExecuteProperties;
         // Can pass the limit down to all sides, since that is the most we'll take total.
-        if (executeProperties.getSkip() > 0) {
-            childExecuteProperties = executeProperties.clearSkipAndAdjustLimit();
-        } else {
-            childExecuteProperties = executeProperties;
-        }
         final List<Function<byte[], RecordCursor<FDBQueriedRecord<M>>>> childCursorFunctions = getChildStream()
-                .map(childPlan -> (Function<byte[], RecordCursor<FDBQueriedRecord<M>>>)
-                        ((byte[] childContinuation) -> childPlan.execute(store, context, childContinuation, childExecuteProperties)))
+                .map(childPlan -> {
+                    final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(childPlan, executeProperties);
+                    return (Function<byte[], RecordCursor<FDBQueriedRecord<M>>>)
+                            ((byte[] childContinuation) -> RecordQueryPlanProfile.executePlan(childPlan, store, context, childContinuation, childExecuteProperties));
+                })
                 .collect(Collectors.toList());
         return createUnionCursor(store, childCursorFunctions, continuation).skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
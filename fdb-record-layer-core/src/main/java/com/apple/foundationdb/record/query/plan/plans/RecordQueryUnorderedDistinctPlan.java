@@ -24,7 +24,7 @@ import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.RecordCursor;
-import com.apple.foundationdb.record.metadata.Key;
+import com.apple.foundationdb.record.cursors.CloseResourceCursor;
 import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
@@ -42,7 +42,6 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
@@ -50,6 +49,8 @@ import java.util.Set;
 
 /**
  * A query plan that removes duplicates by means of a hash table of previously seen values.
+ * The table is limited by {@link ExecuteProperties#getMemoryLimit}, past which it is partly kept in local files in
+ * {@link ExecuteProperties#getSpillDirectory}.
  */
 @API(API.Status.MAINTAINED)
 public class RecordQueryUnorderedDistinctPlan implements RecordQueryPlanWithChild {
@@ -82,10 +83,12 @@ public class RecordQueryUnorderedDistinctPlan implements RecordQueryPlanWithChil
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final Set<Key.Evaluated> seen = new HashSet<>();
-        return getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit())
-            .filterInstrumented(record -> seen.add(getComparisonKey().evaluateSingleton(record)),
-                store.getTimer(), Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts)
+        final DistinctKeySet seen = new DistinctKeySet(executeProperties.getMemoryLimit(), executeProperties.getSpillDirectory(), store.getTimer());
+        final RecordCursor<FDBQueriedRecord<M>> distinct = RecordQueryPlanProfile.executePlan(getInner(), store, context, continuation, executeProperties.clearSkipAndLimit())
+                // Only one add at a time, since the key set is not thread-safe.
+                .filterAsyncInstrumented(record -> seen.addAsync(getComparisonKey().evaluateSingleton(record).toTuple()), 1,
+                    store.getTimer(), Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts);
+        return new CloseResourceCursor<>(distinct, seen)
             .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
 
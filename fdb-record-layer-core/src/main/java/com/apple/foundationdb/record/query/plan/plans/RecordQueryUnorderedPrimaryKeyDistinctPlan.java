@@ -24,6 +24,7 @@ import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.EvaluationContext;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.cursors.CloseResourceCursor;
 import com.apple.foundationdb.record.provider.common.StoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
@@ -31,7 +32,6 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
 import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
 import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
-import com.apple.foundationdb.tuple.Tuple;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.protobuf.Message;
@@ -41,13 +41,14 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
 
 /**
  * A query plan that removes duplicates by means of a hash table of primary keys already seen.
+ * The table is limited by {@link ExecuteProperties#getMemoryLimit}, past which it is partly kept in local files in
+ * {@link ExecuteProperties#getSpillDirectory}.
  */
 @API(API.Status.MAINTAINED)
 public class RecordQueryUnorderedPrimaryKeyDistinctPlan implements RecordQueryPlanWithChild {
@@ -73,10 +74,12 @@ public class RecordQueryUnorderedPrimaryKeyDistinctPlan implements RecordQueryPl
                                                                          @Nonnull EvaluationContext context,
                                                                          @Nullable byte[] continuation,
                                                                          @Nonnull ExecuteProperties executeProperties) {
-        final Set<Tuple> seen = new HashSet<>();
-        return getInner().execute(store, context, continuation, executeProperties.clearSkipAndLimit())
-            .filterInstrumented(record -> seen.add(record.getPrimaryKey()), store.getTimer(),
-                Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts)
+        final DistinctKeySet seen = new DistinctKeySet(executeProperties.getMemoryLimit(), executeProperties.getSpillDirectory(), store.getTimer());
+        final RecordCursor<FDBQueriedRecord<M>> distinct = RecordQueryPlanProfile.executePlan(getInner(), store, context, continuation, executeProperties.clearSkipAndLimit())
+                // Only one add at a time, since the key set is not thread-safe.
+                .filterAsyncInstrumented(record -> seen.addAsync(record.getPrimaryKey()), 1, store.getTimer(),
+                    Collections.emptySet(), duringEvents, uniqueCounts, duplicateCounts);
+        return new CloseResourceCursor<>(distinct, seen)
             .skipThenLimit(executeProperties.getSkip(), executeProperties.getReturnedRowLimit());
     }
 
@@ -26,6 +26,7 @@ import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
 
 import javax.annotation.Nonnull;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * A planner type that supports rule binding. Both {@link PlannerExpression} and {@link ExpressionRef} implement
@@ -57,4 +58,31 @@ public interface Bindable {
      */
     @Nonnull
     Optional<PlannerBindings> bindWithExisting(@Nonnull ExpressionMatcher<? extends Bindable> binding, @Nonnull PlannerBindings existing);
+
+    /**
+     * Attempt to match the binding to this bindable object in every possible way. A bindable that contains
+     * alternatives, such as a group reference with several member expressions, can match the same binding more
+     * than once.
+     * @param binding the binding to match against
+     * @return a stream of the maps of bindings for each way in which the match succeeded
+     */
+    @Nonnull
+    default Stream<PlannerBindings> bindAll(@Nonnull ExpressionMatcher<? extends Bindable> binding) {
+        return bindAllWithExisting(binding, new PlannerBindings());
+    }
+
+    /**
+     * Attempt to match the binding to this bindable object in every possible way, returning for each match a map
+     * consisting of the old keys along with new bindings from this <code>Bindable</code>.
+     * Unlike {@link #bindWithExisting}, this never modifies <code>existing</code>: each returned map is a new one.
+     * The default implementation is suitable for any bindable that can match in at most one way.
+     * @param binding the binding to match against
+     * @param existing an existing map of bindings
+     * @return a stream of the maps of bindings for each way in which the match succeeded
+     */
+    @Nonnull
+    default Stream<PlannerBindings> bindAllWithExisting(@Nonnull ExpressionMatcher<? extends Bindable> binding, @Nonnull PlannerBindings existing) {
+        final Optional<PlannerBindings> bindings = bindWithExisting(binding, existing.copy());
+        return bindings.map(Stream::of).orElseGet(Stream::empty);
+    }
 }
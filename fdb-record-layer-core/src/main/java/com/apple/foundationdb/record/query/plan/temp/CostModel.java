@@ -0,0 +1,70 @@
+/*
+ * CostModel.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+
+import javax.annotation.Nonnull;
+import java.util.Optional;
+
+/**
+ * A function from plans to their estimated cost, which the {@link RewritePlanner} minimizes when choosing among the
+ * alternative plans for a query. Rules also use it to choose among the alternative implementations of the inputs to
+ * the plans that they build.
+ *
+ * Costs are only compared with one another, so their units are up to the implementation.
+ * @see DefaultCostModel
+ */
+@API(API.Status.EXPERIMENTAL)
+@FunctionalInterface
+public interface CostModel {
+    /**
+     * Estimate the cost of executing the given plan.
+     * @param context the context of the query being planned
+     * @param plan a plan for that query or part of it
+     * @return the estimated cost of the plan, where lower is better
+     */
+    double getCost(@Nonnull PlanContext context, @Nonnull RecordQueryPlan plan);
+
+    /**
+     * Choose the cheapest of the given plans. Plans of equal cost are ordered by their complexity and then by the
+     * order in which they are given.
+     * @param context the context of the query being planned
+     * @param plans the alternative plans
+     * @param <T> the type of the plans
+     * @return the cheapest plan, or {@code Optional.empty()} if there are no plans
+     */
+    @Nonnull
+    default <T extends RecordQueryPlan> Optional<T> getCheapest(@Nonnull PlanContext context, @Nonnull Iterable<T> plans) {
+        T cheapest = null;
+        double cheapestCost = 0;
+        for (T plan : plans) {
+            final double cost = getCost(context, plan);
+            if (cheapest == null || cost < cheapestCost ||
+                    (cost == cheapestCost && plan.getComplexity() < cheapest.getComplexity())) {
+                cheapest = plan;
+                cheapestCost = cost;
+            }
+        }
+        return Optional.ofNullable(cheapest);
+    }
+}
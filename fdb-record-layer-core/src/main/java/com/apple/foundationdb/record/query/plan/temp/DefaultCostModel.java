@@ -0,0 +1,224 @@
+/*
+ * DefaultCostModel.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.query.expressions.AndComponent;
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import com.apple.foundationdb.record.query.expressions.ComponentWithComparison;
+import com.apple.foundationdb.record.query.expressions.ComponentWithSingleChild;
+import com.apple.foundationdb.record.query.expressions.NotComponent;
+import com.apple.foundationdb.record.query.expressions.OrComponent;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInParameterJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryInValuesJoinPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryTypeFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedDistinctPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link CostModel} used by the {@link RewritePlanner} unless it is given another one.
+ *
+ * The cost of a plan is the estimated number of keys that it reads: one for each index entry scanned and one for each
+ * record loaded, so a covering index scan costs half as much as the same scan followed by fetching the records.
+ * The number of entries that a scan reads is taken from the {@link IndexStatistics} of the index, if there are any,
+ * and otherwise guessed from the comparisons, with each equality keeping {@link #EQUALITY_SELECTIVITY} of the entries
+ * and any inequality keeping {@link IndexStatistics#DEFAULT_RANGE_SELECTIVITY} of them. Filters are guessed in the
+ * same way; they do not reduce the cost of the plan they filter, but they do reduce the number of records it returns,
+ * which matters to the plans above it, such as an intersection.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class DefaultCostModel implements CostModel {
+    /**
+     * The fraction of entries or records estimated to satisfy an equality comparison.
+     */
+    public static final double EQUALITY_SELECTIVITY = 0.1;
+    /**
+     * The number of records assumed to be in the store when there are no statistics to say otherwise.
+     */
+    public static final long DEFAULT_RECORD_COUNT = 1000;
+    /**
+     * The number of values assumed to be in an {@code IN} list that is not known until the query is executed.
+     */
+    public static final int DEFAULT_IN_VALUES = 10;
+
+    @Nonnull
+    private final Map<String, IndexStatistics> indexStatistics;
+
+    public DefaultCostModel() {
+        this(Collections.emptyMap());
+    }
+
+    public DefaultCostModel(@Nonnull Map<String, IndexStatistics> indexStatistics) {
+        this.indexStatistics = indexStatistics;
+    }
+
+    @Override
+    public double getCost(@Nonnull PlanContext context, @Nonnull RecordQueryPlan plan) {
+        return estimate(plan, getRecordCount(context)).keysRead;
+    }
+
+    /**
+     * Estimate the number of records of the types being queried, from the largest number of entries in any of the
+     * indexes with statistics that have exactly one entry per record.
+     * @param context the context of the query being planned
+     * @return the estimated number of records
+     */
+    protected long getRecordCount(@Nonnull PlanContext context) {
+        long count = 0;
+        for (Index index : context.getIndexes()) {
+            final IndexStatistics statistics = indexStatistics.get(index.getName());
+            if (statistics != null && !index.getRootExpression().createsDuplicates()) {
+                count = Math.max(count, statistics.getEntryCount());
+            }
+        }
+        return count > 0 ? count : DEFAULT_RECORD_COUNT;
+    }
+
+    private static class Estimate {
+        private final double records;
+        private final double keysRead;
+
+        Estimate(double records, double keysRead) {
+            this.records = records;
+            this.keysRead = keysRead;
+        }
+    }
+
+    @Nonnull
+    @SuppressWarnings("squid:S3776") // Cognitive complexity is high due to cases for each kind of plan.
+    private Estimate estimate(@Nonnull RecordQueryPlan plan, long recordCount) {
+        if (plan instanceof RecordQueryScanPlan) {
+            final double records = estimateEntries(((RecordQueryScanPlan)plan).getComparisons(), recordCount);
+            return new Estimate(records, records);
+        } else if (plan instanceof RecordQueryIndexPlan) {
+            final double entries = estimateIndexScan((RecordQueryIndexPlan)plan, recordCount);
+            return new Estimate(entries, 2 * entries);
+        } else if (plan instanceof RecordQueryCoveringIndexPlan) {
+            final RecordQueryPlan child = ((RecordQueryCoveringIndexPlan)plan).getChild();
+            final Estimate fetched = estimate(child, recordCount);
+            return new Estimate(fetched.records, child instanceof RecordQueryIndexPlan ? fetched.records : fetched.keysRead);
+        } else if (plan instanceof RecordQueryFilterPlan) {
+            final RecordQueryFilterPlan filterPlan = (RecordQueryFilterPlan)plan;
+            final Estimate inner = estimate(filterPlan.getInner(), recordCount);
+            return new Estimate(inner.records * selectivity(filterPlan.getFilter()), inner.keysRead);
+        } else if (plan instanceof RecordQueryTypeFilterPlan || plan instanceof RecordQueryUnorderedPrimaryKeyDistinctPlan ||
+                   plan instanceof RecordQueryUnorderedDistinctPlan) {
+            return estimate(plan.getChildren().get(0), recordCount);
+        } else if (plan instanceof RecordQueryInValuesJoinPlan) {
+            final RecordQueryInValuesJoinPlan inPlan = (RecordQueryInValuesJoinPlan)plan;
+            final List<Object> values = inPlan.getValues(null);
+            return scale(estimate(inPlan.getInner(), recordCount), values == null ? DEFAULT_IN_VALUES : values.size());
+        } else if (plan instanceof RecordQueryInParameterJoinPlan) {
+            return scale(estimate(((RecordQueryInParameterJoinPlan)plan).getInner(), recordCount), DEFAULT_IN_VALUES);
+        } else if (plan instanceof RecordQueryIntersectionPlan) {
+            return estimateIntersection(plan.getChildren(), recordCount);
+        } else if (!plan.getChildren().isEmpty()) {
+            // Unions, and anything else that reads each of its children once.
+            double records = 0;
+            double keysRead = 0;
+            for (RecordQueryPlan child : plan.getChildren()) {
+                final Estimate childEstimate = estimate(child, recordCount);
+                records += childEstimate.records;
+                keysRead += childEstimate.keysRead;
+            }
+            return new Estimate(records, keysRead);
+        } else {
+            // Some other kind of scan, about which nothing is known.
+            return new Estimate(recordCount, recordCount);
+        }
+    }
+
+    private double estimateIndexScan(@Nonnull RecordQueryIndexPlan plan, long recordCount) {
+        final IndexStatistics statistics = indexStatistics.get(plan.getIndexName());
+        if (statistics != null && IndexScanType.BY_VALUE.equals(plan.getScanType())) {
+            return statistics.estimateEntries(plan.getComparisons());
+        }
+        return estimateEntries(plan.getComparisons(), recordCount);
+    }
+
+    private static double estimateEntries(@Nonnull ScanComparisons comparisons, long recordCount) {
+        double entries = recordCount * Math.pow(EQUALITY_SELECTIVITY, comparisons.getEqualitySize());
+        if (!comparisons.getInequalityComparisons().isEmpty()) {
+            entries *= IndexStatistics.DEFAULT_RANGE_SELECTIVITY;
+        }
+        return entries;
+    }
+
+    @Nonnull
+    private Estimate estimateIntersection(@Nonnull List<RecordQueryPlan> children, long recordCount) {
+        double fraction = 1;
+        double keysRead = 0;
+        for (RecordQueryPlan child : children) {
+            final Estimate childEstimate = estimate(child, recordCount);
+            keysRead += childEstimate.keysRead;
+            fraction *= Math.min(1.0, childEstimate.records / recordCount);
+        }
+        // Assuming the branches are independent, the fraction of records in all of them is the product of the fractions in each.
+        return new Estimate(fraction * recordCount, keysRead);
+    }
+
+    @Nonnull
+    private static Estimate scale(@Nonnull Estimate estimate, int times) {
+        return new Estimate(estimate.records * times, estimate.keysRead * times);
+    }
+
+    private static double selectivity(@Nonnull QueryComponent filter) {
+        if (filter instanceof ComponentWithComparison) {
+            final Comparisons.Type type = ((ComponentWithComparison)filter).getComparison().getType();
+            return type.isEquality() ? EQUALITY_SELECTIVITY : IndexStatistics.DEFAULT_RANGE_SELECTIVITY;
+        } else if (filter instanceof AndComponent) {
+            double selectivity = 1;
+            for (QueryComponent child : ((AndComponent)filter).getChildren()) {
+                selectivity *= selectivity(child);
+            }
+            return selectivity;
+        } else if (filter instanceof OrComponent) {
+            double selectivity = 0;
+            for (QueryComponent child : ((OrComponent)filter).getChildren()) {
+                selectivity += selectivity(child);
+            }
+            return Math.min(1.0, selectivity);
+        } else if (filter instanceof NotComponent) {
+            return 1.0 - selectivity(((NotComponent)filter).getChild());
+        } else if (filter instanceof ComponentWithSingleChild) {
+            return selectivity(((ComponentWithSingleChild)filter).getChild());
+        } else {
+            return IndexStatistics.DEFAULT_RANGE_SELECTIVITY;
+        }
+    }
+}
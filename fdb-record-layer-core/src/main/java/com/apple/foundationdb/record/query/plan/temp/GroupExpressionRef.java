@@ -0,0 +1,167 @@
+/*
+ * GroupExpressionRef.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A Cascades-style group: a mutable reference to a set of logically equivalent planner expressions, its members.
+ * Inserting an expression adds it to the group, unless an equal member is already present. The members are kept in
+ * the order in which they were first inserted.
+ *
+ * Unlike a {@link SingleExpressionRef}, whose expression is all that matters, a group is an identity: expressions
+ * whose children are the same groups are the same expression, even as those groups gain members. This is what allows
+ * the planner to memoize expressions, by using the same group for the same expression wherever it is needed.
+ *
+ * Since a group can have more than one member, {@link #get()} only works when it has exactly one. A matcher that
+ * needs to look inside a group binds to each member in turn (see {@link #bindAllWithExisting}).
+ * @param <T> the type of planner expression that is contained in this reference
+ */
+@API(API.Status.EXPERIMENTAL)
+public class GroupExpressionRef<T extends PlannerExpression> implements MutableExpressionRef<T> {
+    @Nonnull
+    private final Set<T> members;
+
+    protected GroupExpressionRef() {
+        this.members = new LinkedHashSet<>();
+    }
+
+    /**
+     * Return the only member of this group.
+     * @return the expression contained in this group
+     * @throws UngettableReferenceException if this group does not have exactly one member
+     */
+    @Override
+    @Nonnull
+    public T get() {
+        if (members.size() != 1) {
+            throw new UngettableReferenceException("tried to get the expression of a group with " + members.size() + " members");
+        }
+        return members.iterator().next();
+    }
+
+    /**
+     * Add a new member to this group, if it does not already have an equal one.
+     * @param newValue the new member expression
+     */
+    @Override
+    public void insert(@Nonnull T newValue) {
+        members.add(newValue);
+    }
+
+    /**
+     * Determine whether this group has a member equal to the given expression.
+     * @param expression the expression to look for
+     * @return {@code true} if {@code expression} is already a member of this group
+     */
+    public boolean containsInMemo(@Nonnull PlannerExpression expression) {
+        return members.contains(expression);
+    }
+
+    /**
+     * Get the members of this group, in the order in which they were inserted.
+     * @return an unmodifiable view of the members of this group
+     */
+    @Nonnull
+    public Set<T> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    @Override
+    public <U> U acceptPropertyVisitor(@Nonnull PlannerProperty<U> visitor) {
+        if (visitor.shouldVisit(this)) {
+            final List<U> memberResults = new ArrayList<>(members.size());
+            for (T member : members) {
+                final U result = member.acceptPropertyVisitor(visitor);
+                if (result != null) {
+                    memberResults.add(result);
+                }
+            }
+            if (!memberResults.isEmpty()) {
+                return visitor.evaluateAtRef(this, memberResults);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bind a matcher to this group or to its first member that it matches.
+     * @param binding the binding to match against
+     * @param existing an existing map of bindings
+     * @return a map of bindings if the match succeeded, or an empty <code>Optional</code> if it failed
+     * @see #bindAllWithExisting
+     */
+    @Override
+    @Nonnull
+    public Optional<PlannerBindings> bindWithExisting(@Nonnull ExpressionMatcher<? extends Bindable> binding, @Nonnull PlannerBindings existing) {
+        return bindAllWithExisting(binding, existing).findFirst();
+    }
+
+    /**
+     * Bind a matcher to this group in every possible way. As with {@link SingleExpressionRef}, a matcher that can bind
+     * to references binds to the group itself; otherwise, the matcher is bound to each member of the group.
+     * The returned stream is lazy, so the group must not be modified until it has been consumed.
+     * @param binding the binding to match against
+     * @param existing an existing map of bindings, which is not modified
+     * @return a stream of the maps of bindings for each way in which the match succeeded
+     */
+    @Override
+    @Nonnull
+    public Stream<PlannerBindings> bindAllWithExisting(@Nonnull ExpressionMatcher<? extends Bindable> binding, @Nonnull PlannerBindings existing) {
+        switch (binding.matches(this)) {
+            case UNKNOWN:
+                return members.stream().flatMap(member -> member.bindAllWithExisting(binding, existing));
+            case MATCHES:
+                final PlannerBindings extended = existing.copy();
+                extended.put(binding, this);
+                return Stream.of(extended);
+            case DOES_NOT_MATCH:
+                return Stream.empty();
+            default:
+                throw new RecordCoreException("added another variant to the Result enum but did not update switch");
+        }
+    }
+
+    /**
+     * Create a new group with a single member.
+     * @param expression the first member of the group
+     * @param <T> the type of planner expression in the group
+     * @return a new group containing {@code expression}
+     */
+    @Nonnull
+    public static <T extends PlannerExpression> GroupExpressionRef<T> of(@Nonnull T expression) {
+        final GroupExpressionRef<T> group = new GroupExpressionRef<>();
+        group.insert(expression);
+        return group;
+    }
+}
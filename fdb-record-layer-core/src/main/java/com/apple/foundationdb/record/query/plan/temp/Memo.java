@@ -0,0 +1,135 @@
+/*
+ * Memo.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanComplexityException;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The memo structure of the {@link RewritePlanner}: every group of logically equivalent expressions that it has
+ * found, with an index from each expression to its group, so that the same expression is always given the same group
+ * and is only explored once.
+ */
+class Memo {
+    @Nonnull
+    private final Map<PlannerExpression, GroupExpressionRef<? extends PlannerExpression>> groupsByExpression = new HashMap<>();
+    @Nonnull
+    private final List<GroupExpressionRef<? extends PlannerExpression>> groups = new ArrayList<>();
+    @Nonnull
+    private final Set<GroupExpressionRef<? extends PlannerExpression>> registered = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int maxExpressions;
+    private int expressionCount;
+
+    Memo(int maxExpressions) {
+        this.maxExpressions = maxExpressions;
+    }
+
+    /**
+     * Get the group of the given expression, creating a new group for it if there is none yet.
+     * @param expression the expression to find
+     * @param <T> the type of the expression
+     * @return a group that has {@code expression} as a member
+     */
+    @Nonnull
+    @SuppressWarnings("unchecked")
+    <T extends PlannerExpression> GroupExpressionRef<T> refFor(@Nonnull T expression) {
+        final GroupExpressionRef<? extends PlannerExpression> existing = groupsByExpression.get(expression);
+        if (existing != null) {
+            return (GroupExpressionRef<T>)existing;
+        }
+        final GroupExpressionRef<T> group = new GroupExpressionRef<>();
+        insert(group, expression);
+        return group;
+    }
+
+    /**
+     * Add the given expression to the given group, along with any groups among its children that are new to the memo.
+     * An expression found to be equivalent to members of more than one group becomes a member of each of them.
+     * @param group the group to add to
+     * @param expression the new member
+     * @param <T> the type of the expression
+     * @return {@code true} if the expression was not already a member of the group
+     * @throws RecordQueryPlanComplexityException if this makes more expressions than the planner allows
+     */
+    <T extends PlannerExpression> boolean insert(@Nonnull GroupExpressionRef<T> group, @Nonnull T expression) {
+        if (group.containsInMemo(expression)) {
+            return false;
+        }
+        if (++expressionCount > maxExpressions) {
+            throw new RecordQueryPlanComplexityException("Query requires too many alternative plans");
+        }
+        group.insert(expression);
+        groupsByExpression.putIfAbsent(expression, group);
+        register(group);
+        registerChildren(expression);
+        return true;
+    }
+
+    private void register(@Nonnull GroupExpressionRef<? extends PlannerExpression> group) {
+        if (registered.add(group)) {
+            groups.add(group);
+            for (PlannerExpression member : group.getMembers()) {
+                if (groupsByExpression.putIfAbsent(member, group) == null) {
+                    expressionCount++;
+                }
+                registerChildren(member);
+            }
+        }
+    }
+
+    private void registerChildren(@Nonnull PlannerExpression expression) {
+        final Iterator<? extends ExpressionRef<? extends PlannerExpression>> children = expression.getPlannerExpressionChildren();
+        while (children.hasNext()) {
+            final ExpressionRef<? extends PlannerExpression> child = children.next();
+            if (child instanceof GroupExpressionRef) {
+                register((GroupExpressionRef<? extends PlannerExpression>)child);
+            }
+        }
+    }
+
+    /**
+     * Get all of the groups in the memo, in the order in which they were found. Exploring a group can add more groups
+     * to the end of the list.
+     * @return the list of groups
+     */
+    @Nonnull
+    List<GroupExpressionRef<? extends PlannerExpression>> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Get the number of expressions in all of the groups, which only grows as the planner finds new ones.
+     * @return the number of expressions
+     */
+    int getExpressionCount() {
+        return expressionCount;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * MemoRuleCall.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule call implementation for the {@link RewritePlanner}, which adds the expressions yielded by the rule to the
+ * group of the expression that the rule matched, rather than replacing it, so that the planner can choose among all
+ * of them once it is done.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class MemoRuleCall implements PlannerRuleCall {
+    @Nonnull
+    private final PlannerRule<? extends PlannerExpression> rule;
+    @Nonnull
+    private final GroupExpressionRef<PlannerExpression> root;
+    @Nonnull
+    private final PlannerBindings bindings;
+    @Nonnull
+    private final PlanContext context;
+    @Nonnull
+    private final CostModel costModel;
+    @Nonnull
+    private final Memo memo;
+
+    MemoRuleCall(@Nonnull PlanContext context, @Nonnull CostModel costModel, @Nonnull Memo memo,
+                 @Nonnull PlannerRule<? extends PlannerExpression> rule,
+                 @Nonnull GroupExpressionRef<PlannerExpression> root,
+                 @Nonnull PlannerBindings bindings) {
+        this.context = context;
+        this.costModel = costModel;
+        this.memo = memo;
+        this.rule = rule;
+        this.root = root;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Run this rule call by calling the rule's {@link PlannerRule#onMatch(PlannerRuleCall)} method.
+     * @return a {@link PlannerRule.ChangesMade} that indicates whether the running the rule yielded a new expression
+     */
+    public PlannerRule.ChangesMade run() {
+        return rule.onMatch(this);
+    }
+
+    @Override
+    @Nonnull
+    public PlannerBindings getBindings() {
+        return bindings;
+    }
+
+    @Override
+    @Nonnull
+    public PlanContext getContext() {
+        return context;
+    }
+
+    @Override
+    @Nonnull
+    public CostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * Add the given expression to the group of the expression that the rule matched. If given a group, add all of
+     * its members.
+     * @param expression the expression produced by the rule
+     */
+    @Override
+    public void yield(@Nonnull ExpressionRef<? extends PlannerExpression> expression) {
+        if (expression instanceof GroupExpressionRef) {
+            // Copied, since a group can be yielded into itself.
+            final List<PlannerExpression> members = new ArrayList<>(((GroupExpressionRef<? extends PlannerExpression>)expression).getMembers());
+            for (PlannerExpression member : members) {
+                memo.insert(root, member);
+            }
+        } else {
+            memo.insert(root, expression.get());
+        }
+    }
+
+    /**
+     * Get the memo's group for a relational expression, so that it is explored along with the rest. Other expressions,
+     * such as query components, are not explored, so they are just put in a {@link SingleExpressionRef}.
+     * @param expression the planner expression to wrap in a reference type
+     * @param <U> the type of the planner expression
+     * @return a reference to {@code expression}
+     */
+    @Override
+    public <U extends PlannerExpression> ExpressionRef<U> ref(U expression) {
+        if (expression instanceof RelationalPlannerExpression) {
+            return memo.refFor(expression);
+        } else {
+            return SingleExpressionRef.of(expression);
+        }
+    }
+}
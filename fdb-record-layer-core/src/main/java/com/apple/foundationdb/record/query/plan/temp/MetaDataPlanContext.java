@@ -54,10 +54,13 @@ public class MetaDataPlanContext implements PlanContext {
     private final BiMap<String, Index> indexesByName = indexes.inverse();
     @Nullable
     private final KeyExpression commonPrimaryKey;
+    @Nullable
+    private final List<KeyExpression> requiredResults;
 
     public MetaDataPlanContext(@Nonnull RecordMetaData metaData, @Nonnull RecordStoreState recordStoreState, @Nonnull RecordQuery query) {
         this.metaData = metaData;
         this.recordStoreState = recordStoreState;
+        this.requiredResults = query.getRequiredResults();
 
         recordStoreState.beginRead();
         List<Index> indexList = new ArrayList<>();
@@ -136,6 +139,12 @@ public class MetaDataPlanContext implements PlanContext {
         return metaData;
     }
 
+    @Override
+    @Nullable
+    public List<KeyExpression> getRequiredResults() {
+        return requiredResults;
+    }
+
     @Nonnull
     private List<Index> readableOf(@Nonnull List<Index> indexes) {
         if (recordStoreState.allIndexesReadable()) {
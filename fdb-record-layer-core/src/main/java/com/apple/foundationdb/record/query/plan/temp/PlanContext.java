@@ -27,6 +27,7 @@ import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -47,4 +48,12 @@ public interface PlanContext {
 
     @Nonnull
     RecordMetaData getMetaData();
+
+    /**
+     * Get the fields of the records that the query being planned needs, if it has said.
+     * @return the required fields, or {@code null} if the whole records are needed
+     * @see com.apple.foundationdb.record.query.RecordQuery#getRequiredResults()
+     */
+    @Nullable
+    List<KeyExpression> getRequiredResults();
 }
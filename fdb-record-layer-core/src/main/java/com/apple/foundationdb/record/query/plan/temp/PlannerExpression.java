@@ -22,6 +22,7 @@ package com.apple.foundationdb.record.query.plan.temp;
 
 import com.apple.foundationdb.API;
 import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
 import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
 import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
 
@@ -31,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The basic type that represents a part of the planner expression tree. An expression is generally an immutable
@@ -78,6 +80,10 @@ public interface PlannerExpression extends Bindable {
         if (!binding.matches(this).equals(ExpressionMatcher.Result.MATCHES)) {
             return Optional.empty();
         }
+        if (AnyChildrenMatcher.isAnyChildren(binding.getChildren())) {
+            existing.put(binding, this);
+            return Optional.of(existing);
+        }
         Iterator<? extends ExpressionRef<? extends PlannerExpression>> childIterator = getPlannerExpressionChildren();
         Iterator<ExpressionMatcher<? extends Bindable>> bindingIterator = binding.getChildren().iterator();
 
@@ -96,6 +102,45 @@ public interface PlannerExpression extends Bindable {
         return Optional.of(existing);
     }
 
+    /**
+     * Matches a matcher expression to an expression tree rooted at this node in every possible way, adding to some
+     * existing bindings. Since the children of an expression can be references to groups of alternative expressions,
+     * the same matcher can bind to the tree in more than one way.
+     * @param binding the binding to match against
+     * @param existing an existing map of bindings, which is not modified
+     * @return a stream of the existing bindings extended with some new ones for each way in which the match was successful
+     */
+    @Override
+    @Nonnull
+    default Stream<PlannerBindings> bindAllWithExisting(@Nonnull ExpressionMatcher<? extends Bindable> binding, @Nonnull PlannerBindings existing) {
+        if (existing.containsKey(binding)) {
+            throw new RecordCoreException("tried to bind to a matcher that is already bound");
+        }
+
+        if (!binding.matches(this).equals(ExpressionMatcher.Result.MATCHES)) {
+            return Stream.empty();
+        }
+        Stream<PlannerBindings> partial = Stream.of(existing);
+        if (!AnyChildrenMatcher.isAnyChildren(binding.getChildren())) {
+            final List<ExpressionRef<? extends PlannerExpression>> children = new ArrayList<>();
+            getPlannerExpressionChildren().forEachRemaining(children::add);
+            final List<ExpressionMatcher<? extends Bindable>> childBindings = binding.getChildren();
+            if (children.size() != childBindings.size()) { // unable to match completely
+                return Stream.empty();
+            }
+            for (int i = 0; i < children.size(); i++) {
+                final ExpressionRef<? extends PlannerExpression> child = children.get(i);
+                final ExpressionMatcher<? extends Bindable> childBinding = childBindings.get(i);
+                partial = partial.flatMap(bindings -> child.bindAllWithExisting(childBinding, bindings));
+            }
+        }
+        return partial.map(bindings -> {
+            final PlannerBindings extended = bindings.copy();
+            extended.put(binding, this);
+            return extended;
+        });
+    }
+
     /**
      * Return an iterator of references to the children of this planner expression. The iterators returned by different
      * calls are guaranteed to be independent (i.e., advancing one will not advance another). However, they might point
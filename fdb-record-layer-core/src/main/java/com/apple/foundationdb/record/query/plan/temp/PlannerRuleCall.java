@@ -57,6 +57,14 @@ public interface PlannerRuleCall {
     @Nonnull
     PlanContext getContext();
 
+    /**
+     * Get the cost model that the planner is using to choose among alternative plans. A rule that builds a plan out of
+     * alternative implementations of its inputs can use it to choose among them.
+     * @return the planner's {@link CostModel}
+     */
+    @Nonnull
+    CostModel getCostModel();
+
     /**
      * Return the bindable that is bound to the given key.
      * @param key the binding from the rule's matcher expression
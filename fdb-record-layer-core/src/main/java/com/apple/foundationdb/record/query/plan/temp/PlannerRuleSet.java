@@ -21,11 +21,20 @@
 package com.apple.foundationdb.record.query.plan.temp;
 
 import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.temp.rules.AndToIntersectionRule;
 import com.apple.foundationdb.record.query.plan.temp.rules.CombineFilterRule;
-import com.apple.foundationdb.record.query.plan.temp.rules.FilterWithFieldWithComparisonRule;
-import com.apple.foundationdb.record.query.plan.temp.rules.FilterWithScanRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.CoveringIndexRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.FilterToIndexScanRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.ImplementFilterRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.ImplementInJoinRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.ImplementIntersectionRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.ImplementSortRule;
 import com.apple.foundationdb.record.query.plan.temp.rules.ImplementTypeFilterRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.ImplementUnionRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.InToJoinRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.OrToUnionRule;
 import com.apple.foundationdb.record.query.plan.temp.rules.RemoveRedundantTypeFilterRule;
+import com.apple.foundationdb.record.query.plan.temp.rules.SortToIndexScanRule;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Multimap;
@@ -43,17 +52,31 @@ import java.util.Optional;
 @API(API.Status.EXPERIMENTAL)
 public class PlannerRuleSet {
     private static final List<PlannerRule<? extends PlannerExpression>> REWRITE_RULES = ImmutableList.of(
-            new FilterWithScanRule(),
             new CombineFilterRule(),
-            new FilterWithFieldWithComparisonRule(),
-            new RemoveRedundantTypeFilterRule()
+            new RemoveRedundantTypeFilterRule(),
+            new InToJoinRule(),
+            new OrToUnionRule(),
+            new AndToIntersectionRule(),
+            new SortToIndexScanRule()
     );
     private static final List<PlannerRule<? extends PlannerExpression>> IMPLEMENTATION_RULES = ImmutableList.of(
-            new ImplementTypeFilterRule()
+            new FilterToIndexScanRule(),
+            new ImplementFilterRule(),
+            new ImplementTypeFilterRule(),
+            new CoveringIndexRule(),
+            new ImplementInJoinRule(),
+            new ImplementUnionRule(),
+            new ImplementIntersectionRule(),
+            new ImplementSortRule()
     );
 
-    public static final PlannerRuleSet REWRITE = new PlannerRuleSet(REWRITE_RULES);
-    public static final PlannerRuleSet IMPLEMENTATION = new PlannerRuleSet(IMPLEMENTATION_RULES);
+    /**
+     * The rules used by the {@link RewritePlanner}.
+     */
+    public static final PlannerRuleSet DEFAULT = new PlannerRuleSet(ImmutableList.<PlannerRule<? extends PlannerExpression>>builder()
+            .addAll(REWRITE_RULES)
+            .addAll(IMPLEMENTATION_RULES)
+            .build());
 
     @Nonnull
     private final Multimap<Class<? extends PlannerExpression>, PlannerRule<? extends PlannerExpression>> ruleIndex =
@@ -25,38 +25,51 @@ import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.RecordMetaData;
 import com.apple.foundationdb.record.RecordStoreState;
 import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
 import com.apple.foundationdb.record.query.plan.QueryPlanner;
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanComplexityException;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
-import com.google.common.collect.ImmutableList;
+import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
- * A simple planner that applies rewrite rules until it can't apply any more of them, then returns the resulting plan.
- * This planner is greedy (applies rule immediately) and doesn't respect any kind of ordering of the rules (such as "try
- * this rule before this rule") and so cannot implement all of the behavior in the current planner.
+ * A planner that explores the space of equivalent plans for a query with rules, in the manner of Volcano / Cascades,
+ * and then chooses the cheapest.
  *
- * TODO this planner might have bugs since we don't currently have enough rules to write good tests for it.
+ * The planner keeps a {@link Memo} of groups of logically equivalent expressions, starting from the logical expression
+ * for the query. Rather than replacing the expression that it matched, each rule adds the expressions that it yields
+ * to that expression's group: rewrites into other logical expressions, such as a union for a disjunction, and
+ * implementations as {@link RecordQueryPlan}s, such as an index scan for a filter. Since the same expression always
+ * gets the same group, nothing is explored twice. Rules are applied to every member of every group until none of them
+ * adds anything new, and then the cheapest plan in the root group, according to the {@link CostModel}, is returned.
+ *
+ * Exploration is exhaustive, so the number of expressions in the memo is limited; a query that needs more than that
+ * fails with a {@link RecordQueryPlanComplexityException}.
  */
 @API(API.Status.EXPERIMENTAL)
 public class RewritePlanner implements QueryPlanner {
-    @Nonnull
-    private static final List<PlannerRuleSet> PHASES = ImmutableList.of(PlannerRuleSet.REWRITE, PlannerRuleSet.IMPLEMENTATION);
+    /**
+     * The default limit on the number of expressions in the memo.
+     */
+    public static final int DEFAULT_MAX_EXPRESSIONS = 10000;
+
     @Nonnull
     private final RecordMetaData metaData;
     @Nonnull
     private final RecordStoreState recordStoreState;
-    @Nullable
-    private SingleExpressionRef<PlannerExpression> currentRoot;
-    @Nullable
-    private PlanContext context;
+    @Nonnull
+    private final PlannerRuleSet ruleSet = PlannerRuleSet.DEFAULT;
+    @Nonnull
+    private CostModel costModel = new DefaultCostModel();
+    private int maxExpressions = DEFAULT_MAX_EXPRESSIONS;
 
     public RewritePlanner(@Nonnull RecordMetaData metaData, @Nonnull RecordStoreState recordStoreState) {
         this.metaData = metaData;
@@ -64,30 +77,57 @@ public class RewritePlanner implements QueryPlanner {
     }
 
     /**
-     * Plan the given record query by attempting to match rules in a greedy fashion until no rules can be applied.
-     * If the final expression is a {@link RecordQueryPlan} then the planning was successful and that plan is returned.
-     * Otherwise, an exception is thrown.
+     * Plan the given record query by applying rules until they produce no new expressions and then choosing the
+     * cheapest {@link RecordQueryPlan} among those that implement the whole query.
      * @param query a record query to plan
      * @return a plan implementing the given query
      * @throws RecordCoreException if the planner could not plan the given query
      */
     @Nonnull
     @Override
+    @SuppressWarnings("unchecked")
     public RecordQueryPlan plan(@Nonnull RecordQuery query) {
-        context = new MetaDataPlanContext(metaData, recordStoreState, query);
-        currentRoot = SingleExpressionRef.of(RelationalPlannerExpression.fromRecordQuery(query));
-
-        for (PlannerRuleSet ruleSet : PHASES) {
-            applyPhase(ruleSet);
+        if (query.getAggregate() != null) {
+            throw new RecordCoreException("rewrite planner does not support aggregate queries")
+                    .addLogInfo("query", query);
         }
+        final PlanContext context = new MetaDataPlanContext(metaData, recordStoreState, query);
+        final Memo memo = new Memo(maxExpressions);
+        final GroupExpressionRef<PlannerExpression> root = memo.refFor(RelationalPlannerExpression.fromRecordQuery(query));
 
-        context = null;
-        if (currentRoot.get() instanceof RecordQueryPlan) { // turned into a concrete plan
-            return (RecordQueryPlan)currentRoot.get();
-        } else {
+        int expressionCount;
+        do {
+            expressionCount = memo.getExpressionCount();
+            // Groups added during a pass are explored in the same pass.
+            for (int i = 0; i < memo.getGroups().size(); i++) {
+                explore(context, memo, (GroupExpressionRef<PlannerExpression>)memo.getGroups().get(i));
+            }
+        } while (memo.getExpressionCount() != expressionCount);
+
+        final List<RecordQueryPlan> plans = root.getMembers().stream()
+                .filter(RecordQueryPlan.class::isInstance)
+                .map(RecordQueryPlan.class::cast)
+                .collect(Collectors.toList());
+        final Optional<RecordQueryPlan> cheapest = costModel.getCheapest(context, plans);
+        if (!cheapest.isPresent()) {
             throw new RecordCoreException("rewrite planner could not plan query")
-                    .addLogInfo("query", query)
-                    .addLogInfo("finalExpression", currentRoot.get());
+                    .addLogInfo("query", query);
+        }
+        return cheapest.get();
+    }
+
+    private void explore(@Nonnull PlanContext context, @Nonnull Memo memo, @Nonnull GroupExpressionRef<PlannerExpression> group) {
+        // Rules add to the group, so explore the members that it had to start with.
+        for (PlannerExpression member : new ArrayList<>(group.getMembers())) {
+            final Iterator<PlannerRule<? extends PlannerExpression>> rules = ruleSet.getRulesMatching(member);
+            while (rules.hasNext()) {
+                final PlannerRule<? extends PlannerExpression> rule = rules.next();
+                // Bind fully before running any of the calls, which can add to the groups being matched.
+                final List<PlannerBindings> allBindings = member.bindAll(rule.getMatcher()).collect(Collectors.toList());
+                for (PlannerBindings bindings : allBindings) {
+                    new MemoRuleCall(context, costModel, memo, rule, group, bindings).run();
+                }
+            }
         }
     }
 
@@ -96,44 +136,36 @@ public class RewritePlanner implements QueryPlanner {
         // nothing to do here, yet
     }
 
-    @SuppressWarnings("unchecked")
-    private void applyPhase(@Nonnull PlannerRuleSet ruleSet) {
-        Deque<SingleExpressionRef<PlannerExpression>> toTry = new ArrayDeque<>();
-        toTry.add(currentRoot);
-
-        while (!toTry.isEmpty()) {
-            SingleExpressionRef<PlannerExpression> current = toTry.remove();
-            PlannerRule.ChangesMade changed = applyRulesTo(ruleSet, current);
-
-            PlannerExpression currentExpression = current.get();
-            Iterator<? extends ExpressionRef<? extends PlannerExpression>> childrenIterator = currentExpression.getPlannerExpressionChildren();
-            while (childrenIterator.hasNext()) {
-                ExpressionRef<? extends PlannerExpression> child = childrenIterator.next();
-                if (child instanceof SingleExpressionRef) {
-                    toTry.add((SingleExpressionRef<PlannerExpression>) child);
-                } else {
-                    throw new RecordCoreException("invalid reference given to rewrite planner");
-                }
-            }
+    @Nonnull
+    public CostModel getCostModel() {
+        return costModel;
+    }
 
-            if (changed.equals(PlannerRule.ChangesMade.MADE_CHANGES)) { // TODO optimize here
-                toTry.add(currentRoot);
-            }
-        }
+    /**
+     * Set the cost model used to choose among alternative plans.
+     * @param costModel the new cost model
+     */
+    public void setCostModel(@Nonnull CostModel costModel) {
+        this.costModel = costModel;
     }
 
-    private PlannerRule.ChangesMade applyRulesTo(@Nonnull PlannerRuleSet ruleSet, @Nonnull SingleExpressionRef<PlannerExpression> expression) {
-        Iterator<PlannerRule<? extends PlannerExpression>> possibleRules = ruleSet.getRulesMatching(expression.get());
-        PlannerRule.ChangesMade madeChanges = PlannerRule.ChangesMade.NO_CHANGE;
-        while (possibleRules.hasNext()) {
-            Optional<RewriteRuleCall> attemptedCall = RewriteRuleCall.tryMatchRule(context, possibleRules.next(), expression);
-            if (attemptedCall.isPresent()) {
-                if (attemptedCall.get().run().equals(PlannerRule.ChangesMade.MADE_CHANGES)) {
-                    possibleRules = ruleSet.getRulesMatching(expression.get());
-                    madeChanges = PlannerRule.ChangesMade.MADE_CHANGES;
-                }
-            }
-        }
-        return madeChanges;
+    /**
+     * Use the given statistics on indexes to estimate the cost of plans with the {@link DefaultCostModel}.
+     * @param indexStatistics a map from index name to statistics
+     */
+    public void setIndexStatistics(@Nonnull Map<String, IndexStatistics> indexStatistics) {
+        this.costModel = new DefaultCostModel(indexStatistics);
+    }
+
+    public int getMaxExpressions() {
+        return maxExpressions;
+    }
+
+    /**
+     * Set the limit on the number of expressions that the planner will explore for a single query.
+     * @param maxExpressions the maximum number of expressions in the memo
+     */
+    public void setMaxExpressions(int maxExpressions) {
+        this.maxExpressions = maxExpressions;
     }
 }
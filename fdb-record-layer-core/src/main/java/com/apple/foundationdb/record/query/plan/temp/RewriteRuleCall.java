@@ -28,9 +28,10 @@ import javax.annotation.Nonnull;
 import java.util.Optional;
 
 /**
- * A rule call implementation for the {@link com.apple.foundationdb.record.query.plan.temp.RewritePlanner}.
+ * A rule call implementation that applies a single rule in place, for testing rules one at a time.
  * When a new expression is yieled by the rule's {@link PlannerRule#onMatch} method, the rule call substitutes the
  * existing contents of the root with the yielded expression.
+ * The {@link RewritePlanner} itself uses a {@link MemoRuleCall} instead, which keeps all of the alternatives.
  */
 @API(API.Status.EXPERIMENTAL)
 public class RewriteRuleCall implements PlannerRuleCall {
@@ -42,6 +43,8 @@ public class RewriteRuleCall implements PlannerRuleCall {
     private final PlannerBindings bindings;
     @Nonnull
     private final PlanContext context;
+    @Nonnull
+    private final CostModel costModel = new DefaultCostModel();
 
     private RewriteRuleCall(@Nonnull PlanContext context,
                             @Nonnull PlannerRule<? extends PlannerExpression> rule,
@@ -73,6 +76,12 @@ public class RewriteRuleCall implements PlannerRuleCall {
         return context;
     }
 
+    @Override
+    @Nonnull
+    public CostModel getCostModel() {
+        return costModel;
+    }
+
     /**
      * Replace the expression held by the {@code root} reference with the given expression.
      * @param expression the expression produced by the rule
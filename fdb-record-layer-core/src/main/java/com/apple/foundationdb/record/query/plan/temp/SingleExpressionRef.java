@@ -69,6 +69,28 @@ public class SingleExpressionRef<T extends PlannerExpression> implements Mutable
         return null;
     }
 
+    /**
+     * Two single expression references are equal if they hold equal expressions, since they are just a box around
+     * their expression, unlike a group reference, whose identity matters.
+     * @param o the object to compare to
+     * @return whether {@code o} is a single expression reference to an equal expression
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return expression.equals(((SingleExpressionRef<?>)o).expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
     public static <T extends PlannerExpression> SingleExpressionRef<T> of(@Nonnull T expression) {
         return new SingleExpressionRef<>(expression);
     }
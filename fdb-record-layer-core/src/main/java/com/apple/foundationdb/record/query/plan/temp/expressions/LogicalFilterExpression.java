@@ -86,12 +86,12 @@ public class LogicalFilterExpression implements RelationalExpressionWithChildren
             return false;
         }
         LogicalFilterExpression that = (LogicalFilterExpression)o;
-        return Objects.equals(getFilter(), that.getFilter()) &&
-               Objects.equals(getInner(), that.getInner());
+        return Objects.equals(filter, that.filter) &&
+               Objects.equals(inner, that.inner);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getFilter(), getInner());
+        return Objects.hash(filter, inner);
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * LogicalInJoinExpression.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.expressions;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.planning.InExtractor;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A relational planner expression that represents an unimplemented join of the {@code IN} lists in a filter with its
+ * inner relational planner expression, which has that filter with the {@code IN} comparisons replaced by equality
+ * comparisons with the value bound by the join.
+ * @see InExtractor
+ * @see com.apple.foundationdb.record.query.plan.plans.RecordQueryInJoinPlan
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LogicalInJoinExpression implements RelationalExpressionWithChildren {
+    @Nonnull
+    private final QueryComponent filter;
+    @Nonnull
+    private final InExtractor inExtractor;
+    @Nonnull
+    private final ExpressionRef<RelationalPlannerExpression> inner;
+    @Nonnull
+    private final List<ExpressionRef<? extends PlannerExpression>> expressionChildren;
+
+    public LogicalInJoinExpression(@Nonnull QueryComponent filter, @Nonnull InExtractor inExtractor,
+                                   @Nonnull ExpressionRef<RelationalPlannerExpression> inner) {
+        this.filter = filter;
+        this.inExtractor = inExtractor;
+        this.inner = inner;
+        this.expressionChildren = ImmutableList.of(this.inner);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return expressionChildren.iterator();
+    }
+
+    @Override
+    public int getRelationalChildCount() {
+        return 1;
+    }
+
+    /**
+     * Get the filter from which the {@code IN} lists were extracted.
+     * @return the original filter
+     */
+    @Nonnull
+    public QueryComponent getFilter() {
+        return filter;
+    }
+
+    @Nonnull
+    public InExtractor getInExtractor() {
+        return inExtractor;
+    }
+
+    // The extractor is determined by the filter, so it does not need comparing.
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LogicalInJoinExpression that = (LogicalInJoinExpression)o;
+        return Objects.equals(filter, that.filter) &&
+               Objects.equals(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filter, inner);
+    }
+}
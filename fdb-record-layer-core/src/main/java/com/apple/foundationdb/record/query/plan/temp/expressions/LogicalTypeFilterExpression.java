@@ -29,7 +29,9 @@ import com.google.common.collect.ImmutableList;
 import javax.annotation.Nonnull;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * A relational planner expression that represents an unimplemented type filter on the records produced by its inner
@@ -76,4 +78,22 @@ public class LogicalTypeFilterExpression implements TypeFilterExpression {
     public RelationalPlannerExpression getInner() {
         return inner.get();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LogicalTypeFilterExpression that = (LogicalTypeFilterExpression)o;
+        return Objects.equals(new HashSet<>(recordTypes), new HashSet<>(that.recordTypes)) &&
+               Objects.equals(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(new HashSet<>(recordTypes), inner);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * LogicalUnionExpression.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.expressions;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A relational planner expression that represents an unimplemented union of the records produced by each of its children, without
+ * duplicates. It is produced from a disjunction, each of whose branches is planned separately.
+ * @see com.apple.foundationdb.record.query.plan.plans.RecordQueryUnionPlan
+ */
+@API(API.Status.EXPERIMENTAL)
+public class LogicalUnionExpression implements RelationalExpressionWithChildren {
+    @Nonnull
+    private final List<ExpressionRef<RelationalPlannerExpression>> children;
+
+    public LogicalUnionExpression(@Nonnull List<ExpressionRef<RelationalPlannerExpression>> children) {
+        this.children = ImmutableList.copyOf(children);
+    }
+
+    @Nonnull
+    @Override
+    public Iterator<? extends ExpressionRef<? extends PlannerExpression>> getPlannerExpressionChildren() {
+        return children.iterator();
+    }
+
+    @Override
+    public int getRelationalChildCount() {
+        return children.size();
+    }
+
+    @Nonnull
+    public List<ExpressionRef<RelationalPlannerExpression>> getChildren() {
+        return children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return children.equals(((LogicalUnionExpression)o).children);
+    }
+
+    @Override
+    public int hashCode() {
+        return children.hashCode();
+    }
+}
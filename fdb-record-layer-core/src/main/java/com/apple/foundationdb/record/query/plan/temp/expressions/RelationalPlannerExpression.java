@@ -21,11 +21,15 @@
 package com.apple.foundationdb.record.query.plan.temp.expressions;
 
 import com.apple.foundationdb.API;
-import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.planning.BooleanNormalizer;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.GroupExpressionRef;
 import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
 
 import javax.annotation.Nonnull;
 
@@ -33,19 +37,29 @@ import javax.annotation.Nonnull;
  * A relational expression is a {@link PlannerExpression} that represents a stream of records. At all times, the root
  * expression being planned must be relational. This interface acts as a common tag interface for
  * {@link com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan}s, which can actually produce a stream of records,
- * and various logical relational expressions (not yet introduced), which represent an abstract stream of records but can't
+ * and various logical relational expressions, which represent an abstract stream of records but can't
  * be executed directly (such as an unimplemented sort). Other planner expressions such as {@link com.apple.foundationdb.record.query.expressions.QueryComponent}
  * and {@link com.apple.foundationdb.record.metadata.expressions.KeyExpression} do not represent streams of records.
  */
 @API(API.Status.EXPERIMENTAL)
 public interface RelationalPlannerExpression extends PlannerExpression {
+    /**
+     * Convert a record query into a tree of logical expressions: a type filter on a sort on a filter on a full scan,
+     * without the sort or filter if the query doesn't have them. The relational children are held in groups, ready
+     * for the planner to add alternatives to them.
+     * @param query the query to convert
+     * @return a logical expression equivalent to the query
+     */
+    @Nonnull
     static PlannerExpression fromRecordQuery(@Nonnull RecordQuery query) {
-        if (query.getSort() != null) {
-            throw new RecordCoreException("sort not implemented by new planner");
+        ExpressionRef<RelationalPlannerExpression> expression =
+                GroupExpressionRef.of(new RecordQueryScanPlan(ScanComparisons.EMPTY, false));
+        final QueryComponent filter = BooleanNormalizer.normalize(query.getFilter());
+        if (filter != null) {
+            expression = GroupExpressionRef.of(new LogicalFilterExpression(SingleExpressionRef.of(filter), expression));
         }
-        RelationalPlannerExpression expression = new RecordQueryScanPlan(ScanComparisons.EMPTY, false);
-        if (query.getFilter() != null) {
-            expression = new LogicalFilterExpression(query.getFilter(), expression);
+        if (query.getSort() != null) {
+            expression = GroupExpressionRef.of(new LogicalSortExpression(query.getSort(), query.isSortReverse(), expression));
         }
         return new LogicalTypeFilterExpression(query.getRecordTypes(), expression);
     }
@@ -0,0 +1,69 @@
+/*
+ * AnyChildrenMatcher.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.temp.matchers;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.temp.Bindable;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A placeholder matcher that, when it is the only child matcher of another matcher, matches the children of the
+ * expression bound by that matcher without regard for how many children there are or what they are. It is used by rules
+ * for expressions with a variable number of children, such as a union, which then inspect the children themselves.
+ * Nothing is ever bound to this matcher.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class AnyChildrenMatcher implements ExpressionMatcher<Bindable> {
+    public static final AnyChildrenMatcher ANY = new AnyChildrenMatcher();
+
+    private AnyChildrenMatcher() {
+    }
+
+    @Nonnull
+    @Override
+    public Class<? extends PlannerExpression> getRootClass() {
+        return PlannerExpression.class;
+    }
+
+    @Nonnull
+    @Override
+    public List<ExpressionMatcher<? extends Bindable>> getChildren() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Result matches(@Nonnull Bindable bindable) {
+        return Result.MATCHES;
+    }
+
+    /**
+     * Determine whether the given child matchers match any children at all.
+     * @param children the child matchers of some matcher
+     * @return {@code true} if {@code children} consists of just {@link #ANY}
+     */
+    public static boolean isAnyChildren(@Nonnull List<ExpressionMatcher<? extends Bindable>> children) {
+        return children.size() == 1 && children.get(0) == ANY;
+    }
+}
@@ -79,4 +79,15 @@ public class PlannerBindings {
         }
         bindings.put(key, bindable);
     }
+
+    /**
+     * Return a new map of bindings with the same bindings as this one, which can be added to independently.
+     * @return a copy of this map of bindings
+     */
+    @Nonnull
+    public PlannerBindings copy() {
+        final PlannerBindings copy = new PlannerBindings();
+        copy.bindings.putAll(bindings);
+        return copy;
+    }
 }
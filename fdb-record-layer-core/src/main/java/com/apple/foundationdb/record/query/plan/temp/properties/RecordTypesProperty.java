@@ -33,6 +33,8 @@ import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
 import com.apple.foundationdb.record.query.plan.temp.PlanContext;
 import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
 import com.apple.foundationdb.record.query.plan.temp.PlannerProperty;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalIntersectionExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalUnionExpression;
 import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
 import com.apple.foundationdb.record.query.plan.temp.expressions.TypeFilterExpression;
 import com.google.common.collect.Sets;
@@ -104,10 +106,14 @@ public class RecordTypesProperty implements PlannerProperty<Set<String>> {
                 // children (like a union or intersection expression) then we must specify some way to combine them.
                 if (expression instanceof RecordQueryUnionPlan ||
                         expression instanceof RecordQueryUnorderedUnionPlan ||
-                        expression instanceof RecordQueryIntersectionPlan) {
+                        expression instanceof RecordQueryIntersectionPlan ||
+                        expression instanceof LogicalUnionExpression ||
+                        expression instanceof LogicalIntersectionExpression) {
                     final Set<String> union = new HashSet<>();
                     for (Set<String> childResulSet : childResults) {
-                        union.addAll(childResulSet);
+                        if (childResulSet != null) {
+                            union.addAll(childResulSet);
+                        }
                     }
                     return union;
                 } else {
@@ -0,0 +1,89 @@
+/*
+ * ChildPlans.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.plan.PlanOrderingKey;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for rules that build a plan out of the implementations of each of several children, such as a union, which
+ * would be impractical to match against every combination of them. Instead, such a rule chooses the cheapest
+ * implementation of each child that is suitable.
+ */
+class ChildPlans {
+    private ChildPlans() {
+    }
+
+    /**
+     * Get the implementations found so far of the given reference.
+     * @param ref a reference, usually to a group
+     * @return the plans among its members
+     */
+    @Nonnull
+    static List<RecordQueryPlan> of(@Nonnull ExpressionRef<? extends PlannerExpression> ref) {
+        final ExpressionMatcher<RecordQueryPlan> planMatcher = TypeMatcher.of(RecordQueryPlan.class, AnyChildrenMatcher.ANY);
+        return ref.bindAll(planMatcher).map(bindings -> bindings.get(planMatcher)).collect(Collectors.toList());
+    }
+
+    /**
+     * Get the cheapest implementation of the given reference that satisfies a condition, according to the planner's
+     * cost model.
+     * @param call the rule call
+     * @param ref a reference, usually to a group
+     * @param condition the condition that the plan must satisfy
+     * @return the cheapest plan or {@code Optional.empty()} if there is none yet
+     */
+    @Nonnull
+    static Optional<RecordQueryPlan> cheapest(@Nonnull PlannerRuleCall call, @Nonnull ExpressionRef<? extends PlannerExpression> ref,
+                                              @Nonnull Predicate<RecordQueryPlan> condition) {
+        return call.getCostModel().getCheapest(call.getContext(),
+                of(ref).stream().filter(condition).collect(Collectors.toList()));
+    }
+
+    /**
+     * Determine whether the given plan returns records in primary key order, which is needed to merge it with others.
+     * @param call the rule call
+     * @param plan a plan
+     * @return {@code true} if the only ordering of records with the same values of any equality comparisons is by primary key
+     */
+    static boolean isPrimaryKeyOrdered(@Nonnull PlannerRuleCall call, @Nonnull RecordQueryPlan plan) {
+        final KeyExpression primaryKey = call.getContext().getCommonPrimaryKey();
+        if (primaryKey == null) {
+            return false;
+        }
+        final PlanOrderingKey ordering = PlanOrderingKey.forPlan(call.getContext().getMetaData(), plan, primaryKey);
+        return ordering != null && ordering.isPrimaryKeyOrdered();
+    }
+}
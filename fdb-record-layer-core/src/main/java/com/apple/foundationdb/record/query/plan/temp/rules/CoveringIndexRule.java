@@ -0,0 +1,89 @@
+/*
+ * CoveringIndexRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.plan.planning.CoveringIndexPlanner;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryCoveringIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithIndex;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+import com.apple.foundationdb.record.query.plan.temp.PlanContext;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalTypeFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * A rule that implements a logical type filter on an (already implemented) index scan by a covering index scan, which
+ * builds partial records from the index entries without fetching the records, when the query only requires fields
+ * that are in the index. Since only the outermost type filter is given the whole output of the query, this only
+ * applies if the query has required results at all.
+ * @see CoveringIndexPlanner
+ */
+@API(API.Status.EXPERIMENTAL)
+public class CoveringIndexRule extends PlannerRule<LogicalTypeFilterExpression> {
+    private static final ExpressionMatcher<RecordQueryPlan> childMatcher = TypeMatcher.of(RecordQueryPlan.class, AnyChildrenMatcher.ANY);
+    private static final ExpressionMatcher<LogicalTypeFilterExpression> root = TypeMatcher.of(LogicalTypeFilterExpression.class, childMatcher);
+
+    public CoveringIndexRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalTypeFilterExpression typeFilter = call.get(root);
+        final RecordQueryPlan child = call.get(childMatcher);
+        final PlanContext context = call.getContext();
+        final List<KeyExpression> requiredResults = context.getRequiredResults();
+        if (requiredResults == null) {
+            return ChangesMade.NO_CHANGE;
+        }
+
+        final boolean distinct = child instanceof RecordQueryUnorderedPrimaryKeyDistinctPlan;
+        final RecordQueryPlan scan = distinct ? ((RecordQueryUnorderedPrimaryKeyDistinctPlan)child).getChild() : child;
+        if (!(scan instanceof RecordQueryPlanWithIndex)) {
+            return ChangesMade.NO_CHANGE;
+        }
+        final Index index = context.getIndexByName(((RecordQueryPlanWithIndex)scan).getIndexName());
+        if (index == null || !context.getMetaData().recordTypesForIndex(index).stream()
+                .allMatch(recordType -> typeFilter.getRecordTypes().contains(recordType.getName()))) {
+            // The type filter is still needed, but there would be nothing for it to check on a partial record.
+            return ChangesMade.NO_CHANGE;
+        }
+        final RecordQueryCoveringIndexPlan covering = CoveringIndexPlanner.tryToConvertToCoveringPlan(context.getMetaData(),
+                (RecordQueryPlanWithIndex)scan, requiredResults, context.getCommonPrimaryKey());
+        if (covering == null) {
+            return ChangesMade.NO_CHANGE;
+        }
+        call.yield(SingleExpressionRef.of(distinct ? new RecordQueryUnorderedPrimaryKeyDistinctPlan(covering) : covering));
+        return ChangesMade.MADE_CHANGES;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * FilterToIndexScanRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.KeyWithValueExpression;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.PlannableIndexTypes;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ReferenceMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A rule that turns a logical filter on a full scan into a scan of a value index, or of a range of primary keys,
+ * with comparisons that satisfy as much of the filter as possible, followed by a logical filter with whatever is left
+ * over. A logical filter on a full scan of a value index, such as one chosen for its order, can likewise be turned into
+ * a scan of part of that index.
+ *
+ * The columns of the index are matched in order, with equality comparisons on a prefix of them, such as for the fields
+ * of a {@code concat} index, and then inequality comparisons on the next one. Fields nested within other fields and
+ * repeated fields compared by {@code oneOfThem} can be matched by indexes on them. Since an index on a repeated field
+ * can have more than one entry for the same record, such a scan is followed by removing duplicate records.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class FilterToIndexScanRule extends PlannerRule<LogicalFilterExpression> {
+    private static final ExpressionMatcher<ExpressionRef<QueryComponent>> filterMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<RecordQueryPlan> scanMatcher = TypeMatcher.of(RecordQueryPlan.class);
+    private static final ExpressionMatcher<LogicalFilterExpression> root = TypeMatcher.of(LogicalFilterExpression.class, filterMatcher, scanMatcher);
+
+    public FilterToIndexScanRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final QueryComponent filter = call.get(filterMatcher).get();
+        final RecordQueryPlan scan = call.get(scanMatcher);
+
+        boolean madeChanges = false;
+        if (scan instanceof RecordQueryScanPlan && scan.hasFullRecordScan()) {
+            for (Index index : call.getContext().getIndexes()) {
+                madeChanges |= tryIndex(call, filter, index, scan.isReverse());
+            }
+            final KeyExpression primaryKey = call.getContext().getCommonPrimaryKey();
+            if (primaryKey != null) {
+                final IndexScanMatch match = IndexScanMatch.match(primaryKey.normalizeKeyForPositions(), filter);
+                if (match != null) {
+                    yieldWithResidual(call, new RecordQueryScanPlan(match.getComparisons(), scan.isReverse()), match.getResidualFilter());
+                    madeChanges = true;
+                }
+            }
+        } else if (scan instanceof RecordQueryIndexPlan) {
+            final RecordQueryIndexPlan indexScan = (RecordQueryIndexPlan)scan;
+            if (indexScan.getComparisons().isEmpty() && IndexScanType.BY_VALUE.equals(indexScan.getScanType())) {
+                final Index index = call.getContext().getIndexByName(indexScan.getIndexName());
+                if (index != null) {
+                    madeChanges = tryIndex(call, filter, index, indexScan.isReverse());
+                }
+            }
+        }
+        return madeChanges ? ChangesMade.MADE_CHANGES : ChangesMade.NO_CHANGE;
+    }
+
+    private static boolean tryIndex(@Nonnull PlannerRuleCall call, @Nonnull QueryComponent filter,
+                                    @Nonnull Index index, boolean reverse) {
+        if (!PlannableIndexTypes.DEFAULT.getValueTypes().contains(index.getType())) {
+            return false;
+        }
+        KeyExpression rootExpression = index.getRootExpression();
+        if (rootExpression instanceof KeyWithValueExpression) {
+            rootExpression = ((KeyWithValueExpression)rootExpression).getKeyExpression();
+        }
+        final IndexScanMatch match = IndexScanMatch.match(rootExpression.normalizeKeyForPositions(), filter);
+        if (match == null) {
+            return false;
+        }
+        RecordQueryPlan plan = new RecordQueryIndexPlan(index.getName(), IndexScanType.BY_VALUE, match.getComparisons(), reverse);
+        if (rootExpression.createsDuplicates()) {
+            plan = new RecordQueryUnorderedPrimaryKeyDistinctPlan(plan);
+        }
+        yieldWithResidual(call, plan, match.getResidualFilter());
+        return true;
+    }
+
+    private static void yieldWithResidual(@Nonnull PlannerRuleCall call, @Nonnull RecordQueryPlan plan,
+                                          @Nullable QueryComponent residual) {
+        if (residual == null) {
+            call.yield(SingleExpressionRef.of(plan));
+        } else {
+            call.yield(SingleExpressionRef.of(new LogicalFilterExpression(call.ref(residual), call.<RelationalPlannerExpression>ref(plan))));
+        }
+    }
+}
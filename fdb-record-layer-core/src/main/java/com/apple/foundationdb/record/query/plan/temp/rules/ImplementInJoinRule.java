@@ -0,0 +1,57 @@
+/*
+ * ImplementInJoinRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalInJoinExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A rule that implements a logical {@code IN} join on an (already implemented) {@link RecordQueryPlan} by executing
+ * that plan for each of the values in the {@code IN} lists.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ImplementInJoinRule extends PlannerRule<LogicalInJoinExpression> {
+    private static final ExpressionMatcher<RecordQueryPlan> innerMatcher = TypeMatcher.of(RecordQueryPlan.class, AnyChildrenMatcher.ANY);
+    private static final ExpressionMatcher<LogicalInJoinExpression> root = TypeMatcher.of(LogicalInJoinExpression.class, innerMatcher);
+
+    public ImplementInJoinRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalInJoinExpression inJoin = call.get(root);
+        final RecordQueryPlan inner = call.get(innerMatcher);
+
+        call.yield(SingleExpressionRef.of(inJoin.getInExtractor().wrap(inner)));
+        return ChangesMade.MADE_CHANGES;
+    }
+}
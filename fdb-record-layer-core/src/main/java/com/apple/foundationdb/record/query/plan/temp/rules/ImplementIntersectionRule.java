@@ -0,0 +1,75 @@
+/*
+ * ImplementIntersectionRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIntersectionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalIntersectionExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A rule that implements a logical intersection by merging the cheapest implementations of its children that return
+ * records in primary key order, in the same direction.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ImplementIntersectionRule extends PlannerRule<LogicalIntersectionExpression> {
+    private static final ExpressionMatcher<LogicalIntersectionExpression> root = TypeMatcher.of(LogicalIntersectionExpression.class, AnyChildrenMatcher.ANY);
+
+    public ImplementIntersectionRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalIntersectionExpression intersection = call.get(root);
+        final KeyExpression primaryKey = call.getContext().getCommonPrimaryKey();
+        if (primaryKey == null) {
+            return ChangesMade.NO_CHANGE;
+        }
+
+        final List<RecordQueryPlan> ordered = new ArrayList<>(intersection.getRelationalChildCount());
+        for (ExpressionRef<RelationalPlannerExpression> child : intersection.getChildren()) {
+            final Optional<RecordQueryPlan> plan = ChildPlans.cheapest(call, child,
+                    p -> (ordered.isEmpty() || p.isReverse() == ordered.get(0).isReverse()) && ChildPlans.isPrimaryKeyOrdered(call, p));
+            if (!plan.isPresent()) {
+                return ChangesMade.NO_CHANGE;
+            }
+            ordered.add(plan.get());
+        }
+        call.yield(SingleExpressionRef.of(new RecordQueryIntersectionPlan(ordered, primaryKey, ordered.get(0).isReverse())));
+        return ChangesMade.MADE_CHANGES;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * ImplementSortRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.plan.PlanOrderingKey;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalSortExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * A rule that implements a logical sort by an (already implemented) {@link RecordQueryPlan} that already returns
+ * records in the required order. Since there is no plan that sorts records itself, this is the only way to
+ * implement a sort.
+ *
+ * The plan's order is given by its {@link PlanOrderingKey}. Each column of the sort must be the next column of the
+ * ordering, except that columns fixed by equality comparisons can be skipped over, since they are the same for
+ * every record.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ImplementSortRule extends PlannerRule<LogicalSortExpression> {
+    private static final ExpressionMatcher<RecordQueryPlan> innerMatcher = TypeMatcher.of(RecordQueryPlan.class, AnyChildrenMatcher.ANY);
+    private static final ExpressionMatcher<LogicalSortExpression> root = TypeMatcher.of(LogicalSortExpression.class, innerMatcher);
+
+    public ImplementSortRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalSortExpression sort = call.get(root);
+        final RecordQueryPlan inner = call.get(innerMatcher);
+        if (inner.isReverse() != sort.isReverse()) {
+            return ChangesMade.NO_CHANGE;
+        }
+
+        RecordQueryPlan ordered = inner;
+        if (ordered instanceof RecordQueryUnorderedPrimaryKeyDistinctPlan) {
+            // Removing duplicates keeps the order of the first occurrences.
+            ordered = ((RecordQueryUnorderedPrimaryKeyDistinctPlan)ordered).getChild();
+        }
+        final PlanOrderingKey ordering = PlanOrderingKey.forPlan(call.getContext().getMetaData(), ordered,
+                call.getContext().getCommonPrimaryKey());
+        if (ordering == null || !isOrderedBy(ordering, sort.getSort().normalizeKeyForPositions())) {
+            return ChangesMade.NO_CHANGE;
+        }
+        call.yield(SingleExpressionRef.of(inner));
+        return ChangesMade.MADE_CHANGES;
+    }
+
+    private static boolean isOrderedBy(@Nonnull PlanOrderingKey ordering, @Nonnull List<KeyExpression> sortColumns) {
+        final List<KeyExpression> keys = ordering.getKeys();
+        int position = 0;
+        for (KeyExpression sortColumn : sortColumns) {
+            while (position < ordering.getPrefixSize() && !keys.get(position).equals(sortColumn)) {
+                position++;
+            }
+            if (position >= keys.size() || !keys.get(position).equals(sortColumn)) {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+}
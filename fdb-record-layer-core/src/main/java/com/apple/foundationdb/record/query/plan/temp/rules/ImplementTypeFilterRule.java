@@ -27,18 +27,21 @@ import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
 import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
 import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
 import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalTypeFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
 import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
 import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+import com.apple.foundationdb.record.query.plan.temp.properties.RecordTypesProperty;
 
 import javax.annotation.Nonnull;
+import java.util.Set;
 
 /**
  * A rule that implements a logical type filter on an (already implemented) {@link RecordQueryPlan} as a
- * {@link RecordQueryTypeFilterPlan}.
+ * {@link RecordQueryTypeFilterPlan}, or by the plan itself if it only returns records of the filtered types.
  */
 @API(API.Status.EXPERIMENTAL)
 public class ImplementTypeFilterRule extends PlannerRule<LogicalTypeFilterExpression> {
-    private static ExpressionMatcher<RecordQueryPlan> childMatcher = TypeMatcher.of(RecordQueryPlan.class);
+    private static ExpressionMatcher<RecordQueryPlan> childMatcher = TypeMatcher.of(RecordQueryPlan.class, AnyChildrenMatcher.ANY);
     private static ExpressionMatcher<LogicalTypeFilterExpression> root = TypeMatcher.of(LogicalTypeFilterExpression.class, childMatcher);
 
     public ImplementTypeFilterRule() {
@@ -50,7 +53,13 @@ public class ImplementTypeFilterRule extends PlannerRule<LogicalTypeFilterExpres
         LogicalTypeFilterExpression typeFilter = call.get(root);
         RecordQueryPlan child = call.get(childMatcher);
 
-        call.yield(SingleExpressionRef.of(new RecordQueryTypeFilterPlan(child, typeFilter.getRecordTypes())));
+        final Set<String> childRecordTypes = RecordTypesProperty.evaluate(call.getContext(), SingleExpressionRef.of(child));
+        if (typeFilter.getRecordTypes().containsAll(childRecordTypes)) {
+            // This implementation of the child does not need filtering, even if others might.
+            call.yield(SingleExpressionRef.of(child));
+        } else {
+            call.yield(SingleExpressionRef.of(new RecordQueryTypeFilterPlan(child, typeFilter.getRecordTypes())));
+        }
         return ChangesMade.MADE_CHANGES;
     }
 }
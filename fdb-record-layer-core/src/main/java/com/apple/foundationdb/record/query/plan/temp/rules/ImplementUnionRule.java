@@ -0,0 +1,91 @@
+/*
+ * ImplementUnionRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnionPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedPrimaryKeyDistinctPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedUnionPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalUnionExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A rule that implements a logical union using the cheapest implementation of each of its children.
+ *
+ * If those can each return records in primary key order, in the same direction, the union merges them by primary key,
+ * which removes duplicates as it goes and preserves that order. Otherwise, or if that would be more expensive, the
+ * union concatenates them and then removes duplicate records.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class ImplementUnionRule extends PlannerRule<LogicalUnionExpression> {
+    private static final ExpressionMatcher<LogicalUnionExpression> root = TypeMatcher.of(LogicalUnionExpression.class, AnyChildrenMatcher.ANY);
+
+    public ImplementUnionRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalUnionExpression union = call.get(root);
+
+        final List<RecordQueryPlan> cheapest = new ArrayList<>(union.getRelationalChildCount());
+        for (ExpressionRef<RelationalPlannerExpression> child : union.getChildren()) {
+            final Optional<RecordQueryPlan> plan = ChildPlans.cheapest(call, child, p -> true);
+            if (!plan.isPresent()) {
+                return ChangesMade.NO_CHANGE; // not all of the children have been implemented yet
+            }
+            cheapest.add(plan.get());
+        }
+        call.yield(SingleExpressionRef.of(new RecordQueryUnorderedPrimaryKeyDistinctPlan(
+                new RecordQueryUnorderedUnionPlan(cheapest, cheapest.get(0).isReverse()))));
+
+        final KeyExpression primaryKey = call.getContext().getCommonPrimaryKey();
+        if (primaryKey != null) {
+            final boolean reverse = cheapest.get(0).isReverse();
+            final List<RecordQueryPlan> ordered = new ArrayList<>(cheapest.size());
+            for (ExpressionRef<RelationalPlannerExpression> child : union.getChildren()) {
+                final Optional<RecordQueryPlan> plan = ChildPlans.cheapest(call, child,
+                        p -> p.isReverse() == reverse && ChildPlans.isPrimaryKeyOrdered(call, p));
+                if (!plan.isPresent()) {
+                    return ChangesMade.MADE_CHANGES;
+                }
+                ordered.add(plan.get());
+            }
+            call.yield(SingleExpressionRef.of(new RecordQueryUnionPlan(ordered, primaryKey, reverse, false)));
+        }
+        return ChangesMade.MADE_CHANGES;
+    }
+}
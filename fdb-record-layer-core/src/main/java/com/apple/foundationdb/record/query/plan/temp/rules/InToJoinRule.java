@@ -0,0 +1,74 @@
+/*
+ * InToJoinRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.planning.InExtractor;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalInJoinExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ReferenceMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A rule that turns a logical filter on a full scan that has {@code IN} comparisons into a logical join of the
+ * {@code IN} lists with a logical filter that has equality comparisons instead, which can then be satisfied by an
+ * index scan for each of the values.
+ * @see InExtractor
+ */
+@API(API.Status.EXPERIMENTAL)
+public class InToJoinRule extends PlannerRule<LogicalFilterExpression> {
+    private static final ExpressionMatcher<ExpressionRef<QueryComponent>> filterMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<ExpressionRef<RelationalPlannerExpression>> innerMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<LogicalFilterExpression> root = TypeMatcher.of(LogicalFilterExpression.class, filterMatcher, innerMatcher);
+
+    public InToJoinRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final QueryComponent filter = call.get(filterMatcher).get();
+        final ExpressionRef<RelationalPlannerExpression> inner = call.get(innerMatcher);
+        if (!ChildPlans.of(inner).stream().anyMatch(plan -> plan instanceof RecordQueryScanPlan && plan.hasFullRecordScan())) {
+            return ChangesMade.NO_CHANGE;
+        }
+
+        final InExtractor inExtractor = new InExtractor(filter);
+        final QueryComponent subFilter = inExtractor.subFilter();
+        if (subFilter.equals(filter)) {
+            return ChangesMade.NO_CHANGE; // no IN comparisons
+        }
+        call.yield(SingleExpressionRef.of(new LogicalInJoinExpression(filter, inExtractor,
+                call.ref(new LogicalFilterExpression(call.ref(subFilter), inner)))));
+        return ChangesMade.MADE_CHANGES;
+    }
+}
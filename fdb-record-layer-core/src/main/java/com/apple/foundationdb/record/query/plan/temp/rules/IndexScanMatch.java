@@ -0,0 +1,202 @@
+/*
+ * IndexScanMatch.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.record.metadata.Key;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.expressions.AndComponent;
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import com.apple.foundationdb.record.query.expressions.FieldWithComparison;
+import com.apple.foundationdb.record.query.expressions.NestedField;
+import com.apple.foundationdb.record.query.expressions.OneOfThemWithComparison;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The comparisons with which a scan over some ordered columns, such as those of an index or the primary key, can
+ * satisfy a conjunction of filters, along with the filters that are left over.
+ *
+ * Each conjunct that compares a field, including one nested within other fields or one of the values of a repeated
+ * field, gives a comparison on the column for that field. The columns are then matched in order, taking an equality
+ * comparison for each column as long as there is one, then any inequality comparisons on the next column. A conjunct
+ * is satisfied if all of its comparisons are used; otherwise, it is left over to be applied to the scanned records.
+ */
+class IndexScanMatch {
+    @Nonnull
+    private final ScanComparisons comparisons;
+    @Nonnull
+    private final List<QueryComponent> residual;
+
+    private IndexScanMatch(@Nonnull ScanComparisons comparisons, @Nonnull List<QueryComponent> residual) {
+        this.comparisons = comparisons;
+        this.residual = residual;
+    }
+
+    @Nonnull
+    public ScanComparisons getComparisons() {
+        return comparisons;
+    }
+
+    /**
+     * Get the filter that is not satisfied by the comparisons.
+     * @return the conjunction of the conjuncts left over, or {@code null} if there are none
+     */
+    @Nullable
+    public QueryComponent getResidualFilter() {
+        if (residual.isEmpty()) {
+            return null;
+        } else if (residual.size() == 1) {
+            return residual.get(0);
+        } else {
+            return Query.and(residual);
+        }
+    }
+
+    /**
+     * Match a filter to a scan over the given columns.
+     * @param columns the scanned columns, in order
+     * @param filter the filter, which is treated as a list of conjuncts if it is an {@link AndComponent}
+     * @return the match, or {@code null} if the filter has no comparisons that the scan can use
+     */
+    @Nullable
+    public static IndexScanMatch match(@Nonnull List<KeyExpression> columns, @Nonnull QueryComponent filter) {
+        final List<QueryComponent> conjuncts = filter instanceof AndComponent ?
+                                               ((AndComponent)filter).getChildren() : Collections.singletonList(filter);
+        final List<List<ColumnComparison>> conjunctComparisons = new ArrayList<>(conjuncts.size());
+        for (QueryComponent conjunct : conjuncts) {
+            final List<ColumnComparison> comparisons = new ArrayList<>();
+            if (!addColumnComparisons(conjunct, comparisons)) {
+                comparisons.clear();
+            }
+            conjunctComparisons.add(comparisons);
+        }
+
+        final ScanComparisons.Builder builder = new ScanComparisons.Builder();
+        final Set<ColumnComparison> used = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (KeyExpression column : columns) {
+            final ColumnComparison equality = find(conjunctComparisons, column, ScanComparisons.ComparisonType.EQUALITY);
+            if (equality != null) {
+                builder.addEqualityComparison(equality.comparison);
+                used.add(equality);
+                continue;
+            }
+            // Two inequalities on a repeated field might be satisfied by different values, and a prefix comparison
+            // makes a range on its own.
+            final boolean single = column.createsDuplicates();
+            for (List<ColumnComparison> comparisons : conjunctComparisons) {
+                for (ColumnComparison comparison : comparisons) {
+                    if (comparison.column.equals(column) &&
+                            ScanComparisons.getComparisonType(comparison.comparison) == ScanComparisons.ComparisonType.INEQUALITY &&
+                            (builder.getInequalityComparisons().isEmpty() ||
+                             !single && !isPrefix(comparison.comparison) && !isPrefix(builder.getInequalityComparisons().get(0)))) {
+                        builder.addInequalityComparison(comparison.comparison);
+                        used.add(comparison);
+                    }
+                }
+            }
+            break;
+        }
+        if (used.isEmpty()) {
+            return null;
+        }
+
+        final List<QueryComponent> residual = new ArrayList<>();
+        for (int i = 0; i < conjuncts.size(); i++) {
+            final List<ColumnComparison> comparisons = conjunctComparisons.get(i);
+            if (comparisons.isEmpty() || !used.containsAll(comparisons)) {
+                residual.add(conjuncts.get(i));
+            }
+        }
+        return new IndexScanMatch(builder.build(), residual);
+    }
+
+    private static boolean isPrefix(@Nonnull Comparisons.Comparison comparison) {
+        return comparison.getType() == Comparisons.Type.STARTS_WITH;
+    }
+
+    @Nullable
+    private static ColumnComparison find(@Nonnull List<List<ColumnComparison>> conjunctComparisons,
+                                         @Nonnull KeyExpression column,
+                                         @Nonnull ScanComparisons.ComparisonType type) {
+        for (List<ColumnComparison> comparisons : conjunctComparisons) {
+            for (ColumnComparison comparison : comparisons) {
+                if (comparison.column.equals(column) && ScanComparisons.getComparisonType(comparison.comparison) == type) {
+                    return comparison;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Add the comparisons that make up the given component, returning false if any part of it cannot be a comparison.
+    private static boolean addColumnComparisons(@Nonnull QueryComponent component, @Nonnull List<ColumnComparison> comparisons) {
+        if (component instanceof FieldWithComparison) {
+            final FieldWithComparison field = (FieldWithComparison)component;
+            comparisons.add(new ColumnComparison(Key.Expressions.field(field.getFieldName()), field.getComparison()));
+            return true;
+        } else if (component instanceof OneOfThemWithComparison) {
+            final OneOfThemWithComparison field = (OneOfThemWithComparison)component;
+            comparisons.add(new ColumnComparison(Key.Expressions.field(field.getFieldName(), KeyExpression.FanType.FanOut),
+                    field.getComparison()));
+            return true;
+        } else if (component instanceof NestedField) {
+            final NestedField nested = (NestedField)component;
+            final QueryComponent child = nested.getChild();
+            final List<QueryComponent> nestedConjuncts = child instanceof AndComponent ?
+                                                         ((AndComponent)child).getChildren() : Collections.singletonList(child);
+            final List<ColumnComparison> nestedComparisons = new ArrayList<>();
+            for (QueryComponent nestedConjunct : nestedConjuncts) {
+                if (!addColumnComparisons(nestedConjunct, nestedComparisons)) {
+                    return false;
+                }
+            }
+            for (ColumnComparison nestedComparison : nestedComparisons) {
+                comparisons.add(new ColumnComparison(Key.Expressions.field(nested.getFieldName()).nest(nestedComparison.column),
+                        nestedComparison.comparison));
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private static class ColumnComparison {
+        @Nonnull
+        private final KeyExpression column;
+        @Nonnull
+        private final Comparisons.Comparison comparison;
+
+        ColumnComparison(@Nonnull KeyExpression column, @Nonnull Comparisons.Comparison comparison) {
+            this.column = column;
+            this.comparison = comparison;
+        }
+    }
+}
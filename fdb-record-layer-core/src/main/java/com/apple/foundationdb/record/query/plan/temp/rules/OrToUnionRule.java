@@ -0,0 +1,75 @@
+/*
+ * OrToUnionRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.query.expressions.OrComponent;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalUnionExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.AnyChildrenMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ReferenceMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule that turns a logical filter on a disjunction into a logical union of logical filters on each of the
+ * disjuncts, so that each of them can be planned separately, such as by scanning a different index. This is only done for a
+ * filter on a full scan.
+ */
+@API(API.Status.EXPERIMENTAL)
+public class OrToUnionRule extends PlannerRule<LogicalFilterExpression> {
+    private static final ExpressionMatcher<OrComponent> orMatcher = TypeMatcher.of(OrComponent.class, AnyChildrenMatcher.ANY);
+    private static final ExpressionMatcher<ExpressionRef<RelationalPlannerExpression>> innerMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<LogicalFilterExpression> root = TypeMatcher.of(LogicalFilterExpression.class, orMatcher, innerMatcher);
+
+    public OrToUnionRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final OrComponent or = call.get(orMatcher);
+        final ExpressionRef<RelationalPlannerExpression> inner = call.get(innerMatcher);
+        if (!ChildPlans.of(inner).stream().anyMatch(plan -> plan instanceof RecordQueryScanPlan && plan.hasFullRecordScan())) {
+            // Only split a filter on all of the records, not one on what has already been narrowed down.
+            return ChangesMade.NO_CHANGE;
+        }
+
+        final List<ExpressionRef<RelationalPlannerExpression>> children = new ArrayList<>(or.getChildren().size());
+        for (QueryComponent disjunct : or.getChildren()) {
+            children.add(call.ref(new LogicalFilterExpression(call.ref(disjunct), inner)));
+        }
+        call.yield(SingleExpressionRef.of(new LogicalUnionExpression(children)));
+        return ChangesMade.MADE_CHANGES;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * SortToIndexScanRule.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp.rules;
+
+import com.apple.foundationdb.API;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.expressions.KeyExpression;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.PlannableIndexTypes;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.temp.ExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRule;
+import com.apple.foundationdb.record.query.plan.temp.PlannerRuleCall;
+import com.apple.foundationdb.record.query.plan.temp.SingleExpressionRef;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalFilterExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.LogicalSortExpression;
+import com.apple.foundationdb.record.query.plan.temp.expressions.RelationalPlannerExpression;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ExpressionMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.PlannerBindings;
+import com.apple.foundationdb.record.query.plan.temp.matchers.ReferenceMatcher;
+import com.apple.foundationdb.record.query.plan.temp.matchers.TypeMatcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A rule that offers other scans that might produce records in the order needed by a logical sort, in place of a full
+ * scan (possibly filtered) beneath it: a full scan of each value index that has the first column of the sort, and a
+ * full scan in the direction of the sort. A logical filter on one of those scans can then be turned into a scan of part
+ * of it, and the sort itself is implemented by whichever of the results really is in the right order.
+ * @see ImplementSortRule
+ */
+@API(API.Status.EXPERIMENTAL)
+public class SortToIndexScanRule extends PlannerRule<LogicalSortExpression> {
+    private static final ExpressionMatcher<ExpressionRef<RelationalPlannerExpression>> innerMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<LogicalSortExpression> root = TypeMatcher.of(LogicalSortExpression.class, innerMatcher);
+
+    private static final ExpressionMatcher<ExpressionRef<QueryComponent>> filterMatcher = ReferenceMatcher.anyRef();
+    private static final ExpressionMatcher<RecordQueryScanPlan> scanMatcher = TypeMatcher.of(RecordQueryScanPlan.class);
+    private static final ExpressionMatcher<LogicalFilterExpression> filterOnScanMatcher = TypeMatcher.of(LogicalFilterExpression.class, filterMatcher, scanMatcher);
+
+    public SortToIndexScanRule() {
+        super(root);
+    }
+
+    @Override
+    public ChangesMade onMatch(@Nonnull PlannerRuleCall call) {
+        final LogicalSortExpression sort = call.get(root);
+        final ExpressionRef<RelationalPlannerExpression> inner = call.get(innerMatcher);
+
+        final ExpressionRef<QueryComponent> filter;
+        if (ChildPlans.of(inner).stream().anyMatch(SortToIndexScanRule::isFullScan)) {
+            filter = null;
+        } else {
+            final List<PlannerBindings> filtersOnScans = inner.bindAll(filterOnScanMatcher)
+                    .filter(bindings -> isFullScan(bindings.get(scanMatcher)))
+                    .collect(Collectors.toList());
+            if (filtersOnScans.isEmpty()) {
+                return ChangesMade.NO_CHANGE;
+            }
+            filter = filtersOnScans.get(0).get(filterMatcher);
+        }
+
+        final List<KeyExpression> sortColumns = sort.getSort().normalizeKeyForPositions();
+        if (sortColumns.isEmpty()) {
+            return ChangesMade.NO_CHANGE;
+        }
+        for (Index index : call.getContext().getIndexes()) {
+            if (PlannableIndexTypes.DEFAULT.getValueTypes().contains(index.getType()) &&
+                    !index.getRootExpression().createsDuplicates() &&
+                    index.getRootExpression().normalizeKeyForPositions().contains(sortColumns.get(0))) {
+                yieldSorted(call, sort, filter, new RecordQueryIndexPlan(index.getName(), IndexScanType.BY_VALUE, ScanComparisons.EMPTY, sort.isReverse()));
+            }
+        }
+        if (sort.isReverse()) {
+            yieldSorted(call, sort, filter, new RecordQueryScanPlan(ScanComparisons.EMPTY, true));
+        }
+        return ChangesMade.MADE_CHANGES;
+    }
+
+    private static boolean isFullScan(@Nonnull RecordQueryPlan plan) {
+        return plan instanceof RecordQueryScanPlan && plan.hasFullRecordScan();
+    }
+
+    private static void yieldSorted(@Nonnull PlannerRuleCall call, @Nonnull LogicalSortExpression sort,
+                                    @Nullable ExpressionRef<QueryComponent> filter, @Nonnull RecordQueryPlan scan) {
+        ExpressionRef<RelationalPlannerExpression> inner = call.ref(scan);
+        if (filter != null) {
+            inner = call.ref(new LogicalFilterExpression(filter, inner));
+        }
+        call.yield(SingleExpressionRef.of(new LogicalSortExpression(sort.getSort(), sort.isReverse(), inner)));
+    }
+}
@@ -22,9 +22,13 @@ package com.apple.foundationdb.record;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -34,6 +38,8 @@ public class ExecutePropertiesTest {
     private static int ROW_LIMIT = 100;
     private static long TIME_LIMIT = 1000L;
     private static int RECORD_SCAN_LIMIT = 200;
+    private static long MEMORY_LIMIT = 1 << 20;
+    private static int READ_AHEAD_CHUNKS = 4;
 
     @Test
     public void testSetLimitsFrom() {
@@ -71,4 +77,29 @@ public class ExecutePropertiesTest {
         // verify that the record scan limit really is RECORD_SCAN_LIMIT + 1
         assertFalse(merge3.getState().getRecordScanLimiter().tryRecordScan());
     }
+
+    @Test
+    public void testSetMemoryLimitsFrom() {
+        final Path spillDirectory = Paths.get("spill");
+        final ExecuteProperties base = ExecuteProperties.newBuilder()
+                .setReturnedRowLimit(ROW_LIMIT)
+                .setMemoryLimit(MEMORY_LIMIT)
+                .build();
+
+        final ExecuteProperties merge1 = base.setLimitsFrom(ExecuteProperties.newBuilder()
+                .setSpillDirectory(spillDirectory)
+                .setReadAheadChunks(READ_AHEAD_CHUNKS)
+                .build());
+        assertEquals(ROW_LIMIT, merge1.getReturnedRowLimit());
+        assertEquals(MEMORY_LIMIT, merge1.getMemoryLimit());
+        assertEquals(spillDirectory, merge1.getSpillDirectory());
+        assertEquals(READ_AHEAD_CHUNKS, merge1.getReadAheadChunks());
+
+        final ExecuteProperties merge2 = base.setLimitsFrom(ExecuteProperties.newBuilder()
+                .setMemoryLimit(MEMORY_LIMIT + 1)
+                .build());
+        assertEquals(MEMORY_LIMIT + 1, merge2.getMemoryLimit());
+        assertNull(merge2.getSpillDirectory());
+        assertEquals(ExecuteProperties.DEFAULT_READ_AHEAD_CHUNKS, merge2.getReadAheadChunks());
+    }
 }
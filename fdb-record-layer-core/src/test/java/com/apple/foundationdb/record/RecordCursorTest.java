@@ -69,6 +69,7 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isOneOf;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -304,6 +305,69 @@ public class RecordCursorTest {
         assertEquals(Arrays.asList(2,4,6), newInts);
     }
 
+    @Test
+    public void fusedMapFilterTest() {
+        final List<Integer> ints = IntStream.range(0, 30).boxed().collect(Collectors.toList());
+        final Function<RecordCursor<Integer>, RecordCursor<Integer>> chain = cursor -> cursor
+                .map(i -> i * 2)
+                .filter(i -> i % 3 != 0)
+                .map(i -> i + 1)
+                .filter(i -> i % 5 != 0)
+                .limitRowsTo(4);
+
+        // The same stages applied one cursor at a time.
+        final Function<RecordCursor<Integer>, RecordCursor<Integer>> unfusedChain = cursor -> new RowLimitedCursor<>(
+                new FilterCursor<>(new MapCursor<>(new FilterCursor<>(new MapCursor<>(cursor,
+                        i -> i * 2), i -> i % 3 != 0), i -> i + 1), i -> i % 5 != 0), 4);
+        assertTrue(chain.apply(RecordCursor.fromList(ints)) instanceof MapCursor, "Consecutive maps and filters should be fused into a map cursor");
+
+        List<Integer> results = new ArrayList<>();
+        byte[] continuation = null;
+        do {
+            final RecordCursor<Integer> fused = chain.apply(RecordCursor.fromList(ints, continuation));
+            final RecordCursor<Integer> unfused = unfusedChain.apply(RecordCursor.fromList(ints, continuation));
+            RecordCursorResult<Integer> fusedResult;
+            RecordCursorResult<Integer> unfusedResult;
+            do {
+                fusedResult = fused.onNext().join();
+                unfusedResult = unfused.onNext().join();
+                assertEquals(unfusedResult.hasNext(), fusedResult.hasNext());
+                assertArrayEquals(unfusedResult.getContinuation().toBytes(), fusedResult.getContinuation().toBytes());
+                if (fusedResult.hasNext()) {
+                    assertEquals(unfusedResult.get(), fusedResult.get());
+                    results.add(fusedResult.get());
+                } else {
+                    assertEquals(unfusedResult.getNoNextReason(), fusedResult.getNoNextReason());
+                }
+            } while (fusedResult.hasNext());
+            continuation = fusedResult.getContinuation().toBytes();
+        } while (continuation != null);
+        assertEquals(ints.stream().map(i -> i * 2).filter(i -> i % 3 != 0).map(i -> i + 1).filter(i -> i % 5 != 0)
+                .collect(Collectors.toList()), results);
+
+        // A filter after a limit is not fused, since the limit counts the elements before the filter.
+        RecordCursor<Integer> limitThenFilter = RecordCursor.fromList(ints).map(i -> i + 1).limitRowsTo(10).filter(i -> i % 2 == 0);
+        assertTrue(limitThenFilter instanceof FilterCursor);
+        assertEquals(Arrays.asList(2, 4, 6, 8, 10), limitThenFilter.asList().join());
+
+        // A cursor that has already been advanced is not fused.
+        RecordCursor<Integer> started = RecordCursor.fromList(ints).map(i -> i + 1);
+        assertEquals(1, (int)started.onNext().join().get());
+        assertTrue(started.filter(i -> i % 2 == 0) instanceof FilterCursor);
+    }
+
+    @Test
+    public void fusedFilterAsynchronousTest() {
+        final List<Integer> ints = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        final RecordCursor<Integer> cursor = RecordCursor.fromList(ints)
+                .mapPipelined(i -> CompletableFuture.supplyAsync(() -> i), 5)
+                .filter(i -> i % 3 == 0)
+                .map(i -> i * 10);
+        assertTrue(cursor instanceof MapCursor, "A filter and map should be fused into a map cursor");
+        assertEquals(ints.stream().filter(i -> i % 3 == 0).map(i -> i * 10).collect(Collectors.toList()),
+                cursor.asList().join());
+    }
+
     @Test
     public void firstTest() throws Exception {
         List<Integer> ints = Arrays.asList(1,2,3,4);
@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.cursors;
 
+import com.apple.foundationdb.record.ByteScanLimiter;
 import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.RecordScanLimiter;
 import com.apple.foundationdb.record.TimeScanLimiter;
@@ -71,6 +72,37 @@ public class CursorLimitManagerTest {
         assertEquals(RecordCursor.NoNextReason.SCAN_LIMIT_REACHED, manager.getStoppedReason().get());
     }
 
+    @Test
+    public void testByteScanLimiter() {
+        final ByteScanLimiter byteScanLimiter = new ByteScanLimiter(100);
+        final CursorLimitManager manager = new CursorLimitManager(null, byteScanLimiter, false, null);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(manager.tryRecordScan());
+            manager.reportScannedBytes(30);
+            assertFalse(manager.isStopped());
+        }
+
+        // The last scan overran the limit, so no more are allowed.
+        assertFalse(manager.tryRecordScan());
+        assertTrue(manager.isStopped());
+        assertEquals(RecordCursor.NoNextReason.BYTE_LIMIT_REACHED, manager.getStoppedReason().get());
+        assertEquals(120, byteScanLimiter.getBytesScanned());
+    }
+
+    @Test
+    public void testByteScanLimiterInitialPass() {
+        final ByteScanLimiter byteScanLimiter = new ByteScanLimiter(100);
+        byteScanLimiter.registerScannedBytes(200);
+        final CursorLimitManager manager = new CursorLimitManager(null, byteScanLimiter, false, null);
+
+        // Another cursor used up the shared limit, but this one still gets to scan once.
+        assertTrue(manager.tryRecordScan());
+        manager.reportScannedBytes(30);
+        assertFalse(manager.tryRecordScan());
+        assertEquals(RecordCursor.NoNextReason.BYTE_LIMIT_REACHED, manager.getStoppedReason().get());
+    }
+
     @Test
     public void testTimeLimiter() {
         final int untilTimeout = 7;
@@ -0,0 +1,141 @@
+/*
+ * RecordCursorPublisherTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.cursors;
+
+import com.apple.foundationdb.record.RecordCursor;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RecordCursorPublisher}.
+ */
+public class RecordCursorPublisherTest {
+    static final List<Integer> ints = Arrays.asList(1, 2, 3, 4, 5);
+
+    @Test
+    public void requestInBatches() throws Exception {
+        final RecordCursor<Integer> cursor = RecordCursor.fromList(ints).limitRowsTo(4);
+        final RecordCursorPublisher<Integer> publisher = new RecordCursorPublisher<>(cursor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(3);
+        assertEquals(Arrays.asList(1, 2, 3), subscriber.received);
+        assertFalse(subscriber.completed.isDone());
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.completed.get(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(1, 2, 3, 4), subscriber.received);
+        assertEquals(RecordCursor.NoNextReason.RETURN_LIMIT_REACHED, publisher.getNoNextReason());
+
+        final RecordCursor<Integer> resumed = RecordCursor.fromList(ints, publisher.getContinuation());
+        assertEquals(Arrays.asList(5), resumed.asList().join());
+    }
+
+    @Test
+    public void asynchronous() throws Exception {
+        final FirableCursor<Integer> cursor = new FirableCursor<>(RecordCursor.fromList(ints));
+        final RecordCursorPublisher<Integer> publisher = new RecordCursorPublisher<>(cursor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+        assertTrue(subscriber.received.isEmpty());
+        cursor.fire();
+        subscriber.waitFor(1);
+        cursor.fire();
+        subscriber.waitFor(2);
+        cursor.fireAll();
+        subscriber.subscription.request(10);
+        subscriber.completed.get(1, TimeUnit.SECONDS);
+        assertEquals(ints, subscriber.received);
+        assertEquals(RecordCursor.NoNextReason.SOURCE_EXHAUSTED, publisher.getNoNextReason());
+        assertNull(publisher.getContinuation());
+    }
+
+    @Test
+    public void cancel() {
+        final RecordCursor<Integer> cursor = RecordCursor.fromList(ints);
+        final RecordCursorPublisher<Integer> publisher = new RecordCursorPublisher<>(cursor);
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(2);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(2);
+        assertEquals(Arrays.asList(1, 2), subscriber.received);
+        assertFalse(subscriber.completed.isDone());
+        assertNull(publisher.getNoNextReason());
+    }
+
+    @Test
+    public void invalidRequest() {
+        final RecordCursorPublisher<Integer> publisher = new RecordCursorPublisher<>(RecordCursor.fromList(ints));
+        final TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.completed.isCompletedExceptionally());
+
+        final TestSubscriber second = new TestSubscriber();
+        publisher.subscribe(second);
+        assertTrue(second.completed.isCompletedExceptionally());
+    }
+
+    private static class TestSubscriber implements RecordCursorPublisher.Subscriber<Integer> {
+        private RecordCursorPublisher.Subscription subscription;
+        private final List<Integer> received = new ArrayList<>();
+        private final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(@Nonnull RecordCursorPublisher.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(Integer item) {
+            received.add(item);
+            notifyAll();
+        }
+
+        @Override
+        public void onError(@Nonnull Throwable throwable) {
+            completed.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed.complete(null);
+        }
+
+        synchronized void waitFor(int count) throws InterruptedException {
+            while (received.size() < count) {
+                wait(1000);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * GeneratedMessageRecordSerializerTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link GeneratedMessageRecordSerializer}.
+ */
+public class GeneratedMessageRecordSerializerTest {
+
+    @Test
+    public void generatedClass() {
+        final RecordMetaData metaData = RecordMetaData.build(TestRecords1Proto.getDescriptor());
+        final TestRecords1Proto.MySimpleRecord record = TestRecords1Proto.MySimpleRecord.newBuilder()
+                .setRecNo(1066L)
+                .setStrValueIndexed("even")
+                .build();
+        final RecordSerializer<Message> serializer = GeneratedMessageRecordSerializer.instance();
+        final byte[] serialized = serializer.serialize(metaData, metaData.getRecordType("MySimpleRecord"), record, null);
+        final Message deserialized = serializer.deserialize(metaData, Tuple.from(1066L), serialized, null);
+        assertThat(deserialized, instanceOf(TestRecords1Proto.MySimpleRecord.class));
+        assertEquals(record, deserialized);
+    }
+
+    @Test
+    public void dynamicFallback() throws Descriptors.DescriptorValidationException {
+        // A copy of the descriptor does not belong to the generated class.
+        final Descriptors.FileDescriptor generated = TestRecords1Proto.getDescriptor();
+        final Descriptors.FileDescriptor copy = Descriptors.FileDescriptor.buildFrom(generated.toProto(),
+                generated.getDependencies().toArray(new Descriptors.FileDescriptor[0]));
+        final RecordMetaData metaData = RecordMetaData.build(copy);
+        final Message record = DynamicMessage.newBuilder(metaData.getRecordType("MySimpleRecord").getDescriptor())
+                .setField(copy.findMessageTypeByName("MySimpleRecord").findFieldByName("rec_no"), 1066L)
+                .build();
+        final RecordSerializer<Message> serializer = GeneratedMessageRecordSerializer.instance();
+        final byte[] serialized = serializer.serialize(metaData, metaData.getRecordType("MySimpleRecord"), record, null);
+        final Message deserialized = serializer.deserialize(metaData, Tuple.from(1066L), serialized, null);
+        assertThat(deserialized, instanceOf(DynamicMessage.class));
+        assertEquals(record, deserialized);
+    }
+
+    @Test
+    public void unknownFields() {
+        final RecordMetaData metaData = RecordMetaData.build(TestRecords1Proto.getDescriptor());
+        final TestRecords1Proto.MySimpleRecord record = TestRecords1Proto.MySimpleRecord.newBuilder()
+                .setRecNo(1066L)
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(1000, UnknownFieldSet.Field.newBuilder().addVarint(1).build())
+                        .build())
+                .build();
+        final RecordSerializer<Message> serializer = GeneratedMessageRecordSerializer.instance();
+        final byte[] serialized = serializer.serialize(metaData, metaData.getRecordType("MySimpleRecord"), record, null);
+        final StoreTimer timer = new StoreTimer();
+        final Message deserialized = serializer.deserialize(metaData, Tuple.from(1066L), serialized, timer);
+        assertThat(deserialized, instanceOf(TestRecords1Proto.MySimpleRecord.class));
+        assertEquals(record, deserialized);
+        assertEquals(1, timer.getCount(RecordSerializer.Events.DESERIALIZE_PROTOBUF_RECORD));
+    }
+
+    @Test
+    public void malformedUnionTimedOnce() {
+        final RecordMetaData metaData = RecordMetaData.build(TestRecords1Proto.getDescriptor());
+        final TestRecords1Proto.RecordTypeUnion union = TestRecords1Proto.RecordTypeUnion.newBuilder()
+                .setMySimpleRecord(TestRecords1Proto.MySimpleRecord.newBuilder().setRecNo(1066L))
+                .setMyOtherRecord(TestRecords1Proto.MyOtherRecord.newBuilder().setRecNo(1066L))
+                .build();
+        final StoreTimer timer = new StoreTimer();
+        assertThrows(RecordSerializationException.class, () ->
+                GeneratedMessageRecordSerializer.instance().deserialize(metaData, Tuple.from(1066L), union.toByteArray(), timer));
+        assertEquals(1, timer.getCount(RecordSerializer.Events.DESERIALIZE_PROTOBUF_RECORD));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * LazyRecordMessageTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.common;
+
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LazyRecordMessage} and {@link LazyDynamicMessageRecordSerializer}.
+ */
+public class LazyRecordMessageTest {
+
+    @Test
+    public void partialThenFull() {
+        final RecordMetaData metaData = RecordMetaData.build(TestRecords1Proto.getDescriptor());
+        final TestRecords1Proto.MySimpleRecord record = TestRecords1Proto.MySimpleRecord.newBuilder()
+                .setRecNo(1066L)
+                .setStrValueIndexed("even")
+                .setNumValue2(42)
+                .build();
+        final LazyDynamicMessageRecordSerializer serializer = new LazyDynamicMessageRecordSerializer(Arrays.asList("rec_no", "num_value_2"));
+        final byte[] serialized = serializer.serialize(metaData, metaData.getRecordType("MySimpleRecord"), record, null);
+
+        final Message message = serializer.deserialize(metaData, Tuple.from(1066L), serialized, null);
+        assertTrue(message instanceof LazyRecordMessage);
+        final LazyRecordMessage lazy = (LazyRecordMessage)message;
+        final Descriptors.Descriptor descriptor = lazy.getDescriptorForType();
+        assertEquals(record.getDescriptorForType().getFullName(), descriptor.getFullName());
+
+        assertEquals(1066L, lazy.getField(descriptor.findFieldByName("rec_no")));
+        assertEquals(42, lazy.getField(descriptor.findFieldByName("num_value_2")));
+        assertFalse(lazy.isMaterialized());
+        assertArrayEquals(record.toByteArray(), lazy.toByteArray());
+        assertFalse(lazy.isMaterialized());
+
+        assertEquals("even", lazy.getField(descriptor.findFieldByName("str_value_indexed")));
+        assertTrue(lazy.isMaterialized());
+        assertEquals(record, TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(lazy).build());
+    }
+
+    @Test
+    public void unknownFields() throws Exception {
+        final TestRecords1Proto.MySimpleRecord record = TestRecords1Proto.MySimpleRecord.newBuilder()
+                .setRecNo(1066L)
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(1000, UnknownFieldSet.Field.newBuilder().addVarint(1).build())
+                        .build())
+                .build();
+        final LazyRecordMessage lazy = LazyRecordMessage.parseFrom(record.getDescriptorForType(), record.toByteString(),
+                Collections.singleton(TestRecords1Proto.MySimpleRecord.REC_NO_FIELD_NUMBER));
+        assertEquals(Collections.singleton(1000), lazy.getUnknownFieldNumbers());
+        assertFalse(lazy.isMaterialized());
+    }
+
+    @Test
+    public void serializerEquality() {
+        assertEquals(new LazyDynamicMessageRecordSerializer(Arrays.asList("rec_no", "num_value_2")),
+                new LazyDynamicMessageRecordSerializer(Arrays.asList("num_value_2", "rec_no")));
+        assertEquals(new LazyDynamicMessageRecordSerializer(Arrays.asList("rec_no", "num_value_2")).hashCode(),
+                new LazyDynamicMessageRecordSerializer(Arrays.asList("num_value_2", "rec_no")).hashCode());
+        assertNotEquals(new LazyDynamicMessageRecordSerializer(Arrays.asList("rec_no", "num_value_2")),
+                new LazyDynamicMessageRecordSerializer(Collections.singletonList("rec_no")));
+        assertNotEquals(new LazyDynamicMessageRecordSerializer(Collections.emptyList()), DynamicMessageRecordSerializer.instance());
+    }
+}
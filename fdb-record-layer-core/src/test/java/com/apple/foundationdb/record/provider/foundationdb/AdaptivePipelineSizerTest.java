@@ -0,0 +1,117 @@
+/*
+ * AdaptivePipelineSizerTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.PipelineOperation;
+import com.apple.foundationdb.record.RecordCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link AdaptivePipelineSizer}.
+ */
+public class AdaptivePipelineSizerTest {
+    static final List<Integer> ints = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+
+    @Test
+    public void growsForSlowElements() {
+        final AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 50);
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int i = 0; i < 3; i++) {
+                final int pipelineSize = sizer.getPipelineSize(PipelineOperation.INDEX_TO_RECORD);
+                final List<Integer> result = RecordCursor.fromList(ints)
+                        .mapPipelined(sizer.observe(PipelineOperation.INDEX_TO_RECORD, n -> {
+                            final CompletableFuture<Integer> future = new CompletableFuture<>();
+                            scheduler.schedule(() -> future.complete(n), 2, TimeUnit.MILLISECONDS);
+                            return future;
+                        }), pipelineSize)
+                        .asList().join();
+                assertEquals(ints, result);
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+        assertTrue(sizer.getPipelineSize(PipelineOperation.INDEX_TO_RECORD) > FDBRecordStore.DEFAULT_PIPELINE_SIZE);
+        assertTrue(sizer.getCurrentPipelineSize(PipelineOperation.INDEX_TO_RECORD) <= 50);
+    }
+
+    @Test
+    public void shrinksForImmediateElements() {
+        final AdaptivePipelineSizer sizer = new AdaptivePipelineSizer(2, 50);
+        final int pipelineSize = sizer.getPipelineSize(PipelineOperation.KEY_TO_RECORD);
+        assertEquals(FDBRecordStore.DEFAULT_PIPELINE_SIZE, pipelineSize);
+        final List<Integer> result = RecordCursor.fromList(ints)
+                .mapPipelined(sizer.observe(PipelineOperation.KEY_TO_RECORD, CompletableFuture::completedFuture), pipelineSize)
+                .asList().join();
+        assertEquals(ints, result);
+        assertEquals(2, sizer.getPipelineSize(PipelineOperation.KEY_TO_RECORD));
+        // Other operations are sized separately.
+        assertEquals(FDBRecordStore.DEFAULT_PIPELINE_SIZE, sizer.getPipelineSize(PipelineOperation.INDEX_TO_RECORD));
+    }
+
+    @Test
+    public void invalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePipelineSizer(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePipelineSizer(10, 5));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePipelineSizer(1, 10, 20));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptivePipelineSizer(1, 10, 5, 0));
+    }
+
+    @Test
+    public void boundsElementsInFlightPerTransaction() {
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        final AdaptivePipelineSizer.TransactionLimiter limiter = new AdaptivePipelineSizer.TransactionLimiter(2, timer);
+        final List<CompletableFuture<Integer>> started = new ArrayList<>();
+        // More elements than the transaction allows in flight, as from several of its pipelines.
+        final List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(limiter.run(() -> {
+                final CompletableFuture<Integer> future = new CompletableFuture<>();
+                started.add(future);
+                return future;
+            }));
+        }
+        assertEquals(2, started.size());
+        assertEquals(3, timer.getCount(FDBStoreTimer.Counts.ADAPTIVE_PIPELINE_TRANSACTION_WAITS));
+
+        // Each completion lets exactly one waiting element start, in order.
+        for (int i = 0; i < 5; i++) {
+            started.get(i).complete(i);
+            assertEquals(Math.min(5, i + 3), started.size());
+            assertEquals(i, (int)results.get(i).join());
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(results.stream().allMatch(CompletableFuture::isDone));
+    }
+}
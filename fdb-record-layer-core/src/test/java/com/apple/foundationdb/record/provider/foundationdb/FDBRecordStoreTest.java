@@ -59,6 +59,9 @@ import com.apple.foundationdb.record.provider.foundationdb.keyspace.KeySpacePath
 import com.apple.foundationdb.record.query.expressions.Comparisons;
 import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryUnorderedUnionPlan;
 import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.test.Tags;
@@ -858,6 +861,43 @@ public class FDBRecordStoreTest extends FDBRecordStoreTestBase {
         }
     }
 
+    /**
+     * Verify that a limited union of record scans over split records only reads the start of the records, by checking
+     * that it does not conflict with a change further along.
+     */
+    @Test
+    public void limitedUnionOfSplitRecordScans() throws Exception {
+        final RecordMetaDataHook hook = md -> md.setSplitLongRecords(true);
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, hook);
+            for (int i = 0; i < 200; i++) {
+                recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder()
+                        .setRecNo(i)
+                        .setStrValueIndexed(Strings.repeat("x", 500))
+                        .build());
+            }
+            commit(context);
+        }
+
+        final RecordQueryPlan plan = new RecordQueryUnorderedUnionPlan(
+                new RecordQueryScanPlan(ScanComparisons.EMPTY, false), new RecordQueryScanPlan(ScanComparisons.EMPTY, false), false);
+        try (FDBRecordContext context1 = openContext(); FDBRecordContext context2 = openContext()) {
+            openSimpleRecordStore(context1, hook);
+            final List<Long> recNos = recordStore.executeQuery(plan, null, ExecuteProperties.newBuilder().setReturnedRowLimit(1).build())
+                    .map(rec -> TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(rec.getRecord()).getRecNo())
+                    .asList().join();
+            assertEquals(Collections.singletonList(0L), recNos);
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder().setRecNo(1000L).build());
+
+            // About 50KB into the records, well past the first batch of a scan that starts small.
+            openSimpleRecordStore(context2, hook);
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder().setRecNo(100L).setStrValueIndexed("changed").build());
+            commit(context2);
+
+            commit(context1);
+        }
+    }
+
     @Test
     public void testStoredRecordSizeIsConsistent() throws Exception {
         final RecordMetaDataHook hook = md -> {
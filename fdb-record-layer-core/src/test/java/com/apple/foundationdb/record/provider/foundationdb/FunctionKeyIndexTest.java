@@ -274,7 +274,7 @@ public class FunctionKeyIndexTest extends FDBRecordStoreTestBase {
         // planner has no idea how to plan a query on a function index as of this writing (besides, the
         // function call doesn't appear in the query anyway) and (b) that the planner doesn't throw
         // an exception or do something wonky as a result of the presence of this index.
-        assertEquals("Index(normal_index [[abd],>) | str_value LESS_THAN_OR_EQUALS abg", plan.toString());
+        assertEquals("IndexEntryFilter(Index(normal_index [[abd],>) | str_value LESS_THAN_OR_EQUALS abg)", plan.toString());
 
         try (FDBRecordContext context = openContext()) {
             openRecordStore(context, funcIndex, normalIndex);
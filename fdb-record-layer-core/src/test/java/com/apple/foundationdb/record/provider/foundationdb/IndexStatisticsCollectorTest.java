@@ -0,0 +1,236 @@
+/*
+ * IndexStatisticsCollectorTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.TestRecords1Proto.MySimpleRecord;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.IndexStatistics;
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.test.Tags;
+import com.google.common.base.Strings;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests of the {@link IndexStatisticsCollector} and of planning with its statistics.
+ */
+@Tag(Tags.RequiresFDB)
+public class IndexStatisticsCollectorTest extends FDBRecordStoreTestBase {
+
+    private void saveRecords(int recordCount) throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            for (int i = 0; i < recordCount; i++) {
+                MySimpleRecord simpleRecord = MySimpleRecord.newBuilder()
+                        .setRecNo(i)
+                        .setStrValueIndexed(i % 2 == 0 ? "even" : "odd")
+                        .setNumValueUnique(i)
+                        .setNumValue3Indexed(i % 3)
+                        .build();
+                recordStore.saveRecord(simpleRecord);
+            }
+            commit(context);
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            uncheckedOpenSimpleRecordStore(context);
+            IndexStatisticsCollector collector = IndexStatisticsCollector.ofIndex(recordStore, "MySimpleRecord$str_value_indexed");
+            assertThat(collector.collect(context, ExecuteProperties.SERIAL_EXECUTE), is(true));
+            IndexStatistics statistics = collector.getStatistics();
+            assertEquals(0L, statistics.getEntryCount());
+            assertEquals(0L, statistics.getDistinctCount(1));
+            assertThat(statistics.getLeadingBoundaries(), hasSize(0));
+            commit(context);
+        }
+    }
+
+    @Test
+    public void records1000() throws Exception {
+        final int recordCount = 1000;
+        saveRecords(recordCount);
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            IndexStatisticsCollector collector = IndexStatisticsCollector.ofIndex(recordStore, "MySimpleRecord$str_value_indexed");
+            assertThat(collector.collect(context, ExecuteProperties.SERIAL_EXECUTE), is(true));
+            IndexStatistics statistics = collector.getStatistics();
+            assertEquals(recordCount, statistics.getEntryCount());
+            assertEquals(2L, statistics.getDistinctCount(1));
+            assertThat(statistics.getLeadingBoundaries(), hasSize(IndexStatisticsCollector.DEFAULT_HISTOGRAM_BOUNDARIES));
+
+            // Batches of 17, with a small histogram.
+            Index index = recordStore.getRecordMetaData().getIndex("MySimpleRecord$num_value_unique");
+            IndexStatisticsCollector batchedCollector = IndexStatisticsCollector.ofIndex(recordStore, index, 10);
+            ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(17).build();
+            boolean done = false;
+            while (!done) {
+                done = batchedCollector.collect(context, executeProperties);
+            }
+            statistics = batchedCollector.getStatistics();
+            assertEquals(recordCount, statistics.getEntryCount());
+            assertEquals(recordCount, statistics.getDistinctCount(1));
+            assertThat(statistics.getLeadingBoundaries(), hasSize(10));
+            // Roughly every tenth value.
+            for (int i = 0; i < 10; i++) {
+                long boundary = (Long)statistics.getLeadingBoundaries().get(i);
+                long expected = (i + 1) * recordCount / 11;
+                assertThat(Math.abs(boundary - expected) < recordCount / 20, is(true));
+            }
+            commit(context);
+        }
+    }
+
+    @Test
+    public void saveLoadAndPlan() throws Exception {
+        final int recordCount = 200;
+        saveRecords(recordCount);
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(0, recordStore.loadIndexStatistics().size());
+            for (String indexName : new String[] {
+                    "MySimpleRecord$str_value_indexed", "MySimpleRecord$num_value_unique", "MySimpleRecord$num_value_3_indexed"
+            }) {
+                IndexStatisticsCollector collector = IndexStatisticsCollector.ofIndex(recordStore, indexName);
+                assertThat(collector.collect(context, ExecuteProperties.SERIAL_EXECUTE), is(true));
+                recordStore.saveIndexStatistics(collector.getIndex(), collector.getStatistics());
+            }
+            commit(context);
+        }
+
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.and(
+                        Query.field("str_value_indexed").equalsValue("even"),
+                        Query.field("num_value_unique").greaterThanOrEquals(190)))
+                .build();
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            RecordQueryPlanner statisticsPlanner = new RecordQueryPlanner(recordStore.getRecordMetaData(), recordStore.getRecordStoreState());
+
+            // Without statistics, either single comparison is as good as the other.
+            RecordQueryPlan plan = statisticsPlanner.plan(query);
+            assertThat(plan, filter(equalTo(Query.field("num_value_unique").greaterThanOrEquals(190)),
+                    indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(hasTupleString("[[even],[even]]"))))));
+
+            Map<String, IndexStatistics> statistics = recordStore.loadIndexStatistics();
+            assertEquals(3, statistics.size());
+            assertEquals(recordCount, statistics.get("MySimpleRecord$num_value_3_indexed").getEntryCount());
+            assertEquals(3L, statistics.get("MySimpleRecord$num_value_3_indexed").getDistinctCount(1));
+
+            // With them, the range on the unique field is far more selective than the equality on one of two values.
+            statisticsPlanner.setIndexStatistics(statistics);
+            plan = statisticsPlanner.plan(query);
+            assertThat(plan, filter(equalTo(Query.field("str_value_indexed").equalsValue("even")),
+                    indexScan(allOf(indexName("MySimpleRecord$num_value_unique"), bounds(hasTupleString("[[190],>"))))));
+            assertEquals(5, recordStore.executeQuery(plan).getCount().join().intValue());
+
+            // Clearing an index also clears its statistics.
+            Index index = recordStore.getRecordMetaData().getIndex("MySimpleRecord$num_value_unique");
+            recordStore.clearIndexData(index);
+            statistics = recordStore.loadIndexStatistics();
+            assertEquals(2, statistics.size());
+            assertFalse(statistics.containsKey(index.getName()));
+            commit(context);
+        }
+    }
+
+    @Test
+    public void largeStatistics() throws Exception {
+        List<Object> boundaries = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            boundaries.add(Strings.repeat(Character.toString((char)('a' + i % 26)), 10_000) + i);
+        }
+        IndexStatistics statistics = new IndexStatistics(1000L, new long[] {500L}, boundaries);
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            Index index = recordStore.getRecordMetaData().getIndex("MySimpleRecord$str_value_indexed");
+            recordStore.saveIndexStatistics(index, statistics);
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(Collections.singletonMap("MySimpleRecord$str_value_indexed", statistics), recordStore.loadIndexStatistics());
+            // Saving smaller statistics replaces all of the pieces of the larger ones.
+            IndexStatistics smaller = new IndexStatistics(10L, new long[] {5L}, Collections.singletonList("m"));
+            recordStore.saveIndexStatistics(recordStore.getRecordMetaData().getIndex("MySimpleRecord$str_value_indexed"), smaller);
+            assertEquals(Collections.singletonMap("MySimpleRecord$str_value_indexed", smaller), recordStore.loadIndexStatistics());
+            commit(context);
+        }
+    }
+
+    @Test
+    public void removedIndexWithSubspaceKey() throws Exception {
+        final RecordMetaDataHook withIndex = metaData -> {
+            Index index = new Index("str_value_custom", "str_value_indexed");
+            index.setSubspaceKey("custom");
+            metaData.addIndex("MySimpleRecord", index);
+        };
+        final RecordMetaDataHook replacedIndex = metaData -> {
+            withIndex.apply(metaData);
+            metaData.removeIndex("str_value_custom");
+            metaData.addIndex("MySimpleRecord", new Index("str_value_custom", "num_value_2"));
+        };
+        saveRecords(20);
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, withIndex);
+            IndexStatisticsCollector collector = IndexStatisticsCollector.ofIndex(recordStore, "str_value_custom");
+            assertThat(collector.collect(context, ExecuteProperties.SERIAL_EXECUTE), is(true));
+            recordStore.saveIndexStatistics(collector.getIndex(), collector.getStatistics());
+            assertEquals(2L, recordStore.loadIndexStatistics().get("str_value_custom").getDistinctCount(1));
+            commit(context);
+        }
+
+        // A new index with the same name does not pick up the statistics of the one it replaced.
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, replacedIndex);
+            assertEquals(Collections.emptyMap(), recordStore.loadIndexStatistics());
+            assertEquals(0, recordStore.ensureContextActive().getRange(recordStore.indexStatisticsSubspace().range()).asList().join().size());
+            commit(context);
+        }
+    }
+}
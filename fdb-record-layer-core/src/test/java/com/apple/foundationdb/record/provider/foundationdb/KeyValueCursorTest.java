@@ -21,6 +21,7 @@
 package com.apple.foundationdb.record.provider.foundationdb;
 
 import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.record.CursorStreamingMode;
 import com.apple.foundationdb.record.EndpointType;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.ExecuteState;
@@ -323,6 +324,37 @@ public class KeyValueCursorTest extends FDBTestBase {
         });
     }
 
+    @Test
+    public void byteScanLimit() {
+        fdb.run(context -> {
+            final int keyValueSize = subspace.pack(Tuple.from(0, 0)).length + Tuple.from(0, 0).pack().length;
+            int total = 0;
+            byte[] continuation = null;
+            do {
+                final ScanProperties scanProperties = new ScanProperties(ExecuteProperties.newBuilder()
+                        .setScannedBytesLimit(keyValueSize * 10)
+                        .build());
+                KeyValueCursor cursor = KeyValueCursor.Builder.withSubspace(subspace)
+                        .setContext(context)
+                        .setRange(TupleRange.ALL)
+                        .setContinuation(continuation)
+                        .setScanProperties(scanProperties)
+                        .build();
+                final int count = cursor.getCount().join();
+                total += count;
+                continuation = cursor.getContinuation();
+                if (continuation != null) {
+                    assertEquals(10, count);
+                    assertThat("no next reason should be BYTE_LIMIT_REACHED", cursor.getNoNextReason(),
+                            equalTo(RecordCursor.NoNextReason.BYTE_LIMIT_REACHED));
+                }
+            } while (continuation != null);
+            assertEquals(25, total);
+
+            return null;
+        });
+    }
+
     private boolean hasNextAndAdvance(KeyValueCursor cursor) {
         boolean hasNext = cursor.hasNext();
         cursor.next();
@@ -409,4 +441,38 @@ public class KeyValueCursorTest extends FDBTestBase {
             return null;
         });
     }
+
+    @Test
+    public void readAhead() {
+        fdb.run(context -> {
+            for (boolean reverse : new boolean[] {false, true}) {
+                for (int limit : new int[] {Integer.MAX_VALUE, 7}) {
+                    final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(limit).build();
+                    final ScanProperties iteratorScan = new ScanProperties(executeProperties, reverse, CursorStreamingMode.ITERATOR);
+                    final ScanProperties readAheadScan = new ScanProperties(executeProperties.setReadAheadChunks(2), reverse, CursorStreamingMode.READ_AHEAD);
+                    byte[] continuation = null;
+                    do {
+                        KeyValueCursor expected = KeyValueCursor.Builder.withSubspace(subspace)
+                                .setContext(context)
+                                .setRange(TupleRange.ALL)
+                                .setContinuation(continuation)
+                                .setScanProperties(iteratorScan)
+                                .build();
+                        KeyValueCursor actual = KeyValueCursor.Builder.withSubspace(subspace)
+                                .setContext(context)
+                                .setRange(TupleRange.ALL)
+                                .setContinuation(continuation)
+                                .setScanProperties(readAheadScan)
+                                .build();
+                        assertEquals(expected.map(KeyValue::getValue).map(Tuple::fromBytes).asList().join(),
+                                actual.map(KeyValue::getValue).map(Tuple::fromBytes).asList().join());
+                        assertEquals(expected.getNoNextReason(), actual.getNoNextReason());
+                        assertArrayEquals(expected.getContinuation(), actual.getContinuation());
+                        continuation = actual.getContinuation();
+                    } while (continuation != null);
+                }
+            }
+            return null;
+        });
+    }
 }
@@ -0,0 +1,309 @@
+/*
+ * QueryResultCacheTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IsolationLevel;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.TestRecordsBytesProto;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.test.Tags;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link QueryResultCache} and the last write marker it depends on.
+ */
+@Tag(Tags.RequiresFDB)
+public class QueryResultCacheTest extends FDBRecordStoreTestBase {
+    private static final RecordQuery QUERY = RecordQuery.newBuilder()
+            .setRecordType("MySimpleRecord")
+            .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+            .build();
+
+    private QueryResultCache cache;
+
+    @BeforeEach
+    public void setQueryResultCache() {
+        cache = new QueryResultCache();
+        fdb.setQueryResultCache(cache);
+    }
+
+    @AfterEach
+    public void clearQueryResultCache() {
+        fdb.setQueryResultCache(null);
+    }
+
+    private void openStore(FDBRecordContext context) throws Exception {
+        openSimpleRecordStore(context);
+        recordStore = recordStore.asBuilder().setFormatVersion(FDBRecordStore.LAST_WRITE_MARKER_FORMAT_VERSION).open();
+    }
+
+    private void openBytesStore(FDBRecordContext context) throws Exception {
+        openBytesRecordStore(context);
+        recordStore = recordStore.asBuilder().setFormatVersion(FDBRecordStore.LAST_WRITE_MARKER_FORMAT_VERSION).open();
+    }
+
+    private void saveRecords(int start, int end) throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            for (int i = start; i < end; i++) {
+                recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder()
+                        .setRecNo(i)
+                        .setStrValueIndexed((i & 1) == 1 ? "odd" : "even")
+                        .build());
+            }
+            commit(context);
+        }
+    }
+
+    private List<Long> readPage(@Nullable byte[] continuation, int limit, @Nullable List<byte[]> continuations) {
+        final List<Long> recNos = new ArrayList<>();
+        try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(QUERY, continuation,
+                ExecuteProperties.newBuilder().setReturnedRowLimit(limit).build())) {
+            while (cursor.hasNext()) {
+                recNos.add(TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(cursor.next().getRecord()).getRecNo());
+            }
+            if (continuations != null) {
+                continuations.add(cursor.getContinuation());
+            }
+        }
+        return recNos;
+    }
+
+    @Test
+    public void lastWriteMarker() throws Exception {
+        saveRecords(0, 2);
+        final FDBRecordVersion marker;
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            marker = recordStore.loadLastWriteMarkerAsync(IsolationLevel.SERIALIZABLE).join();
+            assertNotNull(marker);
+            assertTrue(marker.isComplete());
+            assertFalse(recordStore.hasPendingLastWrite());
+            recordStore.deleteRecord(Tuple.from(0L));
+            assertTrue(recordStore.hasPendingLastWrite());
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            final FDBRecordVersion newMarker = recordStore.loadLastWriteMarkerAsync(IsolationLevel.SNAPSHOT).join();
+            assertNotNull(newMarker);
+            assertTrue(newMarker.compareTo(marker) > 0);
+        }
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            recordStore = recordStore.asBuilder().setFormatVersion(FDBRecordStore.SAVE_VERSION_WITH_RECORD_FORMAT_VERSION).open();
+            assertEquals(FDBRecordStore.LAST_WRITE_MARKER_FORMAT_VERSION, recordStore.getFormatVersion());
+        }
+    }
+
+    @Test
+    public void cachedUntilWrite() throws Exception {
+        saveRecords(0, 10);
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L), readPage(null, 0, null));
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_MISS));
+
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L), readPage(null, 0, null));
+        }
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+
+        saveRecords(10, 11);
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L, 10L), readPage(null, 0, null));
+        }
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+        assertEquals(2, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_MISS));
+    }
+
+    @Test
+    public void cachedPagesKeepContinuations() throws Exception {
+        saveRecords(0, 20);
+        final List<byte[]> uncachedContinuations = new ArrayList<>();
+        final List<Long> uncached = new ArrayList<>();
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            byte[] continuation = null;
+            do {
+                uncached.addAll(readPage(continuation, 3, uncachedContinuations));
+                continuation = uncachedContinuations.get(uncachedContinuations.size() - 1);
+            } while (continuation != null);
+        }
+        assertEquals(4, cache.size());
+
+        final List<byte[]> cachedContinuations = new ArrayList<>();
+        final List<Long> cached = new ArrayList<>();
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            byte[] continuation = null;
+            do {
+                cached.addAll(readPage(continuation, 3, cachedContinuations));
+                continuation = cachedContinuations.get(cachedContinuations.size() - 1);
+            } while (continuation != null);
+        }
+        assertEquals(uncached, cached);
+        assertEquals(uncachedContinuations.size(), cachedContinuations.size());
+        for (int i = 0; i < uncachedContinuations.size(); i++) {
+            assertArrayEquals(uncachedContinuations.get(i), cachedContinuations.get(i));
+        }
+        assertEquals(4, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+    }
+
+    @Test
+    public void notCachedAfterOwnWrite() throws Exception {
+        saveRecords(0, 10);
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L), readPage(null, 0, null));
+        }
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder().setRecNo(12).setStrValueIndexed("even").build());
+            assertEquals(Arrays.asList(0L, 2L, 4L, 6L, 8L, 12L), readPage(null, 0, null));
+        }
+        assertEquals(0, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+    }
+
+    @Test
+    public void notCachedWithoutMarker() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(FDBRecordStore.DEFAULT_FORMAT_VERSION, recordStore.getFormatVersion());
+            assertNull(recordStore.loadLastWriteMarkerAsync(IsolationLevel.SERIALIZABLE).join());
+            recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder().setRecNo(1).setStrValueIndexed("even").build());
+            assertFalse(recordStore.hasPendingLastWrite());
+            commit(context);
+        }
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(1, recordStore.executeQuery(QUERY).getCount().join().intValue());
+        }
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cachedWithLazyRecords() throws Exception {
+        saveRecords(0, 10);
+        for (int i = 0; i < 2; i++) {
+            try (FDBRecordContext context = openContext()) {
+                openStore(context);
+                assertEquals(5, recordStore.executeQueryWithLazyRecords(QUERY, null, ExecuteProperties.SERIAL_EXECUTE).getCount().join().intValue());
+            }
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+    }
+
+    @Test
+    public void cachedWithByteStringParameter() throws Exception {
+        saveRecords(0, 10);
+        final RecordQueryPlan plan;
+        try (FDBRecordContext context = openContext()) {
+            openStore(context);
+            plan = recordStore.planQuery(QUERY);
+        }
+        for (int i = 0; i < 2; i++) {
+            try (FDBRecordContext context = openContext()) {
+                openStore(context);
+                // A new array each time, with the same contents.
+                final EvaluationContext evaluationContext = EvaluationContext.forBinding("bytes", new byte[] {1, 2, 3});
+                assertEquals(5, recordStore.executeQuery(plan, evaluationContext, null, ExecuteProperties.SERIAL_EXECUTE).getCount().join().intValue());
+            }
+        }
+        assertEquals(1, cache.size());
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+    }
+
+    @Test
+    public void cachedByByteStringParameterValue() throws Exception {
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("ByteStringRecord")
+                .setFilter(Query.field("secondary").equalsParameter("bytes"))
+                .build();
+        try (FDBRecordContext context = openContext()) {
+            openBytesStore(context);
+            for (int i = 0; i < 4; i++) {
+                recordStore.saveRecord(TestRecordsBytesProto.ByteStringRecord.newBuilder()
+                        .setPkey(ByteString.copyFrom(new byte[] {(byte)i}))
+                        .setSecondary(ByteString.copyFrom(new byte[] {(byte)(i & 1), 2, 3}))
+                        .build());
+            }
+            commit(context);
+        }
+        for (int i = 0; i < 3; i++) {
+            try (FDBRecordContext context = openContext()) {
+                openBytesStore(context);
+                // A new array each time, with the same contents except for the last.
+                final byte[] secondary = new byte[] {(byte)(i / 2), 2, 3};
+                final List<ByteString> pkeys = recordStore.executeQuery(recordStore.planQuery(query), EvaluationContext.forBinding("bytes", secondary), null, ExecuteProperties.SERIAL_EXECUTE)
+                        .map(rec -> TestRecordsBytesProto.ByteStringRecord.newBuilder().mergeFrom(rec.getRecord()).getPkey())
+                        .asList().join();
+                assertEquals(i < 2 ?
+                             Arrays.asList(ByteString.copyFrom(new byte[] {0}), ByteString.copyFrom(new byte[] {2})) :
+                             Arrays.asList(ByteString.copyFrom(new byte[] {1}), ByteString.copyFrom(new byte[] {3})),
+                        pkeys);
+            }
+        }
+        assertEquals(2, cache.size());
+        assertEquals(1, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_HIT));
+        assertEquals(2, timer.getCount(FDBStoreTimer.Counts.QUERY_RESULT_CACHE_MISS));
+    }
+
+    @Test
+    public void notCachedWithTypedSerializer() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try (FDBRecordContext context = openContext()) {
+                openStore(context);
+                final FDBTypedRecordStore<TestRecords1Proto.MyOtherRecord> typedStore = recordStore.getTypedRecordStore(FDBTypedRecordStoreTest.OTHER_SERIALIZER);
+                assertEquals(0, typedStore.executeQuery(RecordQuery.newBuilder().setRecordType("MyOtherRecord").build()).getCount().join().intValue());
+            }
+        }
+        assertEquals(0, cache.size());
+    }
+}
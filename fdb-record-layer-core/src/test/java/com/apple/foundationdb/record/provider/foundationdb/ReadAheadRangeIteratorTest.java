@@ -0,0 +1,199 @@
+/*
+ * ReadAheadRangeIteratorTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.KeySelector;
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.tuple.ByteArrayUtil;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link ReadAheadRangeIterator}, reading from a list in memory instead of a transaction.
+ */
+public class ReadAheadRangeIteratorTest {
+    private static final KeySelector BEGIN = KeySelector.firstGreaterOrEqual(new byte[0]);
+    private static final KeySelector END = KeySelector.firstGreaterOrEqual(new byte[] {(byte)0xFF});
+
+    @Nonnull
+    private static List<KeyValue> keyValues(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new KeyValue(Tuple.from(i).pack(), Tuple.from("value", i).pack()))
+                .collect(Collectors.toList());
+    }
+
+    @Nonnull
+    private static List<KeyValue> readAll(@Nonnull ReadAheadRangeIterator iterator) {
+        final List<KeyValue> result = new ArrayList<>();
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void readsInOrder() {
+        final List<KeyValue> data = keyValues(1000);
+        for (boolean reverse : new boolean[] {false, true}) {
+            final ListReader reader = new ListReader(data, true);
+            final ReadAheadRangeIterator iterator = new ReadAheadRangeIterator(reader, BEGIN, END,
+                    ReadTransaction.ROW_LIMIT_UNLIMITED, reverse, 2, null, Runnable::run);
+            final List<KeyValue> expected = new ArrayList<>(data);
+            if (reverse) {
+                Collections.reverse(expected);
+            }
+            assertEquals(expected, readAll(iterator));
+            assertTrue(reader.reads.size() > 1, "should read in more than one chunk");
+        }
+    }
+
+    @Test
+    public void stopsAtLimit() {
+        final List<KeyValue> data = keyValues(100);
+        for (boolean reverse : new boolean[] {false, true}) {
+            final ListReader reader = new ListReader(data, true);
+            final ReadAheadRangeIterator iterator = new ReadAheadRangeIterator(reader, BEGIN, END,
+                    25, reverse, 3, null, Runnable::run);
+            final List<KeyValue> expected = new ArrayList<>(data);
+            if (reverse) {
+                Collections.reverse(expected);
+            }
+            assertEquals(expected.subList(0, 25), readAll(iterator));
+            // No chunk, even one read ahead, asks for rows past the limit.
+            assertEquals(25, reader.reads.stream().mapToInt(read -> read.rows).sum());
+        }
+    }
+
+    @Test
+    public void readsAheadOnlyOnceConsuming() {
+        final ListReader reader = new ListReader(keyValues(1000), false);
+        final ReadAheadRangeIterator iterator = new ReadAheadRangeIterator(reader, BEGIN, END,
+                ReadTransaction.ROW_LIMIT_UNLIMITED, false, 2, null, Runnable::run);
+        assertEquals(0, reader.reads.size(), "nothing should be read until asked");
+
+        final CompletableFuture<Boolean> hasNext = iterator.onHasNext();
+        assertEquals(1, reader.reads.size());
+        reader.complete(0);
+        assertTrue(hasNext.join());
+        assertEquals(1, reader.reads.size(), "nothing should be read ahead until an element is taken");
+
+        iterator.next();
+        // The second chunk is read right away, and the third once the second arrives.
+        assertEquals(2, reader.reads.size());
+        reader.complete(1);
+        assertEquals(3, reader.reads.size());
+    }
+
+    @Test
+    public void stopsReadingWhenCancelled() {
+        final ListReader reader = new ListReader(keyValues(1000), false);
+        final ReadAheadRangeIterator iterator = new ReadAheadRangeIterator(reader, BEGIN, END,
+                ReadTransaction.ROW_LIMIT_UNLIMITED, false, 3, null, Runnable::run);
+        final CompletableFuture<Boolean> hasNext = iterator.onHasNext();
+        reader.complete(0);
+        assertTrue(hasNext.join());
+        iterator.next();
+        assertEquals(2, reader.reads.size());
+
+        iterator.cancel();
+        reader.complete(1);
+        assertEquals(2, reader.reads.size(), "no chunks should be read after cancel");
+    }
+
+    // Reads from a sorted list of key-values. The selectors passed in are either those given to the iterator, whose keys
+    // are not in the list, or ones after the last key of an earlier chunk, whose keys are.
+    private static class ListReader implements ReadAheadRangeIterator.ChunkReader {
+        @Nonnull
+        private final List<KeyValue> data;
+        private final boolean completeImmediately;
+        @Nonnull
+        private final List<Read> reads = new ArrayList<>();
+
+        ListReader(@Nonnull List<KeyValue> data, boolean completeImmediately) {
+            this.data = data;
+            this.completeImmediately = completeImmediately;
+        }
+
+        @Override
+        public CompletableFuture<List<KeyValue>> read(@Nonnull KeySelector begin, @Nonnull KeySelector end, int limit, boolean reverse) {
+            final Read read = new Read(begin, end, limit, reverse);
+            reads.add(read);
+            if (completeImmediately) {
+                complete(reads.size() - 1);
+            }
+            return read.future;
+        }
+
+        void complete(int readIndex) {
+            final Read read = reads.get(readIndex);
+            // A begin key from the list is just after an earlier chunk; an end key is always exclusive.
+            int from = lowerBound(read.begin.getKey());
+            if (from < data.size() && ByteArrayUtil.compareUnsigned(data.get(from).getKey(), read.begin.getKey()) == 0) {
+                from++;
+            }
+            final int to = lowerBound(read.end.getKey());
+            final List<KeyValue> range = new ArrayList<>(data.subList(from, Math.max(from, to)));
+            if (read.reverse) {
+                Collections.reverse(range);
+            }
+            read.future.complete(range.subList(0, Math.min(read.rows, range.size())));
+        }
+
+        private int lowerBound(@Nonnull byte[] key) {
+            int index = 0;
+            while (index < data.size() && ByteArrayUtil.compareUnsigned(data.get(index).getKey(), key) < 0) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    private static class Read {
+        @Nonnull
+        private final KeySelector begin;
+        @Nonnull
+        private final KeySelector end;
+        private final int rows;
+        private final boolean reverse;
+        @Nonnull
+        private final CompletableFuture<List<KeyValue>> future = new CompletableFuture<>();
+
+        Read(@Nonnull KeySelector begin, @Nonnull KeySelector end, int rows, boolean reverse) {
+            this.begin = begin;
+            this.end = end;
+            this.rows = rows;
+            this.reverse = reverse;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * SlowQueryLogTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.record.Bindings;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreArgumentException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.test.Tags;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SlowQueryLog}.
+ */
+@Tag(Tags.RequiresFDB)
+public class SlowQueryLogTest extends FDBRecordStoreTestBase {
+
+    @AfterEach
+    public void clearSlowQueryLog() {
+        fdb.setSlowQueryLog(null);
+    }
+
+    private void saveRecords() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            for (int i = 0; i < 20; i++) {
+                recordStore.saveRecord(TestRecords1Proto.MySimpleRecord.newBuilder()
+                        .setRecNo(i)
+                        .setStrValueIndexed((i & 1) == 1 ? "odd" : "even")
+                        .setNumValue3Indexed(i % 5)
+                        .build());
+            }
+            commit(context);
+        }
+    }
+
+    @Test
+    public void recordsSlowQuery() throws Exception {
+        saveRecords();
+        final List<SlowQueryLog.Entry> entries = new ArrayList<>();
+        fdb.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, 1.0, entries::add));
+
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        final RecordQueryPlan plan;
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            plan = recordStore.planQuery(query);
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(query, null,
+                    ExecuteProperties.newBuilder().setReturnedRowLimit(4).build())) {
+                assertEquals(4, (int)cursor.getCount().join());
+            }
+        }
+
+        assertEquals(1, entries.size());
+        final SlowQueryLog.Entry entry = entries.get(0);
+        assertEquals(plan.planHash(), entry.getPlanHash());
+        assertEquals(plan.toString(), entry.getPlan());
+        assertEquals("{}", entry.getBindingsShape());
+        assertEquals(4, entry.getRowsReturned());
+        assertEquals(4, entry.getKeysRead());
+        assertTrue(entry.getBytesRead() > 0);
+        assertTrue(entry.getPlanningTimeNanos() > 0);
+        assertEquals(RecordCursor.NoNextReason.RETURN_LIMIT_REACHED, entry.getNoNextReason());
+        assertThat(entry.toLogMessage(), containsString("plan_hash=\"" + plan.planHash() + "\""));
+    }
+
+    @Test
+    public void recordsBindingsShape() throws Exception {
+        saveRecords();
+        final List<SlowQueryLog.Entry> entries = new ArrayList<>();
+        fdb.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, 1.0, entries::add));
+
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").in("values"))
+                .build();
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            final RecordQueryPlan plan = recordStore.planQuery(query);
+            final EvaluationContext evaluationContext = EvaluationContext.forBindings(Bindings.newBuilder()
+                    .set("values", Arrays.asList(1, 3)).build());
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, evaluationContext, null, ExecuteProperties.SERIAL_EXECUTE)) {
+                assertEquals(8, (int)cursor.getCount().join());
+            }
+        }
+
+        assertEquals(1, entries.size());
+        assertEquals("{values: ArrayList[2]}", entries.get(0).getBindingsShape());
+        assertEquals(0L, entries.get(0).getPlanningTimeNanos());
+        assertEquals(RecordCursor.NoNextReason.SOURCE_EXHAUSTED, entries.get(0).getNoNextReason());
+    }
+
+    @Test
+    public void skipsFastAndUnsampledQueries() throws Exception {
+        saveRecords();
+        final List<SlowQueryLog.Entry> entries = new ArrayList<>();
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("str_value_indexed").equalsValue("odd"))
+                .build();
+
+        fdb.setSlowQueryLog(new SlowQueryLog(1, TimeUnit.HOURS, 1.0, entries::add));
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(10, (int)recordStore.executeQuery(query).getCount().join());
+        }
+        assertEquals(0, entries.size());
+
+        fdb.setSlowQueryLog(new SlowQueryLog(0, TimeUnit.MILLISECONDS, 0.0, entries::add));
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            assertEquals(10, (int)recordStore.executeQuery(query).getCount().join());
+        }
+        assertEquals(0, entries.size());
+    }
+
+    @Test
+    public void invalidSampleRate() {
+        assertThrows(RecordCoreArgumentException.class, () -> new SlowQueryLog(10, TimeUnit.MILLISECONDS, 1.5, entry -> { }));
+        assertThrows(RecordCoreArgumentException.class, () -> new SlowQueryLog(-1, TimeUnit.MILLISECONDS));
+    }
+}
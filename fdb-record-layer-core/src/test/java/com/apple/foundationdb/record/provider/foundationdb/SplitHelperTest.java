@@ -39,6 +39,7 @@ import com.google.common.collect.Lists;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
@@ -375,6 +376,53 @@ public class SplitHelperTest extends FDBRecordStoreTestBase {
         }
     }
 
+    private SplitHelper.SizeInfo saveOnlyChangedSplits(@Nonnull FDBRecordContext context, @Nonnull Tuple key, byte[] serialized, @Nullable FDBRecordVersion version,
+                                                       @Nonnull FDBStoredSizes previousSizeInfo, @Nonnull byte[] previousSerialized) {
+        final SplitHelper.SizeInfo sizeInfo = new SplitHelper.SizeInfo();
+        SplitHelper.saveWithSplit(context, subspace, key, serialized, version, true, false, true, previousSizeInfo, previousSerialized, sizeInfo);
+        FDBRawRecord rawRecord = SplitHelper.loadWithSplit(context.ensureActive(), context, subspace, key, true, false, null).join();
+        assertNotNull(rawRecord);
+        assertArrayEquals(serialized, rawRecord.getRawRecord());
+        assertEquals(sizeInfo.getKeyCount(), rawRecord.getKeyCount());
+        assertEquals(sizeInfo.getKeySize(), rawRecord.getKeySize());
+        assertEquals(sizeInfo.getValueSize(), rawRecord.getValueSize());
+        assertEquals(version, rawRecord.getVersion());
+        return sizeInfo;
+    }
+
+    @Test
+    public void saveOnlyChangedSplits() throws Exception {
+        final byte[] globalVersion = "chan_ged__".getBytes(Charsets.US_ASCII);
+        final Tuple key = Tuple.from(1492L);
+        final byte[] changedInSecondSplit = Arrays.copyOf(VERY_LONG_STRING, VERY_LONG_STRING.length);
+        changedInSecondSplit[SplitHelper.SPLIT_RECORD_SIZE + 10] ^= 0x20;
+        final byte[] longer = ByteArrayUtil.join(changedInSecondSplit, HUMPTY_DUMPTY);
+        final int splits = (VERY_LONG_STRING.length - 1) / SplitHelper.SPLIT_RECORD_SIZE + 1;
+        try (FDBRecordContext context = openContext()) {
+            FDBStoredSizes sizes1 = saveWithSplit(context, key, VERY_LONG_STRING, true, false);
+
+            // Only the second split differs
+            timer.reset();
+            FDBStoredSizes sizes2 = saveOnlyChangedSplits(context, key, changedInSecondSplit, null, sizes1, VERY_LONG_STRING);
+            assertEquals(splits - 1, timer.getCount(FDBStoreTimer.Counts.SAVE_RECORD_UNCHANGED_SPLIT));
+
+            // Growing only rewrites the (previously) last split
+            timer.reset();
+            FDBStoredSizes sizes3 = saveOnlyChangedSplits(context, key, longer, FDBRecordVersion.complete(globalVersion, context.claimLocalVersion()), sizes2, changedInSecondSplit);
+            assertEquals(splits - 1, timer.getCount(FDBStoreTimer.Counts.SAVE_RECORD_UNCHANGED_SPLIT));
+
+            // Shrinking clears the splits past the end as well as the old version
+            timer.reset();
+            FDBStoredSizes sizes4 = saveOnlyChangedSplits(context, key, LONG_STRING, null, sizes3, longer);
+            assertEquals(1, timer.getCount(FDBStoreTimer.Counts.SAVE_RECORD_UNCHANGED_SPLIT));
+
+            // Becoming unsplit falls back to clearing everything
+            saveOnlyChangedSplits(context, key, SHORT_STRING, null, sizes4, LONG_STRING);
+
+            commit(context);
+        }
+    }
+
     @Nonnull
     private FDBStoredSizes writeDummyRecord(@Nonnull FDBRecordContext context, @Nonnull Tuple key, @Nullable FDBRecordVersion version, int splits, boolean omitUnsplitSuffix) {
         final Transaction tr = context.ensureActive();
@@ -0,0 +1,213 @@
+/*
+ * TopKIndexTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.provider.foundationdb;
+
+import com.apple.foundationdb.KeyValue;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.RecordMetaDataBuilder;
+import com.apple.foundationdb.record.ScanProperties;
+import com.apple.foundationdb.record.TestRecordsRankProto;
+import com.apple.foundationdb.record.TupleRange;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexOptions;
+import com.apple.foundationdb.record.metadata.IndexTypes;
+import com.apple.foundationdb.record.metadata.Key;
+import com.apple.foundationdb.record.metadata.MetaDataException;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.subspace.Subspace;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.test.Tags;
+import com.google.common.collect.ImmutableMap;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@code TOP_K} type indexes.
+ */
+@Tag(Tags.RequiresFDB)
+public class TopKIndexTest extends FDBRecordStoreTestBase {
+    private static final String INDEX_NAME = "top_scores_by_gender";
+
+    private static Index topKIndex(String k) {
+        return new Index(INDEX_NAME, Key.Expressions.field("score").groupBy(Key.Expressions.field("gender")),
+                IndexTypes.TOP_K, ImmutableMap.of(IndexOptions.TOP_K_OPTION, k));
+    }
+
+    protected void openRecordStore(FDBRecordContext context) throws Exception {
+        RecordMetaDataBuilder metaDataBuilder = RecordMetaData.newBuilder().setRecords(TestRecordsRankProto.getDescriptor());
+        metaDataBuilder.addIndex("BasicRankedRecord", topKIndex("2"));
+        createOrOpenRecordStore(context, metaDataBuilder.getRecordMetaData());
+    }
+
+    static final Object[][] RECORDS = new Object[][] {
+        { "achilles", 100, "M" },
+        { "helen", 200, "F" },
+        { "hector", 75, "M" },
+        { "penelope", 200, "F" },
+        { "laodice", 300, "F" }
+    };
+
+    private void saveRecord(String name, int score, String gender) {
+        recordStore.saveRecord(TestRecordsRankProto.BasicRankedRecord.newBuilder()
+                .setName(name)
+                .setScore(score)
+                .setGender(gender)
+                .build());
+    }
+
+    @BeforeEach
+    public void loadRecords() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            for (Object[] rec : RECORDS) {
+                saveRecord((String) rec[0], (Integer) rec[1], (String) rec[2]);
+            }
+            commit(context);
+        }
+    }
+
+    // The names of the records kept as the top entries for the given gender, best first.
+    private List<String> topEntries(String gender) {
+        final Subspace subspace = recordStore.indexSubspace(recordStore.getRecordMetaData().getIndex(INDEX_NAME));
+        final List<String> names = new ArrayList<>();
+        for (KeyValue kv : recordStore.ensureContextActive().getRange(subspace.range(Tuple.from(gender)), 0, true).asList().join()) {
+            names.add(subspace.unpack(kv.getKey()).getString(2));
+        }
+        return names;
+    }
+
+    private List<String> scanIndex(String gender, int limit, @Nullable byte[] continuation, List<byte[]> continuations) {
+        final ScanProperties scanProperties = new ScanProperties(ExecuteProperties.newBuilder().setReturnedRowLimit(limit).build(), true);
+        final List<String> names = new ArrayList<>();
+        try (RecordCursor<IndexEntry> cursor = recordStore.scanIndex(recordStore.getRecordMetaData().getIndex(INDEX_NAME),
+                IndexScanType.BY_VALUE, TupleRange.allOf(Tuple.from(gender)), continuation, scanProperties)) {
+            while (cursor.hasNext()) {
+                names.add(cursor.next().getKey().getString(2));
+            }
+            continuations.add(cursor.getContinuation());
+        }
+        return names;
+    }
+
+    @Test
+    public void keepsTopEntries() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            assertEquals(Arrays.asList("laodice", "penelope"), topEntries("F"));
+            assertEquals(Arrays.asList("achilles", "hector"), topEntries("M"));
+        }
+    }
+
+    @Test
+    public void refillsAfterDelete() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            recordStore.deleteRecord(Tuple.from("laodice"));
+            assertEquals(Arrays.asList("penelope", "helen"), topEntries("F"));
+            recordStore.deleteRecord(Tuple.from("helen"));
+            assertEquals(Arrays.asList("penelope"), topEntries("F"));
+            commit(context);
+        }
+    }
+
+    @Test
+    public void updatesScores() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            saveRecord("paris", 50, "M");
+            assertEquals(Arrays.asList("achilles", "hector"), topEntries("M"));
+            saveRecord("hector", 500, "M");
+            assertEquals(Arrays.asList("hector", "achilles"), topEntries("M"));
+            saveRecord("achilles", 10, "M");
+            assertEquals(Arrays.asList("hector", "paris"), topEntries("M"));
+            saveRecord("helen", 400, "F");
+            assertEquals(Arrays.asList("helen", "laodice"), topEntries("F"));
+            commit(context);
+        }
+    }
+
+    @Test
+    public void scansPastTopEntries() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            final List<byte[]> continuations = new ArrayList<>();
+            assertEquals(Arrays.asList("laodice", "penelope"), scanIndex("F", 2, null, continuations));
+            assertEquals(Arrays.asList("helen"), scanIndex("F", 2, continuations.get(0), continuations));
+            assertEquals(Arrays.asList("laodice", "penelope", "helen"), scanIndex("F", 3, null, continuations));
+        }
+    }
+
+    @Test
+    public void sortAndLimit() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("BasicRankedRecord")
+                .setFilter(Query.field("gender").equalsValue("F"))
+                .setSort(Key.Expressions.field("score"), true)
+                .build();
+        try (FDBRecordContext context = openContext()) {
+            openRecordStore(context);
+            RecordQueryPlan plan = planner.plan(query);
+            assertThat(plan, indexScan(allOf(indexName(INDEX_NAME), bounds(hasTupleString("[[F],[F]]")))));
+            byte[] continuation = null;
+            final List<String> names = new ArrayList<>();
+            do {
+                try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, continuation,
+                        ExecuteProperties.newBuilder().setReturnedRowLimit(2).build())) {
+                    while (cursor.hasNext()) {
+                        names.add(TestRecordsRankProto.BasicRankedRecord.newBuilder().mergeFrom(cursor.next().getRecord()).getName());
+                    }
+                    continuation = cursor.getContinuation();
+                }
+            } while (continuation != null);
+            assertEquals(Arrays.asList("laodice", "penelope", "helen"), names);
+        }
+    }
+
+    @Test
+    public void invalidK() {
+        RecordMetaDataBuilder metaDataBuilder = RecordMetaData.newBuilder().setRecords(TestRecordsRankProto.getDescriptor());
+        metaDataBuilder.addIndex("BasicRankedRecord", topKIndex("none"));
+        assertThrows(MetaDataException.class, metaDataBuilder::getRecordMetaData);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * HashAggregateCursorTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.record.FunctionNames;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link HashAggregateCursor}.
+ */
+public class HashAggregateCursorTest {
+    // (group, value) in no particular order.
+    static final List<Tuple> entries = Arrays.asList(
+            Tuple.from("c", 3L), Tuple.from("a", 1L), Tuple.from("b", 5L),
+            Tuple.from("a", null), Tuple.from("c", 7L), Tuple.from("a", 2L));
+
+    private static RecordCursor<IndexEntry> newCursor(String function, @Nullable byte[] continuation, int innerLimit,
+                                                      int maxGroups, boolean reverse) {
+        return HashAggregateCursor.create(innerContinuation -> RecordCursor.fromList(entries, innerContinuation).limitRowsTo(innerLimit),
+                Collections::singletonList, 1, () -> AggregateAccumulator.forFunction(function), maxGroups, reverse, continuation);
+    }
+
+    private static List<Tuple> results(RecordCursor<IndexEntry> cursor) {
+        return cursor.asList().join().stream()
+                .map(entry -> entry.getKey().addAll(entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void aggregates() {
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 1L), Tuple.from("c", 2L)),
+                results(newCursor(FunctionNames.COUNT, null, Integer.MAX_VALUE, 10, false)));
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 5L), Tuple.from("c", 10L)),
+                results(newCursor(FunctionNames.SUM, null, Integer.MAX_VALUE, 10, false)));
+        assertEquals(Arrays.asList(Tuple.from("c", 7L), Tuple.from("b", 5L), Tuple.from("a", 2L)),
+                results(newCursor(FunctionNames.MAX, null, Integer.MAX_VALUE, 10, true)));
+        assertEquals(Arrays.asList(Tuple.from("a", 1.5), Tuple.from("b", 5.0), Tuple.from("c", 5.0)),
+                results(newCursor(FunctionNames.AVG, null, Integer.MAX_VALUE, 10, false)));
+    }
+
+    @Test
+    public void tooManyGroups() {
+        assertEquals(3, results(newCursor(FunctionNames.COUNT, null, Integer.MAX_VALUE, 3, false)).size());
+        CompletionException ex = assertThrows(CompletionException.class, () -> results(newCursor(FunctionNames.COUNT, null, Integer.MAX_VALUE, 2, false)));
+        assertThat(ex.getCause(), instanceOf(RecordCoreException.class));
+    }
+
+    @Test
+    public void continuations() {
+        // Nothing is returned until all the entries have been read.
+        RecordCursor<IndexEntry> cursor = newCursor(FunctionNames.SUM, null, 4, 10, false);
+        assertEquals(Collections.emptyList(), results(cursor));
+        assertEquals(RecordCursor.NoNextReason.RETURN_LIMIT_REACHED, cursor.getNoNextReason());
+        cursor = newCursor(FunctionNames.SUM, cursor.getContinuation(), 4, 10, false);
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 5L), Tuple.from("c", 10L)), results(cursor));
+        assertNull(cursor.getContinuation());
+
+        // Stopping while returning the groups resumes with the rest of them.
+        for (boolean reverse : Arrays.asList(false, true)) {
+            final List<Tuple> expected = results(newCursor(FunctionNames.MIN, null, Integer.MAX_VALUE, 10, reverse));
+            for (int limit = 1; limit <= entries.size(); limit++) {
+                final List<Tuple> results = new ArrayList<>();
+                byte[] continuation = null;
+                do {
+                    cursor = newCursor(FunctionNames.MIN, continuation, limit, 10, reverse).limitRowsTo(1);
+                    results.addAll(results(cursor));
+                    continuation = cursor.getContinuation();
+                } while (continuation != null);
+                assertEquals(expected, results, "limit " + limit);
+            }
+        }
+    }
+}
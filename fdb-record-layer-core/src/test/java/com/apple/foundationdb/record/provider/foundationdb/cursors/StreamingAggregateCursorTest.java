@@ -0,0 +1,117 @@
+/*
+ * StreamingAggregateCursorTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.cursors;
+
+import com.apple.foundationdb.record.FunctionNames;
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.tuple.Tuple;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link StreamingAggregateCursor} and {@link AggregateAccumulator}.
+ */
+public class StreamingAggregateCursorTest {
+    // (group, value) in order by group.
+    static final List<Tuple> entries = Arrays.asList(
+            Tuple.from("a", 1L), Tuple.from("a", 2L), Tuple.from("a", null),
+            Tuple.from("b", 5L),
+            Tuple.from("c", 3L), Tuple.from("c", 7L));
+
+    private static RecordCursor<IndexEntry> newCursor(String function, @Nullable byte[] continuation, int innerLimit) {
+        return StreamingAggregateCursor.create(innerContinuation -> RecordCursor.fromList(entries, innerContinuation).limitRowsTo(innerLimit),
+                Collections::singletonList, 1, () -> AggregateAccumulator.forFunction(function), continuation);
+    }
+
+    private static List<Tuple> results(RecordCursor<IndexEntry> cursor) {
+        return cursor.asList().join().stream()
+                .map(entry -> entry.getKey().addAll(entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void aggregates() {
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 1L), Tuple.from("c", 2L)),
+                results(newCursor(FunctionNames.COUNT, null, Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(Tuple.from("a", 2L), Tuple.from("b", 1L), Tuple.from("c", 2L)),
+                results(newCursor(FunctionNames.COUNT_NOT_NULL, null, Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 5L), Tuple.from("c", 10L)),
+                results(newCursor(FunctionNames.SUM, null, Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(Tuple.from("a", 1L), Tuple.from("b", 5L), Tuple.from("c", 3L)),
+                results(newCursor(FunctionNames.MIN, null, Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(Tuple.from("a", 2L), Tuple.from("b", 5L), Tuple.from("c", 7L)),
+                results(newCursor(FunctionNames.MAX_EVER, null, Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(Tuple.from("a", 1.5), Tuple.from("b", 5.0), Tuple.from("c", 5.0)),
+                results(newCursor(FunctionNames.AVG, null, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void ungrouped() {
+        RecordCursor<IndexEntry> cursor = StreamingAggregateCursor.create(innerContinuation -> RecordCursor.fromList(entries, innerContinuation),
+                entry -> Collections.singletonList(Tuple.from(entry.get(1))), 0,
+                () -> AggregateAccumulator.forFunction(FunctionNames.SUM), null);
+        assertEquals(Collections.singletonList(Tuple.from(18L)), results(cursor));
+        cursor = StreamingAggregateCursor.create(innerContinuation -> RecordCursor.fromList(Collections.<Tuple>emptyList(), innerContinuation),
+                Collections::singletonList, 0, () -> AggregateAccumulator.forFunction(FunctionNames.COUNT), null);
+        assertEquals(Collections.emptyList(), results(cursor));
+    }
+
+    @Test
+    public void continueMidGroup() {
+        // Stopping in the middle of the group of c returns b and saves what there is of c.
+        RecordCursor<IndexEntry> cursor = newCursor(FunctionNames.SUM, null, 5);
+        assertEquals(Arrays.asList(Tuple.from("a", 3L), Tuple.from("b", 5L)), results(cursor));
+        assertEquals(RecordCursor.NoNextReason.RETURN_LIMIT_REACHED, cursor.getNoNextReason());
+        cursor = newCursor(FunctionNames.SUM, cursor.getContinuation(), 5);
+        assertEquals(Collections.singletonList(Tuple.from("c", 10L)), results(cursor));
+        assertEquals(RecordCursor.NoNextReason.SOURCE_EXHAUSTED, cursor.getNoNextReason());
+        assertNull(cursor.getContinuation());
+
+        // Any limit, however small, gets the same results.
+        for (String function : Arrays.asList(FunctionNames.COUNT, FunctionNames.SUM, FunctionNames.MIN, FunctionNames.AVG)) {
+            final List<Tuple> expected = results(newCursor(function, null, Integer.MAX_VALUE));
+            for (int limit = 1; limit <= entries.size(); limit++) {
+                assertEquals(expected, resultsWithLimit(function, limit), function + " with limit " + limit);
+            }
+        }
+    }
+
+    private static List<Tuple> resultsWithLimit(String function, int innerLimit) {
+        final List<Tuple> results = new ArrayList<>();
+        byte[] continuation = null;
+        do {
+            RecordCursor<IndexEntry> cursor = newCursor(function, continuation, innerLimit);
+            results.addAll(results(cursor));
+            continuation = cursor.getContinuation();
+        } while (continuation != null);
+        return results;
+    }
+}
@@ -20,6 +20,7 @@
 
 package com.apple.foundationdb.record.provider.foundationdb.cursors;
 
+import com.apple.foundationdb.KeyValue;
 import com.apple.foundationdb.record.EndpointType;
 import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.IndexEntry;
@@ -38,8 +39,10 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreBase;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordStoreTestBase;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.provider.foundationdb.FDBStoredRecord;
+import com.apple.foundationdb.record.provider.foundationdb.KeyValueCursor;
 import com.apple.foundationdb.record.query.expressions.Comparisons;
 import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.subspace.Subspace;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.foundationdb.tuple.TupleHelpers;
 import com.apple.test.Tags;
@@ -60,6 +63,7 @@ import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 
 import static com.apple.foundationdb.record.TestHelpers.assertDiscardedAtMost;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 
@@ -318,6 +322,49 @@ public class UnionIntersectionTest extends FDBRecordStoreTestBase {
                 LongStream.range(0L, 100L).iterator());
     }
 
+    /**
+     * Union a dozen children, many of which share keys, and check that the result is in order, that equal keys from
+     * different children are returned only once, and that resuming from each continuation picks up every child where
+     * it left off.
+     */
+    @ValueSource(ints = {1, 2, 5, 7})
+    @ParameterizedTest(name = "manyChildrenUnionWithTies() [{0}]")
+    public void manyChildrenUnionWithTies(int limit) {
+        final int childCount = 12;
+        final List<List<Long>> elems = new ArrayList<>(childCount);
+        for (int i = 0; i < childCount; i++) {
+            final int step = i % 4 + 2;
+            final long offset = i / 4;
+            elems.add(LongStream.range(0L, 60L).filter(l -> l % step == offset).boxed().collect(Collectors.toList()));
+        }
+        final List<Long> expected = elems.stream().flatMap(List::stream).distinct().sorted().collect(Collectors.toList());
+        final List<Function<byte[], RecordCursor<Long>>> cursorFunctions = elems.stream()
+                .map(list -> (Function<byte[], RecordCursor<Long>>)(continuation -> RecordCursor.fromList(list, continuation).limitRowsTo(limit)))
+                .collect(Collectors.toList());
+
+        final List<Long> results = new ArrayList<>();
+        final List<Long> packedResults = new ArrayList<>();
+        byte[] continuation = null;
+        byte[] packedContinuation = null;
+        do {
+            final RecordCursor<Long> union = UnionCursor.create((Long l) -> Collections.singletonList(l), false, cursorFunctions, continuation, null)
+                    .limitRowsTo(limit + 1);
+            final RecordCursor<Long> packedUnion = UnionCursor.createWithPackedComparisonKey((Long l) -> Tuple.from(l).pack(), false, cursorFunctions, packedContinuation, null)
+                    .limitRowsTo(limit + 1);
+            while (union.hasNext()) {
+                results.add(union.next());
+            }
+            while (packedUnion.hasNext()) {
+                packedResults.add(packedUnion.next());
+            }
+            continuation = union.getContinuation();
+            packedContinuation = packedUnion.getContinuation();
+            assertArrayEquals(continuation, packedContinuation);
+        } while (continuation != null);
+        assertEquals(expected, results);
+        assertEquals(expected, packedResults);
+    }
+
     /**
      * Create cursors that correspond to union or intersection query and validate that using the custom comparison
      * key works.
@@ -362,6 +409,46 @@ public class UnionIntersectionTest extends FDBRecordStoreTestBase {
         }
     }
 
+    /**
+     * Create cursors that correspond to union or intersection query and validate that comparing packed
+     * comparison keys gives the same results.
+     */
+    @Test
+    public void indexScansByPackedPrimaryKey() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            final Subspace strValueSubspace = recordStore.indexSubspace(recordStore.getRecordMetaData().getIndex("MySimpleRecord$str_value_indexed")).subspace(Tuple.from("even"));
+            final Subspace numValue3Subspace = recordStore.indexSubspace(recordStore.getRecordMetaData().getIndex("MySimpleRecord$num_value_3_indexed")).subspace(Tuple.from(1));
+            final List<Function<byte[], RecordCursor<KeyValue>>> cursorFunctions = Arrays.asList(
+                    (byte[] leftContinuation) -> KeyValueCursor.Builder.withSubspace(strValueSubspace)
+                            .setContext(context).setContinuation(leftContinuation).setScanProperties(ScanProperties.FORWARD_SCAN).build(),
+                    (byte[] rightContinuation) -> KeyValueCursor.Builder.withSubspace(numValue3Subspace)
+                            .setContext(context).setContinuation(rightContinuation).setScanProperties(ScanProperties.FORWARD_SCAN).build());
+            // The packed primary key is the tail of each raw index key after the index value prefix, so it is compared without decoding.
+            final int strValuePrefixLength = strValueSubspace.getKey().length;
+            final int numValue3PrefixLength = numValue3Subspace.getKey().length;
+            final Function<KeyValue, byte[]> packedPrimaryKey = kv -> {
+                final byte[] key = kv.getKey();
+                final int prefixLength = strValueSubspace.contains(key) ? strValuePrefixLength : numValue3PrefixLength;
+                return Arrays.copyOfRange(key, prefixLength, key.length);
+            };
+
+            List<Long> recNos = IntersectionCursor.createWithPackedComparisonKey(packedPrimaryKey, false, cursorFunctions, null, recordStore.getTimer())
+                    .map(kv -> Tuple.fromBytes(packedPrimaryKey.apply(kv)).getLong(0))
+                    .asList()
+                    .get();
+            assertEquals(LongStream.range(0, 100).filter(i -> i % 2 == 0).filter(i -> i % 3 != 0).boxed().collect(Collectors.toList()), recNos);
+
+            recNos = UnionCursor.createWithPackedComparisonKey(packedPrimaryKey, false, cursorFunctions, null, recordStore.getTimer())
+                    .map(kv -> Tuple.fromBytes(packedPrimaryKey.apply(kv)).getLong(0))
+                    .asList()
+                    .get();
+            assertEquals(LongStream.range(0, 100).filter(i -> i % 2 == 0 || i % 3 != 0).boxed().collect(Collectors.toList()), recNos);
+
+            commit(context);
+        }
+    }
+
     private RecordCursor<FDBStoredRecord<Message>> scanRecordsBetween(Long start, Long end, byte[] continuation) {
         return recordStore.scanRecords(
                 start == null ? null : Tuple.from(start),
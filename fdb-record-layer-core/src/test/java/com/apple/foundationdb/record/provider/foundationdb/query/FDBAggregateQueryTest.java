@@ -0,0 +1,228 @@
+/*
+ * FDBAggregateQueryTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.provider.foundationdb.query;
+
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.FunctionNames;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
+import com.apple.foundationdb.record.metadata.IndexTypes;
+import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.test.Tags;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.apple.foundationdb.record.TestHelpers.assertDiscardedNone;
+import static com.apple.foundationdb.record.metadata.Key.Expressions.concatenateFields;
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.coveringIndexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hashAggregate;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.streamingAggregate;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for executing queries with an aggregate function.
+ * @see com.apple.foundationdb.record.query.plan.AggregateQueryPlanningTest
+ */
+@Tag(Tags.RequiresFDB)
+public class FDBAggregateQueryTest extends FDBRecordStoreQueryTestBase {
+    private static final RecordMetaDataHook AGGREGATE_INDEXES_HOOK = metaData -> {
+        metaData.addIndex("MySimpleRecord", new Index("count_by_str", new GroupingKeyExpression(field("str_value_indexed"), 0), IndexTypes.COUNT));
+        metaData.addIndex("MySimpleRecord", new Index("value3sum",
+                field("num_value_3_indexed").groupBy(concatenateFields("str_value_indexed", "num_value_2")), IndexTypes.SUM));
+    };
+
+    private static RecordQuery.Builder aggregateQuery(String function, GroupingKeyExpression operand) {
+        return RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setAggregate(new IndexAggregateFunction(function, operand, null));
+    }
+
+    /**
+     * Verify that a count for a single group is read from the count index.
+     */
+    @Test
+    public void countFromIndex() throws Exception {
+        complexQuerySetup(AGGREGATE_INDEXES_HOOK);
+        RecordQuery query = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(EmptyKeyExpression.EMPTY, 0))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(indexName("count_by_str"))));
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, AGGREGATE_INDEXES_HOOK);
+            int i = 0;
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan)) {
+                while (cursor.hasNext()) {
+                    FDBQueriedRecord<Message> rec = cursor.next();
+                    TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                    myrec.mergeFrom(rec.getRecord());
+                    assertEquals("even", myrec.getStrValueIndexed());
+                    assertEquals(50, rec.getIndexEntry().getValue().getLong(0));
+                    i++;
+                }
+            }
+            assertEquals(1, i);
+            assertDiscardedNone(context);
+        }
+    }
+
+    /**
+     * Verify that sums within a group are read from the sum index grouped by more fields.
+     */
+    @Test
+    public void sumFromIndex() throws Exception {
+        complexQuerySetup(AGGREGATE_INDEXES_HOOK);
+        RecordQuery query = aggregateQuery(FunctionNames.SUM, field("num_value_3_indexed").groupBy(field("num_value_2")))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(indexName("value3sum"))));
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, AGGREGATE_INDEXES_HOOK);
+            int i = 0;
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan)) {
+                while (cursor.hasNext()) {
+                    FDBQueriedRecord<Message> rec = cursor.next();
+                    TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                    myrec.mergeFrom(rec.getRecord());
+                    assertEquals("even", myrec.getStrValueIndexed());
+                    assertEquals(i, myrec.getNumValue2());
+                    int sum = 0;
+                    for (int j = 0; j < 100; j += 2) {
+                        if (j % 3 == myrec.getNumValue2()) {
+                            sum += j % 5;
+                        }
+                    }
+                    assertEquals(sum, rec.getIndexEntry().getValue().getLong(0));
+                    i++;
+                }
+            }
+            assertEquals(3, i);
+            assertDiscardedNone(context);
+        }
+    }
+
+    /**
+     * Verify that an aggregate without a matching index is computed from the records, across continuations.
+     */
+    @Test
+    public void streamingFromRecords() throws Exception {
+        complexQuerySetup(AGGREGATE_INDEXES_HOOK);
+        RecordQuery query = aggregateQuery(FunctionNames.MAX, field("num_value_unique").groupBy(field("num_value_3_indexed")))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, streamingAggregate(indexScan(indexName("MySimpleRecord$num_value_3_indexed"))));
+
+        Map<Long, Long> maxes = new HashMap<>();
+        byte[] continuation = null;
+        do {
+            try (FDBRecordContext context = openContext()) {
+                openSimpleRecordStore(context, AGGREGATE_INDEXES_HOOK);
+                // Groups are resumed partway through.
+                ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setScannedRecordsLimit(7).build();
+                try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, continuation, executeProperties)) {
+                    while (cursor.hasNext()) {
+                        FDBQueriedRecord<Message> rec = cursor.next();
+                        TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                        myrec.mergeFrom(rec.getRecord());
+                        assertNull(maxes.put((long)myrec.getNumValue3Indexed(), rec.getIndexEntry().getValue().getLong(0)));
+                    }
+                    continuation = cursor.getContinuation();
+                }
+            }
+        } while (continuation != null);
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            // The smallest rec_no with each remainder has the largest num_value_unique.
+            expected.put((long)i, 1000L - i);
+        }
+        assertEquals(expected, maxes);
+    }
+
+    /**
+     * Verify that an aggregate whose groups cannot be read in order is computed from the records in a hash table.
+     */
+    @Test
+    public void hashFromRecords() throws Exception {
+        complexQuerySetup(AGGREGATE_INDEXES_HOOK);
+        RecordQuery query = aggregateQuery(FunctionNames.AVG, field("num_value_3_indexed").groupBy(field("num_value_2")))
+                .setFilter(Query.field("str_value_indexed").equalsValue("odd"))
+                .build();
+        ((RecordQueryPlanner)planner).setMaxHashAggregateGroups(10);
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, hashAggregate(indexScan(indexName("MySimpleRecord$str_value_indexed"))));
+
+        List<Long> groups = new ArrayList<>();
+        Map<Long, Double> averages = new HashMap<>();
+        byte[] continuation = null;
+        do {
+            try (FDBRecordContext context = openContext()) {
+                openSimpleRecordStore(context, AGGREGATE_INDEXES_HOOK);
+                ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setScannedRecordsLimit(7).build();
+                try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, continuation, executeProperties)) {
+                    while (cursor.hasNext()) {
+                        FDBQueriedRecord<Message> rec = cursor.next();
+                        TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                        myrec.mergeFrom(rec.getRecord());
+                        groups.add((long)myrec.getNumValue2());
+                        averages.put((long)myrec.getNumValue2(), rec.getIndexEntry().getValue().getDouble(0));
+                    }
+                    continuation = cursor.getContinuation();
+                }
+            }
+        } while (continuation != null);
+        assertEquals(Arrays.asList(0L, 1L, 2L), groups);
+        for (long group : groups) {
+            int sum = 0;
+            int count = 0;
+            for (int i = 1; i < 100; i += 2) {
+                if (i % 3 == group) {
+                    sum += i % 5;
+                    count++;
+                }
+            }
+            assertEquals((double)sum / count, averages.get(group), 1e-9);
+        }
+    }
+}
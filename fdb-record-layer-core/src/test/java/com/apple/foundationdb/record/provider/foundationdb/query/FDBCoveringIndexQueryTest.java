@@ -29,6 +29,7 @@ import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.apple.foundationdb.record.metadata.Key;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
 import com.apple.foundationdb.record.query.RecordQuery;
 import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
@@ -53,6 +54,7 @@ import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.coveri
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasNoDescendant;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexEntryFilter;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
@@ -65,6 +67,7 @@ import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -181,6 +184,43 @@ public class FDBCoveringIndexQueryTest extends FDBRecordStoreQueryTestBase {
         assertEquals(-1408807323, plan.planHash());
     }
 
+    /**
+     * Verify that a filter that the index scan does not satisfy can still be applied to the index entries of a
+     * covering index, so that no records are loaded at all.
+     */
+    @Test
+    public void coveringWithIndexEntryFilter() throws Exception {
+        complexQuerySetup(null);
+
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").notEquals(1))
+                .setSort(field("num_value_3_indexed"))
+                .setRequiredResults(Collections.singletonList(field("num_value_3_indexed")))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexEntryFilter(equalTo(query.getFilter()),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded()))))));
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            int i = 0;
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan)) {
+                while (cursor.hasNext()) {
+                    FDBQueriedRecord<Message> rec = cursor.next();
+                    TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                    myrec.mergeFrom(rec.getRecord());
+                    assertNotEquals(1, myrec.getNumValue3Indexed());
+                    assertFalse(myrec.hasNumValue2());
+                    i++;
+                }
+            }
+            assertEquals(80, i);
+            assertDiscardedNone(context);
+            assertEquals(20, context.getTimer().getCount(FDBStoreTimer.Counts.QUERY_INDEX_ENTRY_DISCARDED));
+        }
+    }
+
     /**
      * Verify that an index can be covering if more than one field is required and they are in the key.
      */
@@ -490,9 +530,7 @@ public class FDBCoveringIndexQueryTest extends FDBRecordStoreQueryTestBase {
                 .setFilter(Query.field("str_value_indexed").equalsValue("even"))
                 .setRequiredResults(Arrays.asList(field("str_value_indexed"), field("num_value_2")))
                 .build();
-        // This is here since the main planner doesn't currently support planning aggregates, so it's basically a
-        // separate "mini-planner".
-        // TODO: Support aggregate planning in the main query planner (https://github.com/FoundationDB/fdb-record-layer/issues/14)
+        // This plans a covering scan of a specific aggregate index; FDBAggregateQueryTest covers queries with an aggregate function.
         RecordQueryPlan plan = ((RecordQueryPlanner) planner).planCoveringAggregateIndex(query, "value3sum");
 
         try (FDBRecordContext context = openContext()) {
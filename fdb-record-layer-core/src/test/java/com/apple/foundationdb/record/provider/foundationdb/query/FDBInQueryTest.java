@@ -21,10 +21,12 @@
 package com.apple.foundationdb.record.provider.foundationdb.query;
 
 import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.IndexScanType;
 import com.apple.foundationdb.record.RecordCoreException;
 import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.TestHelpers;
+import com.apple.foundationdb.record.TestRecords1Proto;
 import com.apple.foundationdb.record.TestRecordsEnumProto;
 import com.apple.foundationdb.record.metadata.Index;
 import com.apple.foundationdb.record.metadata.IndexTypes;
@@ -36,6 +38,7 @@ import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.record.query.RecordQuery;
 import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.test.Tags;
 import com.google.protobuf.Message;
@@ -62,7 +65,9 @@ import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.inValu
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScanType;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.multiRangeIndexScan;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.primaryKeyDistinct;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.rangeBounds;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.scan;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.union;
@@ -73,6 +78,7 @@ import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.any;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
@@ -238,6 +244,81 @@ public class FDBInQueryTest extends FDBRecordStoreQueryTestBase {
                 TestHelpers::assertDiscardedNone));
     }
 
+    /**
+     * Verify that an IN against a long list with an index is implemented as a single index scan of multiple ranges,
+     * which returns records in index order and can be resumed.
+     */
+    @Test
+    public void testInQueryIndexMultiRange() throws Exception {
+        complexQuerySetup(NO_HOOK);
+        // Mostly values that are not present, in no particular order, and a few duplicates.
+        List<Integer> ls = new ArrayList<>();
+        for (int i = 0; i < RecordQueryPlanner.DEFAULT_MULTI_RANGE_IN_THRESHOLD; i++) {
+            ls.add(((i * 37) % 200) + 2);
+        }
+        ls.add(4);
+        ls.add(2);
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").in(ls))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, multiRangeIndexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"),
+                rangeBounds(hasTupleString("[EQUALS $__in_num_value_3_indexed__0]")))));
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, NO_HOOK);
+            for (int limit = 7; limit <= 70; limit += 21) {
+                List<Integer> values = new ArrayList<>();
+                byte[] continuation = null;
+                do {
+                    try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, continuation,
+                            ExecuteProperties.newBuilder().setReturnedRowLimit(limit).build())) {
+                        while (cursor.hasNext()) {
+                            TestRecords1Proto.MySimpleRecord.Builder myrec = TestRecords1Proto.MySimpleRecord.newBuilder();
+                            myrec.mergeFrom(cursor.next().getRecord());
+                            values.add(myrec.getNumValue3Indexed());
+                        }
+                        continuation = cursor.getContinuation();
+                    }
+                } while (continuation != null);
+                assertEquals(40, values.size());
+                assertThat(values.subList(0, 20), everyItem(is(2)));
+                assertThat(values.subList(20, 40), everyItem(is(4)));
+            }
+            TestHelpers.assertDiscardedNone(context);
+        }
+    }
+
+    /**
+     * Verify that an IN (with parameter) with an index is implemented as a single index scan of multiple ranges when
+     * the planner is told to always do so.
+     */
+    @Test
+    public void testInQueryParameterMultiRange() throws Exception {
+        complexQuerySetup(NO_HOOK);
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").in("valueThrees"))
+                .setSort(field("num_value_3_indexed"), true)
+                .build();
+        ((RecordQueryPlanner) planner).setMultiRangeInThreshold(1);
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, multiRangeIndexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"),
+                rangeBounds(hasTupleString("[EQUALS $__in_num_value_3_indexed__0]")))));
+        assertTrue(plan.isReverse());
+        List<Integer> values = new ArrayList<>();
+        int count = querySimpleRecordStore(NO_HOOK, plan,
+                () -> EvaluationContext.forBinding("valueThrees", asList(1, 4, 3, 1)),
+                myrec -> values.add(myrec.getNumValue3Indexed()),
+                TestHelpers::assertDiscardedNone);
+        assertEquals(60, count);
+        List<Integer> sorted = new ArrayList<>(values);
+        sorted.sort(Collections.reverseOrder());
+        assertEquals(sorted, values);
+        assertEquals(new HashSet<>(asList(1, 3, 4)), new HashSet<>(values));
+    }
+
     /**
      * Verify that an IN against an unsorted list with an index is not implemented as an IN JOIN when the query sort is
      * not by the field with an IN filter.
@@ -0,0 +1,110 @@
+/*
+ * FDBLazyRecordQueryTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.provider.foundationdb.query;
+
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.provider.common.GeneratedMessageRecordSerializer;
+import com.apple.foundationdb.record.provider.common.LazyRecordMessage;
+import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
+import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.test.Tags;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link com.apple.foundationdb.record.provider.foundationdb.FDBRecordStore#executeQueryWithLazyRecords}.
+ */
+@Tag(Tags.RequiresFDB)
+public class FDBLazyRecordQueryTest extends FDBRecordStoreQueryTestBase {
+    private static final RecordQuery QUERY = RecordQuery.newBuilder()
+            .setRecordType("MySimpleRecord")
+            .setFilter(Query.and(
+                    Query.field("str_value_indexed").equalsValue("even"),
+                    Query.field("num_value_2").equalsValue(1)))
+            .setSort(field("str_value_indexed"))
+            .build();
+
+    private List<Message> execute(boolean lazy) {
+        final List<Message> records = new ArrayList<>();
+        try (RecordCursor<FDBQueriedRecord<Message>> cursor = lazy ?
+                recordStore.executeQueryWithLazyRecords(QUERY, null, ExecuteProperties.SERIAL_EXECUTE) :
+                recordStore.executeQuery(QUERY)) {
+            while (cursor.hasNext()) {
+                records.add(cursor.next().getRecord());
+            }
+        }
+        return records;
+    }
+
+    @Test
+    public void lazyResults() throws Exception {
+        complexQuerySetup(NO_HOOK);
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            final List<Message> lazyRecords = execute(true);
+            final List<Message> records = execute(false);
+            assertEquals(16, lazyRecords.size());
+            for (int i = 0; i < lazyRecords.size(); i++) {
+                assertThat(lazyRecords.get(i), instanceOf(LazyRecordMessage.class));
+                final LazyRecordMessage lazy = (LazyRecordMessage)lazyRecords.get(i);
+                // Only the fields the query needed have been looked at.
+                assertFalse(lazy.isMaterialized());
+                final TestRecords1Proto.MySimpleRecord record = TestRecords1Proto.MySimpleRecord.newBuilder()
+                        .mergeFrom(records.get(i)).build();
+                assertEquals(record.getRecNo(), lazy.getField(lazy.getDescriptorForType().findFieldByName("rec_no")));
+                assertFalse(lazy.isMaterialized());
+                assertEquals(record, TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(lazy).build());
+                assertTrue(lazy.isMaterialized());
+            }
+        }
+    }
+
+    @Test
+    public void notLazyWithOtherSerializer() throws Exception {
+        complexQuerySetup(NO_HOOK);
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            recordStore = recordStore.asBuilder().setSerializer(GeneratedMessageRecordSerializer.instance()).open();
+            final List<Message> records = execute(true);
+            assertEquals(16, records.size());
+            for (Message record : records) {
+                assertThat(record, not(instanceOf(LazyRecordMessage.class)));
+            }
+        }
+    }
+}
@@ -20,30 +20,44 @@
 
 package com.apple.foundationdb.record.provider.foundationdb.query;
 
+import com.apple.foundationdb.record.ExecuteProperties;
 import com.apple.foundationdb.record.RecordCursor;
 import com.apple.foundationdb.record.TestHelpers;
 import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexOptions;
+import com.apple.foundationdb.record.metadata.IndexTypes;
 import com.apple.foundationdb.record.provider.foundationdb.FDBQueriedRecord;
 import com.apple.foundationdb.record.provider.foundationdb.FDBRecordContext;
 import com.apple.foundationdb.record.query.RecordQuery;
 import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.test.Tags;
 import com.google.protobuf.Message;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static com.apple.foundationdb.record.metadata.Key.Expressions.concat;
 import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.descendant;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.scan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.skipScanIndex;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.skipScanSuffixBounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -276,4 +290,61 @@ public class FDBMultiFieldIndexSelectionTest extends FDBRecordStoreQueryTestBase
             TestHelpers.assertDiscardedNone(context);
         }
     }
+
+    /**
+     * Verify that an index whose first column has few distinct values is skip-scanned for a query on its second column.
+     */
+    @Test
+    public void testSkipScan() throws Exception {
+        RecordMetaDataHook hook = metaData -> {
+            metaData.addIndex("MySimpleRecord", new Index("skip_index",
+                    concat(field("str_value_indexed"), field("num_value_2")), IndexTypes.VALUE,
+                    Collections.singletonMap(IndexOptions.LEADING_CARDINALITY_OPTION, "2")));
+        };
+        complexQuerySetup(hook);
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_2").equalsValue(1))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, skipScanIndex(allOf(indexName("skip_index"), skipScanSuffixBounds(hasTupleString("[[1],[1]]")))));
+
+        // In index order: all of the even ones, then all of the odd ones.
+        final List<Long> expected = new ArrayList<>();
+        for (long i = 0; i < 100; i += 2) {
+            if (i % 3 == 1) {
+                expected.add(i);
+            }
+        }
+        for (long i = 1; i < 100; i += 2) {
+            if (i % 3 == 1) {
+                expected.add(i);
+            }
+        }
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context, hook);
+            for (int limit = 1; limit <= 20; limit += 6) {
+                final List<Long> recnos = new ArrayList<>();
+                byte[] continuation = null;
+                do {
+                    try (RecordCursor<FDBQueriedRecord<Message>> cursor = recordStore.executeQuery(plan, continuation, ExecuteProperties.newBuilder()
+                            .setReturnedRowLimit(limit)
+                            .build())) {
+                        while (cursor.hasNext()) {
+                            FDBQueriedRecord<Message> rec = cursor.next();
+                            recnos.add(TestRecords1Proto.MySimpleRecord.newBuilder().mergeFrom(rec.getRecord()).getRecNo());
+                        }
+                        continuation = cursor.getContinuation();
+                    }
+                } while (continuation != null);
+                assertEquals(expected, recnos);
+            }
+            TestHelpers.assertDiscardedNone(context);
+        }
+
+        ((RecordQueryPlanner) planner).setSkipScanMaxLeadingCardinality(1);
+        plan = planner.plan(query);
+        assertThat(plan, filter(equalTo(query.getFilter()), descendant(scan(bounds(unbounded())))));
+    }
 }
@@ -41,7 +41,9 @@ import com.apple.foundationdb.record.query.expressions.Query;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.RecordQueryPlanComplexityException;
 import com.apple.foundationdb.record.query.plan.RecordQueryPlanner;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanProfile;
 import com.apple.foundationdb.tuple.Tuple;
 import com.apple.test.Tags;
 import com.google.common.collect.Lists;
@@ -75,9 +77,12 @@ import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.union;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -128,6 +133,62 @@ public class FDBRecordStoreQueryTest extends FDBRecordStoreQueryTestBase {
         }
     }
 
+    /**
+     * Verify that executing a query with a profile collects statistics for each node of the plan.
+     */
+    @Test
+    public void queryWithProfile() throws Exception {
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+
+            for (int i = 0; i < 100; i++) {
+                TestRecords1Proto.MySimpleRecord.Builder recBuilder = TestRecords1Proto.MySimpleRecord.newBuilder();
+                recBuilder.setRecNo(i);
+                recBuilder.setStrValueIndexed((i & 1) == 1 ? "odd" : "even");
+                recBuilder.setNumValue2(i);
+                recordStore.saveRecord(recBuilder.build());
+            }
+            commit(context);
+        }
+
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.and(
+                        Query.field("str_value_indexed").equalsValue("even"),
+                        Query.field("num_value_2").greaterThanOrEquals(50)))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, filter(equalTo(Query.field("num_value_2").greaterThanOrEquals(50)),
+                indexScan(Matchers.allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(hasTupleString("[[even],[even]]"))))));
+        final RecordQueryPlan indexPlan = ((RecordQueryFilterPlan)plan).getInner();
+
+        try (FDBRecordContext context = openContext()) {
+            openSimpleRecordStore(context);
+            final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+            try (RecordCursor<FDBQueriedRecord<Message>> cursor = profile.execute(plan, recordStore, EvaluationContext.EMPTY, null, ExecuteProperties.SERIAL_EXECUTE)) {
+                assertEquals(25, (int)cursor.getCount().join());
+            }
+
+            final RecordQueryPlanProfile.OperatorStatistics filterStatistics = profile.getStatistics(plan);
+            final RecordQueryPlanProfile.OperatorStatistics indexStatistics = profile.getStatistics(indexPlan);
+            assertNotNull(filterStatistics);
+            assertNotNull(indexStatistics);
+            assertEquals(1, filterStatistics.getExecutions());
+            assertEquals(25, filterStatistics.getRowsOut());
+            assertEquals(1, indexStatistics.getExecutions());
+            assertEquals(50, indexStatistics.getRowsOut());
+            assertEquals(50, indexStatistics.getKeysRead());
+            assertEquals(indexStatistics.getKeysRead(), filterStatistics.getKeysRead());
+            assertTrue(indexStatistics.getBytesRead() > 0);
+            assertTrue(indexStatistics.getTimeToFirstRowNanos() >= 0);
+            assertTrue(filterStatistics.getTotalTimeNanos() >= indexStatistics.getTimeToFirstRowNanos());
+
+            final String explain = profile.explain(plan);
+            assertThat(explain, startsWith("Filter (executions=1, rows_in=50, rows_out=25, keys=50, "));
+            assertThat(explain, containsString("\n  " + indexPlan + " (executions=1, rows_out=50, keys=50, "));
+        }
+    }
+
     /**
      * Verify that byte string queries work with indexes as expected, including with complex queries that should
      * generate plan unions.
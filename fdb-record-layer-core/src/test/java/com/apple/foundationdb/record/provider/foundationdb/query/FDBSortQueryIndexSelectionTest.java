@@ -70,6 +70,7 @@ import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexEntryFilter;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
 import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.scan;
@@ -206,9 +207,9 @@ public class FDBSortQueryIndexSelectionTest extends FDBRecordStoreQueryTestBase
                 .build();
         setupPlanner(indexTypes);
         RecordQueryPlan plan = planner.plan(query);
-        assertThat(plan, filter(equalTo(query.getFilter()),
+        assertThat(plan, indexEntryFilter(equalTo(query.getFilter()),
                 indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
-        assertEquals(-799849347, plan.planHash());
+        assertEquals(-1215835403, plan.planHash());
 
         AtomicInteger lastNumValue3 = new AtomicInteger(Integer.MIN_VALUE);
         int returned = querySimpleRecordStore(hook, plan, EvaluationContext::empty,
@@ -217,7 +218,8 @@ public class FDBSortQueryIndexSelectionTest extends FDBRecordStoreQueryTestBase
                     assertThat(builder.getNumValue3Indexed(), greaterThanOrEqualTo(lastNumValue3.get()));
                     lastNumValue3.set(builder.getNumValue3Indexed());
                 },
-                context -> assertDiscardedAtMost(33, context));
+                // The filter is applied to the index entries, so no records are loaded only to be discarded.
+                context -> assertDiscardedNone(context));
         assertEquals(67, returned);
         setupPlanner(null); // reset planner
     }
@@ -241,9 +243,10 @@ public class FDBSortQueryIndexSelectionTest extends FDBRecordStoreQueryTestBase
                 .build();
         setupPlanner(indexTypes);
         RecordQueryPlan plan = planner.plan(query);
-        assertThat(plan, filter(equalTo(query.getFilter()),
-                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
-        assertEquals(735933204, plan.planHash());
+        assertThat(plan, filter(equalTo(Query.field("num_value_2").equalsValue(0)),
+                indexEntryFilter(equalTo(Query.field("num_value_3_indexed").notEquals(1)),
+                        indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded()))))));
+        assertEquals(-1925597217, plan.planHash());
 
         AtomicInteger lastNumValue3 = new AtomicInteger(Integer.MIN_VALUE);
         int returned = querySimpleRecordStore(hook, plan, EvaluationContext::empty,
@@ -253,7 +256,7 @@ public class FDBSortQueryIndexSelectionTest extends FDBRecordStoreQueryTestBase
                     assertThat(builder.getNumValue3Indexed(), greaterThanOrEqualTo(lastNumValue3.get()));
                     lastNumValue3.set(builder.getNumValue3Indexed());
                 },
-                context -> assertDiscardedAtMost(66, context));
+                context -> assertDiscardedAtMost(33, context));
         assertEquals(34, returned);
         setupPlanner(null); // reset the planner
     }
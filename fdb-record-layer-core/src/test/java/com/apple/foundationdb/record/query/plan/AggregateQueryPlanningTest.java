@@ -0,0 +1,172 @@
+/*
+ * AggregateQueryPlanningTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.record.FunctionNames;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.RecordMetaDataBuilder;
+import com.apple.foundationdb.record.RecordStoreState;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.metadata.IndexAggregateFunction;
+import com.apple.foundationdb.record.metadata.IndexTypes;
+import com.apple.foundationdb.record.metadata.expressions.EmptyKeyExpression;
+import com.apple.foundationdb.record.metadata.expressions.GroupingKeyExpression;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.apple.foundationdb.record.metadata.Key.Expressions.concatenateFields;
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.coveringIndexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hashAggregate;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScanType;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.streamingAggregate;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of planning queries with an aggregate function, which do not need to be executed.
+ * @see com.apple.foundationdb.record.provider.foundationdb.query.FDBAggregateQueryTest
+ */
+public class AggregateQueryPlanningTest {
+    private RecordQueryPlanner planner;
+
+    @BeforeEach
+    public void setUp() {
+        RecordMetaDataBuilder builder = RecordMetaData.newBuilder().setRecords(TestRecords1Proto.getDescriptor());
+        builder.addIndex("MySimpleRecord", new Index("count_by_str", new GroupingKeyExpression(field("str_value_indexed"), 0), IndexTypes.COUNT));
+        builder.addIndex("MySimpleRecord", new Index("value3sum",
+                field("num_value_3_indexed").groupBy(concatenateFields("str_value_indexed", "num_value_2")), IndexTypes.SUM));
+        planner = new RecordQueryPlanner(builder.getRecordMetaData(), new RecordStoreState());
+    }
+
+    private static RecordQuery.Builder aggregateQuery(String function, GroupingKeyExpression operand) {
+        return RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setAggregate(new IndexAggregateFunction(function, operand, null));
+    }
+
+    @Test
+    public void countOfGroupValue() throws Exception {
+        // A single key read.
+        RecordQuery query = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(EmptyKeyExpression.EMPTY, 0))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(allOf(indexName("count_by_str"), indexScanType(IndexScanType.BY_GROUP),
+                bounds(hasTupleString("[[even],[even]]"))))));
+    }
+
+    @Test
+    public void countByGroup() throws Exception {
+        RecordQuery query = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(field("str_value_indexed"), 0))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(allOf(indexName("count_by_str"), indexScanType(IndexScanType.BY_GROUP),
+                bounds(unbounded())))));
+    }
+
+    @Test
+    public void sumWithinGroup() throws Exception {
+        RecordQuery query = aggregateQuery(FunctionNames.SUM, field("num_value_3_indexed").groupBy(field("num_value_2")))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(allOf(indexName("value3sum"), indexScanType(IndexScanType.BY_GROUP),
+                bounds(hasTupleString("[[even],[even]]"))))));
+
+        // Not the same groups as the index, so aggregated from the records instead.
+        query = aggregateQuery(FunctionNames.SUM, field("num_value_3_indexed").groupBy(field("str_value_indexed")))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        plan = planner.plan(query);
+        assertThat(plan, streamingAggregate(indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"),
+                bounds(hasTupleString("[[even],[even]]"))))));
+    }
+
+    @Test
+    public void streamingFromCoveringIndex() throws Exception {
+        RecordQuery query = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(field("num_value_3_indexed"), 0))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, streamingAggregate(coveringIndexScan(indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"),
+                indexScanType(IndexScanType.BY_VALUE), bounds(unbounded()))))));
+    }
+
+    @Test
+    public void streamingWithFilter() throws Exception {
+        // The filter is not on the grouping field, so the count index cannot be used.
+        RecordQuery query = aggregateQuery(FunctionNames.MAX, field("num_value_unique").groupBy(field("str_value_indexed")))
+                .setFilter(Query.field("num_value_2").equalsValue(1))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, streamingAggregate(filter(equalTo(Query.field("num_value_2").equalsValue(1)),
+                indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(unbounded()))))));
+    }
+
+    @Test
+    public void hashAggregateWithoutOrder() throws Exception {
+        // No index on the grouping field, so the records are aggregated in whatever order they come.
+        planner.setMaxHashAggregateGroups(100);
+        RecordQuery query = aggregateQuery(FunctionNames.AVG, field("num_value_3_indexed").groupBy(field("num_value_2")))
+                .setFilter(Query.field("str_value_indexed").equalsValue("even"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, hashAggregate(indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"),
+                bounds(hasTupleString("[[even],[even]]"))))));
+
+        // When the records can be read in order, streaming is still preferred.
+        query = aggregateQuery(FunctionNames.AVG, field("num_value_unique").groupBy(field("str_value_indexed")))
+                .build();
+        plan = planner.plan(query);
+        assertThat(plan, streamingAggregate(indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(unbounded())))));
+    }
+
+    @Test
+    public void cannotPlan() throws Exception {
+        // No index for a function that cannot be computed from the records.
+        RecordQuery countUpdates = aggregateQuery(FunctionNames.COUNT_UPDATES, new GroupingKeyExpression(field("str_value_indexed"), 0))
+                .build();
+        assertThrows(RecordCoreException.class, () -> planner.plan(countUpdates));
+        // No index to put the records in order by group, and hash aggregation not enabled.
+        RecordQuery unordered = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(field("num_value_2"), 0))
+                .build();
+        assertThrows(RecordCoreException.class, () -> planner.plan(unordered));
+        // Results can only be sorted by group.
+        RecordQuery sorted = aggregateQuery(FunctionNames.COUNT, new GroupingKeyExpression(field("str_value_indexed"), 0))
+                .setSort(field("num_value_2"))
+                .build();
+        assertThrows(RecordCoreException.class, () -> planner.plan(sorted));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * IndexEntryFilterPlanningTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.RecordStoreState;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.expressions.QueryComponent;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexEntryFilter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Tests of planning filters that are applied to index entries before their records are fetched.
+ * @see com.apple.foundationdb.record.provider.foundationdb.query.FDBCoveringIndexQueryTest#coveringWithIndexEntryFilter
+ */
+public class IndexEntryFilterPlanningTest {
+    private RecordQueryPlanner planner;
+
+    @BeforeEach
+    public void setUp() {
+        planner = new RecordQueryPlanner(RecordMetaData.build(TestRecords1Proto.getDescriptor()), new RecordStoreState());
+    }
+
+    private RecordQueryPlan planSortedByValue3(QueryComponent filter) {
+        return planner.plan(RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(filter)
+                .setSort(field("num_value_3_indexed"))
+                .build());
+    }
+
+    @Test
+    public void wholeFilter() throws Exception {
+        QueryComponent filter = Query.field("num_value_3_indexed").notEquals(1);
+        assertThat(planSortedByValue3(filter), indexEntryFilter(equalTo(filter),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
+
+        // The primary key is in every index entry, too.
+        filter = Query.and(Query.field("rec_no").lessThan(10L), Query.not(Query.field("num_value_3_indexed").equalsValue(1)));
+        assertThat(planSortedByValue3(filter), indexEntryFilter(equalTo(filter),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
+    }
+
+    @Test
+    public void partOfFilter() throws Exception {
+        QueryComponent filter = Query.and(Query.field("num_value_3_indexed").notEquals(1), Query.field("num_value_2").equalsValue(0));
+        assertThat(planSortedByValue3(filter), filter(equalTo(Query.field("num_value_2").equalsValue(0)),
+                indexEntryFilter(equalTo(Query.field("num_value_3_indexed").notEquals(1)),
+                        indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded()))))));
+    }
+
+    @Test
+    public void notOnIndexEntries() throws Exception {
+        // Only one value of a repeated field is in each index entry.
+        QueryComponent filter = Query.field("repeater").oneOfThem().equalsValue(1);
+        assertThat(planSortedByValue3(filter), filter(equalTo(filter),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
+
+        planner.setFilterIndexEntries(false);
+        filter = Query.field("num_value_3_indexed").notEquals(1);
+        assertThat(planSortedByValue3(filter), filter(equalTo(filter),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(unbounded())))));
+    }
+
+    @Test
+    public void planHashDiffersFromFilter() throws Exception {
+        QueryComponent filter = Query.field("num_value_3_indexed").notEquals(1);
+        RecordQueryPlan entryFilterPlan = planSortedByValue3(filter);
+        planner.setFilterIndexEntries(false);
+        RecordQueryPlan filterPlan = planSortedByValue3(filter);
+        assertNotEquals(filterPlan.planHash(), entryFilterPlan.planHash());
+    }
+}
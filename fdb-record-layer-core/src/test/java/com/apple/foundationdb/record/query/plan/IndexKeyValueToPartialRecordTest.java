@@ -0,0 +1,70 @@
+/*
+ * IndexKeyValueToPartialRecordTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.record.IndexEntry;
+import com.apple.foundationdb.record.TestRecordsWithHeaderProto;
+import com.apple.foundationdb.tuple.Tuple;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.Message;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link IndexKeyValueToPartialRecord} and {@link PartialRecordMessage}.
+ */
+public class IndexKeyValueToPartialRecordTest {
+
+    @Test
+    public void partialRecordMatchesRecord() {
+        final Descriptors.Descriptor descriptor = TestRecordsWithHeaderProto.MyRecord.getDescriptor();
+        final IndexKeyValueToPartialRecord.Builder builder = IndexKeyValueToPartialRecord.newBuilder(descriptor);
+        builder.addField("str_value", IndexKeyValueToPartialRecord.TupleSource.KEY, 0);
+        builder.getFieldBuilder("header")
+                .addField("rec_no", IndexKeyValueToPartialRecord.TupleSource.KEY, 1)
+                .addField("path", IndexKeyValueToPartialRecord.TupleSource.KEY, 2)
+                .addField("num", IndexKeyValueToPartialRecord.TupleSource.VALUE, 0);
+        assertTrue(builder.isValid());
+        final IndexKeyValueToPartialRecord toRecord = builder.build();
+
+        final IndexEntry entry = new IndexEntry(Tuple.from("hello", 1066L, "a/b"), Tuple.from((Object)null));
+        final Message record = toRecord.toRecord(descriptor, entry);
+        final PartialRecordMessage partialRecord = toRecord.toPartialRecord(descriptor, entry);
+
+        final Descriptors.FieldDescriptor headerField = descriptor.findFieldByName("header");
+        final Descriptors.Descriptor headerDescriptor = headerField.getMessageType();
+        assertEquals("hello", partialRecord.getField(descriptor.findFieldByName("str_value")));
+        final Message header = (Message)partialRecord.getField(headerField);
+        assertEquals(1066L, header.getField(headerDescriptor.findFieldByName("rec_no")));
+        assertFalse(header.hasField(headerDescriptor.findFieldByName("num")));
+        assertEquals(0, header.getField(headerDescriptor.findFieldByName("num")));
+        assertEquals(0, partialRecord.getRepeatedFieldCount(descriptor.findFieldByName("repeated_int")));
+
+        assertEquals(record, partialRecord);
+        assertEquals(record, partialRecord.toMessage());
+        assertEquals(record.toByteString(), partialRecord.toByteString());
+        assertEquals(TestRecordsWithHeaderProto.MyRecord.newBuilder().mergeFrom(record).build(),
+                TestRecordsWithHeaderProto.MyRecord.newBuilder().mergeFrom(partialRecord).build());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * IndexStatisticsTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan;
+
+import com.apple.foundationdb.record.query.expressions.Comparisons;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link IndexStatistics}.
+ */
+public class IndexStatisticsTest {
+
+    // 1000 entries of (a, b), with a in 0 .. 99 and b in 0 .. 9 for each.
+    private static IndexStatistics statistics() {
+        List<Object> boundaries = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            boundaries.add((long)i * 10);
+        }
+        return new IndexStatistics(1000, new long[] { 100, 1000 }, boundaries);
+    }
+
+    private static ScanComparisons.Builder comparisons() {
+        return new ScanComparisons.Builder();
+    }
+
+    @Test
+    public void equalities() throws Exception {
+        IndexStatistics statistics = statistics();
+        assertEquals(1000.0, statistics.estimateEntries(ScanComparisons.EMPTY), 0.001);
+        assertEquals(10.0, statistics.estimateEntries(comparisons()
+                .addEqualityComparison(new Comparisons.SimpleComparison(Comparisons.Type.EQUALS, 5L))
+                .build()), 0.001);
+        assertEquals(1.0, statistics.estimateEntries(comparisons()
+                .addEqualityComparison(new Comparisons.SimpleComparison(Comparisons.Type.EQUALS, 5L))
+                .addEqualityComparison(new Comparisons.ParameterComparison(Comparisons.Type.EQUALS, "p"))
+                .build()), 0.001);
+    }
+
+    @Test
+    public void leadingRange() throws Exception {
+        IndexStatistics statistics = statistics();
+        // Boundaries 80 and 90 in range, plus half a bucket.
+        assertEquals(250.0, statistics.estimateEntries(comparisons()
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.GREATER_THAN_OR_EQUALS, 75L))
+                .build()), 0.001);
+        assertEquals(50.0, statistics.estimateEntries(comparisons()
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.GREATER_THAN, 90L))
+                .build()), 0.001);
+        assertEquals(350.0, statistics.estimateEntries(comparisons()
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.GREATER_THAN, 20L))
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.LESS_THAN_OR_EQUALS, 50L))
+                .build()), 0.001);
+    }
+
+    @Test
+    public void otherRanges() throws Exception {
+        IndexStatistics statistics = statistics();
+        // Not known until execution.
+        assertEquals(1000.0 * IndexStatistics.DEFAULT_RANGE_SELECTIVITY, statistics.estimateEntries(comparisons()
+                .addInequalityComparison(new Comparisons.ParameterComparison(Comparisons.Type.LESS_THAN, "p"))
+                .build()), 0.001);
+        // No histogram for the second column.
+        assertEquals(10.0 * IndexStatistics.DEFAULT_RANGE_SELECTIVITY, statistics.estimateEntries(comparisons()
+                .addEqualityComparison(new Comparisons.SimpleComparison(Comparisons.Type.EQUALS, 5L))
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.LESS_THAN, 3L))
+                .build()), 0.001);
+        // No histogram at all.
+        IndexStatistics noHistogram = new IndexStatistics(1000, new long[] { 100 }, Collections.emptyList());
+        assertEquals(1000.0 * IndexStatistics.DEFAULT_RANGE_SELECTIVITY, noHistogram.estimateEntries(comparisons()
+                .addInequalityComparison(new Comparisons.SimpleComparison(Comparisons.Type.GREATER_THAN, 90L))
+                .build()), 0.001);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        IndexStatistics statistics = statistics();
+        assertEquals(statistics, IndexStatistics.fromTuple(statistics.toTuple()));
+        IndexStatistics strings = new IndexStatistics(2, new long[] { 2 }, Arrays.asList("even", "odd"));
+        assertEquals(strings, IndexStatistics.fromTuple(strings.toTuple()));
+        assertEquals(2, strings.getDistinctCount(1));
+        assertEquals(2, strings.getDistinctCount(2));
+    }
+}
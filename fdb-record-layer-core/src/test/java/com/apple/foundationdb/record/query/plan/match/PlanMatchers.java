@@ -26,10 +26,12 @@ import com.apple.foundationdb.record.query.expressions.Comparisons;
 import com.apple.foundationdb.record.query.expressions.QueryComponent;
 import com.apple.foundationdb.record.query.plan.ScanComparisons;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryIndexPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryMultiRangeIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithComparisons;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlanWithIndex;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryScanPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan;
 import com.apple.foundationdb.record.query.plan.plans.RecordQueryTextIndexPlan;
 import org.hamcrest.Matcher;
 
@@ -61,6 +63,22 @@ public class PlanMatchers {
         return new TextIndexMatcher(planMatcher);
     }
 
+    public static Matcher<RecordQueryPlan> multiRangeIndexScan(@Nonnull Matcher<? super RecordQueryMultiRangeIndexPlan> planMatcher) {
+        return new MultiRangeIndexMatcher(planMatcher);
+    }
+
+    public static Matcher<RecordQueryMultiRangeIndexPlan> rangeBounds(@Nonnull Matcher<ScanComparisons> boundsMatcher) {
+        return new MultiRangeIndexMatcher.RangeMatcher(boundsMatcher);
+    }
+
+    public static Matcher<RecordQueryPlan> skipScanIndex(@Nonnull Matcher<? super RecordQuerySkipScanIndexPlan> planMatcher) {
+        return new SkipScanIndexMatcher(planMatcher);
+    }
+
+    public static Matcher<RecordQuerySkipScanIndexPlan> skipScanSuffixBounds(@Nonnull Matcher<ScanComparisons> boundsMatcher) {
+        return new SkipScanIndexMatcher.SuffixMatcher(boundsMatcher);
+    }
+
     public static Matcher<RecordQueryTextIndexPlan> groupingBounds(@Nonnull Matcher<ScanComparisons> boundsMatcher) {
         return new TextIndexMatcher.GroupingMatcher(boundsMatcher);
     }
@@ -114,6 +132,11 @@ public class PlanMatchers {
         return new FilterMatcher(filterMatcher, childMatcher);
     }
 
+    public static Matcher<RecordQueryPlan> indexEntryFilter(@Nonnull Matcher<QueryComponent> filterMatcher,
+                                                            @Nonnull Matcher<RecordQueryPlan> childMatcher) {
+        return new IndexEntryFilterMatcher(filterMatcher, childMatcher);
+    }
+
     public static Matcher<RecordQueryPlan> typeFilter(@Nonnull Matcher<Iterable<? extends String>> typeMatcher,
                                                       @Nonnull Matcher<RecordQueryPlan> childMatcher) {
         return new TypeFilterMatcher(typeMatcher, childMatcher);
@@ -182,6 +205,14 @@ public class PlanMatchers {
         return new UnorderedPrimaryKeyDistinctMatcher(childMatcher);
     }
 
+    public static Matcher<RecordQueryPlan> streamingAggregate(@Nonnull Matcher<RecordQueryPlan> childMatcher) {
+        return new StreamingAggregateMatcher(childMatcher);
+    }
+
+    public static Matcher<RecordQueryPlan> hashAggregate(@Nonnull Matcher<RecordQueryPlan> childMatcher) {
+        return new HashAggregateMatcher(childMatcher);
+    }
+
     public static Matcher<RecordQueryPlan> anyParent(@Nonnull Matcher<RecordQueryPlan> childMatcher) {
         return new AnyParentMatcher(childMatcher);
     }
@@ -0,0 +1,78 @@
+/*
+ * SkipScanIndexMatcher.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.match;
+
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQuerySkipScanIndexPlan;
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A plan matcher for {@link RecordQuerySkipScanIndexPlan}.
+ */
+public class SkipScanIndexMatcher extends TypeSafeMatcher<RecordQueryPlan> {
+
+    private final Matcher<? super RecordQuerySkipScanIndexPlan> planMatcher;
+
+    public SkipScanIndexMatcher(@Nonnull Matcher<? super RecordQuerySkipScanIndexPlan> planMatcher) {
+        this.planMatcher = planMatcher;
+    }
+
+    @Override
+    protected boolean matchesSafely(RecordQueryPlan plan) {
+        return plan instanceof RecordQuerySkipScanIndexPlan && planMatcher.matches(plan);
+    }
+
+    @Override
+    public void describeTo(Description description) {
+        description.appendText("SkipScan(");
+        planMatcher.describeTo(description);
+        description.appendText(")");
+    }
+
+    /**
+     * Matcher on the comparisons within each prefix of a skip-scan plan.
+     */
+    public static class SuffixMatcher extends TypeSafeMatcher<RecordQuerySkipScanIndexPlan> {
+        @Nonnull
+        private final Matcher<? super ScanComparisons> comparisonsMatcher;
+
+        public SuffixMatcher(@Nonnull Matcher<? super ScanComparisons> comparisonsMatcher) {
+            this.comparisonsMatcher = comparisonsMatcher;
+        }
+
+        @Override
+        protected boolean matchesSafely(RecordQuerySkipScanIndexPlan plan) {
+            return comparisonsMatcher.matches(plan.getSuffixComparisons());
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("suffix=(");
+            comparisonsMatcher.describeTo(description);
+            description.appendText(")");
+        }
+    }
+}
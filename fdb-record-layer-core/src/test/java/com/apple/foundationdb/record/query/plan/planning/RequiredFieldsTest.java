@@ -0,0 +1,84 @@
+/*
+ * RequiredFieldsTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.planning;
+
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link RequiredFields}.
+ */
+public class RequiredFieldsTest {
+    private static final RecordMetaData METADATA = RecordMetaData.build(TestRecords1Proto.getDescriptor());
+
+    @Test
+    public void filterAndSort() {
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.and(
+                        Query.field("str_value_indexed").equalsValue("even"),
+                        Query.not(Query.field("num_value_2").greaterThan(1)),
+                        Query.field("repeater").oneOfThem().equalsValue(3)))
+                .setSort(field("num_value_3_indexed"))
+                .build();
+        assertEquals(Sets.newHashSet("rec_no", "str_value_indexed", "num_value_2", "repeater", "num_value_3_indexed"),
+                RequiredFields.forQuery(METADATA, query));
+    }
+
+    @Test
+    public void requiredResults() {
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").greaterThan(5))
+                .setRequiredResults(Collections.singletonList(field("num_value_unique")))
+                .build();
+        assertEquals(Sets.newHashSet("rec_no", "num_value_3_indexed", "num_value_unique"),
+                RequiredFields.forQuery(METADATA, query));
+    }
+
+    @Test
+    public void allRecordTypes() {
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setFilter(Query.field("num_value_2").equalsValue(1))
+                .build();
+        assertEquals(Sets.newHashSet("rec_no", "num_value_2"), RequiredFields.forQuery(METADATA, query));
+    }
+
+    @Test
+    public void recordFunction() {
+        final RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.rank("num_value_2").equalsValue(1L))
+                .build();
+        assertNull(RequiredFields.forQuery(METADATA, query));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * ChildExecutePropertiesTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.ReadTransaction;
+import com.apple.foundationdb.record.CursorStreamingMode;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.IndexKeyValueToPartialRecord;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for {@link ChildExecuteProperties}.
+ */
+public class ChildExecutePropertiesTest {
+    private static final RecordQueryPlan INDEX_SCAN = new RecordQueryIndexPlan("MySimpleRecord$num_value_3_indexed", IndexScanType.BY_VALUE, ScanComparisons.EMPTY, false);
+
+    @Test
+    public void limitIncludesSkip() {
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setSkip(5).setReturnedRowLimit(10).build();
+        final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(INDEX_SCAN, executeProperties);
+        assertEquals(0, childExecuteProperties.getSkip());
+        assertEquals(15, childExecuteProperties.getReturnedRowLimit());
+        assertEquals(CursorStreamingMode.WANT_ALL, childExecuteProperties.getDefaultCursorStreamingMode());
+    }
+
+    @Test
+    public void unlimitedKeepsIterator() {
+        final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(INDEX_SCAN, ExecuteProperties.SERIAL_EXECUTE);
+        assertEquals(ReadTransaction.ROW_LIMIT_UNLIMITED, childExecuteProperties.getReturnedRowLimit());
+        assertEquals(CursorStreamingMode.ITERATOR, childExecuteProperties.getDefaultCursorStreamingMode());
+    }
+
+    @Test
+    public void explicitModeKept() {
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(10)
+                .setDefaultCursorStreamingMode(CursorStreamingMode.READ_AHEAD).build();
+        final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(INDEX_SCAN, executeProperties);
+        assertEquals(10, childExecuteProperties.getReturnedRowLimit());
+        assertEquals(CursorStreamingMode.READ_AHEAD, childExecuteProperties.getDefaultCursorStreamingMode());
+    }
+
+    @Test
+    public void filteredChildNotWantAll() {
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(10).build();
+        final RecordQueryPlan filtered = new RecordQueryFilterPlan(INDEX_SCAN, Query.field("str_value_indexed").equalsValue("even"));
+        final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(filtered, executeProperties);
+        assertEquals(10, childExecuteProperties.getReturnedRowLimit());
+        assertEquals(CursorStreamingMode.ITERATOR, childExecuteProperties.getDefaultCursorStreamingMode());
+    }
+
+    @Test
+    public void coveringIndexScanWantAll() {
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(10).build();
+        final RecordQueryPlan covering = new RecordQueryCoveringIndexPlan((RecordQueryPlanWithIndex)INDEX_SCAN, "MySimpleRecord",
+                IndexKeyValueToPartialRecord.newBuilder(TestRecords1Proto.MySimpleRecord.getDescriptor()).build());
+        assertEquals(CursorStreamingMode.WANT_ALL, ChildExecuteProperties.forChild(covering, executeProperties).getDefaultCursorStreamingMode());
+    }
+
+    @Test
+    public void recordScanNotWantAll() {
+        // A record scan clears its limit when records are split, so asking for all of its range would read all of it.
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setReturnedRowLimit(10).build();
+        final RecordQueryPlan scan = new RecordQueryScanPlan(ScanComparisons.EMPTY, false);
+        final ExecuteProperties childExecuteProperties = ChildExecuteProperties.forChild(scan, executeProperties);
+        assertEquals(10, childExecuteProperties.getReturnedRowLimit());
+        assertEquals(CursorStreamingMode.ITERATOR, childExecuteProperties.getDefaultCursorStreamingMode());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * DistinctKeySetTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.provider.foundationdb.FDBStoreTimer;
+import com.apple.foundationdb.tuple.Tuple;
+import com.apple.foundationdb.tuple.Versionstamp;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link DistinctKeySet}.
+ */
+public class DistinctKeySetTest {
+    // Long enough that keeping just an offset for each key in memory saves most of the space.
+    private static final String LONG_SUFFIX = String.join("", Collections.nCopies(10, "0123456789"));
+
+    @Test
+    public void inMemory() {
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        try (DistinctKeySet keySet = new DistinctKeySet(ExecuteProperties.UNLIMITED_MEMORY, timer)) {
+            checkAgainstHashSet(keySet, 10000);
+            assertFalse(keySet.isSpilled());
+            assertEquals(keySet.getPeakMemoryUsed(), timer.getCount(FDBStoreTimer.Counts.QUERY_DISTINCT_MEMORY_BYTES));
+        }
+    }
+
+    @Test
+    public void spilled() {
+        final long memoryLimit = 2 * 1024 * 1024;
+        final FDBStoreTimer timer = new FDBStoreTimer();
+        try (DistinctKeySet keySet = new DistinctKeySet(memoryLimit, timer)) {
+            checkAgainstHashSet(keySet, 100000, LONG_SUFFIX);
+            assertTrue(keySet.isSpilled());
+            assertTrue(keySet.getMemoryUsed() <= memoryLimit);
+            assertTrue(timer.getCount(FDBStoreTimer.Counts.QUERY_DISTINCT_SPILLED_PARTITIONS) > 0);
+            assertTrue(timer.getCount(FDBStoreTimer.Counts.QUERY_DISTINCT_SPILLED_BYTES) > 0);
+        }
+    }
+
+    @Test
+    public void spillDirectory() throws Exception {
+        final Path spillDirectory = Files.createTempDirectory("distinct-key-set-test");
+        try {
+            try (DistinctKeySet keySet = new DistinctKeySet(64 * 1024, spillDirectory, null)) {
+                checkAgainstHashSet(keySet, 20000, LONG_SUFFIX);
+                assertTrue(keySet.isSpilled());
+            }
+            try (Stream<Path> files = Files.list(spillDirectory)) {
+                assertEquals(0, files.count(), "spill files should be removed when closed");
+            }
+        } finally {
+            Files.delete(spillDirectory);
+        }
+        try (DistinctKeySet keySet = new DistinctKeySet(64 * 1024, spillDirectory, null)) {
+            assertThrows(RecordCoreException.class, () -> checkAgainstHashSet(keySet, 20000, LONG_SUFFIX));
+        }
+    }
+
+    @Test
+    public void spilledAsync() {
+        final long memoryLimit = 512 * 1024;
+        try (DistinctKeySet keySet = new DistinctKeySet(memoryLimit, null)) {
+            final Set<Tuple> expected = new HashSet<>();
+            final Random random = new Random(1066);
+            for (int i = 0; i < 20000; i++) {
+                final Tuple key = Tuple.from("key", random.nextInt(10000), LONG_SUFFIX);
+                assertEquals(expected.add(key), keySet.addAsync(key).join(), () -> "adding " + key);
+            }
+            assertTrue(keySet.isSpilled());
+            assertTrue(keySet.getMemoryUsed() <= memoryLimit);
+        }
+    }
+
+    @Test
+    public void inMemoryAsyncCompletesImmediately() {
+        try (DistinctKeySet keySet = new DistinctKeySet(ExecuteProperties.UNLIMITED_MEMORY, null)) {
+            for (int i = 0; i < 1000; i++) {
+                final CompletableFuture<Boolean> added = keySet.addAsync(Tuple.from(i % 500));
+                assertTrue(added.isDone());
+                assertEquals(i < 500, added.join());
+            }
+        }
+    }
+
+    @Test
+    public void incompleteVersionstamps() {
+        try (DistinctKeySet keySet = new DistinctKeySet(ExecuteProperties.UNLIMITED_MEMORY, null)) {
+            assertTrue(keySet.addAsync(Tuple.from("a", Versionstamp.incomplete(1))).join());
+            assertFalse(keySet.addAsync(Tuple.from("a", Versionstamp.incomplete(1))).join());
+            assertTrue(keySet.addAsync(Tuple.from("a", Versionstamp.incomplete(2))).join());
+            assertTrue(keySet.addAsync(Tuple.from("a", 1L)).join());
+            assertFalse(keySet.addAsync(Tuple.from("a", 1L)).join());
+        }
+    }
+
+    private static void checkAgainstHashSet(DistinctKeySet keySet, int count) {
+        checkAgainstHashSet(keySet, count, "suffix");
+    }
+
+    private static void checkAgainstHashSet(DistinctKeySet keySet, int count, String suffix) {
+        final Set<Tuple> expected = new HashSet<>();
+        final Random random = new Random(1066);
+        for (int i = 0; i < count; i++) {
+            // About half of the keys are repeats.
+            final Tuple key = Tuple.from("key", random.nextInt(count / 2), i % 3 == 0 ? null : suffix);
+            assertEquals(expected.add(key), keySet.add(key.pack()), () -> "adding " + key);
+        }
+    }
+}
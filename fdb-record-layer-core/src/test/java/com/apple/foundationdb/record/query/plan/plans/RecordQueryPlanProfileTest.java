@@ -0,0 +1,121 @@
+/*
+ * RecordQueryPlanProfileTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.apple.foundationdb.record.query.plan.plans;
+
+import com.apple.foundationdb.record.ByteScanLimiter;
+import com.apple.foundationdb.record.EvaluationContext;
+import com.apple.foundationdb.record.ExecuteProperties;
+import com.apple.foundationdb.record.IndexScanType;
+import com.apple.foundationdb.record.RecordCursor;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.ScanComparisons;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link RecordQueryPlanProfile}.
+ */
+public class RecordQueryPlanProfileTest {
+    private static final RecordQueryPlan INDEX_SCAN = new RecordQueryIndexPlan("MySimpleRecord$num_value_3_indexed", IndexScanType.BY_VALUE, ScanComparisons.EMPTY, false);
+    private static final RecordQueryPlan FILTER = new RecordQueryFilterPlan(INDEX_SCAN, Query.field("str_value_indexed").equalsValue("even"));
+
+    @Test
+    public void countRows() {
+        final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+        final RecordQueryPlanProfile.OperatorStatistics statistics = profile.getOrCreateStatistics(INDEX_SCAN);
+        for (int i = 0; i < 2; i++) {
+            try (RecordCursor<Integer> cursor = profile.instrument(statistics, System.nanoTime(),
+                    RecordCursor.fromList(ForkJoinPool.commonPool(), Arrays.asList(1, 2, 3)))) {
+                assertEquals(Arrays.asList(1, 2, 3), cursor.asList().join());
+            }
+        }
+        assertSame(statistics, profile.getStatistics(INDEX_SCAN));
+        assertEquals(2, statistics.getExecutions());
+        assertEquals(6, statistics.getRowsOut());
+        assertTrue(statistics.getTimeToFirstRowNanos() >= 0);
+        assertTrue(statistics.getTotalTimeNanos() >= statistics.getTimeToFirstRowNanos());
+        assertNull(profile.getStatistics(FILTER));
+    }
+
+    @Test
+    public void noRows() {
+        final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+        final RecordQueryPlanProfile.OperatorStatistics statistics = profile.getOrCreateStatistics(INDEX_SCAN);
+        try (RecordCursor<Integer> cursor = profile.instrument(statistics, System.nanoTime(), RecordCursor.empty())) {
+            assertFalse(cursor.hasNext());
+        }
+        assertEquals(1, statistics.getExecutions());
+        assertEquals(0, statistics.getRowsOut());
+        assertEquals(-1, statistics.getTimeToFirstRowNanos());
+    }
+
+    @Test
+    public void countScansIncludesChildren() {
+        final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+        final RecordQueryPlanProfile.OperatorStatistics filterStatistics = profile.getOrCreateStatistics(FILTER);
+        final RecordQueryPlanProfile.OperatorStatistics indexStatistics = profile.getOrCreateStatistics(INDEX_SCAN);
+        final ExecuteProperties executeProperties = ExecuteProperties.newBuilder().setScannedBytesLimit(100).build();
+        final ExecuteProperties childExecuteProperties = indexStatistics.countScans(filterStatistics.countScans(executeProperties));
+        final ByteScanLimiter limiter = childExecuteProperties.getState().getByteScanLimiter();
+        assertNotNull(limiter);
+        limiter.registerScannedBytes(60);
+        assertTrue(limiter.hasBytesRemaining());
+        limiter.registerScannedBytes(60);
+        assertFalse(limiter.hasBytesRemaining());
+        assertEquals(120, executeProperties.getState().getByteScanLimiter().getBytesScanned());
+        assertEquals(2, indexStatistics.getKeysRead());
+        assertEquals(120, indexStatistics.getBytesRead());
+        assertEquals(2, filterStatistics.getKeysRead());
+        assertEquals(120, filterStatistics.getBytesRead());
+    }
+
+    @Test
+    public void explain() {
+        final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+        final RecordQueryPlanProfile.OperatorStatistics statistics = profile.getOrCreateStatistics(INDEX_SCAN);
+        try (RecordCursor<Integer> cursor = profile.instrument(statistics, System.nanoTime(),
+                RecordCursor.fromList(ForkJoinPool.commonPool(), Arrays.asList(1, 2, 3)))) {
+            cursor.asList().join();
+        }
+        final String[] lines = profile.explain(FILTER).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Filter (never executed)", lines[0]);
+        assertTrue(lines[1].startsWith("  " + INDEX_SCAN + " (executions=1, rows_out=3, keys=0, bytes=0, first_row_micros="), lines[1]);
+    }
+
+    @Test
+    public void noProfileByDefault() {
+        assertNull(EvaluationContext.EMPTY.getProfile());
+        final RecordQueryPlanProfile profile = new RecordQueryPlanProfile();
+        final EvaluationContext context = EvaluationContext.EMPTY.childBuilder().setProfile(profile).build();
+        assertSame(profile, context.getProfile());
+        assertSame(profile, context.withBinding("x", 1).getProfile());
+    }
+}
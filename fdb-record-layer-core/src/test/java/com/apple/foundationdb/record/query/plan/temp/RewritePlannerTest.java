@@ -0,0 +1,192 @@
+/*
+ * RewritePlannerTest.java
+ *
+ * This source file is part of the FoundationDB open source project
+ *
+ * Copyright 2015-2018 Apple Inc. and the FoundationDB project authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.apple.foundationdb.record.query.plan.temp;
+
+import com.apple.foundationdb.record.RecordCoreException;
+import com.apple.foundationdb.record.RecordMetaData;
+import com.apple.foundationdb.record.RecordMetaDataBuilder;
+import com.apple.foundationdb.record.RecordStoreState;
+import com.apple.foundationdb.record.TestRecords1Proto;
+import com.apple.foundationdb.record.metadata.Index;
+import com.apple.foundationdb.record.query.RecordQuery;
+import com.apple.foundationdb.record.query.expressions.Query;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryFilterPlan;
+import com.apple.foundationdb.record.query.plan.plans.RecordQueryPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.apple.foundationdb.record.metadata.Key.Expressions.concatenateFields;
+import static com.apple.foundationdb.record.metadata.Key.Expressions.field;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.bounds;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.coveringIndexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.filter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.hasTupleString;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.inValues;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexName;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.indexScan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.intersection;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.scan;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.typeFilter;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.unbounded;
+import static com.apple.foundationdb.record.query.plan.match.PlanMatchers.union;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the plans chosen by the {@link RewritePlanner}, which do not need to be executed.
+ */
+public class RewritePlannerTest {
+    private RewritePlanner planner;
+
+    @BeforeEach
+    public void setUp() {
+        RecordMetaDataBuilder builder = RecordMetaData.newBuilder().setRecords(TestRecords1Proto.getDescriptor());
+        builder.addIndex("MySimpleRecord", new Index("multi_index", concatenateFields("str_value_indexed", "num_value_2")));
+        planner = new RewritePlanner(builder.getRecordMetaData(), new RecordStoreState());
+    }
+
+    @Test
+    public void indexEquality() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").equalsValue(3))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(hasTupleString("[[3],[3]]")))));
+    }
+
+    @Test
+    public void concatenatedIndex() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.and(
+                        Query.field("num_value_2").greaterThan(5),
+                        Query.field("str_value_indexed").equalsValue("a")))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, indexScan(allOf(indexName("multi_index"), bounds(hasTupleString("([a, 5],[a]]")))));
+    }
+
+    @Test
+    public void unindexedFilter() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_2").equalsValue(1))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, typeFilter(contains("MySimpleRecord"),
+                filter(equalTo(Query.field("num_value_2").equalsValue(1)), scan(bounds(unbounded())))));
+    }
+
+    @Test
+    public void orToUnion() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.or(
+                        Query.field("str_value_indexed").equalsValue("a"),
+                        Query.field("num_value_3_indexed").equalsValue(3)))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, union(
+                indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(hasTupleString("[[a],[a]]")))),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(hasTupleString("[[3],[3]]"))))));
+    }
+
+    @Test
+    public void inJoin() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").in(Arrays.asList(1, 2)))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, inValues(equalTo(Arrays.asList(1, 2)),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(hasTupleString("[EQUALS $__in_num_value_3_indexed__0]"))))));
+    }
+
+    @Test
+    public void sortByIndex() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_3_indexed").equalsValue(3))
+                .setSort(field("str_value_indexed"))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, filter(equalTo(Query.field("num_value_3_indexed").equalsValue(3)),
+                indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(unbounded())))));
+
+        // An equality on the first column of an index leaves it ordered by the next.
+        query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("str_value_indexed").equalsValue("a"))
+                .setSort(field("num_value_2"), true)
+                .build();
+        plan = planner.plan(query);
+        assertThat(plan, indexScan(allOf(indexName("multi_index"), bounds(hasTupleString("[[a],[a]]")))));
+        assertThat(plan.isReverse(), equalTo(true));
+    }
+
+    @Test
+    public void cannotSort() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setSort(field("num_value_2"))
+                .build();
+        assertThrows(RecordCoreException.class, () -> planner.plan(query));
+    }
+
+    @Test
+    public void coveringIndex() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.field("num_value_unique").greaterThan(10))
+                .setRequiredResults(Collections.singletonList(field("num_value_unique")))
+                .build();
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, coveringIndexScan(indexScan(allOf(indexName("MySimpleRecord$num_value_unique"), bounds(hasTupleString("([10],>"))))));
+    }
+
+    @Test
+    public void customCostModel() throws Exception {
+        RecordQuery query = RecordQuery.newBuilder()
+                .setRecordType("MySimpleRecord")
+                .setFilter(Query.and(
+                        Query.field("str_value_indexed").equalsValue("a"),
+                        Query.field("num_value_3_indexed").equalsValue(3)))
+                .build();
+        // Evaluating a filter is made to be much more expensive than merging index scans.
+        planner.setCostModel((context, plan) -> hasFilter(plan) ? 1000.0 : plan.getComplexity());
+        RecordQueryPlan plan = planner.plan(query);
+        assertThat(plan, intersection(
+                indexScan(allOf(indexName("MySimpleRecord$str_value_indexed"), bounds(hasTupleString("[[a],[a]]")))),
+                indexScan(allOf(indexName("MySimpleRecord$num_value_3_indexed"), bounds(hasTupleString("[[3],[3]]"))))));
+    }
+
+    private static boolean hasFilter(RecordQueryPlan plan) {
+        return plan instanceof RecordQueryFilterPlan || plan.getChildren().stream().anyMatch(RewritePlannerTest::hasFilter);
+    }
+}
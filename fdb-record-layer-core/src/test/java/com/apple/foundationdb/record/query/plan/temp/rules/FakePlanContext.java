@@ -29,6 +29,7 @@ import com.google.common.collect.Sets;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -70,4 +71,10 @@ public class FakePlanContext implements PlanContext {
     public RecordMetaData getMetaData() {
         throw new UnsupportedOperationException();
     }
+
+    @Nullable
+    @Override
+    public List<KeyExpression> getRequiredResults() {
+        return null;
+    }
 }